@@ -290,6 +290,9 @@
     <java classname="{$class}"
 	  fork="yes"
 	  failonerror="yes">
+      <xsl:if test="@options">
+	<arg line="{@options}"/>
+      </xsl:if>
       <arg value="{$runtestdir}/out.log"/>
       <arg value="{$runtestdir}"/>
       <xsl:if test="@output">
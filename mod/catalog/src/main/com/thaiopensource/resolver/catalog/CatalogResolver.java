@@ -14,14 +14,29 @@ import org.apache.xml.resolver.Catalog;
 
 import java.io.IOException;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
- * A Resolver that uses OASIS XML catalogs.
+ * A Resolver that uses OASIS XML catalogs.  The result of resolving each identifier is remembered,
+ * so identifiers that have been resolved recently are resolved again without consulting the catalog
+ * and without locking; this assumes that the catalog files do not change while the resolver is in use.
+ * Other identifiers are resolved one at a time, since a Catalog is not thread-safe.
  */
 public class CatalogResolver extends AbstractResolver {
+  /**
+   * The results are remembered in two generations of this size.  When the current generation is full,
+   * it becomes the old generation, and the results in the old generation that have not been used
+   * since are discarded.  A result found in the old generation is moved to the current one.
+   */
+  private static final int GENERATION_SIZE = 2048;
+  // Value in the cache for an identifier that the catalog does not resolve.
+  private static final String UNRESOLVED = "\u0000";
   private final Catalog catalog;
   private boolean catalogLoaded = false;
-  private boolean hadCatalogError = false;
+  private volatile boolean hadCatalogError = false;
+  private volatile ConcurrentMap<String, String> cache = new ConcurrentHashMap<String, String>();
+  private volatile ConcurrentMap<String, String> oldCache = new ConcurrentHashMap<String, String>();
 
   // Allow somebody to customize in a different way, but still use our resolve logic.
   public CatalogResolver(Catalog catalog) {
@@ -40,7 +55,7 @@ public class CatalogResolver extends AbstractResolver {
     this(catalogUris, new SAXResolver());
   }
   
-  public synchronized void resolve(Identifier id, Input input) throws IOException, ResolverException {
+  public void resolve(Identifier id, Input input) throws IOException, ResolverException {
     if (input.isResolved())
       return;
     if (hadCatalogError)
@@ -54,6 +69,34 @@ public class CatalogResolver extends AbstractResolver {
     catch (ResolverException e) {
       // ignore
     }
+    String key = cacheKey(id, absoluteUri);
+    String resolved = cache.get(key);
+    if (resolved == null) {
+      resolved = oldCache.get(key);
+      if (resolved == null) {
+        resolved = lookup(id, absoluteUri);
+        if (hadCatalogError)
+          return;
+        if (resolved == null)
+          resolved = UNRESOLVED;
+      }
+      remember(key, resolved);
+    }
+    if (!resolved.equals(UNRESOLVED))
+      input.setUri(resolved);
+  }
+
+  private synchronized void remember(String key, String resolved) {
+    if (cache.size() >= GENERATION_SIZE) {
+      oldCache = cache;
+      cache = new ConcurrentHashMap<String, String>();
+    }
+    cache.put(key, resolved);
+  }
+
+  private synchronized String lookup(Identifier id, String absoluteUri) throws IOException, ResolverException {
+    if (hadCatalogError)
+      return null;
     String resolved = null;
     boolean isExternalIdentifier = (id instanceof ExternalIdentifier);
     try {
@@ -84,7 +127,35 @@ public class CatalogResolver extends AbstractResolver {
       hadCatalogError = true;
       throw e.getResolverException();
     }
-    if (resolved != null)
-      input.setUri(resolved);
+    return resolved;
+  }
+
+  /**
+   * Returns a string containing everything that the result of lookup depends on.
+   */
+  private static String cacheKey(Identifier id, String absoluteUri) {
+    StringBuilder buf = new StringBuilder();
+    if (!(id instanceof ExternalIdentifier))
+      buf.append('U');
+    else if (id instanceof ExternalEntityIdentifier)
+      appendField(buf.append('E'), ((ExternalEntityIdentifier)id).getEntityName());
+    else if (id instanceof ExternalDTDSubsetIdentifier)
+      appendField(buf.append('D'), ((ExternalDTDSubsetIdentifier)id).getDoctypeName());
+    else
+      buf.append('X');
+    if (id instanceof ExternalIdentifier)
+      appendField(buf, ((ExternalIdentifier)id).getPublicId());
+    appendField(buf, absoluteUri);
+    appendField(buf, id.getUriReference());
+    return buf.toString();
+  }
+
+  private static void appendField(StringBuilder buf, String value) {
+    if (value == null)
+      buf.append('\u0000');
+    else
+      buf.append('\u0001').append(value);
+    // U+FFFF cannot occur in an identifier, so it unambiguously terminates the field
+    buf.append('\uFFFF');
   }
 }
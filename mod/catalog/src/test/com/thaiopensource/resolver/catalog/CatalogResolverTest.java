@@ -27,6 +27,67 @@ public class CatalogResolverTest {
     Assert.assertEquals(input.getUri(), "http://www.example.com/bar.xml");
   }
 
+  /**
+   * A catalog that counts how many times it is asked to resolve a system identifier.
+   */
+  static class CountingCatalog extends OasisCatalog {
+    int count = 0;
+
+    CountingCatalog(List<String> catalogUris) {
+      super(new SimpleCatalogManager(catalogUris), new SAXResolver(null));
+    }
+
+    public String resolveSystem(String systemId) throws IOException {
+      count++;
+      return super.resolveSystem(systemId);
+    }
+  }
+
+  @Test
+  public void testResolveRepeatedly() throws IOException, ResolverException {
+    List<String> catalogs = new ArrayList<String>();
+    catalogs.add(resourceUri("catalog.xml"));
+    CountingCatalog catalog = new CountingCatalog(catalogs);
+    Resolver resolver = new CatalogResolver(catalog);
+    for (int i = 0; i < 2; i++) {
+      Input input = new Input();
+      resolver.resolve(new ExternalIdentifier("foo.xml", "http://www.example.com/index.html", "The Great Foo"), input);
+      Assert.assertEquals(input.getUri(), "http://www.example.com/bar.xml");
+      input = new Input();
+      resolver.resolve(new ExternalIdentifier("foo.xml", "http://www.example.com/index.html", "The Lesser Foo"), input);
+      Assert.assertNull(input.getUri());
+      // the second time, both results come from the cache
+      Assert.assertEquals(catalog.count, 2);
+    }
+  }
+
+  @Test
+  public void testEviction() throws IOException, ResolverException {
+    List<String> catalogs = new ArrayList<String>();
+    catalogs.add(resourceUri("catalog.xml"));
+    CountingCatalog catalog = new CountingCatalog(catalogs);
+    Resolver resolver = new CatalogResolver(catalog);
+    final int n = 10000;
+    for (int i = 0; i < n; i++) {
+      resolve(resolver, i);
+      // an identifier that is used all the time is not evicted
+      resolve(resolver, -1);
+    }
+    Assert.assertEquals(catalog.count, n + 1);
+    // a recently resolved identifier is still remembered
+    resolve(resolver, n - 1);
+    Assert.assertEquals(catalog.count, n + 1);
+    // but the first ones are not, and are looked up again
+    resolve(resolver, 0);
+    Assert.assertEquals(catalog.count, n + 2);
+  }
+
+  private static void resolve(Resolver resolver, int i) throws IOException, ResolverException {
+    Input input = new Input();
+    resolver.resolve(new ExternalIdentifier("doc" + i + ".xml", "http://www.example.com/index.html", "The Other Foo"), input);
+    Assert.assertNull(input.getUri());
+  }
+
   static String resourceUri(String fileName) {
     String className = CatalogResolverTest.class.getName();
     int dotIndex = className.lastIndexOf('.');
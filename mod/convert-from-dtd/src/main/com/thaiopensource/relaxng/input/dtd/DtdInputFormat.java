@@ -15,6 +15,7 @@ import com.thaiopensource.relaxng.translate.util.ParamProcessor;
 import com.thaiopensource.resolver.Resolver;
 import com.thaiopensource.util.Localizer;
 import com.thaiopensource.xml.dtd.om.Dtd;
+import com.thaiopensource.xml.dtd.parse.DtdCache;
 import com.thaiopensource.xml.dtd.parse.DtdParserImpl;
 import com.thaiopensource.xml.dtd.parse.ParseException;
 import com.thaiopensource.xml.em.EntityManager;
@@ -25,6 +26,7 @@ import org.xml.sax.ErrorHandler;
 import org.xml.sax.SAXException;
 import org.xml.sax.SAXParseException;
 
+import java.io.File;
 import java.io.IOException;
 import java.util.Map;
 
@@ -140,11 +142,22 @@ public class DtdInputFormat implements InputFormat {
                    options.attlistDeclPattern = pattern;
                  }
                });
+    final File[] cacheDirectory = new File[1];
+    pp.declare("cache",
+               new AbstractParam() {
+                 public void set(String value) {
+                   cacheDirectory[0] = new File(value);
+                 }
+               });
     pp.setParamFactory(new NamespaceDeclParamFactory(options.prefixMap));
     pp.process(params, eh);
     try {
       EntityManager em = resolver != null? new ResolverUriEntityManager(resolver): new UriEntityManager();
-      Dtd dtd = new DtdParserImpl().parse(uri, em);
+      Dtd dtd;
+      if (cacheDirectory[0] != null)
+        dtd = new DtdCache(cacheDirectory[0]).parse(uri, em);
+      else
+        dtd = new DtdParserImpl().parse(uri, em);
       try {
         return new Converter(dtd, er, options).convert();
       }
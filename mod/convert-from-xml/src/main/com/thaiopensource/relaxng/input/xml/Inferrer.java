@@ -21,6 +21,7 @@ import com.thaiopensource.relaxng.edit.TextPattern;
 import com.thaiopensource.relaxng.edit.ZeroOrMorePattern;
 import com.thaiopensource.resolver.Resolver;
 import com.thaiopensource.resolver.xml.sax.SAXResolver;
+import com.thaiopensource.util.ThreadPool;
 import com.thaiopensource.xml.infer.AttributeDecl;
 import com.thaiopensource.xml.infer.ChoiceParticle;
 import com.thaiopensource.xml.infer.ElementDecl;
@@ -37,6 +38,7 @@ import com.thaiopensource.xml.util.Name;
 import org.xml.sax.ErrorHandler;
 import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
 import org.xml.sax.XMLReader;
 
 import java.io.IOException;
@@ -48,6 +50,10 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 
 class Inferrer {
   private final Schema schema;
@@ -63,6 +69,8 @@ class Inferrer {
   static class Options {
     String encoding;
     Resolver resolver;
+    int parallel = 1;
+    int sampleSize = 0;
   }
 
   private static class PatternComparator implements Comparator<Pattern> {
@@ -215,21 +223,104 @@ class Inferrer {
   }
 
   static SchemaCollection infer(String[] args, Options options, ErrorHandler eh) throws SAXException, IOException {
-    InferHandler handler = new InferHandler(new DatatypeLibraryLoader());
+    InferHandler handler;
+    int nThreads = Math.min(options.parallel, args.length);
+    if (nThreads <= 1)
+      handler = infer(args, 0, args.length, options, eh);
+    else
+      handler = inferParallel(args, nThreads, options, eh);
+    SchemaCollection sc = new SchemaCollection();
+    sc.setMainUri(args[0]);
+    SchemaDocument sd = new SchemaDocument(new Inferrer(handler.getSchema()).grammar);
+    sc.getSchemaDocumentMap().put(sc.getMainUri(), sd);
+    return sc;
+  }
+
+  private static InferHandler infer(String[] args, int start, int end, Options options, ErrorHandler eh)
+          throws SAXException, IOException {
+    InferHandler handler = new InferHandler(new DatatypeLibraryLoader(), options.sampleSize);
     XMLReader xr = new SAXResolver(options.resolver).createXMLReader();
     xr.setErrorHandler(eh);
     xr.setContentHandler(handler);
-    for (int i = 0; i < args.length; i++) {
+    for (int i = start; i < end; i++) {
       InputSource in = new InputSource(args[i]);
       if (options.encoding != null)
         in.setEncoding(options.encoding);
       xr.parse(in);
     }
-    SchemaCollection sc = new SchemaCollection();
-    sc.setMainUri(args[0]);
-    SchemaDocument sd = new SchemaDocument(new Inferrer(handler.getSchema()).grammar);
-    sc.getSchemaDocumentMap().put(sc.getMainUri(), sd);
-    return sc;
+    return handler;
+  }
+
+  /**
+   * Divides the documents into contiguous ranges, infers from each range in a separate thread
+   * and merges the results in the order of the ranges.
+   */
+  private static InferHandler inferParallel(final String[] args, int nThreads, final Options options,
+                                            ErrorHandler eh)
+          throws SAXException, IOException {
+    final ErrorHandler syncEh = new SynchronizedErrorHandler(eh);
+    List<Future<InferHandler>> results = new Vector<Future<InferHandler>>();
+    for (int i = 0; i < nThreads; i++) {
+      final int start = (int)((long)args.length * i / nThreads);
+      final int end = (int)((long)args.length * (i + 1) / nThreads);
+      FutureTask<InferHandler> result = new FutureTask<InferHandler>(new Callable<InferHandler>() {
+        public InferHandler call() throws SAXException, IOException {
+          return infer(args, start, end, options, syncEh);
+        }
+      });
+      results.add(result);
+      ThreadPool.execute(result);
+    }
+    InferHandler handler = null;
+    for (Future<InferHandler> result : results) {
+      InferHandler tem = getResult(result);
+      if (handler == null)
+        handler = tem;
+      else
+        handler.merge(tem);
+    }
+    return handler;
+  }
+
+  private static InferHandler getResult(Future<InferHandler> future) throws SAXException, IOException {
+    try {
+      return future.get();
+    }
+    catch (InterruptedException e) {
+      throw new SAXException(e);
+    }
+    catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof SAXException)
+        throw (SAXException)cause;
+      if (cause instanceof IOException)
+        throw (IOException)cause;
+      if (cause instanceof RuntimeException)
+        throw (RuntimeException)cause;
+      if (cause instanceof Error)
+        throw (Error)cause;
+      throw new SAXException((Exception)cause);
+    }
+  }
+
+  private static class SynchronizedErrorHandler implements ErrorHandler {
+    private final ErrorHandler eh;
+
+    SynchronizedErrorHandler(ErrorHandler eh) {
+      this.eh = eh;
+    }
+
+    public synchronized void warning(SAXParseException exception) throws SAXException {
+      eh.warning(exception);
+    }
+
+    public synchronized void error(SAXParseException exception) throws SAXException {
+      eh.error(exception);
+    }
+
+    public synchronized void fatalError(SAXParseException exception) throws SAXException {
+      eh.fatalError(exception);
+    }
   }
 
   private Inferrer(Schema schema) {
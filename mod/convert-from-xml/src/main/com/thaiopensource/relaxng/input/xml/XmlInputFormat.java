@@ -4,6 +4,7 @@ import com.thaiopensource.relaxng.edit.SchemaCollection;
 import com.thaiopensource.relaxng.input.AbstractMultiInputFormat;
 import com.thaiopensource.relaxng.input.InputFailedException;
 import com.thaiopensource.relaxng.translate.util.EncodingParam;
+import com.thaiopensource.relaxng.translate.util.IntegerParam;
 import com.thaiopensource.relaxng.translate.util.InvalidParamsException;
 import com.thaiopensource.relaxng.translate.util.ParamProcessor;
 import com.thaiopensource.resolver.Resolver;
@@ -13,6 +14,8 @@ import org.xml.sax.SAXException;
 import java.io.IOException;
 
 public class XmlInputFormat extends AbstractMultiInputFormat {
+  private static final int MAX_PARALLEL = 256;
+
   public SchemaCollection load(String[] uris, String[] params, String outputFormat, ErrorHandler eh, Resolver resolver)
           throws InputFailedException, InvalidParamsException, IOException, SAXException {
     ParamProcessor pp = new ParamProcessor();
@@ -24,6 +27,18 @@ public class XmlInputFormat extends AbstractMultiInputFormat {
                    options.encoding = encoding;
                  }
                });
+    pp.declare("parallel",
+               new IntegerParam(1, MAX_PARALLEL) {
+                 protected void setInteger(int value) {
+                   options.parallel = value;
+                 }
+               });
+    pp.declare("sample",
+               new IntegerParam(0, Integer.MAX_VALUE) {
+                 protected void setInteger(int value) {
+                   options.sampleSize = value;
+                 }
+               });
     pp.process(params, eh);
     return Inferrer.infer(uris, options, eh);
   }
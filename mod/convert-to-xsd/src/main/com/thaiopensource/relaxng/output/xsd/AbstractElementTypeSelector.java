@@ -30,7 +30,7 @@ class AbstractElementTypeSelector {
     this.complexTypeSelector = complexTypeSelector;
   }
 
-  ComplexType getAbstractElementType(Name name) {
+  synchronized ComplexType getAbstractElementType(Name name) {
     ComplexType ct = abstractElementComplexTypeMap.get(name);
     if (ct == null) {
       ct = computeAbstractElementType(name);
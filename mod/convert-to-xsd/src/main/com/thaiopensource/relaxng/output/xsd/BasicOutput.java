@@ -2,6 +2,7 @@ package com.thaiopensource.relaxng.output.xsd;
 
 import com.thaiopensource.relaxng.output.OutputDirectory;
 import com.thaiopensource.relaxng.output.common.ErrorReporter;
+import com.thaiopensource.relaxng.output.common.ParallelWriter;
 import com.thaiopensource.relaxng.output.common.XmlWriter;
 import com.thaiopensource.relaxng.output.xsd.basic.AbstractAttributeUseVisitor;
 import com.thaiopensource.relaxng.output.xsd.basic.AbstractSchemaVisitor;
@@ -63,6 +64,7 @@ public class BasicOutput {
   static class Options {
     String anyProcessContents = "skip";
     String anyAttributeProcessContents = "skip";
+    int parallel = 1;
   }
   private final XmlWriter xw;
   private final Schema schema;
@@ -85,6 +87,8 @@ public class BasicOutput {
   private final AbstractElementTypeSelector abstractElementTypeSelector;
   private final Set<Name> globalElementsDefined;
   private final Set<Name> globalAttributesDefined;
+  // null if the schema documents are written in order by a single thread
+  private final GlobalDeclarationOwners globalDeclarationOwners;
   private final String xsPrefix;
   private final Options options;
 
@@ -510,8 +514,7 @@ public class BasicOutput {
       Name name = p.getName();
       if (nsm.isGlobal(p)
           && name.getNamespaceUri().equals(targetNamespace)
-          && !globalElementsDefined.contains(name)) {
-        globalElementsDefined.add(name);
+          && declareGlobalElement(name)) {
         xw.startElement(xs("element"));
         xw.attribute("name", name.getLocalName());
         outputComplexType(name, p.getComplexType(), p);
@@ -578,8 +581,7 @@ public class BasicOutput {
       Name name = a.getName();
       if (nsm.isGlobal(a)
           && name.getNamespaceUri().equals(targetNamespace)
-          && !globalAttributesDefined.contains(name)) {
-        globalAttributesDefined.add(name);
+          && declareGlobalAttribute(name)) {
         xw.startElement(xs("attribute"));
         xw.attribute("name", name.getLocalName());
         if (a.getType() != null)
@@ -695,8 +697,7 @@ public class BasicOutput {
       xw.endElement();
       for (iter = children.iterator(); iter.hasNext();) {
         Element element = (Element)iter.next();
-        if (nsm.isGlobal(element) && !globalElementsDefined.contains(element.getName())) {
-          globalElementsDefined.add(element.getName());
+        if (nsm.isGlobal(element) && declareGlobalElement(element.getName())) {
           xw.startElement(xs("element"));
           xw.attribute("name", element.getName().getLocalName());
           xw.attribute("type", def.getName());
@@ -765,17 +766,39 @@ public class BasicOutput {
     }
   }
 
-  static void output(Schema schema, Guide guide, PrefixManager pm, OutputDirectory od,
-                     Options options, ErrorReporter er) throws IOException {
-    NamespaceManager nsm = new NamespaceManager(schema, guide, pm);
-    ComplexTypeSelector cts = new ComplexTypeSelector(schema);
-    AbstractElementTypeSelector aets = new AbstractElementTypeSelector(schema, nsm, cts);
-    Set<Name> globalElementsDefined = new HashSet<Name>();
-    Set<Name> globalAttributesDefined = new HashSet<Name>();
+  static void output(Schema schema, Guide guide, final PrefixManager pm, final OutputDirectory od,
+                     final Options options, final ErrorReporter er) throws IOException {
+    final NamespaceManager nsm = new NamespaceManager(schema, guide, pm);
+    final ComplexTypeSelector cts = new ComplexTypeSelector(schema);
+    final AbstractElementTypeSelector aets = new AbstractElementTypeSelector(schema, nsm, cts);
+    final Set<Name> globalElementsDefined = new HashSet<Name>();
+    final Set<Name> globalAttributesDefined = new HashSet<Name>();
+    final GlobalDeclarationOwners globalDeclarationOwners;
+    if (options.parallel > 1) {
+      nsm.generateNames();
+      globalDeclarationOwners = new GlobalDeclarationOwners(schema, nsm, cts);
+      // choose the prefixes in the same order as when the first schema document is written
+      pm.getPrefix(WellKnownNamespaces.XML_SCHEMA);
+      for (String ns : nsm.getTargetNamespaces())
+        pm.getPrefix(ns);
+    }
+    else
+      globalDeclarationOwners = null;
+    List<ParallelWriter.Task> tasks = new Vector<ParallelWriter.Task>();
+    for (final Schema sch : schema.getSubSchemas()) {
+      tasks.add(new ParallelWriter.Task(sch.getUri()) {
+        public void write() throws IOException {
+          if (globalDeclarationOwners == null)
+            new BasicOutput(sch, er, od, options, nsm, pm, cts, aets,
+                            globalElementsDefined, globalAttributesDefined, null).output();
+          else
+            new BasicOutput(sch, er, od, options, nsm, pm, cts, aets,
+                            new HashSet<Name>(), new HashSet<Name>(), globalDeclarationOwners).output();
+        }
+      });
+    }
     try {
-      for (Schema sch : schema.getSubSchemas())
-        new BasicOutput(sch, er, od, options, nsm, pm, cts, aets,
-                        globalElementsDefined, globalAttributesDefined).output();
+      ParallelWriter.write(tasks, od, options.parallel);
     }
     catch (XmlWriter.WrappedException e) {
       throw e.getIOException();
@@ -785,7 +808,8 @@ public class BasicOutput {
   private BasicOutput(Schema schema, ErrorReporter er, OutputDirectory od, Options options,
                      NamespaceManager nsm, PrefixManager pm, ComplexTypeSelector complexTypeSelector,
                      AbstractElementTypeSelector abstractElementTypeSelector,
-                     Set<Name> globalElementsDefined, Set<Name> globalAttributesDefined) throws IOException {
+                     Set<Name> globalElementsDefined, Set<Name> globalAttributesDefined,
+                     GlobalDeclarationOwners globalDeclarationOwners) throws IOException {
     this.schema = schema;
     this.nsm = nsm;
     this.pm = pm;
@@ -793,6 +817,7 @@ public class BasicOutput {
     this.abstractElementTypeSelector = abstractElementTypeSelector;
     this.globalElementsDefined = globalElementsDefined;
     this.globalAttributesDefined = globalAttributesDefined;
+    this.globalDeclarationOwners = globalDeclarationOwners;
     this.sourceUri = schema.getUri();
     this.od = od;
     this.targetNamespace = nsm.getTargetNamespace(schema.getUri());
@@ -807,6 +832,21 @@ public class BasicOutput {
                        new String[0]);
   }
 
+  /**
+   * Returns true if the global element with the specified name is to be declared here.
+   */
+  private boolean declareGlobalElement(Name name) {
+    if (globalDeclarationOwners != null && !globalDeclarationOwners.isElementOwner(name, schema))
+      return false;
+    return globalElementsDefined.add(name);
+  }
+
+  private boolean declareGlobalAttribute(Name name) {
+    if (globalDeclarationOwners != null && !globalDeclarationOwners.isAttributeOwner(name, schema))
+      return false;
+    return globalAttributesDefined.add(name);
+  }
+
   private String topLevelPrefix(String ns) {
     if (!nsm.isTargetNamespace(ns))
       return null;
@@ -0,0 +1,189 @@
+package com.thaiopensource.relaxng.output.xsd;
+
+import com.thaiopensource.relaxng.output.xsd.basic.AbstractAttributeUseVisitor;
+import com.thaiopensource.relaxng.output.xsd.basic.AbstractSchemaVisitor;
+import com.thaiopensource.relaxng.output.xsd.basic.Attribute;
+import com.thaiopensource.relaxng.output.xsd.basic.AttributeGroup;
+import com.thaiopensource.relaxng.output.xsd.basic.AttributeGroupDefinition;
+import com.thaiopensource.relaxng.output.xsd.basic.AttributeGroupRef;
+import com.thaiopensource.relaxng.output.xsd.basic.AttributeUse;
+import com.thaiopensource.relaxng.output.xsd.basic.ComplexTypeComplexContent;
+import com.thaiopensource.relaxng.output.xsd.basic.ComplexTypeNotAllowedContent;
+import com.thaiopensource.relaxng.output.xsd.basic.ComplexTypeSimpleContent;
+import com.thaiopensource.relaxng.output.xsd.basic.ComplexTypeVisitor;
+import com.thaiopensource.relaxng.output.xsd.basic.Element;
+import com.thaiopensource.relaxng.output.xsd.basic.GroupDefinition;
+import com.thaiopensource.relaxng.output.xsd.basic.GroupRef;
+import com.thaiopensource.relaxng.output.xsd.basic.OptionalAttribute;
+import com.thaiopensource.relaxng.output.xsd.basic.Particle;
+import com.thaiopensource.relaxng.output.xsd.basic.ParticleAll;
+import com.thaiopensource.relaxng.output.xsd.basic.ParticleChoice;
+import com.thaiopensource.relaxng.output.xsd.basic.ParticleRepeat;
+import com.thaiopensource.relaxng.output.xsd.basic.ParticleSequence;
+import com.thaiopensource.relaxng.output.xsd.basic.ParticleVisitor;
+import com.thaiopensource.relaxng.output.xsd.basic.RootDeclaration;
+import com.thaiopensource.relaxng.output.xsd.basic.Schema;
+import com.thaiopensource.relaxng.output.xsd.basic.Structure;
+import com.thaiopensource.relaxng.output.xsd.basic.StructureVisitor;
+import com.thaiopensource.relaxng.output.xsd.basic.WildcardAttribute;
+import com.thaiopensource.relaxng.output.xsd.basic.WildcardElement;
+import com.thaiopensource.util.VoidValue;
+import com.thaiopensource.xml.util.Name;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Determines the schema document that contains the declaration of each global element and attribute.
+ * BasicOutput declares a global element or attribute in the first schema document that it writes that
+ * refers to it from a place where it may be declared.  This finds the same schema documents, without writing
+ * them, so that schema documents can be written independently of each other.  The places visited here must
+ * be kept in step with those in BasicOutput at which global elements and attributes are declared.
+ */
+class GlobalDeclarationOwners {
+  private final Map<Name, Schema> elementOwners = new HashMap<Name, Schema>();
+  private final Map<Name, Schema> attributeOwners = new HashMap<Name, Schema>();
+
+  GlobalDeclarationOwners(Schema schema, NamespaceManager nsm, ComplexTypeSelector cts) {
+    for (Schema sch : schema.getSubSchemas())
+      new Finder(sch, nsm, cts).find();
+  }
+
+  boolean isElementOwner(Name name, Schema schema) {
+    return elementOwners.get(name) == schema;
+  }
+
+  boolean isAttributeOwner(Name name, Schema schema) {
+    return attributeOwners.get(name) == schema;
+  }
+
+  private class Finder extends AbstractSchemaVisitor {
+    private final Schema schema;
+    private final NamespaceManager nsm;
+    private final ComplexTypeSelector cts;
+    private final String targetNamespace;
+    private final ElementFinder elementFinder = new ElementFinder();
+    private final AttributeFinder attributeFinder = new AttributeFinder();
+
+    Finder(Schema schema, NamespaceManager nsm, ComplexTypeSelector cts) {
+      this.schema = schema;
+      this.nsm = nsm;
+      this.cts = cts;
+      this.targetNamespace = nsm.getTargetNamespace(schema.getUri());
+    }
+
+    void find() {
+      schema.accept(this);
+      if (nsm.getRootSchema(targetNamespace).equals(schema.getUri())) {
+        StructureVisitor<VoidValue> movedStructureFinder = new StructureVisitor<VoidValue>() {
+          public VoidValue visitElement(Element element) {
+            return elementFinder.visitElement(element);
+          }
+
+          public VoidValue visitAttribute(Attribute attribute) {
+            return attributeFinder.visitAttribute(attribute);
+          }
+        };
+        for (Structure structure : nsm.getMovedStructures(targetNamespace))
+          structure.accept(movedStructureFinder);
+      }
+    }
+
+    public void visitGroup(GroupDefinition def) {
+      def.getParticle().accept(elementFinder);
+    }
+
+    public void visitAttributeGroup(AttributeGroupDefinition def) {
+      if (!cts.isComplexType(def.getName()))
+        def.getAttributeUses().accept(attributeFinder);
+    }
+
+    public void visitRoot(RootDeclaration decl) {
+      decl.getParticle().accept(elementFinder);
+    }
+
+    private void noteOwner(Map<Name, Schema> owners, Name name) {
+      if (!owners.containsKey(name))
+        owners.put(name, schema);
+    }
+
+    class ElementFinder implements ParticleVisitor<VoidValue>, ComplexTypeVisitor<VoidValue> {
+      public VoidValue visitElement(Element p) {
+        if (nsm.isGlobal(p) && p.getName().getNamespaceUri().equals(targetNamespace))
+          noteOwner(elementOwners, p.getName());
+        return p.getComplexType().accept(this);
+      }
+
+      public VoidValue visitRepeat(ParticleRepeat p) {
+        return p.getChild().accept(this);
+      }
+
+      private VoidValue visitList(List<Particle> list) {
+        for (Particle p : list)
+          p.accept(this);
+        return null;
+      }
+
+      public VoidValue visitSequence(ParticleSequence p) {
+        return visitList(p.getChildren());
+      }
+
+      public VoidValue visitChoice(ParticleChoice p) {
+        return visitList(p.getChildren());
+      }
+
+      public VoidValue visitAll(ParticleAll p) {
+        return visitList(p.getChildren());
+      }
+
+      public VoidValue visitGroupRef(GroupRef p) {
+        return null;
+      }
+
+      public VoidValue visitWildcardElement(WildcardElement p) {
+        return null;
+      }
+
+      public VoidValue visitComplexContent(ComplexTypeComplexContent t) {
+        if (t.getParticle() == null)
+          return null;
+        return t.getParticle().accept(this);
+      }
+
+      public VoidValue visitSimpleContent(ComplexTypeSimpleContent t) {
+        return null;
+      }
+
+      public VoidValue visitNotAllowedContent(ComplexTypeNotAllowedContent t) {
+        return null;
+      }
+    }
+
+    class AttributeFinder extends AbstractAttributeUseVisitor<VoidValue> {
+      public VoidValue visitAttributeGroup(AttributeGroup a) {
+        for (AttributeUse child : a.getChildren())
+          child.accept(this);
+        return null;
+      }
+
+      public VoidValue visitAttribute(Attribute a) {
+        if (nsm.isGlobal(a) && a.getName().getNamespaceUri().equals(targetNamespace))
+          noteOwner(attributeOwners, a.getName());
+        return null;
+      }
+
+      public VoidValue visitOptionalAttribute(OptionalAttribute a) {
+        return a.getAttribute().accept(this);
+      }
+
+      public VoidValue visitAttributeGroupRef(AttributeGroupRef a) {
+        return null;
+      }
+
+      public VoidValue visitWildcardAttribute(WildcardAttribute a) {
+        return null;
+      }
+    }
+  }
+}
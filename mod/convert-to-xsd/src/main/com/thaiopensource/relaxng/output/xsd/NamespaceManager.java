@@ -309,6 +309,21 @@ public class NamespaceManager {
     schema.accept(new StructureMover(getTargetNamespace(schema.getUri())));
   }
 
+  /**
+   * Chooses the names of the definitions for moved structures and wildcards, so that they do not depend
+   * on the order in which the schema documents are written.  Otherwise they are chosen on first use.
+   */
+  void generateNames() {
+    for (Map.Entry<String, TargetNamespace> entry : targetNamespaceMap.entrySet()) {
+      for (Structure struct : entry.getValue().movedStructures) {
+        if (struct instanceof Element ? !isGlobal((Element)struct) : !isGlobal((Attribute)struct))
+          getProxyName(struct);
+      }
+      getOtherElementName(entry.getKey());
+      getOtherAttributeName(entry.getKey());
+    }
+  }
+
   private void assignTargetNamespaces() {
     new TargetNamespaceSelector(schema);
     // TODO maybe use info from <start> to select which targetNamespace of included schemas to use
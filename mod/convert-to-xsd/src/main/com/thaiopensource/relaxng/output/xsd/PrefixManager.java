@@ -161,7 +161,7 @@ public class PrefixManager implements SourceUriGenerator {
     new PrefixSelector(si).assignPrefixes();
   }
 
-  String getPrefix(String namespace) {
+  synchronized String getPrefix(String namespace) {
     String prefix = prefixMap.get(namespace);
     if (prefix == null && namespace.equals(WellKnownNamespaces.XML_SCHEMA)) {
       for (int i = 0; i < xsdPrefixes.length; i++)
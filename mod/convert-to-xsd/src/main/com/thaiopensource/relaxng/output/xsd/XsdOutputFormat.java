@@ -11,6 +11,7 @@ import com.thaiopensource.relaxng.translate.util.InvalidParamsException;
 import com.thaiopensource.relaxng.translate.util.ParamProcessor;
 import com.thaiopensource.relaxng.translate.util.AbstractParam;
 import com.thaiopensource.relaxng.translate.util.EnumParam;
+import com.thaiopensource.relaxng.translate.util.IntegerParam;
 import org.xml.sax.ErrorHandler;
 import org.xml.sax.SAXException;
 
@@ -19,6 +20,8 @@ import java.io.IOException;
 public class XsdOutputFormat implements OutputFormat {
   static private final boolean DEFAULT_ENABLE_ABSTRACT_ELEMENT = true;
   static private final String[] processContents = { "skip", "lax", "strict" };
+  static private final int MAX_PARALLEL = 256;
+
   public void output(SchemaCollection sc, OutputDirectory od, String[] params, String inputFormat, ErrorHandler eh)
           throws SAXException, IOException, OutputFailedException, InvalidParamsException {
     final Guide guide = new Guide(DEFAULT_ENABLE_ABSTRACT_ELEMENT);
@@ -44,6 +47,12 @@ public class XsdOutputFormat implements OutputFormat {
                    outputOptions.anyAttributeProcessContents = getValues()[i];
                  }
                });
+    pp.declare("parallel",
+               new IntegerParam(1, MAX_PARALLEL) {
+                 protected void setInteger(int value) {
+                   outputOptions.parallel = value;
+                 }
+               });
     pp.process(params, eh);
     try {
       ErrorReporter er = new ErrorReporter(eh, XsdOutputFormat.class);
@@ -1,6 +1,8 @@
 package com.thaiopensource.xml.dtd.om;
 
 public class Attribute extends AttributeGroupMember {
+  private static final long serialVersionUID = 1L;
+
   private final NameSpec nameSpec;
   private final Datatype datatype;
   private final AttributeDefault attributeDefault;
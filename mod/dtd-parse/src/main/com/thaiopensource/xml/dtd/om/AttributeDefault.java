@@ -1,6 +1,10 @@
 package com.thaiopensource.xml.dtd.om;
 
-public abstract class AttributeDefault {
+import java.io.Serializable;
+
+public abstract class AttributeDefault implements Serializable {
+  private static final long serialVersionUID = 1L;
+
   public static final int DEFAULT_VALUE = 0;
   public static final int FIXED_VALUE = 1;
   public static final int IMPLIED_VALUE = 2;
@@ -1,6 +1,10 @@
 package com.thaiopensource.xml.dtd.om;
 
-public class AttributeGroup {
+import java.io.Serializable;
+
+public class AttributeGroup implements Serializable {
+  private static final long serialVersionUID = 1L;
+
   private final AttributeGroupMember[] members;
 
   public AttributeGroup(AttributeGroupMember[] members) {
@@ -1,6 +1,10 @@
 package com.thaiopensource.xml.dtd.om;
 
-public abstract class AttributeGroupMember {
+import java.io.Serializable;
+
+public abstract class AttributeGroupMember implements Serializable {
+  private static final long serialVersionUID = 1L;
+
   public static final int ATTRIBUTE = 0;
   public static final int ATTRIBUTE_GROUP_REF = 1;
 
@@ -1,6 +1,7 @@
 package com.thaiopensource.xml.dtd.om;
 
 public class AttributeGroupRef extends AttributeGroupMember {
+  private static final long serialVersionUID = 1L;
   
   private final String name;
   private final AttributeGroup attributeGroup;
@@ -1,6 +1,8 @@
 package com.thaiopensource.xml.dtd.om;
 
 public class CdataDatatype extends Datatype {
+  private static final long serialVersionUID = 1L;
+
   public CdataDatatype() { }
 
   public int getType() {
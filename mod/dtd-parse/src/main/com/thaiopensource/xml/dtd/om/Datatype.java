@@ -1,6 +1,10 @@
 package com.thaiopensource.xml.dtd.om;
 
-public abstract class Datatype {
+import java.io.Serializable;
+
+public abstract class Datatype implements Serializable {
+  private static final long serialVersionUID = 1L;
+
   public static final int CDATA = 0;
   public static final int TOKENIZED = 1;
   public static final int ENUM = 2;
@@ -1,6 +1,8 @@
 package com.thaiopensource.xml.dtd.om;
 
 public abstract class Def extends TopLevel {
+  private static final long serialVersionUID = 1L;
+
   private final String name;
 
   protected Def(String name) {
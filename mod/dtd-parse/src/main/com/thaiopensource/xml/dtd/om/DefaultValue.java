@@ -1,6 +1,8 @@
 package com.thaiopensource.xml.dtd.om;
 
 public class DefaultValue extends AttributeDefault {
+  private static final long serialVersionUID = 1L;
+
   private final String value;
   
   public DefaultValue(String value) {
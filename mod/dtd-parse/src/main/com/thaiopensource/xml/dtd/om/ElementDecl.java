@@ -1,6 +1,7 @@
 package com.thaiopensource.xml.dtd.om;
 
 public class ElementDecl extends TopLevel {
+  private static final long serialVersionUID = 1L;
   
   private final NameSpec nameSpec;
   private final ModelGroup modelGroup;
@@ -1,6 +1,8 @@
 package com.thaiopensource.xml.dtd.om;
 
 public class EnumDatatype extends Datatype {
+  private static final long serialVersionUID = 1L;
+
   private final EnumGroup enumGroup;
 
   public EnumDatatype(EnumGroup enumGroup) {
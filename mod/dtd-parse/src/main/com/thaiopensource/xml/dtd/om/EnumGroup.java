@@ -1,6 +1,10 @@
 package com.thaiopensource.xml.dtd.om;
 
-public class EnumGroup {
+import java.io.Serializable;
+
+public class EnumGroup implements Serializable {
+  private static final long serialVersionUID = 1L;
+
   private final EnumGroupMember[] members;
 
   public EnumGroup(EnumGroupMember[] members) {
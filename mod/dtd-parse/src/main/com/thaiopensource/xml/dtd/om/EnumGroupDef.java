@@ -1,6 +1,7 @@
 package com.thaiopensource.xml.dtd.om;
 
 public class EnumGroupDef extends Def {
+  private static final long serialVersionUID = 1L;
   
   private final EnumGroup enumGroup;
 
@@ -1,6 +1,10 @@
 package com.thaiopensource.xml.dtd.om;
 
-public abstract class EnumGroupMember {
+import java.io.Serializable;
+
+public abstract class EnumGroupMember implements Serializable {
+  private static final long serialVersionUID = 1L;
+
   public static final int ENUM_VALUE = 0;
   public static final int ENUM_GROUP_REF = 1;
 
@@ -1,6 +1,7 @@
 package com.thaiopensource.xml.dtd.om;
 
 public class EnumGroupRef extends EnumGroupMember {
+  private static final long serialVersionUID = 1L;
   
   private final String name;
   private final EnumGroup enumGroup;
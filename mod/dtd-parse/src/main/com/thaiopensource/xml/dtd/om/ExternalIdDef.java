@@ -3,6 +3,8 @@ package com.thaiopensource.xml.dtd.om;
 import com.thaiopensource.xml.em.ExternalId;
 
 public class ExternalIdDef extends Def {
+  private static final long serialVersionUID = 1L;
+
   private final ExternalId externalId;
 
   public ExternalIdDef(String name, ExternalId externalId) {
@@ -1,6 +1,10 @@
 package com.thaiopensource.xml.dtd.om;
 
-public abstract class Flag {
+import java.io.Serializable;
+
+public abstract class Flag implements Serializable {
+  private static final long serialVersionUID = 1L;
+
   public static final int INCLUDE = 0;
   public static final int IGNORE = 0;
   public static final int FLAG_REF = 0;
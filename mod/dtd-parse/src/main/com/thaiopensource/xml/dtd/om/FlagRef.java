@@ -1,6 +1,8 @@
 package com.thaiopensource.xml.dtd.om;
 
 public class FlagRef extends Flag {
+  private static final long serialVersionUID = 1L;
+
   private final String name;
   private final Flag flag;
 
@@ -1,6 +1,7 @@
 package com.thaiopensource.xml.dtd.om;
 
 public class Ignore extends Flag {
+  private static final long serialVersionUID = 1L;
 
   public int getType() {
     return IGNORE;
@@ -1,6 +1,7 @@
 package com.thaiopensource.xml.dtd.om;
 
 public class IgnoredSection extends TopLevel {
+  private static final long serialVersionUID = 1L;
   
   private final Flag flag;
   private final String contents;
@@ -1,6 +1,8 @@
 package com.thaiopensource.xml.dtd.om;
 
 public class ImpliedValue extends AttributeDefault {
+  private static final long serialVersionUID = 1L;
+
   public int getType() {
     return IMPLIED_VALUE;
   }
@@ -1,6 +1,7 @@
 package com.thaiopensource.xml.dtd.om;
 
 public class Include extends Flag {
+  private static final long serialVersionUID = 1L;
 
   public int getType() {
     return INCLUDE;
@@ -1,6 +1,7 @@
 package com.thaiopensource.xml.dtd.om;
 
 public class IncludedSection extends TopLevel {
+  private static final long serialVersionUID = 1L;
   
   private final Flag flag;
   private final TopLevel[] contents;
@@ -1,6 +1,7 @@
 package com.thaiopensource.xml.dtd.om;
 
 public class InternalEntityDecl extends TopLevel {
+  private static final long serialVersionUID = 1L;
   
   private final String name;
   private final String value;
@@ -1,6 +1,10 @@
 package com.thaiopensource.xml.dtd.om;
 
-public abstract class ModelGroup {
+import java.io.Serializable;
+
+public abstract class ModelGroup implements Serializable {
+  private static final long serialVersionUID = 1L;
+
   public static final int CHOICE = 1;
   public static final int SEQUENCE = 2;
   public static final int ONE_OR_MORE = 3;
@@ -1,6 +1,8 @@
 package com.thaiopensource.xml.dtd.om;
 
 public class Name extends NameSpec {
+  private static final long serialVersionUID = 1L;
+
   private final String value;
 
   public Name(String value) {
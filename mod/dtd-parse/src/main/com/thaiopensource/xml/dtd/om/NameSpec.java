@@ -1,6 +1,10 @@
 package com.thaiopensource.xml.dtd.om;
 
-public abstract class NameSpec {
+import java.io.Serializable;
+
+public abstract class NameSpec implements Serializable {
+  private static final long serialVersionUID = 1L;
+
   public static final int NAME = 0;
   public static final int NAME_SPEC_REF = 1;
 
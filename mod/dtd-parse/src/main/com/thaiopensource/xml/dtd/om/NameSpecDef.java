@@ -1,6 +1,8 @@
 package com.thaiopensource.xml.dtd.om;
 
 public class NameSpecDef extends Def {
+  private static final long serialVersionUID = 1L;
+
   private final NameSpec nameSpec;
 
   public NameSpecDef(String name, NameSpec nameSpec) {
@@ -1,6 +1,8 @@
 package com.thaiopensource.xml.dtd.om;
 
 public class NotationDatatype extends EnumDatatype {
+  private static final long serialVersionUID = 1L;
+
   public NotationDatatype(EnumGroup enumGroup) {
     super(enumGroup);
   }
@@ -3,6 +3,7 @@ package com.thaiopensource.xml.dtd.om;
 import com.thaiopensource.xml.em.ExternalId;
 
 public class NotationDecl extends TopLevel {
+  private static final long serialVersionUID = 1L;
   
   private final String name;
   private final ExternalId externalId;
@@ -1,6 +1,7 @@
 package com.thaiopensource.xml.dtd.om;
 
 public class OneOrMore extends ModelGroup {
+  private static final long serialVersionUID = 1L;
   
   private final ModelGroup member;
 
@@ -1,6 +1,8 @@
 package com.thaiopensource.xml.dtd.om;
 
 public class OverriddenDef extends TopLevel {
+  private static final long serialVersionUID = 1L;
+
   private final boolean duplicate;
   private final Def def;
 
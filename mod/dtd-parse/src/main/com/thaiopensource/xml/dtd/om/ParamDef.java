@@ -1,6 +1,8 @@
 package com.thaiopensource.xml.dtd.om;
 
 public class ParamDef extends Def {
+  private static final long serialVersionUID = 1L;
+
   private final String value;
 
   public ParamDef(String name, String value) {
@@ -1,6 +1,7 @@
 package com.thaiopensource.xml.dtd.om;
 
 public class Pcdata extends ModelGroup {
+  private static final long serialVersionUID = 1L;
   
   public Pcdata() { }
 
@@ -1,6 +1,8 @@
 package com.thaiopensource.xml.dtd.om;
 
 public class ProcessingInstruction extends TopLevel {
+  private static final long serialVersionUID = 1L;
+
   private final String target;
   private final String value;
 
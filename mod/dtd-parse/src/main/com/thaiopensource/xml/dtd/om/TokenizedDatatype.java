@@ -1,6 +1,8 @@
 package com.thaiopensource.xml.dtd.om;
 
 public class TokenizedDatatype extends Datatype {
+  private static final long serialVersionUID = 1L;
+
   private final String typeName;
 
   public TokenizedDatatype(String typeName) {
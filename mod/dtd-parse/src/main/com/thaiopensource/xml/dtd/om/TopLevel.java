@@ -1,6 +1,10 @@
 package com.thaiopensource.xml.dtd.om;
 
-public abstract class TopLevel {
+import java.io.Serializable;
+
+public abstract class TopLevel implements Serializable {
+  private static final long serialVersionUID = 1L;
+
   public static final int ELEMENT_DECL = 1;
   public static final int ATTLIST_DECL = 2;
   public static final int PROCESSING_INSTRUCTION = 3;
@@ -1,6 +1,7 @@
 package com.thaiopensource.xml.dtd.om;
 
 public class ZeroOrMore extends ModelGroup {
+  private static final long serialVersionUID = 1L;
   
   private final ModelGroup member;
 
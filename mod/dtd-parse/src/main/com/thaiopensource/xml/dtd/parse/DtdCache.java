@@ -0,0 +1,338 @@
+package com.thaiopensource.xml.dtd.parse;
+
+import com.thaiopensource.util.Sha1;
+import com.thaiopensource.xml.dtd.om.Dtd;
+import com.thaiopensource.xml.em.EntityManager;
+import com.thaiopensource.xml.em.ExternalId;
+import com.thaiopensource.xml.em.OpenEntity;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
+import java.io.OutputStream;
+import java.io.Serializable;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Vector;
+
+/**
+ * Parses DTDs, storing the parsed DTDs in a directory, so that a DTD that has not changed
+ * since it was last parsed, perhaps by another process, need not be parsed again.  Together with
+ * each parsed DTD is stored a digest of each of the entities that were read in parsing it;
+ * the stored DTD is used only if every one of these entities, when opened again using the
+ * EntityManager, has the same digest.  Since the parse of an entity depends on the parameter entities
+ * declared before it, a DTD is stored as a whole, and is identified by the URI of its
+ * top-level entity.
+ */
+public class DtdCache {
+  private static final int VERSION = 2;
+  private static final String EXTENSION = ".ser";
+
+  private final File directory;
+
+  /**
+   * An entity that was read in parsing a DTD.
+   */
+  static private class Source implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    // null for the top-level entity
+    private final ExternalId externalId;
+    private final boolean isParameterEntity;
+    private final String entityName;
+    private boolean opened = false;
+    // null if the EntityManager did not open the entity
+    private byte[] digest;
+
+    Source(ExternalId externalId, boolean isParameterEntity, String entityName) {
+      this.externalId = externalId;
+      this.isParameterEntity = isParameterEntity;
+      this.entityName = entityName;
+    }
+
+    OpenEntity open(String systemId, EntityManager em) throws IOException {
+      if (externalId == null)
+        return em.open(systemId);
+      return em.open(externalId, isParameterEntity, entityName);
+    }
+  }
+
+  /**
+   * An ObjectInputStream that creates only objects of the classes that are stored, so that
+   * a file put in the directory by someone else cannot make it create objects of other classes.
+   */
+  static private class DtdInputStream extends ObjectInputStream {
+    private static final String OM_PACKAGE = "com.thaiopensource.xml.dtd.om.";
+    private static final String[] CLASS_NAMES = {
+      String.class.getName(),
+      Vector.class.getName(),
+      Object.class.getName(),
+      ExternalId.class.getName(),
+      DtdImpl.class.getName(),
+      Source.class.getName(),
+    };
+
+    DtdInputStream(InputStream in) throws IOException {
+      super(in);
+    }
+
+    protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+      if (!isAllowed(desc.getName()))
+        throw new InvalidClassException(desc.getName(), "not allowed in a stored DTD");
+      return super.resolveClass(desc);
+    }
+
+    protected Class<?> resolveProxyClass(String[] interfaces) throws IOException {
+      throw new InvalidClassException("proxy classes are not allowed in a stored DTD");
+    }
+
+    private static boolean isAllowed(String name) {
+      // arrays of bytes, or of the allowed classes
+      if (name.startsWith("[")) {
+        name = name.substring(name.lastIndexOf('[') + 1);
+        if (name.equals("B"))
+          return true;
+        if (!name.startsWith("L") || !name.endsWith(";"))
+          return false;
+        name = name.substring(1, name.length() - 1);
+      }
+      if (name.startsWith(OM_PACKAGE) && name.indexOf('.', OM_PACKAGE.length()) < 0)
+        return true;
+      for (int i = 0; i < CLASS_NAMES.length; i++)
+        if (name.equals(CLASS_NAMES[i]))
+          return true;
+      return false;
+    }
+  }
+
+  static private class DigestReader extends FilterReader {
+    private final MessageDigest digest = Sha1.newMessageDigest();
+    private final Source source;
+    private byte[] bytes = new byte[0];
+
+    DigestReader(OpenEntity entity, Source source) {
+      super(entity.getReader());
+      this.source = source;
+      update(entity.getEncoding());
+      update(entity.getBaseUri());
+    }
+
+    private void update(String s) {
+      if (s != null)
+        Sha1.update(digest, s);
+      digest.update((byte)0);
+    }
+
+    public int read() throws IOException {
+      int c = in.read();
+      if (c >= 0) {
+        digest.update((byte)(c >> 8));
+        digest.update((byte)c);
+      }
+      return c;
+    }
+
+    public int read(char[] cbuf, int off, int len) throws IOException {
+      int n = in.read(cbuf, off, len);
+      if (n > 0) {
+        if (bytes.length < n * 2)
+          bytes = new byte[n * 2];
+        for (int i = 0; i < n; i++) {
+          char c = cbuf[off + i];
+          bytes[i * 2] = (byte)(c >> 8);
+          bytes[i * 2 + 1] = (byte)c;
+        }
+        digest.update(bytes, 0, n * 2);
+      }
+      return n;
+    }
+
+    public long skip(long n) throws IOException {
+      // read the skipped chars, so that they are included in the digest
+      char[] buf = new char[(int)Math.min(n, 8192)];
+      long skipped = 0;
+      while (skipped < n) {
+        int nRead = read(buf, 0, (int)Math.min(n - skipped, buf.length));
+        if (nRead < 0)
+          break;
+        skipped += nRead;
+      }
+      return skipped;
+    }
+
+    public boolean markSupported() {
+      return false;
+    }
+
+    public void close() throws IOException {
+      super.close();
+      if (source != null && source.digest == null)
+        source.digest = digest.digest();
+    }
+
+    byte[] readAll() throws IOException {
+      char[] buf = new char[8192];
+      try {
+        while (read(buf, 0, buf.length) >= 0)
+          ;
+      }
+      finally {
+        in.close();
+      }
+      return digest.digest();
+    }
+  }
+
+  static private class RecordingEntityManager extends EntityManager {
+    private final EntityManager em;
+    private final Vector sources = new Vector();
+
+    RecordingEntityManager(EntityManager em) {
+      this.em = em;
+    }
+
+    public OpenEntity open(ExternalId xid, boolean isParameterEntity, String entityName) throws IOException {
+      return record(em.open(xid, isParameterEntity, entityName), new Source(xid, isParameterEntity, entityName));
+    }
+
+    public OpenEntity open(String systemId) throws IOException {
+      return record(em.open(systemId), new Source(null, false, null));
+    }
+
+    private OpenEntity record(OpenEntity entity, Source source) {
+      sources.addElement(source);
+      if (entity == null)
+        return null;
+      source.opened = true;
+      return new OpenEntity(new DigestReader(entity, source),
+                            entity.getLocation(),
+                            entity.getBaseUri(),
+                            entity.getEncoding());
+    }
+
+    Source[] getSources() {
+      Source[] result = new Source[sources.size()];
+      for (int i = 0; i < result.length; i++)
+        result[i] = (Source)sources.elementAt(i);
+      return result;
+    }
+  }
+
+  /**
+   * @param directory the directory in which to store parsed DTDs; it is created if necessary
+   */
+  public DtdCache(File directory) {
+    this.directory = directory;
+  }
+
+  /**
+   * Returns the parsed DTD whose top-level entity has the specified system identifier, parsing it only if
+   * the stored DTD is missing or out of date.
+   */
+  public Dtd parse(String systemId, EntityManager em) throws IOException {
+    File file = new File(directory, Sha1.digest(systemId) + EXTENSION);
+    Dtd dtd = load(file, systemId, em);
+    if (dtd != null)
+      return dtd;
+    RecordingEntityManager recorder = new RecordingEntityManager(em);
+    dtd = new DtdParserImpl().parse(systemId, recorder);
+    store(file, systemId, recorder.getSources(), dtd);
+    return dtd;
+  }
+
+  private static Dtd load(File file, String systemId, EntityManager em) {
+    if (!file.isFile())
+      return null;
+    ObjectInputStream in = null;
+    try {
+      in = new DtdInputStream(new BufferedInputStream(new FileInputStream(file)));
+      if (in.readInt() != VERSION || !systemId.equals(in.readObject()))
+        return null;
+      Source[] sources = (Source[])in.readObject();
+      for (int i = 0; i < sources.length; i++) {
+        OpenEntity entity = sources[i].open(systemId, em);
+        byte[] digest = entity == null ? null : new DigestReader(entity, null).readAll();
+        if (digest == null ? sources[i].digest != null : !Arrays.equals(digest, sources[i].digest))
+          return null;
+      }
+      return (Dtd)in.readObject();
+    }
+    // The stored DTD is only an optimization, so if it cannot be used for any reason, the DTD is parsed.
+    catch (IOException e) {
+      return null;
+    }
+    catch (ClassNotFoundException e) {
+      return null;
+    }
+    catch (ClassCastException e) {
+      return null;
+    }
+    finally {
+      close(in);
+    }
+  }
+
+  private void store(File file, String systemId, Source[] sources, Dtd dtd) {
+    for (int i = 0; i < sources.length; i++) {
+      // an entity that was opened but not read to the end; this doesn't happen with a successful parse
+      if (sources[i].opened && sources[i].digest == null)
+        return;
+    }
+    OutputStream out = null;
+    File tem = null;
+    try {
+      if (!directory.isDirectory() && !directory.mkdirs())
+        return;
+      tem = File.createTempFile("dtd", null, directory);
+      out = new BufferedOutputStream(new FileOutputStream(tem));
+      ObjectOutputStream objOut = new ObjectOutputStream(out);
+      objOut.writeInt(VERSION);
+      objOut.writeObject(systemId);
+      objOut.writeObject(sources);
+      objOut.writeObject(dtd);
+      objOut.close();
+      out = null;
+      // Writing to a temporary file and renaming avoids exposing partially written files to other processes.
+      if (!tem.renameTo(file)) {
+        file.delete();
+        if (!tem.renameTo(file))
+          return;
+      }
+      tem = null;
+    }
+    catch (IOException e) {
+    }
+    finally {
+      close(out);
+      if (tem != null)
+        tem.delete();
+    }
+  }
+
+  private static void close(InputStream in) {
+    if (in != null) {
+      try {
+        in.close();
+      }
+      catch (IOException e) { }
+    }
+  }
+
+  private static void close(OutputStream out) {
+    if (out != null) {
+      try {
+        out.close();
+      }
+      catch (IOException e) { }
+    }
+  }
+}
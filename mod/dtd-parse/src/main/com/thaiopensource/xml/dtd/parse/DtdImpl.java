@@ -1,12 +1,15 @@
 package com.thaiopensource.xml.dtd.parse;
 
+import java.io.Serializable;
 import java.util.Vector;
 
 import com.thaiopensource.xml.dtd.om.Dtd;
 import com.thaiopensource.xml.dtd.om.TopLevel;
 import com.thaiopensource.xml.dtd.om.TopLevelVisitor;
 
-class DtdImpl implements Dtd {
+class DtdImpl implements Dtd, Serializable {
+  private static final long serialVersionUID = 1L;
+
   private final Vector topLevel;
   private final String encoding;
   private final String uri;
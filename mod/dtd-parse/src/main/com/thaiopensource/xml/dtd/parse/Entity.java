@@ -39,6 +39,9 @@ class Entity {
   String notationName;
   Vector atoms;
   boolean mustReparse;
+  // For an external parameter entity, its replacement text when it is referenced in an entity value
+  char[] expandedText;
+  boolean expandedMustReparse;
   static final int NO_PROBLEM = 0;
   static final int INCONSISTENT_LEVEL_PROBLEM = 1;
   static final int INCONSISTENT_PARSE_PROBLEM = 2;
@@ -45,6 +45,9 @@ class Parser extends Token {
   
   private final Hashtable atomTable;
   private final Hashtable elementTable;
+  private final StringTable stringTable;
+  // buffers of external entities that have been parsed, for reuse by other external entities
+  private final Vector bufferPool;
 
   static class DeclState {
     Entity entity;
@@ -63,6 +66,8 @@ class Parser extends Token {
     this.isInternal = false;
     this.elementTable = new Hashtable();
     this.atomTable = new Hashtable();
+    this.stringTable = new StringTable();
+    this.bufferPool = new Vector();
   }
 
   private Parser(OpenEntity entity, Parser parent) {
@@ -71,13 +76,15 @@ class Parser extends Token {
     this.location = entity.getLocation();
     this.entityManager = parent.entityManager;
     this.parent = parent;
-    this.buf = new char[READSIZE * 2];
-    this.valueBuf = new ReplacementTextBuffer();
+    this.bufferPool = parent.bufferPool;
+    this.buf = allocBuffer();
+    this.valueBuf = parent.valueBuf;
     this.bufEnd = 0;
     this.db = parent.db;
     this.isInternal = false;
     this.elementTable = parent.elementTable;
     this.atomTable = parent.atomTable;
+    this.stringTable = parent.stringTable;
   }
 
   private Parser(char[] buf, String entityName, Parser parent) {
@@ -93,6 +100,8 @@ class Parser extends Token {
     this.isInternal = true;
     this.elementTable = parent.elementTable;
     this.atomTable = parent.atomTable;
+    this.stringTable = parent.stringTable;
+    this.bufferPool = parent.bufferPool;
   }
 
   DtdBuilder parse() throws IOException {
@@ -183,7 +192,7 @@ class Parser extends Token {
     case PrologParser.ACTION_OUTER_PARAM_ENTITY_REF:
       {
 	int nameStart = currentTokenStart + 1;
-	String name = new String(buf, nameStart, getNameEnd() - nameStart);
+	String name = stringTable.get(buf, nameStart, getNameEnd());
 	Entity entity = db.lookupParamEntity(name);
 	if (entity == null) {
 	  fatal("UNDEF_PEREF", name);
@@ -200,6 +209,7 @@ class Parser extends Token {
 	else
 	  parser.parseInnerParamEntity(pp, declState);
 	entity.atoms = parser.atoms;
+	parser.releaseBuffer();
 	setLastAtomEntity(entity);
 	entity.open = false;
 	break;
@@ -402,7 +412,7 @@ class Parser extends Token {
       value.appendRefCharPair(t);
       break;
     case Tokenizer.TOK_PARAM_ENTITY_REF:
-      String name = new String(buf, start + 1, end - start - 2);
+      String name = stringTable.get(buf, start + 1, end - 1);
       Entity entity = db.lookupParamEntity(name);
       if (entity == null) {
 	fatal("UNDEF_PEREF", name);
@@ -412,12 +422,28 @@ class Parser extends Token {
 	entity.noteReferenced();
 	value.appendReplacementText(entity);
       }
+      else if (entity.expandedText != null) {
+	entity.noteReferenced();
+	value.append(entity.expandedText, 0, entity.expandedText.length);
+	if (entity.expandedMustReparse)
+	  value.setMustReparse();
+      }
       else {
 	Parser parser = makeParserForEntity(entity, name);
 	if (parser != null) {
+	  int startLength = value.length();
+	  int startRefs = value.nRefs;
+	  boolean startMustReparse = value.getMustReparse();
 	  entity.open = true;
 	  parser.parseEntityValue(value);
 	  entity.open = false;
+	  parser.releaseBuffer();
+	  // An external entity is only read once; but if the replacement text includes
+	  // references to internal entities, the references must be recorded each time.
+	  if (entity.text == null && value.nRefs == startRefs) {
+	    entity.expandedText = value.getChars(startLength);
+	    entity.expandedMustReparse = value.getMustReparse() && !startMustReparse;
+	  }
 	}
       }
       break;
@@ -555,6 +581,25 @@ class Parser extends Token {
     return null;
   }
 
+  private char[] allocBuffer() {
+    int n = bufferPool.size();
+    if (n == 0)
+      return new char[READSIZE * 2];
+    char[] b = (char[])bufferPool.elementAt(n - 1);
+    bufferPool.removeElementAt(n - 1);
+    return b;
+  }
+
+  /**
+   * Makes the buffer of an external entity that has been parsed available for reuse.
+   */
+  private void releaseBuffer() {
+    if (!isInternal && in == null) {
+      bufferPool.addElement(buf);
+      buf = null;
+    }
+  }
+
   /* The size of the buffer is always a multiple of READSIZE.
      We do reads so that a complete read would end at the
      end of the buffer.  Unless there has been an incomplete
@@ -644,6 +689,13 @@ class Parser extends Token {
     return normalizeNewlines(new String(buf, start, end - start));
   }
 
+  private boolean containsCR(int start, int end) {
+    for (int i = start; i < end; i++)
+      if (buf[i] == '\r')
+	return true;
+    return false;
+  }
+
   private final String normalizeNewlines(String str) {
     if (isInternal)
       return str;
@@ -735,7 +787,7 @@ class Parser extends Token {
 	result.append(' ');
 	break;
       case Tokenizer.TOK_ENTITY_REF:
-	String name = new String(b, start + 1, nextStart - start - 2);
+	String name = stringTable.get(b, start + 1, nextStart - 1);
 	Entity entity = db.lookupGeneralEntity(name);
 	if (entity == null)
 	  throw new AttributeValueException("UNDEF_REF", name, start);
@@ -791,8 +843,12 @@ class Parser extends Token {
     }
     else if (end - start == 2 && buf[start] == '\r' && buf[start + 1] == '\n')
       token = "\n";
-    if (token == null)
-      token = bufferString(start, end);
+    if (token == null) {
+      if (isInternal || !containsCR(start, end))
+	token = stringTable.get(buf, start, end);
+      else
+	token = bufferString(start, end);
+    }
     Atom a = (Atom)atomTable.get(token);
     if (a == null) {
       a = new Atom(tok, token);
@@ -59,8 +59,8 @@ class ReplacementTextBuffer {
 
   public void append(char[] cbuf, int start, int end) {
     need(end - start);
-    for (int i = start; i < end; i++)
-      buf[len++] = cbuf[i];
+    System.arraycopy(cbuf, start, buf, len, end - start);
+    len += end - start;
   }
 
   private void need(int n) {
@@ -75,8 +75,12 @@ class ReplacementTextBuffer {
   }
 
   public char[] getChars() {
-    char[] text = new char[len];
-    System.arraycopy(buf, 0, text, 0, len);
+    return getChars(0);
+  }
+
+  public char[] getChars(int start) {
+    char[] text = new char[len - start];
+    System.arraycopy(buf, start, text, 0, len - start);
     return text;
   }
 
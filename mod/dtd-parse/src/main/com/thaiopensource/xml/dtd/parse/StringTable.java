@@ -0,0 +1,60 @@
+package com.thaiopensource.xml.dtd.parse;
+
+/**
+ * A table of strings that can be looked up by a subarray of chars, so that the
+ * names and tokens in a DTD can be obtained without creating a string each time
+ * they occur.
+ */
+class StringTable {
+  private static final int INIT_SIZE = 256;
+  private String[] table = new String[INIT_SIZE];
+  private int used = 0;
+
+  /**
+   * Returns a string equal to the chars from start to end, creating it
+   * only if no such string has been returned before.
+   */
+  String get(char[] buf, int start, int end) {
+    int h = 0;
+    for (int i = start; i < end; i++)
+      h = h*31 + buf[i];
+    int mask = table.length - 1;
+    for (int i = h & mask;; i = (i + 1) & mask) {
+      String s = table[i];
+      if (s == null)
+	break;
+      if (matches(s, buf, start, end))
+	return s;
+    }
+    String s = new String(buf, start, end - start);
+    if (++used*2 > table.length)
+      rehash();
+    put(s);
+    return s;
+  }
+
+  private static boolean matches(String s, char[] buf, int start, int end) {
+    if (s.length() != end - start)
+      return false;
+    for (int i = start, j = 0; i < end; i++, j++)
+      if (s.charAt(j) != buf[i])
+	return false;
+    return true;
+  }
+
+  private void put(String s) {
+    int mask = table.length - 1;
+    int i = s.hashCode() & mask;
+    while (table[i] != null)
+      i = (i + 1) & mask;
+    table[i] = s;
+  }
+
+  private void rehash() {
+    String[] old = table;
+    table = new String[old.length << 1];
+    for (int i = 0; i < old.length; i++)
+      if (old[i] != null)
+	put(old[i]);
+  }
+}
@@ -1,6 +1,10 @@
 package com.thaiopensource.xml.em;
 
-public final class ExternalId {
+import java.io.Serializable;
+
+public final class ExternalId implements Serializable {
+  private static final long serialVersionUID = 1L;
+
   private final String systemId;
   private final String publicId;
   private final String baseUri;
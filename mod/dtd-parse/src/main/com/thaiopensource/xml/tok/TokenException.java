@@ -7,4 +7,12 @@ package com.thaiopensource.xml.tok;
  * @see Tokenizer
  */
 public class TokenException extends Exception {
+  /**
+   * Token exceptions report the state of the tokenizer, usually that the
+   * end of the chars has been reached, rather than errors; since one is
+   * thrown for almost every token, they do not record a stack trace.
+   */
+  public Throwable fillInStackTrace() {
+    return this;
+  }
 }
@@ -0,0 +1,135 @@
+package com.thaiopensource.xml.dtd.parse;
+
+import com.thaiopensource.util.UriOrFile;
+import com.thaiopensource.xml.dtd.om.Dtd;
+import com.thaiopensource.xml.dtd.om.ElementDecl;
+import com.thaiopensource.xml.dtd.om.ExternalIdRef;
+import com.thaiopensource.xml.dtd.om.TopLevel;
+import com.thaiopensource.xml.em.UriEntityManager;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.Serializable;
+
+public class DtdCacheTest {
+  // a time long enough ago that rewriting a stored DTD changes its modification time
+  private static final long PAST = 1000000000000L;
+  private static boolean deserialized;
+
+  private File dir;
+  private File cacheDir;
+  private String systemId;
+  private File moduleFile;
+
+  static class Unexpected implements Serializable {
+    private void readObject(ObjectInputStream in) {
+      deserialized = true;
+    }
+  }
+
+  @BeforeMethod
+  public void setUp() throws IOException {
+    dir = File.createTempFile("dtd", "");
+    if (!dir.delete() || !dir.mkdir())
+      throw new IOException("cannot create " + dir);
+    cacheDir = new File(dir, "cache");
+    File mainFile = new File(dir, "main.dtd");
+    moduleFile = new File(dir, "mod.ent");
+    write(mainFile, "<!ENTITY % mod SYSTEM 'mod.ent'>\n%mod;\n<!ELEMENT doc (item*)>\n");
+    write(moduleFile, "<!ELEMENT item EMPTY>\n");
+    systemId = UriOrFile.fileToUri(mainFile);
+  }
+
+  @AfterMethod
+  public void tearDown() {
+    delete(dir);
+  }
+
+  @Test
+  public void testHit() throws IOException {
+    Assert.assertEquals(parse(), "item doc ");
+    File stored = getStoredFile();
+    Assert.assertTrue(stored.setLastModified(PAST));
+    Assert.assertEquals(parse(), "item doc ");
+    // the stored DTD was used, not replaced
+    Assert.assertEquals(stored.lastModified(), PAST);
+  }
+
+  @Test
+  public void testChangedSource() throws IOException {
+    Assert.assertEquals(parse(), "item doc ");
+    File stored = getStoredFile();
+    Assert.assertTrue(stored.setLastModified(PAST));
+    write(moduleFile, "<!ELEMENT item EMPTY>\n<!ELEMENT other EMPTY>\n");
+    Assert.assertEquals(parse(), "item other doc ");
+    Assert.assertTrue(stored.lastModified() != PAST);
+    Assert.assertEquals(parse(), "item other doc ");
+  }
+
+  @Test
+  public void testUnexpectedClass() throws IOException {
+    Assert.assertEquals(parse(), "item doc ");
+    File stored = getStoredFile();
+    ObjectOutputStream out = new ObjectOutputStream(new FileOutputStream(stored));
+    try {
+      out.writeInt(2);
+      out.writeObject(systemId);
+      out.writeObject(new Unexpected());
+    }
+    finally {
+      out.close();
+    }
+    deserialized = false;
+    Assert.assertEquals(parse(), "item doc ");
+    Assert.assertFalse(deserialized);
+  }
+
+  private String parse() throws IOException {
+    Dtd dtd = new DtdCache(cacheDir).parse(systemId, new UriEntityManager());
+    StringBuilder buf = new StringBuilder();
+    describe(dtd.getAllTopLevel(), buf);
+    return buf.toString();
+  }
+
+  private static void describe(TopLevel[] topLevel, StringBuilder buf) {
+    for (TopLevel t : topLevel) {
+      if (t instanceof ElementDecl)
+        buf.append(((ElementDecl)t).getNameSpec().getValue()).append(' ');
+      else if (t instanceof ExternalIdRef)
+        describe(((ExternalIdRef)t).getContents(), buf);
+    }
+  }
+
+  private File getStoredFile() {
+    File[] files = cacheDir.listFiles();
+    Assert.assertEquals(files.length, 1);
+    return files[0];
+  }
+
+  private static void write(File file, String content) throws IOException {
+    OutputStream out = new FileOutputStream(file);
+    try {
+      out.write(content.getBytes("UTF-8"));
+    }
+    finally {
+      out.close();
+    }
+  }
+
+  private static void delete(File file) {
+    File[] files = file.listFiles();
+    if (files != null) {
+      for (File f : files)
+        delete(f);
+    }
+    file.delete();
+  }
+}
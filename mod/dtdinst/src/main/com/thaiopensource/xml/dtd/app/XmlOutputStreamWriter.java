@@ -1,10 +1,9 @@
 package com.thaiopensource.xml.dtd.app;
 
-import java.io.BufferedWriter;
 import java.io.OutputStream;
-import java.io.OutputStreamWriter;
 import java.io.UnsupportedEncodingException;
 
+import com.thaiopensource.xml.out.EncodedWriter;
 import com.thaiopensource.xml.out.XmlWriter;
 import com.thaiopensource.xml.out.CharRepertoire;
 import com.thaiopensource.xml.util.EncodingMap;
@@ -17,7 +16,7 @@ public class XmlOutputStreamWriter extends XmlWriter {
   
   private XmlOutputStreamWriter(String jEnc, OutputStream out)
     throws UnsupportedEncodingException {
-    super(new BufferedWriter(new OutputStreamWriter(out, jEnc)),
+    super(EncodedWriter.getInstance(out, jEnc),
 	  CharRepertoire.getInstance(jEnc));
   }
 }
@@ -13,6 +13,12 @@ public abstract class ContentModelInferrer {
 
   public abstract Set<Name> getElementNames();
 
+  /**
+   * Merges the sequences seen by another ContentModelInferrer into this one.  Neither
+   * ContentModelInferrer may be in the middle of a sequence.
+   */
+  public abstract void merge(ContentModelInferrer other);
+
   public static ContentModelInferrer createContentModelInferrer() {
     return new ContentModelInferrerImpl();
   }
@@ -223,6 +223,26 @@ class ContentModelInferrerImpl extends ContentModelInferrer {
     prevNode = startNode;
   }
 
+  public void merge(ContentModelInferrer other) {
+    ContentModelInferrerImpl impl = (ContentModelInferrerImpl)other;
+    if (prevNode != startNode || impl.prevNode != impl.startNode)
+      throw new IllegalStateException();
+    // Look up the nodes in the order in which they were created, so that the indexes do not depend
+    // on the iteration order of the map.
+    SingleNode[] otherNodes = new SingleNode[impl.nameMap.size()];
+    for (SingleNode node : impl.nameMap.values())
+      otherNodes[node.index] = node;
+    SingleNode[] nodes = new SingleNode[otherNodes.length];
+    for (int i = 0; i < otherNodes.length; i++) {
+      nodes[i] = lookup(otherNodes[i].name);
+      if (otherNodes[i].repeated)
+        nodes[i].repeated = true;
+    }
+    for (int i = 0; i < otherNodes.length; i++)
+      for (SingleNode follow : otherNodes[i].followingNodes)
+        nodes[i].followingNodes.add(nodes[follow.index]);
+  }
+
   private SingleNode lookup(Name name) {
     SingleNode node = nameMap.get(name);
     if (node == null) {
@@ -2,12 +2,30 @@ package com.thaiopensource.xml.infer;
 
 import com.thaiopensource.xml.util.Name;
 
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
 class DatatypeInferrer {
+  /**
+   * Maximum number of distinct values remembered in order to avoid checking a value more than once.
+   */
+  private static final int MAX_SEEN_VALUES = 32;
+  private static final int MAX_SEEN_VALUE_LENGTH = 64;
+  private static final long SAMPLE_SEED = 0x5DEECE66DL;
+
   private final DatatypeRepertoire.Type[] possibleTypes;
   private int nTypes;
   private int typicalMask = 0;
   private final String uri;
   private boolean allWhiteSpace = true;
+  private Set<String> seenValues = null;
+  private final int sampleSize;
+  // values chosen from those after the first sampleSize values, not yet checked; null if not sampling
+  private String[] sample = null;
+  private int sampleLength = 0;
+  private long nValues = 0;
+  private Random random = null;
 
   DatatypeInferrer(DatatypeRepertoire datatypes, String value) {
     uri = DatatypeRepertoire.getUri();
@@ -15,17 +33,60 @@ class DatatypeInferrer {
     for (int i = 0; i < possibleTypes.length; i++)
       possibleTypes[i] = datatypes.get(i);
     nTypes = possibleTypes.length;
+    sampleSize = datatypes.getSampleSize();
     addValue(value);
   }
 
   public void addValue(String value) {
+    if (allWhiteSpace && !isWhiteSpace(value))
+      allWhiteSpace = false;
+    // Once every type has been eliminated, nothing more can be learnt from the values.
+    if (nTypes == 0)
+      return;
+    if (sampleSize > 0 && ++nValues > sampleSize) {
+      addToSample(value);
+      return;
+    }
+    checkValue(value);
+  }
+
+  /**
+   * Uses reservoir sampling to choose sampleSize of the values after the first sampleSize values.
+   */
+  private void addToSample(String value) {
+    if (sample == null) {
+      sample = new String[sampleSize];
+      random = new Random(SAMPLE_SEED);
+    }
+    if (sampleLength < sampleSize)
+      sample[sampleLength++] = value;
+    else {
+      long i = (long)(random.nextDouble() * (nValues - sampleSize));
+      if (i < sampleSize)
+        sample[(int)i] = value;
+    }
+  }
+
+  private void checkSample() {
+    for (int i = 0; i < sampleLength; i++) {
+      checkValue(sample[i]);
+      sample[i] = null;
+    }
+    sampleLength = 0;
+  }
+
+  private void checkValue(String value) {
+    // Checking a value that has already been checked cannot change anything.
+    if (seenValues != null && seenValues.contains(value))
+      return;
     int nDeleted = 0;
     for (int i = 0; i < nTypes; i++) {
       if (!possibleTypes[i].matches(value))
         nDeleted++;
       else {
-        if (possibleTypes[i].isTypical(value))
-          typicalMask |= 1 << possibleTypes[i].getIndex();
+        int bit = 1 << possibleTypes[i].getIndex();
+        if ((typicalMask & bit) == 0 && possibleTypes[i].isTypical(value))
+          typicalMask |= bit;
         if (nDeleted > 0) {
           possibleTypes[i - nDeleted] = possibleTypes[i];
           possibleTypes[i] = null;
@@ -33,7 +94,36 @@ class DatatypeInferrer {
       }
     }
     nTypes -= nDeleted;
-    if (!isWhiteSpace(value))
+    if (value.length() <= MAX_SEEN_VALUE_LENGTH) {
+      if (seenValues == null)
+        seenValues = new HashSet<String>();
+      if (seenValues.size() < MAX_SEEN_VALUES)
+        seenValues.add(value);
+    }
+  }
+
+  /**
+   * Merges the values seen by another DatatypeInferrer into this one.  The result is the same as if
+   * the values had all been added to this DatatypeInferrer.
+   */
+  void merge(DatatypeInferrer other) {
+    checkSample();
+    other.checkSample();
+    int otherMask = 0;
+    for (int i = 0; i < other.nTypes; i++)
+      otherMask |= 1 << other.possibleTypes[i].getIndex();
+    int nDeleted = 0;
+    for (int i = 0; i < nTypes; i++) {
+      if ((otherMask & (1 << possibleTypes[i].getIndex())) == 0)
+        nDeleted++;
+      else if (nDeleted > 0) {
+        possibleTypes[i - nDeleted] = possibleTypes[i];
+        possibleTypes[i] = null;
+      }
+    }
+    nTypes -= nDeleted;
+    typicalMask |= other.typicalMask;
+    if (!other.allWhiteSpace)
       allWhiteSpace = false;
   }
 
@@ -52,6 +142,7 @@ class DatatypeInferrer {
   }
 
   public Name getTypeName() {
+    checkSample();
     for (int i = 0; i < nTypes; i++)
       if (((1 << possibleTypes[i].getIndex()) & typicalMask) != 0)
         return new Name(uri, possibleTypes[i].getName());
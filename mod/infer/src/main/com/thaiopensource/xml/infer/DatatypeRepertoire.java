@@ -122,8 +122,18 @@ public class DatatypeRepertoire {
 
   private final Type[] types = new Type[typeNames.length];
   private int nTypes = 0;
+  private final int sampleSize;
 
   DatatypeRepertoire(DatatypeLibraryFactory factory) {
+    this(factory, 0);
+  }
+
+  /**
+   * @param sampleSize if positive, the number of values after which datatypes are inferred from
+   * a sample of the values rather than from all of them
+   */
+  DatatypeRepertoire(DatatypeLibraryFactory factory, int sampleSize) {
+    this.sampleSize = sampleSize;
     DatatypeLibrary lib = factory.createDatatypeLibrary(WellKnownNamespaces.XML_SCHEMA_DATATYPES);
     if (lib == null)
       return;
@@ -143,6 +153,10 @@ public class DatatypeRepertoire {
     return nTypes;
   }
 
+  int getSampleSize() {
+    return sampleSize;
+  }
+
   Type get(int i) {
     return types[i];
   }
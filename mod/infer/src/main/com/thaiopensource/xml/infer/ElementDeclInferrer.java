@@ -106,6 +106,62 @@ class ElementDeclInferrer {
     }
   }
 
+  /**
+   * Merges the instances of the element seen by another ElementDeclInferrer into this one.
+   * The result is the same as if all the instances had been seen by this ElementDeclInferrer.
+   */
+  void merge(ElementDeclInferrer other) {
+    requiredAttributeNames.retainAll(other.requiredAttributeNames);
+    for (Map.Entry<Name, DatatypeInferrer> entry : other.attributeTypeMap.entrySet()) {
+      DatatypeInferrer dt = attributeTypeMap.get(entry.getKey());
+      if (dt == null)
+        attributeTypeMap.put(entry.getKey(), entry.getValue());
+      else
+        dt.merge(entry.getValue());
+    }
+    if (mixedContentNames != null || other.mixedContentNames != null) {
+      if (mixedContentNames == null && contentModelInferrer != null)
+        useMixedContent();
+      else if (mixedContentNames == null) {
+        // Instances with text, but no child elements, are also allowed by mixed content.
+        mixedContentNames = new HashSet<Name>();
+        valueInferrer = null;
+      }
+      if (other.mixedContentNames != null)
+        mixedContentNames.addAll(other.mixedContentNames);
+      else if (other.contentModelInferrer != null)
+        mixedContentNames.addAll(other.contentModelInferrer.getElementNames());
+    }
+    else if (other.contentModelInferrer != null) {
+      if (contentModelInferrer != null)
+        contentModelInferrer.merge(other.contentModelInferrer);
+      else if (valueInferrer == null || valueInferrer.isAllWhiteSpace()) {
+        contentModelInferrer = other.contentModelInferrer;
+        if (valueInferrer != null) {
+          // An instance without child elements matches the empty sequence.
+          contentModelInferrer.endSequence();
+          valueInferrer = null;
+        }
+      }
+      else {
+        useMixedContent();
+        mixedContentNames.addAll(other.contentModelInferrer.getElementNames());
+      }
+    }
+    else if (other.valueInferrer != null) {
+      if (contentModelInferrer != null) {
+        if (other.valueInferrer.isAllWhiteSpace())
+          contentModelInferrer.endSequence();
+        else
+          useMixedContent();
+      }
+      else if (valueInferrer == null)
+        valueInferrer = other.valueInferrer;
+      else
+        valueInferrer.merge(other.valueInferrer);
+    }
+  }
+
   void addAttributeNames(List<Name> attributeNames) {
     requiredAttributeNames.retainAll(attributeNames);
   }
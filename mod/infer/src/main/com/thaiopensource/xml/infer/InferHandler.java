@@ -6,8 +6,10 @@ import org.xml.sax.Attributes;
 import org.xml.sax.SAXException;
 import org.xml.sax.helpers.DefaultHandler;
 
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -23,6 +25,10 @@ public class InferHandler extends DefaultHandler {
   private final Set<String> usedNamespaceUris = new HashSet<String>();
   private final Schema schema = new Schema();
   private final Set<String> assignedPrefixes = new HashSet<String>();
+  /**
+   * The distinct prefix mappings in the order they were first seen, as pairs of prefix and namespace URI.
+   */
+  private final Set<List<String>> prefixMappings = new LinkedHashSet<List<String>>();
 
   private static class OpenElement {
     final OpenElement parent;
@@ -65,6 +71,12 @@ public class InferHandler extends DefaultHandler {
 
   public void startPrefixMapping(String prefix, String uri)
           throws SAXException {
+    if (prefix != null && !prefix.equals(""))
+      prefixMappings.add(Arrays.asList(prefix, uri));
+    assignPrefix(prefix, uri);
+  }
+
+  private void assignPrefix(String prefix, String uri) {
     if (prefix != null
         && !prefix.equals("")
         && schema.getPrefixMap().get(uri) == null
@@ -110,6 +122,27 @@ public class InferHandler extends DefaultHandler {
     openElement = openElement.parent;
   }
 
+  /**
+   * Merges the documents seen by another InferHandler into this one.  The result is the same as
+   * if this InferHandler had seen the documents after its own.  The other InferHandler must
+   * not be used afterwards, and <code>getSchema</code> must not have been called on either.
+   */
+  public void merge(InferHandler other) {
+    startSet.addAll(other.startSet);
+    usedNamespaceUris.addAll(other.usedNamespaceUris);
+    for (List<String> mapping : other.prefixMappings) {
+      if (prefixMappings.add(mapping))
+        assignPrefix(mapping.get(0), mapping.get(1));
+    }
+    for (Map.Entry<Name, ElementDeclInferrer> entry : other.inferrerMap.entrySet()) {
+      ElementDeclInferrer inferrer = inferrerMap.get(entry.getKey());
+      if (inferrer == null)
+        inferrerMap.put(entry.getKey(), entry.getValue());
+      else
+        inferrer.merge(entry.getValue());
+    }
+  }
+
   public Schema getSchema() {
     for (Map.Entry<Name, ElementDeclInferrer> entry : inferrerMap.entrySet()) {
       ElementDecl decl = (entry.getValue()).infer();
@@ -134,6 +167,18 @@ public class InferHandler extends DefaultHandler {
   }
 
   public InferHandler(DatatypeLibraryFactory factory) {
-    this.datatypes = new DatatypeRepertoire(factory);
+    this(factory, 0);
+  }
+
+  /**
+   * Creates an InferHandler that, for each attribute and element whose values are used to infer a
+   * datatype, checks only the first <code>sampleSize</code> values and a random sample of
+   * <code>sampleSize</code> of the remaining values.  This bounds the time spent checking values, but
+   * the inferred datatypes may not allow every value.
+   *
+   * @param sampleSize the size of the sample; 0 means check every value
+   */
+  public InferHandler(DatatypeLibraryFactory factory, int sampleSize) {
+    this.datatypes = new DatatypeRepertoire(factory, sampleSize);
   }
 }
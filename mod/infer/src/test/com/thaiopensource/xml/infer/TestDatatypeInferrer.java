@@ -0,0 +1,155 @@
+package com.thaiopensource.xml.infer;
+
+import com.thaiopensource.datatype.xsd.DatatypeLibraryFactoryImpl;
+import com.thaiopensource.datatype.xsd.regex.java.RegexEngineImpl;
+import com.thaiopensource.resolver.xml.sax.SAXResolver;
+import com.thaiopensource.xml.util.Name;
+import org.relaxng.datatype.Datatype;
+import org.relaxng.datatype.DatatypeBuilder;
+import org.relaxng.datatype.DatatypeException;
+import org.relaxng.datatype.DatatypeLibrary;
+import org.relaxng.datatype.DatatypeLibraryFactory;
+import org.relaxng.datatype.DatatypeStreamingValidator;
+import org.relaxng.datatype.ValidationContext;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+
+import java.io.IOException;
+import java.io.StringReader;
+
+/**
+ * Test that sampling and remembering the values seen reduce the work of inferring a datatype
+ * without changing the datatype inferred.
+ */
+public class TestDatatypeInferrer {
+  private int nChecks;
+
+  @DataProvider(name = "values")
+  public Object[][] createValues() {
+    return new Object[][] {
+        { new String[] { "true", "false", "true" }, "boolean" },
+        { new String[] { "1", "2", "3" }, "integer" },
+        { new String[] { "1.1", "0.3", "90" }, "decimal" },
+        { new String[] { "1.23E100", "2", "2.34" }, "double" },
+        { new String[] { "test", "x", "y" }, "NCName" },
+        { new String[] { "2012-10-09", "2010-02-01", "2009-10-10" }, "date" },
+        { new String[] { "x:a", "_b-c.32", "test" }, "NMTOKEN" },
+        { new String[] { "http://www.example.com", "test#a10", "ftp://server/path/to/file.xml" }, "anyURI" }
+    };
+  }
+
+  @Test(dataProvider = "values")
+  public void testSampling(String[] values, String type) throws SAXException, IOException {
+    StringBuffer buf = new StringBuffer("<sample>");
+    for (int i = 0; i < 1000; i++)
+      buf.append("<element att='").append(values[i % values.length]).append("'/>");
+    buf.append("</sample>");
+    String document = buf.toString();
+    Assert.assertEquals(inferAttributeType(document, 0), type);
+    Assert.assertEquals(inferAttributeType(document, 8), type);
+    Assert.assertEquals(inferAttributeType(document, 100), type);
+  }
+
+  private static String inferAttributeType(String document, int sampleSize) throws SAXException, IOException {
+    InferHandler handler = new InferHandler(new DatatypeLibraryFactoryImpl(new RegexEngineImpl()), sampleSize);
+    XMLReader xr = new SAXResolver().createXMLReader();
+    xr.setContentHandler(handler);
+    xr.parse(new InputSource(new StringReader(document)));
+    ElementDecl decl = handler.getSchema().getElementDecls().get(new Name("", "element"));
+    return decl.getAttributeDecls().get(new Name("", "att")).getDatatype().getLocalName();
+  }
+
+  @Test
+  public void testSeenValues() {
+    DatatypeInferrer inferrer = new DatatypeInferrer(createRepertoire(), "0");
+    for (int i = 1; i < 40; i++)
+      inferrer.addValue(String.valueOf(i));
+    // a value that has been checked is not checked again
+    int n = nChecks;
+    for (int i = 0; i < 100; i++)
+      inferrer.addValue("0");
+    Assert.assertEquals(nChecks, n);
+    // but only a bounded number of values are remembered
+    inferrer.addValue("39");
+    Assert.assertTrue(nChecks > n);
+    Assert.assertEquals(inferrer.getTypeName().getLocalName(), "integer");
+  }
+
+  @Test
+  public void testNoPossibleTypes() {
+    DatatypeInferrer inferrer = new DatatypeInferrer(createRepertoire(), "1");
+    inferrer.addValue("a b");
+    inferrer.addValue("%");
+    Assert.assertNull(inferrer.getTypeName());
+    // once every type has been eliminated, values are not checked
+    int n = nChecks;
+    for (int i = 0; i < 100; i++)
+      inferrer.addValue("x" + i);
+    Assert.assertEquals(nChecks, n);
+    Assert.assertFalse(inferrer.isAllWhiteSpace());
+  }
+
+  private DatatypeRepertoire createRepertoire() {
+    final DatatypeLibraryFactory factory = new DatatypeLibraryFactoryImpl(new RegexEngineImpl());
+    return new DatatypeRepertoire(new DatatypeLibraryFactory() {
+      public DatatypeLibrary createDatatypeLibrary(String uri) {
+        final DatatypeLibrary library = factory.createDatatypeLibrary(uri);
+        return new DatatypeLibrary() {
+          public DatatypeBuilder createDatatypeBuilder(String name) throws DatatypeException {
+            return library.createDatatypeBuilder(name);
+          }
+
+          public Datatype createDatatype(String name) throws DatatypeException {
+            return new CountingDatatype(library.createDatatype(name));
+          }
+        };
+      }
+    });
+  }
+
+  private class CountingDatatype implements Datatype {
+    private final Datatype dt;
+
+    CountingDatatype(Datatype dt) {
+      this.dt = dt;
+    }
+
+    public boolean isValid(String str, ValidationContext vc) {
+      nChecks++;
+      return dt.isValid(str, vc);
+    }
+
+    public void checkValid(String str, ValidationContext vc) throws DatatypeException {
+      nChecks++;
+      dt.checkValid(str, vc);
+    }
+
+    public DatatypeStreamingValidator createStreamingValidator(ValidationContext vc) {
+      return dt.createStreamingValidator(vc);
+    }
+
+    public Object createValue(String str, ValidationContext vc) {
+      return dt.createValue(str, vc);
+    }
+
+    public boolean sameValue(Object value1, Object value2) {
+      return dt.sameValue(value1, value2);
+    }
+
+    public int valueHashCode(Object value) {
+      return dt.valueHashCode(value);
+    }
+
+    public int getIdType() {
+      return dt.getIdType();
+    }
+
+    public boolean isContextDependent() {
+      return dt.isContextDependent();
+    }
+  }
+}
@@ -2,6 +2,9 @@ package com.thaiopensource.xml.infer;
 
 import java.io.IOException;
 import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 
 import org.testng.Assert;
@@ -162,4 +165,106 @@ public class TestInferHandler {
       }
     }
   }
-}
\ No newline at end of file
+
+  @DataProvider(name = "documentSets")
+  public Object[][] createDocumentSets() {
+    return new Object[][] {
+        {
+          new String[] {
+            "<doc><a n='1'>12</a><b><x/><y/></b><c> </c></doc>",
+            "<doc><a>1.5</a><b><x/></b><c><x/></c></doc>"
+          }
+        },
+        {
+          new String[] {
+            "<doc><b><x/></b><c>text</c></doc>",
+            "<doc><b>text</b><c><x/><x/></c><a n='2'/></doc>",
+            "<doc xmlns:p='urn:p'><p:a/><a n='3'> </a></doc>"
+          }
+        },
+        {
+          new String[] {
+            "<doc><a/></doc>",
+            "<other/>",
+            "<doc><a><x/><y/><y/></a></doc>"
+          }
+        }
+    };
+  }
+
+  @Test(dataProvider = "documentSets")
+  public void testMerge(String[] documents) throws SAXException, IOException {
+    String expected = describe(infer(documents, 0, documents.length).getSchema());
+    for (int split = 1; split < documents.length; split++) {
+      InferHandler merged = infer(documents, 0, split);
+      merged.merge(infer(documents, split, documents.length));
+      Assert.assertEquals(describe(merged.getSchema()), expected);
+    }
+  }
+
+  private static InferHandler infer(String[] documents, int start, int end) throws SAXException, IOException {
+    InferHandler handler = new InferHandler(new DatatypeLibraryFactoryImpl(new RegexEngineImpl()));
+    XMLReader xr = new SAXResolver().createXMLReader();
+    xr.setContentHandler(handler);
+    for (int i = start; i < end; i++)
+      xr.parse(new InputSource(new StringReader(documents[i])));
+    return handler;
+  }
+
+  private static String describe(Schema schema) {
+    List<String> decls = new ArrayList<String>();
+    for (Map.Entry<Name, ElementDecl> entry : schema.getElementDecls().entrySet()) {
+      ElementDecl decl = entry.getValue();
+      StringBuffer buf = new StringBuffer();
+      buf.append(describe(entry.getKey())).append(' ');
+      List<String> atts = new ArrayList<String>();
+      for (Map.Entry<Name, AttributeDecl> attEntry : decl.getAttributeDecls().entrySet())
+        atts.add(describe(attEntry.getKey()) + "=" + describe(attEntry.getValue().getDatatype())
+                 + (attEntry.getValue().isOptional() ? "?" : ""));
+      Collections.sort(atts);
+      buf.append(atts).append(' ');
+      if (decl.getDatatype() != null)
+        buf.append(describe(decl.getDatatype()));
+      else
+        buf.append(describe(decl.getContentModel()));
+      decls.add(buf.toString());
+    }
+    Collections.sort(decls);
+    return decls + " " + schema.getPrefixMap();
+  }
+
+  private static String describe(Name name) {
+    return name == null ? "null" : "{" + name.getNamespaceUri() + "}" + name.getLocalName();
+  }
+
+  /**
+   * Returns a description of a particle in which the order of the alternatives of a choice,
+   * which depends on hash codes, is not significant.
+   */
+  private static String describe(Particle p) {
+    if (p instanceof ChoiceParticle) {
+      List<String> choices = new ArrayList<String>();
+      addChoices(p, choices);
+      Collections.sort(choices);
+      return choices.toString();
+    }
+    if (p instanceof SequenceParticle)
+      return "(" + describe(((SequenceParticle)p).getChild1()) + ", " + describe(((SequenceParticle)p).getChild2()) + ")";
+    if (p instanceof OneOrMoreParticle)
+      return describe(((OneOrMoreParticle)p).getChild()) + "+";
+    if (p instanceof ElementParticle)
+      return describe(((ElementParticle)p).getName());
+    if (p instanceof TextParticle)
+      return "#text";
+    return "#empty";
+  }
+
+  private static void addChoices(Particle p, List<String> choices) {
+    if (p instanceof ChoiceParticle) {
+      addChoices(((ChoiceParticle)p).getChild1(), choices);
+      addChoices(((ChoiceParticle)p).getChild2(), choices);
+    }
+    else
+      choices.add(describe(p));
+  }
+}
@@ -1,5 +1,7 @@
 package com.thaiopensource.validate.nrl;
 
+import com.thaiopensource.util.PropertyMap;
+
 class ActionSet {
   private ResultAction resultAction;
   private NoResultAction[] noResultActions = new NoResultAction[0];
@@ -19,6 +21,21 @@ class ActionSet {
     noResultActions = actions;
   }
 
+  /**
+   * Adds a validate action, combining it with an earlier validate action with the same mode usage,
+   * so that a section validated against several schemas can be validated against them in parallel.
+   */
+  void addCombinedValidateAction(ValidateAction action, PropertyMap properties) {
+    for (int i = 0; i < noResultActions.length; i++) {
+      if (noResultActions[i] instanceof ValidateAction
+          && noResultActions[i].getModeUsage().equals(action.getModeUsage())) {
+        noResultActions[i] = ((ValidateAction)noResultActions[i]).combine(action, properties);
+        return;
+      }
+    }
+    addNoResultAction(action);
+  }
+
   NoResultAction[] getNoResultActions() {
     return noResultActions;
   }
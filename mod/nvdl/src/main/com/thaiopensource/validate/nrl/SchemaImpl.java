@@ -300,7 +300,10 @@ class SchemaImpl extends AbstractSchema {
         }
         if (actions != null) {
           Schema schema = createSubSchema(false);
-          actions.addNoResultAction(new ValidateAction(modeUsage, schema));
+          if (sr.getProperties().contains(ValidateProperty.PARALLEL))
+            actions.addCombinedValidateAction(new ValidateAction(modeUsage, schema), sr.getProperties());
+          else
+            actions.addNoResultAction(new ValidateAction(modeUsage, schema));
         }
       }
       catch (IncorrectSchemaException e) {
@@ -35,6 +35,7 @@ class SchemaReceiverImpl implements SchemaReceiver {
     ValidateProperty.ERROR_HANDLER,
     ValidateProperty.XML_READER_CREATOR,
     ValidateProperty.ENTITY_RESOLVER,
+    ValidateProperty.PARALLEL,
     SchemaReceiverFactory.PROPERTY,
   };
 
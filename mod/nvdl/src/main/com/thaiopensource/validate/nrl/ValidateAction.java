@@ -1,5 +1,7 @@
 package com.thaiopensource.validate.nrl;
 
+import com.thaiopensource.util.PropertyMap;
+import com.thaiopensource.validate.CombineSchema;
 import com.thaiopensource.validate.Schema;
 import com.thaiopensource.validate.nrl.Mode;
 import com.thaiopensource.validate.nrl.ModeUsage;
@@ -15,6 +17,14 @@ class ValidateAction extends NoResultAction {
     this.schema = schema;
   }
 
+  /**
+   * Returns an action validating with both the schema of this action and the schema of another
+   * action with the same mode usage.
+   */
+  ValidateAction combine(ValidateAction other, PropertyMap properties) {
+    return new ValidateAction(getModeUsage(), new CombineSchema(schema, other.schema, properties));
+  }
+
   void perform(SectionState state) throws SAXException {
     state.addValidator(schema, getModeUsage());
   }
@@ -1,5 +1,7 @@
 package com.thaiopensource.validate.nvdl;
 
+import com.thaiopensource.util.PropertyMap;
+
 /**
  * Stores a set of element actions.
  * The actions are result actions and no result actions.
@@ -48,6 +50,23 @@ class ActionSet {
     noResultActions = actions;
   }
 
+  /**
+   * Adds a validate action, combining it with an earlier validate action with the same mode usage,
+   * so that a section validated against several schemas can be validated against them in parallel.
+   * @param action The validate action.
+   * @param properties The properties of the combined schema.
+   */
+  void addCombinedValidateAction(ValidateAction action, PropertyMap properties) {
+    for (int i = 0; i < noResultActions.length; i++) {
+      if (noResultActions[i] instanceof ValidateAction
+          && noResultActions[i].getModeUsage().equals(action.getModeUsage())) {
+        noResultActions[i] = ((ValidateAction)noResultActions[i]).combine(action, properties);
+        return;
+      }
+    }
+    addNoResultAction(action);
+  }
+
   /**
    * Getter for the no result actions array.
    * @return The no result actions.
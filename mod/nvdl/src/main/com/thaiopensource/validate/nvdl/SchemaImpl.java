@@ -705,7 +705,10 @@ class SchemaImpl extends AbstractSchema {
           // we add a validate action with the schema and the specific mode usage.
           if (md.actions != null) {
             Schema schema = createSubSchema(false);
-            md.actions.addNoResultAction(new ValidateAction(md.modeUsage, schema));
+            if (sr.getProperties().contains(ValidateProperty.PARALLEL))
+              md.actions.addCombinedValidateAction(new ValidateAction(md.modeUsage, schema), sr.getProperties());
+            else
+              md.actions.addNoResultAction(new ValidateAction(md.modeUsage, schema));
           }
         }
         catch (IncorrectSchemaException e) {
@@ -73,6 +73,7 @@ class SchemaReceiverImpl implements SchemaReceiver {
     ValidateProperty.ERROR_HANDLER,
     ValidateProperty.XML_READER_CREATOR,
     ValidateProperty.ENTITY_RESOLVER,
+    ValidateProperty.PARALLEL,
     ValidateProperty.URI_RESOLVER,
     ValidateProperty.RESOLVER,
     SchemaReceiverFactory.PROPERTY,
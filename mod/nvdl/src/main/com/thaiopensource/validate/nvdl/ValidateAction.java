@@ -1,5 +1,7 @@
 package com.thaiopensource.validate.nvdl;
 
+import com.thaiopensource.util.PropertyMap;
+import com.thaiopensource.validate.CombineSchema;
 import com.thaiopensource.validate.Schema;
 import org.xml.sax.SAXException;
 
@@ -23,6 +25,17 @@ class ValidateAction extends NoResultAction {
     this.schema = schema;
   }
 
+  /**
+   * Gets an action validating with both the schema of this action and the schema of another
+   * action with the same mode usage.
+   * @param other The other validate action.
+   * @param properties The properties of the combined schema.
+   * @return The combined validate action.
+   */
+  ValidateAction combine(ValidateAction other, PropertyMap properties) {
+    return new ValidateAction(getModeUsage(), new CombineSchema(schema, other.schema, properties));
+  }
+
   /**
    * Perform this action on the section state.
    * @param state the section state.
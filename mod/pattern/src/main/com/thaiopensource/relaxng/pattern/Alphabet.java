@@ -1,28 +1,83 @@
 package com.thaiopensource.relaxng.pattern;
 
+import com.thaiopensource.xml.util.Name;
+
+import java.util.HashSet;
+import java.util.Set;
+
 class Alphabet {
   private NameClass nameClass;
+  // the names of the simple name classes in nameClass
+  private Set<Name> names;
+  // a choice of the name classes in nameClass that have other parts, or null if there are none
+  private NameClass otherNameClass;
 
   boolean isEmpty() {
     return nameClass == null;
   }
 
   void addElement(NameClass nc) {
-    if (nameClass == null)
-      nameClass = nc;
-    else if (nc != null)
-      nameClass = new ChoiceNameClass(nameClass, nc);
+    if (nc == null)
+      return;
+    nameClass = choice(nameClass, nc);
+    SimpleNameFinder finder = new SimpleNameFinder(nc);
+    if (!finder.getNames().isEmpty()) {
+      if (names == null)
+        names = new HashSet<Name>();
+      names.addAll(finder.getNames());
+    }
+    if (finder.hasOther())
+      otherNameClass = choice(otherNameClass, nc);
   }
 
   void addAlphabet(Alphabet a) {
-    addElement(a.nameClass);
+    if (a.nameClass == null)
+      return;
+    nameClass = choice(nameClass, a.nameClass);
+    if (a.names != null) {
+      if (names == null)
+        names = new HashSet<Name>(a.names);
+      else
+        names.addAll(a.names);
+    }
+    if (a.otherNameClass != null)
+      otherNameClass = choice(otherNameClass, a.otherNameClass);
+  }
+
+  private static NameClass choice(NameClass nc1, NameClass nc2) {
+    return nc1 == null ? nc2 : new ChoiceNameClass(nc1, nc2);
   }
 
   void checkOverlap(Alphabet a) throws RestrictionViolationException {
-    if (nameClass != null && a.nameClass != null)
+    // the names and other name classes can only show that there is no overlap; the whole name classes
+    // are compared to find the overlap to report
+    if (nameClass != null && a.nameClass != null && mayOverlap(a))
       OverlapDetector.checkOverlap(nameClass, a.nameClass,
                                    "interleave_element_overlap_name",
                                    "interleave_element_overlap_ns",
                                    "interleave_element_overlap");
   }
+
+  private boolean mayOverlap(Alphabet a) {
+    if (names != null && a.names != null) {
+      Set<Name> smaller = names.size() < a.names.size() ? names : a.names;
+      Set<Name> larger = smaller == names ? a.names : names;
+      for (Name name : smaller)
+        if (larger.contains(name))
+          return true;
+    }
+    if (containsAny(a.otherNameClass, names) || containsAny(otherNameClass, a.names))
+      return true;
+    return otherNameClass != null && a.otherNameClass != null
+           && OverlapDetector.overlaps(otherNameClass, a.otherNameClass);
+  }
+
+  private static boolean containsAny(NameClass nc, Set<Name> names) {
+    if (nc != null && names != null) {
+      for (Name name : names)
+        if (nc.contains(name))
+          return true;
+    }
+    return false;
+  }
 }
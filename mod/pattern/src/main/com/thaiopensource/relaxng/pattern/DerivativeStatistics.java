@@ -0,0 +1,78 @@
+package com.thaiopensource.relaxng.pattern;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Counts the work done by a ValidatorPatternBuilder and the PatternMatchers that use it.
+ */
+final class DerivativeStatistics {
+  static final int START_TAG_OPEN_DERIV = 0;
+  static final int START_ATTRIBUTE_DERIV = 1;
+  static final int END_TAG_DERIV = 2;
+  private static final String[] KIND_NAMES = { "startTagOpenDeriv", "startAttributeDeriv", "endTagDeriv" };
+
+  private final long[] hits = new long[KIND_NAMES.length];
+  private final long[] misses = new long[KIND_NAMES.length];
+  private long dataDerivs;
+  private long dataDerivNanos;
+  private long recoveryDerivs;
+  private int maxElementDepth;
+  private int patternCount;
+  private int memoCount;
+
+  DerivativeStatistics(int patternCount, int memoCount) {
+    this.patternCount = patternCount;
+    this.memoCount = memoCount;
+  }
+
+  void count(int kind, boolean hit) {
+    if (hit)
+      hits[kind]++;
+    else
+      misses[kind]++;
+  }
+
+  void dataDeriv(long nanos) {
+    dataDerivs++;
+    dataDerivNanos += nanos;
+  }
+
+  void recoveryDeriv() {
+    recoveryDerivs++;
+  }
+
+  void elementDepth(int depth) {
+    if (depth > maxElementDepth)
+      maxElementDepth = depth;
+  }
+
+  /**
+   * Returns the statistics since the last call and starts counting again.
+   *
+   * @param patternCount the number of patterns now interned
+   * @param memoCount the number of PatternMemos now created
+   */
+  Map<String, Long> take(int patternCount, int memoCount) {
+    Map<String, Long> map = new LinkedHashMap<String, Long>();
+    map.put("patterns", (long)(patternCount - this.patternCount));
+    map.put("memos", (long)(memoCount - this.memoCount));
+    for (int i = 0; i < KIND_NAMES.length; i++) {
+      map.put(KIND_NAMES[i] + "Hits", hits[i]);
+      map.put(KIND_NAMES[i] + "Misses", misses[i]);
+      hits[i] = 0;
+      misses[i] = 0;
+    }
+    map.put("dataDerivs", dataDerivs);
+    map.put("dataDerivNanos", dataDerivNanos);
+    map.put("recoveryDerivs", recoveryDerivs);
+    map.put("maxElementDepth", (long)maxElementDepth);
+    this.patternCount = patternCount;
+    this.memoCount = memoCount;
+    dataDerivs = 0;
+    dataDerivNanos = 0;
+    recoveryDerivs = 0;
+    maxElementDepth = 0;
+    return map;
+  }
+}
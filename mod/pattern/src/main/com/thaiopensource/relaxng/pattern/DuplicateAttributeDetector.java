@@ -1,10 +1,19 @@
 package com.thaiopensource.relaxng.pattern;
 
+import com.thaiopensource.xml.util.Name;
+
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 class DuplicateAttributeDetector {
   private final List<NameClass> nameClasses = new ArrayList<NameClass>();
+  // maps each name of a simple name class in nameClasses to the indexes of the name classes with it
+  private final Map<Name, List<Integer>> nameIndexes = new HashMap<Name, List<Integer>>();
+  // the indexes of the name classes in nameClasses that have parts other than simple name classes
+  private final List<Integer> otherIndexes = new ArrayList<Integer>();
   private Alternative alternatives = null;
 
   private static class Alternative {
@@ -20,6 +29,71 @@ class DuplicateAttributeDetector {
   }
 
   void addAttribute(NameClass nc) throws RestrictionViolationException {
+    SimpleNameFinder finder = new SimpleNameFinder(nc);
+    // the indexes can only show that there is no overlap; the name classes are compared one by one
+    // to find the overlap to report, so that it is the same whatever the order of the names
+    if (finder.hasOther() || mayOverlap(nc, finder.getNames()))
+      checkOverlap(nc);
+    Integer index = nameClasses.size();
+    nameClasses.add(nc);
+    for (Name name : finder.getNames()) {
+      List<Integer> indexes = nameIndexes.get(name);
+      if (indexes == null) {
+        indexes = new ArrayList<Integer>(1);
+        nameIndexes.put(name, indexes);
+      }
+      indexes.add(index);
+    }
+    if (finder.hasOther())
+      otherIndexes.add(index);
+  }
+
+  private boolean mayOverlap(NameClass nc, List<Name> names) {
+    for (Name name : names) {
+      List<Integer> indexes = nameIndexes.get(name);
+      if (indexes != null && hasVisible(indexes))
+        return true;
+    }
+    for (int i : otherIndexes) {
+      if (hidingAlternative(i) == null) {
+        NameClass other = nameClasses.get(i);
+        for (Name name : names)
+          if (other.contains(name))
+            return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Tests whether any of the specified indexes, which are in increasing order, is of a name class that
+   * can occur together with the name class being added.
+   */
+  private boolean hasVisible(List<Integer> indexes) {
+    int j = indexes.size() - 1;
+    while (j >= 0) {
+      Alternative a = hidingAlternative(indexes.get(j));
+      if (a == null)
+        return true;
+      // skip the other name classes in the same earlier alternatives
+      j = Collections.binarySearch(indexes, a.startIndex);
+      j = j < 0 ? -j - 2 : j - 1;
+    }
+    return false;
+  }
+
+  /**
+   * Returns the choice that has the name class with the specified index in an earlier alternative
+   * than the name class being added, or null if there is none.
+   */
+  private Alternative hidingAlternative(int i) {
+    for (Alternative a = alternatives; a != null; a = a.parent)
+      if (i >= a.startIndex && i < a.endIndex)
+        return a;
+    return null;
+  }
+
+  private void checkOverlap(NameClass nc) throws RestrictionViolationException {
     int lim = nameClasses.size();
     for (Alternative a = alternatives; a != null; a = a.parent) {
       for (int i = a.endIndex; i < lim; i++)
@@ -28,7 +102,6 @@ class DuplicateAttributeDetector {
     }
     for (int i = 0; i < lim; i++)
       checkAttributeOverlap(nc, nameClasses.get(i));
-    nameClasses.add(nc);
   }
 
   static private void checkAttributeOverlap(NameClass nc1, NameClass nc2) throws RestrictionViolationException {
@@ -37,7 +110,7 @@ class DuplicateAttributeDetector {
                                  "duplicate_attribute_ns",
                                  "duplicate_attribute");
   }
-  
+
   void startChoice() {
     alternatives = new Alternative(nameClasses.size(), alternatives);
   }
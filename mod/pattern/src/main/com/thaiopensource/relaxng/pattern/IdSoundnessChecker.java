@@ -1,109 +1,137 @@
 package com.thaiopensource.relaxng.pattern;
 
 import com.thaiopensource.xml.util.Name;
-import com.thaiopensource.xml.util.StringSplitter;
 import org.relaxng.datatype.Datatype;
 import org.xml.sax.ErrorHandler;
 import org.xml.sax.Locator;
 import org.xml.sax.SAXException;
 import org.xml.sax.SAXParseException;
-import org.xml.sax.helpers.LocatorImpl;
-
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
 
 public class IdSoundnessChecker {
   private final IdTypeMap idTypeMap;
+  // idTypeMap, if it can be queried without creating Names; otherwise null
+  private final StringIdTypeMap stringIdTypeMap;
   private final ErrorHandler eh;
-  private final Map<String, Entry> map = new HashMap<String, Entry>();
+  private final IdTable table;
+  private final IdTable.MissingIdHandler missingIdHandler = new IdTable.MissingIdHandler() {
+    public void missingId(String token, Locator locator) throws SAXException {
+      error("missing_id", token, locator);
+    }
+  };
 
-  private static class Entry {
-    Locator idLoc;
-    List<LocatorImpl> idrefLocs;
-    boolean hadId;
+  public IdSoundnessChecker(IdTypeMap idTypeMap, ErrorHandler eh) {
+    this(idTypeMap, eh, 0);
   }
 
-  public IdSoundnessChecker(IdTypeMap idTypeMap, ErrorHandler eh) {
+  /**
+   * @param spillThreshold the number of IDREFs without a matching ID to hold in memory, above which they
+   * are written to a temporary file; 0 means no limit
+   */
+  public IdSoundnessChecker(IdTypeMap idTypeMap, ErrorHandler eh, int spillThreshold) {
     this.idTypeMap = idTypeMap;
+    this.stringIdTypeMap = idTypeMap instanceof StringIdTypeMap ? (StringIdTypeMap)idTypeMap : null;
     this.eh = eh;
+    this.table = new IdTable(spillThreshold);
   }
 
   public void reset() {
-    map.clear();
+    table.clear();
   }
 
   public void endDocument() throws SAXException {
-    for (String token : map.keySet()) {
-      Entry entry = map.get(token);
-      if (!entry.hadId) {
-        for (LocatorImpl idrefLoc : entry.idrefLocs)
-          error("missing_id", token, idrefLoc);
-      }
-    }
+    table.checkRefs(missingIdHandler);
   }
 
   public void attribute(Name elementName, Name attributeName, String value, Locator locator)
           throws SAXException {
-    int idType = idTypeMap.getIdType(elementName, attributeName);
-    if (idType != Datatype.ID_TYPE_NULL) {
-      String[] tokens = StringSplitter.split(value);
-      switch (idType) {
-      case Datatype.ID_TYPE_ID:
-        if (tokens.length == 1)
-          id(tokens[0], locator);
-        else if (tokens.length == 0)
-          error("id_no_tokens", locator);
-        else
-          error("id_multiple_tokens", locator);
-        break;
-      case Datatype.ID_TYPE_IDREF:
-        if (tokens.length == 1)
-          idref(tokens[0], locator);
-        else if (tokens.length == 0)
-          error("idref_no_tokens", locator);
-        else
-          error("idref_multiple_tokens", locator);
-        break;
-      case Datatype.ID_TYPE_IDREFS:
-        if (tokens.length > 0) {
-          for (int j = 0; j < tokens.length; j++)
-            idref(tokens[j], locator);
-        }
-        else
-          error("idrefs_no_tokens", locator);
-        break;
+    attribute(idTypeMap.getIdType(elementName, attributeName), value, locator);
+  }
+
+  public void attribute(String elementNamespaceUri, String elementLocalName,
+                        String attributeNamespaceUri, String attributeLocalName,
+                        String value, Locator locator)
+          throws SAXException {
+    if (stringIdTypeMap != null)
+      attribute(stringIdTypeMap.getIdType(elementNamespaceUri, elementLocalName,
+                                          attributeNamespaceUri, attributeLocalName),
+                value, locator);
+    else
+      attribute(new Name(elementNamespaceUri, elementLocalName), new Name(attributeNamespaceUri, attributeLocalName),
+                value, locator);
+  }
+
+  // the tokens are found in place, rather than by splitting the value into an array of strings
+  private void attribute(int idType, String value, Locator locator) throws SAXException {
+    if (idType == Datatype.ID_TYPE_NULL)
+      return;
+    int len = value.length();
+    int start = skipSpace(value, 0);
+    int end = skipToken(value, start);
+    switch (idType) {
+    case Datatype.ID_TYPE_ID:
+      if (start == len)
+        error("id_no_tokens", locator);
+      else if (skipSpace(value, end) != len)
+        error("id_multiple_tokens", locator);
+      else
+        id(value, start, end, locator);
+      break;
+    case Datatype.ID_TYPE_IDREF:
+      if (start == len)
+        error("idref_no_tokens", locator);
+      else if (skipSpace(value, end) != len)
+        error("idref_multiple_tokens", locator);
+      else
+        table.addRef(table.slot(value, start, end), locator);
+      break;
+    case Datatype.ID_TYPE_IDREFS:
+      if (start == len)
+        error("idrefs_no_tokens", locator);
+      else {
+        do {
+          table.addRef(table.slot(value, start, end), locator);
+          start = skipSpace(value, end);
+          end = skipToken(value, start);
+        } while (start < len);
       }
+      break;
     }
   }
 
-  private void id(String token, Locator locator) throws SAXException {
-    Entry entry = map.get(token);
-    if (entry == null) {
-      entry = new Entry();
-      map.put(token, entry);
-    }
-    else if (entry.hadId) {
+  private void id(String value, int start, int end, Locator locator) throws SAXException {
+    int slot = table.slot(value, start, end);
+    if (table.hasId(slot)) {
+      String token = value.substring(start, end);
       error("duplicate_id", token, locator);
-      error("first_id", token, entry.idLoc);
+      error("first_id", token, table.getIdLocator(slot));
       return;
     }
-    entry.idLoc = new LocatorImpl(locator);
-    entry.hadId = true;
+    table.setId(slot, locator);
   }
 
-  private void idref(String token, Locator locator) {
-    Entry entry = map.get(token);
-    if (entry == null) {
-      entry = new Entry();
-      map.put(token, entry);
+  private static int skipSpace(String value, int i) {
+    int len = value.length();
+    while (i < len && isSpace(value.charAt(i)))
+      i++;
+    return i;
+  }
+
+  private static int skipToken(String value, int i) {
+    int len = value.length();
+    while (i < len && !isSpace(value.charAt(i)))
+      i++;
+    return i;
+  }
+
+  private static boolean isSpace(char c) {
+    switch (c) {
+    case ' ':
+    case '\r':
+    case '\n':
+    case '\t':
+      return true;
     }
-    if (entry.hadId)
-      return;
-    if (entry.idrefLocs == null)
-      entry.idrefLocs = new ArrayList<LocatorImpl>();
-    entry.idrefLocs.add(new LocatorImpl(locator));
+    return false;
   }
 
   private void error(String key, Locator locator) throws SAXException {
@@ -0,0 +1,306 @@
+package com.thaiopensource.relaxng.pattern;
+
+import com.thaiopensource.util.Equal;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.LocatorImpl;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Holds the IDs and IDREFs of a document for IdSoundnessChecker, using little memory per token.
+ * Each distinct token has a slot in an open-addressing hash table, and the location of its ID is held in
+ * arrays of ints indexed by slot, rather than in a Locator.  An IDREF whose ID has not yet been seen is
+ * held as a record of four ints.  If there are more than a specified number of such records,
+ * they are written to a temporary file, and read back at the end of the document.
+ */
+class IdTable {
+  private static final int INITIAL_CAPACITY = 64; // must be a power of 2
+  private static final int REF_SIZE = 4;
+  private static final int REF_SLOT = 0;
+  private static final int REF_SOURCE = 1;
+  private static final int REF_LINE = 2;
+  private static final int REF_COLUMN = 3;
+
+  interface MissingIdHandler {
+    void missingId(String token, Locator locator) throws SAXException;
+  }
+
+  private final int spillThreshold;
+
+  private String[] tokens;
+  // 0 if there has been no ID, otherwise 1 + the index in publicIds and systemIds of its entity
+  private int[] idSources;
+  private int[] idLines;
+  private int[] idColumns;
+  private int nTokens;
+
+  private final List<String> publicIds = new ArrayList<String>();
+  private final List<String> systemIds = new ArrayList<String>();
+  private int lastSource = -1;
+
+  private int[] refs;
+  private int refsLength;
+  private File spillFile;
+  private DataOutputStream spillOut;
+
+  /**
+   * @param spillThreshold the number of IDREFs without an ID above which they are written to a temporary file;
+   * 0 means they are never written to a file
+   */
+  IdTable(int spillThreshold) {
+    this.spillThreshold = spillThreshold;
+    clear();
+  }
+
+  void clear() {
+    tokens = new String[INITIAL_CAPACITY];
+    idSources = new int[INITIAL_CAPACITY];
+    idLines = new int[INITIAL_CAPACITY];
+    idColumns = new int[INITIAL_CAPACITY];
+    nTokens = 0;
+    publicIds.clear();
+    systemIds.clear();
+    lastSource = -1;
+    refs = new int[REF_SIZE * 16];
+    refsLength = 0;
+    deleteSpillFile();
+  }
+
+  /**
+   * Returns the slot for the token that is the substring of value from start to end, adding it if necessary.
+   * The substring is only created if the token is new.
+   */
+  int slot(String value, int start, int end) {
+    int len = end - start;
+    int h = 0;
+    for (int i = start; i < end; i++)
+      h = 31*h + value.charAt(i);
+    int mask = tokens.length - 1;
+    for (int i = hash(h) & mask;; i = (i + 1) & mask) {
+      String token = tokens[i];
+      if (token == null) {
+        tokens[i] = value.substring(start, end);
+        if (++nTokens * 2 > tokens.length)
+          return rehash(i);
+        return i;
+      }
+      if (token.length() == len && token.regionMatches(0, value, start, len))
+        return i;
+    }
+  }
+
+  private static int hash(int h) {
+    return h ^ (h >>> 16);
+  }
+
+  /**
+   * Doubles the size of the table, and returns the new slot of the token in the specified slot.
+   */
+  private int rehash(int slot) {
+    String[] oldTokens = tokens;
+    int[] oldIdSources = idSources;
+    int[] oldIdLines = idLines;
+    int[] oldIdColumns = idColumns;
+    int capacity = oldTokens.length * 2;
+    tokens = new String[capacity];
+    idSources = new int[capacity];
+    idLines = new int[capacity];
+    idColumns = new int[capacity];
+    int[] newSlots = new int[oldTokens.length];
+    int mask = capacity - 1;
+    for (int j = 0; j < oldTokens.length; j++) {
+      String token = oldTokens[j];
+      if (token == null)
+        continue;
+      int i = hash(token.hashCode()) & mask;
+      while (tokens[i] != null)
+        i = (i + 1) & mask;
+      tokens[i] = token;
+      idSources[i] = oldIdSources[j];
+      idLines[i] = oldIdLines[j];
+      idColumns[i] = oldIdColumns[j];
+      newSlots[j] = i;
+    }
+    for (int r = 0; r < refsLength; r += REF_SIZE)
+      refs[r + REF_SLOT] = newSlots[refs[r + REF_SLOT]];
+    return newSlots[slot];
+  }
+
+  boolean hasId(int slot) {
+    return idSources[slot] != 0;
+  }
+
+  void setId(int slot, Locator locator) {
+    idSources[slot] = source(locator) + 1;
+    idLines[slot] = locator == null ? -1 : locator.getLineNumber();
+    idColumns[slot] = locator == null ? -1 : locator.getColumnNumber();
+  }
+
+  Locator getIdLocator(int slot) {
+    return createLocator(idSources[slot] - 1, idLines[slot], idColumns[slot]);
+  }
+
+  /**
+   * Records an IDREF, unless the ID it refers to has already been seen.
+   */
+  void addRef(int slot, Locator locator) throws SAXException {
+    if (hasId(slot))
+      return;
+    if (refsLength == refs.length)
+      makeRoomForRef();
+    refs[refsLength + REF_SLOT] = slot;
+    refs[refsLength + REF_SOURCE] = source(locator);
+    refs[refsLength + REF_LINE] = locator == null ? -1 : locator.getLineNumber();
+    refs[refsLength + REF_COLUMN] = locator == null ? -1 : locator.getColumnNumber();
+    refsLength += REF_SIZE;
+  }
+
+  private void makeRoomForRef() throws SAXException {
+    // first drop the IDREFs whose IDs have been seen since they were recorded
+    int j = 0;
+    for (int i = 0; i < refsLength; i += REF_SIZE) {
+      if (!hasId(refs[i + REF_SLOT])) {
+        System.arraycopy(refs, i, refs, j, REF_SIZE);
+        j += REF_SIZE;
+      }
+    }
+    refsLength = j;
+    if (refsLength * 2 <= refs.length)
+      return;
+    if (spillThreshold > 0 && refsLength / REF_SIZE >= spillThreshold) {
+      spill();
+      return;
+    }
+    int[] tem = refs;
+    refs = new int[tem.length * 2];
+    System.arraycopy(tem, 0, refs, 0, refsLength);
+  }
+
+  private void spill() throws SAXException {
+    try {
+      if (spillOut == null) {
+        spillFile = File.createTempFile("idrefs", null);
+        spillOut = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(spillFile)));
+      }
+      // slots change when the table is rehashed, so the token itself is written
+      for (int i = 0; i < refsLength; i += REF_SIZE) {
+        String token = tokens[refs[i + REF_SLOT]];
+        spillOut.writeInt(token.length());
+        spillOut.writeChars(token);
+        for (int j = 1; j < REF_SIZE; j++)
+          spillOut.writeInt(refs[i + j]);
+      }
+    }
+    catch (IOException e) {
+      throw new SAXException(e);
+    }
+    refsLength = 0;
+  }
+
+  /**
+   * Calls handler for each IDREF whose ID has not been seen, in the order in which the IDREFs were added.
+   */
+  void checkRefs(MissingIdHandler handler) throws SAXException {
+    if (spillOut != null) {
+      try {
+        spillOut.close();
+        spillOut = null;
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(spillFile)));
+        try {
+          int[] ref = new int[REF_SIZE];
+          StringBuilder token = new StringBuilder();
+          for (;;) {
+            int len;
+            try {
+              len = in.readInt();
+            }
+            catch (EOFException e) {
+              break;
+            }
+            token.setLength(0);
+            for (int i = 0; i < len; i++)
+              token.append(in.readChar());
+            ref[REF_SLOT] = slot(token.toString(), 0, len);
+            for (int i = 1; i < REF_SIZE; i++)
+              ref[i] = in.readInt();
+            checkRef(ref, 0, handler);
+          }
+        }
+        finally {
+          in.close();
+        }
+      }
+      catch (IOException e) {
+        throw new SAXException(e);
+      }
+      finally {
+        deleteSpillFile();
+      }
+    }
+    for (int i = 0; i < refsLength; i += REF_SIZE)
+      checkRef(refs, i, handler);
+  }
+
+  private void checkRef(int[] ref, int i, MissingIdHandler handler) throws SAXException {
+    int slot = ref[i + REF_SLOT];
+    if (!hasId(slot))
+      handler.missingId(tokens[slot], createLocator(ref[i + REF_SOURCE], ref[i + REF_LINE], ref[i + REF_COLUMN]));
+  }
+
+  private void deleteSpillFile() {
+    if (spillOut != null) {
+      try {
+        spillOut.close();
+      }
+      catch (IOException e) { }
+      spillOut = null;
+    }
+    if (spillFile != null) {
+      spillFile.delete();
+      spillFile = null;
+    }
+  }
+
+  /**
+   * Returns the index in publicIds and systemIds of the entity of the locator.  Consecutive calls are
+   * usually for the same entity, so only the last one is checked.
+   */
+  private int source(Locator locator) {
+    String publicId = locator == null ? null : locator.getPublicId();
+    String systemId = locator == null ? null : locator.getSystemId();
+    if (lastSource >= 0
+        && Equal.equal(publicId, publicIds.get(lastSource))
+        && Equal.equal(systemId, systemIds.get(lastSource)))
+      return lastSource;
+    for (int i = 0; i < publicIds.size(); i++) {
+      if (Equal.equal(publicId, publicIds.get(i)) && Equal.equal(systemId, systemIds.get(i))) {
+        lastSource = i;
+        return i;
+      }
+    }
+    publicIds.add(publicId);
+    systemIds.add(systemId);
+    lastSource = publicIds.size() - 1;
+    return lastSource;
+  }
+
+  private Locator createLocator(int source, int line, int column) {
+    LocatorImpl locator = new LocatorImpl();
+    locator.setPublicId(publicIds.get(source));
+    locator.setSystemId(systemIds.get(source));
+    locator.setLineNumber(line);
+    locator.setColumnNumber(column);
+    return locator;
+  }
+}
@@ -48,37 +48,69 @@ public class IdTypeMapBuilder {
     }
   }
 
-  private static class ScopedName {
-    private final Name elementName;
-    private final Name attributeName;
+  /**
+   * Indexed by the local name of the attribute, so that most attributes, which have no ID-type, are
+   * looked up with a single hash of a string whose hash code is cached.
+   */
+  private static class IdTypeMapImpl implements StringIdTypeMap {
+    private final Map<String, IdTypeEntry> table = new HashMap<String, IdTypeEntry>();
+
+    private static class IdTypeEntry {
+      private final Name elementName;
+      private final Name attributeName;
+      private int idType;
+      private final IdTypeEntry next;
+
+      private IdTypeEntry(Name elementName, Name attributeName, int idType, IdTypeEntry next) {
+        this.elementName = elementName;
+        this.attributeName = attributeName;
+        this.idType = idType;
+        this.next = next;
+      }
 
-    private ScopedName(Name elementName, Name attributeName) {
-      this.elementName = elementName;
-      this.attributeName = attributeName;
+      private boolean matches(String elementNamespaceUri, String elementLocalName, String attributeNamespaceUri) {
+        return (elementName.getLocalName().equals(elementLocalName)
+                && elementName.getNamespaceUri().equals(elementNamespaceUri)
+                && attributeName.getNamespaceUri().equals(attributeNamespaceUri));
+      }
     }
 
-    public int hashCode() {
-      return elementName.hashCode() ^ attributeName.hashCode();
+    public int getIdType(Name elementName, Name attributeName) {
+      return getIdType(elementName.getNamespaceUri(), elementName.getLocalName(),
+                       attributeName.getNamespaceUri(), attributeName.getLocalName());
     }
 
-    public boolean equals(Object obj) {
-      if (!(obj instanceof ScopedName))
-        return false;
-      ScopedName other = (ScopedName)obj;
-      return elementName.equals(other.elementName) && attributeName.equals(other.attributeName);
+    public int getIdType(String elementNamespaceUri, String elementLocalName,
+                         String attributeNamespaceUri, String attributeLocalName) {
+      for (IdTypeEntry entry = table.get(attributeLocalName); entry != null; entry = entry.next)
+        if (entry.matches(elementNamespaceUri, elementLocalName, attributeNamespaceUri))
+          return entry.idType;
+      return Datatype.ID_TYPE_NULL;
     }
-  }
 
-  private static class IdTypeMapImpl implements IdTypeMap {
-    private final Map<ScopedName, Integer> table = new HashMap<ScopedName, Integer>();
-    public int getIdType(Name elementName, Name attributeName) {
-      Integer n = table.get(new ScopedName(elementName, attributeName));
-      if (n == null)
-        return Datatype.ID_TYPE_NULL;
-      return n;
-    }
     private void add(Name elementName, Name attributeName, int idType) {
-      table.put(new ScopedName(elementName, attributeName), idType);
+      IdTypeEntry first = table.get(attributeName.getLocalName());
+      for (IdTypeEntry entry = first; entry != null; entry = entry.next) {
+        if (entry.matches(elementName.getNamespaceUri(), elementName.getLocalName(),
+                          attributeName.getNamespaceUri())) {
+          entry.idType = idType;
+          return;
+        }
+      }
+      table.put(attributeName.getLocalName(),
+                new IdTypeEntry(elementName, attributeName, idType, first));
+    }
+
+    /**
+     * Returns an entry whose element name and attribute name are contained in the specified name classes,
+     * or null if there is none.
+     */
+    private IdTypeEntry findEntry(NameClass elementNameClass, NameClass attributeNameClass) {
+      for (IdTypeEntry first : table.values())
+        for (IdTypeEntry entry = first; entry != null; entry = entry.next)
+          if (elementNameClass.contains(entry.elementName) && attributeNameClass.contains(entry.attributeName))
+            return entry;
+      return null;
     }
   }
 
@@ -298,13 +330,9 @@ public class IdTypeMapBuilder {
             error("id_type_conflict", elementName, attributeName, pc.locator);
         }
         else {
-          for (ScopedName sn : idTypeMap.table.keySet()) {
-            if (pc.elementNameClass.contains(sn.elementName)
-                && pc.attributeNameClass.contains(sn.attributeName)) {
-              error("id_type_conflict", sn.elementName, sn.attributeName, pc.locator);
-              break;
-            }
-          }
+          IdTypeMapImpl.IdTypeEntry entry = idTypeMap.findEntry(pc.elementNameClass, pc.attributeNameClass);
+          if (entry != null)
+            error("id_type_conflict", entry.elementName, entry.attributeName, pc.locator);
         }
       }
     }
@@ -54,6 +54,10 @@ class OverlapDetector implements NameClassVisitor {
   public void visitError() {
   }
 
+  static boolean overlaps(NameClass nc1, NameClass nc2) {
+    return new OverlapDetector(nc1, nc2).overlapExample != null;
+  }
+
   static void checkOverlap(NameClass nc1, NameClass nc2,
                            String messageForName,
                            String messageForNs,
@@ -58,6 +58,10 @@ final class PatternInterner {
     return p;
   }
 
+  int size() {
+    return used;
+  }
+
   private int firstIndex(Pattern p) {
     return p.patternHashCode() & (table.length - 1);
   }
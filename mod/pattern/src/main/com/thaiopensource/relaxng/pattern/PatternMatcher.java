@@ -43,6 +43,7 @@ public class PatternMatcher implements Cloneable, Matcher {
   private boolean textTyped;
   private boolean hadError;
   private boolean ignoreNextEndTagOrAttributeValue;
+  private int depth;
   private String errorMessage;
   private final Shared shared;
   private List<DataDerivFailure> dataDerivFailureList = new ArrayList<DataDerivFailure>();
@@ -105,6 +106,10 @@ public class PatternMatcher implements Cloneable, Matcher {
   }
 
   public boolean matchStartTagOpen(Name name, String qName, MatchContext context) {
+    ++depth;
+    DerivativeStatistics statistics = shared.builder.getDerivativeStatistics();
+    if (statistics != null)
+      statistics.elementDepth(depth);
     if (setMemo(memo.startTagOpenDeriv(name)))
       return true;
     PatternMemo next = memo.startTagOpenRecoverDeriv(name);
@@ -242,6 +247,7 @@ public class PatternMatcher implements Cloneable, Matcher {
   }
 
   public boolean matchEndTag(Name name, String qName, MatchContext context) {
+    --depth;
     if (ignoreNextEndTagOrAttributeValue) {
       ignoreNextEndTagOrAttributeValue = false;
       return true;
@@ -11,6 +11,8 @@ final class PatternMemo {
   private final Pattern pattern;
   private final ValidatorPatternBuilder builder;
   private final boolean notAllowed;
+  // the memo for the same pattern of the builder from which builder was copied, or null
+  private final PatternMemo seed;
   private PatternMemo memoEndAttributes;
   private PatternMemo memoTextOnly;
   private PatternMemo memoEndTagDeriv;
@@ -25,10 +27,26 @@ final class PatternMemo {
   private NormalizedNameClass memoPossibleAttributeNames;
   private NormalizedNameClass memoPossibleStartTagNames;
 
-  PatternMemo(Pattern pattern, ValidatorPatternBuilder builder) {
+  // the transitions that do not depend on a name, as used by getTransition and setTransition
+  static final int END_ATTRIBUTES = 0;
+  static final int IGNORE_MISSING_ATTRIBUTES = 1;
+  static final int TEXT_ONLY = 2;
+  static final int END_TAG_DERIV = 3;
+  static final int MIXED_TEXT_DERIV = 4;
+  static final int RECOVER_AFTER = 5;
+  static final int EMPTY_AFTER = 6;
+  static final int TRANSITION_COUNT = 7;
+  // the transitions that depend on a name, as used by getNameTransitions and putNameTransition
+  static final int START_TAG_OPEN_DERIV = 0;
+  static final int START_TAG_OPEN_RECOVER_DERIV = 1;
+  static final int START_ATTRIBUTE_DERIV = 2;
+  static final int NAME_TRANSITION_COUNT = 3;
+
+  PatternMemo(Pattern pattern, ValidatorPatternBuilder builder, PatternMemo seed) {
     this.pattern = pattern;
     this.builder = builder;
     this.notAllowed = pattern.isNotAllowed();
+    this.seed = seed;
   }
 
   Pattern getPattern() {
@@ -39,69 +57,69 @@ final class PatternMemo {
     return builder;
   }
 
+  PatternMemo getSeed() {
+    return seed;
+  }
+
   boolean isNotAllowed() {
     return notAllowed;
   }
 
   PatternMemo endAttributes() {
-    if (memoEndAttributes == null)
-      memoEndAttributes = applyForPatternMemo(builder.getEndAttributesFunction());
-    return memoEndAttributes;
+    return endAttributes(builder.getEndAttributesFunction());
   }
 
   PatternMemo endAttributes(PatternFunction<Pattern> f) {
     if (memoEndAttributes == null)
-      memoEndAttributes = applyForPatternMemo(f);
+      memoEndAttributes = applyForPatternMemo(END_ATTRIBUTES, f);
     return memoEndAttributes;
   }
 
   PatternMemo ignoreMissingAttributes() {
-    if (memoIgnoreMissingAttributes == null)
-      memoIgnoreMissingAttributes
-	= applyForPatternMemo(builder.getIgnoreMissingAttributesFunction());
-    return memoIgnoreMissingAttributes;
+    countRecoveryDeriv();
+    return ignoreMissingAttributes(builder.getIgnoreMissingAttributesFunction());
   }
 
   PatternMemo ignoreMissingAttributes(PatternFunction<Pattern> f) {
     if (memoIgnoreMissingAttributes == null)
-      memoIgnoreMissingAttributes = applyForPatternMemo(f);
+      memoIgnoreMissingAttributes = applyForPatternMemo(IGNORE_MISSING_ATTRIBUTES, f);
     return memoIgnoreMissingAttributes;
   }
 
   PatternMemo textOnly() {
-    if (memoTextOnly == null)
-      memoTextOnly = applyForPatternMemo(builder.getTextOnlyFunction());
-    return memoTextOnly;
+    return textOnly(builder.getTextOnlyFunction());
   }
 
   PatternMemo textOnly(PatternFunction<Pattern> f) {
     if (memoTextOnly == null)
-      memoTextOnly = applyForPatternMemo(f);
+      memoTextOnly = applyForPatternMemo(TEXT_ONLY, f);
     return memoTextOnly;
   }
 
   PatternMemo endTagDeriv() {
-    if (memoEndTagDeriv == null)
-      memoEndTagDeriv = applyForPatternMemo(builder.getEndTagDerivFunction());
-    return memoEndTagDeriv;
+    return endTagDeriv(builder.getEndTagDerivFunction());
   }
 
   PatternMemo endTagDeriv(PatternFunction<Pattern> f) {
-    if (memoEndTagDeriv == null)
-      memoEndTagDeriv = applyForPatternMemo(f);
+    if (memoEndTagDeriv == null) {
+      memoEndTagDeriv = seedTransition(END_TAG_DERIV);
+      count(DerivativeStatistics.END_TAG_DERIV, memoEndTagDeriv != null);
+      if (memoEndTagDeriv == null)
+        memoEndTagDeriv = applyForPatternMemo(f);
+    }
+    else
+      count(DerivativeStatistics.END_TAG_DERIV, true);
     return memoEndTagDeriv;
   }
 
 
   PatternMemo mixedTextDeriv() {
-    if (memoMixedTextDeriv == null)
-      memoMixedTextDeriv = applyForPatternMemo(builder.getMixedTextDerivFunction());
-    return memoMixedTextDeriv;
+    return mixedTextDeriv(builder.getMixedTextDerivFunction());
   }
 
   PatternMemo mixedTextDeriv(PatternFunction<Pattern> f) {
     if (memoMixedTextDeriv == null)
-      memoMixedTextDeriv = applyForPatternMemo(f);
+      memoMixedTextDeriv = applyForPatternMemo(MIXED_TEXT_DERIV, f);
     return memoMixedTextDeriv;
   }
 
@@ -119,17 +137,24 @@ final class PatternMemo {
       startTagOpenDerivMap = new HashMap<Name, PatternMemo>();
     else {
       tem = startTagOpenDerivMap.get(name);
-      if (tem != null)
+      if (tem != null) {
+        count(DerivativeStatistics.START_TAG_OPEN_DERIV, true);
 	return tem;
+      }
+    }
+    tem = seedNameTransition(START_TAG_OPEN_DERIV, name);
+    count(DerivativeStatistics.START_TAG_OPEN_DERIV, tem != null);
+    if (tem == null) {
+      if (f == null)
+        f = new StartTagOpenDerivFunction(name, builder);
+      tem = applyForPatternMemo(f);
     }
-    if (f == null)
-      f = new StartTagOpenDerivFunction(name, builder);
-    tem = applyForPatternMemo(f);
     startTagOpenDerivMap.put(name, tem);
     return tem;
   }
 
   PatternMemo startTagOpenRecoverDeriv(Name name) {
+    countRecoveryDeriv();
     return startTagOpenRecoverDeriv(name, null);
   }
 
@@ -146,9 +171,12 @@ final class PatternMemo {
       if (tem != null)
 	return tem;
     }
-    if (f == null)
-      f = new StartTagOpenRecoverDerivFunction(name, builder);
-    tem = applyForPatternMemo(f);
+    tem = seedNameTransition(START_TAG_OPEN_RECOVER_DERIV, name);
+    if (tem == null) {
+      if (f == null)
+        f = new StartTagOpenRecoverDerivFunction(name, builder);
+      tem = applyForPatternMemo(f);
+    }
     startTagOpenRecoverDerivMap.put(name, tem);
     return tem;
   }
@@ -167,12 +195,18 @@ final class PatternMemo {
       startAttributeDerivMap = new HashMap<Name, PatternMemo>();
     else {
       tem = startAttributeDerivMap.get(name);
-      if (tem != null)
+      if (tem != null) {
+        count(DerivativeStatistics.START_ATTRIBUTE_DERIV, true);
 	return tem;
+      }
+    }
+    tem = seedNameTransition(START_ATTRIBUTE_DERIV, name);
+    count(DerivativeStatistics.START_ATTRIBUTE_DERIV, tem != null);
+    if (tem == null) {
+      if (f == null)
+        f = new StartAttributeDerivFunction(name, builder);
+      tem = applyForPatternMemo(f);
     }
-    if (f == null)
-      f = new StartAttributeDerivFunction(name, builder);
-    tem = applyForPatternMemo(f);
     startAttributeDerivMap.put(name, tem);
     return tem;
   }
@@ -184,22 +218,29 @@ final class PatternMemo {
   }
 
   PatternMemo dataDeriv(String str, ValidationContext vc) {
-    return dataDerivType().dataDeriv(builder, pattern, str, vc, null);
+    return dataDeriv(str, vc, null);
   }
 
   PatternMemo dataDeriv(String str, ValidationContext vc, List<DataDerivFailure> fail) {
-    return dataDerivType().dataDeriv(builder, pattern, str, vc, fail);
+    DerivativeStatistics statistics = builder.getDerivativeStatistics();
+    if (statistics == null)
+      return dataDerivType().dataDeriv(builder, pattern, str, vc, fail);
+    long startTime = System.nanoTime();
+    PatternMemo memo = dataDerivType().dataDeriv(builder, pattern, str, vc, fail);
+    statistics.dataDeriv(System.nanoTime() - startTime);
+    return memo;
   }
 
   PatternMemo recoverAfter() {
+    countRecoveryDeriv();
     if (memoRecoverAfter == null)
-      memoRecoverAfter = applyForPatternMemo(builder.getRecoverAfterFunction());
+      memoRecoverAfter = applyForPatternMemo(RECOVER_AFTER, builder.getRecoverAfterFunction());
     return memoRecoverAfter;
   }
 
   PatternMemo emptyAfter() {
     if (memoEmptyAfter == null)
-      memoEmptyAfter = applyForPatternMemo(new ApplyAfterFunction(builder) {
+      memoEmptyAfter = applyForPatternMemo(EMPTY_AFTER, new ApplyAfterFunction(builder) {
         Pattern apply(Pattern p) {
           return builder.makeEmpty();
         }
@@ -224,7 +265,134 @@ final class PatternMemo {
     return memoPossibleAttributeNames;
   }
 
+  PatternMemo getTransition(int i) {
+    switch (i) {
+    case END_ATTRIBUTES:
+      return memoEndAttributes;
+    case IGNORE_MISSING_ATTRIBUTES:
+      return memoIgnoreMissingAttributes;
+    case TEXT_ONLY:
+      return memoTextOnly;
+    case END_TAG_DERIV:
+      return memoEndTagDeriv;
+    case MIXED_TEXT_DERIV:
+      return memoMixedTextDeriv;
+    case RECOVER_AFTER:
+      return memoRecoverAfter;
+    case EMPTY_AFTER:
+      return memoEmptyAfter;
+    }
+    throw new IllegalArgumentException();
+  }
+
+  void setTransition(int i, PatternMemo memo) {
+    switch (i) {
+    case END_ATTRIBUTES:
+      memoEndAttributes = memo;
+      break;
+    case IGNORE_MISSING_ATTRIBUTES:
+      memoIgnoreMissingAttributes = memo;
+      break;
+    case TEXT_ONLY:
+      memoTextOnly = memo;
+      break;
+    case END_TAG_DERIV:
+      memoEndTagDeriv = memo;
+      break;
+    case MIXED_TEXT_DERIV:
+      memoMixedTextDeriv = memo;
+      break;
+    case RECOVER_AFTER:
+      memoRecoverAfter = memo;
+      break;
+    case EMPTY_AFTER:
+      memoEmptyAfter = memo;
+      break;
+    default:
+      throw new IllegalArgumentException();
+    }
+  }
+
+  Map<Name, PatternMemo> getNameTransitions(int i) {
+    switch (i) {
+    case START_TAG_OPEN_DERIV:
+      return startTagOpenDerivMap;
+    case START_TAG_OPEN_RECOVER_DERIV:
+      return startTagOpenRecoverDerivMap;
+    case START_ATTRIBUTE_DERIV:
+      return startAttributeDerivMap;
+    }
+    throw new IllegalArgumentException();
+  }
+
+  void putNameTransition(int i, Name name, PatternMemo memo) {
+    switch (i) {
+    case START_TAG_OPEN_DERIV:
+      if (startTagOpenDerivMap == null)
+        startTagOpenDerivMap = new HashMap<Name, PatternMemo>();
+      startTagOpenDerivMap.put(name, memo);
+      break;
+    case START_TAG_OPEN_RECOVER_DERIV:
+      if (startTagOpenRecoverDerivMap == null)
+        startTagOpenRecoverDerivMap = new HashMap<Name, PatternMemo>();
+      startTagOpenRecoverDerivMap.put(name, memo);
+      break;
+    case START_ATTRIBUTE_DERIV:
+      if (startAttributeDerivMap == null)
+        startAttributeDerivMap = new HashMap<Name, PatternMemo>();
+      startAttributeDerivMap.put(name, memo);
+      break;
+    default:
+      throw new IllegalArgumentException();
+    }
+  }
+
+  private PatternMemo applyForPatternMemo(int transition, PatternFunction<Pattern> f) {
+    PatternMemo memo = seedTransition(transition);
+    if (memo != null)
+      return memo;
+    return applyForPatternMemo(f);
+  }
+
+  /**
+   * Returns the memo of builder for the pattern to which a seed of this memo has a transition, or null
+   * if none has.  The seeds are not changed, since several builders may be using them.
+   */
+  private PatternMemo seedTransition(int transition) {
+    for (PatternMemo memo = seed; memo != null; memo = memo.seed) {
+      PatternMemo target = memo.getTransition(transition);
+      if (target != null)
+        return builder.getPatternMemo(target.getPattern());
+    }
+    return null;
+  }
+
+  private PatternMemo seedNameTransition(int transition, Name name) {
+    for (PatternMemo memo = seed; memo != null; memo = memo.seed) {
+      Map<Name, PatternMemo> map = memo.getNameTransitions(transition);
+      if (map != null) {
+        PatternMemo target = map.get(name);
+        if (target != null)
+          return builder.getPatternMemo(target.getPattern());
+      }
+    }
+    return null;
+  }
+
   private PatternMemo applyForPatternMemo(PatternFunction<Pattern> f) {
+    builder.memoizedDerivative();
     return builder.getPatternMemo(pattern.apply(f));
   }
+
+  private void count(int kind, boolean hit) {
+    DerivativeStatistics statistics = builder.getDerivativeStatistics();
+    if (statistics != null)
+      statistics.count(kind, hit);
+  }
+
+  private void countRecoveryDeriv() {
+    DerivativeStatistics statistics = builder.getDerivativeStatistics();
+    if (statistics != null)
+      statistics.recoveryDeriv();
+  }
 }
@@ -0,0 +1,515 @@
+package com.thaiopensource.relaxng.pattern;
+
+import com.thaiopensource.util.Sha1;
+import com.thaiopensource.util.VoidValue;
+import com.thaiopensource.xml.util.Name;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes and reads the memos of a ValidatorPatternBuilder, with the transitions between them, so that another
+ * builder for the same schema, possibly in another process, can start with them.  The patterns of the schema
+ * are identified by the order in which a traversal from the start pattern reaches them; the patterns made
+ * while validating are written as choices, groups, interleaves, afters and oneOrMores of these.  A snapshot
+ * includes a signature of the schema, so that it is not used with a different schema.
+ */
+final class PatternMemoSnapshot {
+  private static final int MAGIC = 0x524e474d;
+  private static final int VERSION = 2;
+
+  private static final byte NODE_EMPTY = 0;
+  private static final byte NODE_NOT_ALLOWED = 1;
+  private static final byte NODE_CHOICE = 2;
+  private static final byte NODE_GROUP = 3;
+  private static final byte NODE_INTERLEAVE = 4;
+  private static final byte NODE_AFTER = 5;
+  private static final byte NODE_ONE_OR_MORE = 6;
+
+  private final ValidatorPatternBuilder builder;
+  private final List<Pattern> schemaPatterns = new ArrayList<Pattern>();
+  // the index of each pattern that has been written, or -1 if it cannot be written
+  private final Map<Pattern, Integer> patternIndexMap = new HashMap<Pattern, Integer>();
+  private final List<int[]> nodes = new ArrayList<int[]>();
+  private final MessageDigest signer = Sha1.newMessageDigest();
+  private final byte[] signature;
+
+  private class SchemaPatternFinder extends AbstractPatternFunction<VoidValue> {
+    private final NameClassVisitor nameClassSigner = new NameClassSigner();
+
+    public VoidValue caseOther(Pattern p) {
+      return VoidValue.VOID;
+    }
+
+    public VoidValue caseGroup(GroupPattern p) {
+      return caseBinary(p);
+    }
+
+    public VoidValue caseInterleave(InterleavePattern p) {
+      return caseBinary(p);
+    }
+
+    public VoidValue caseChoice(ChoicePattern p) {
+      return caseBinary(p);
+    }
+
+    public VoidValue caseAfter(AfterPattern p) {
+      return caseBinary(p);
+    }
+
+    private VoidValue caseBinary(BinaryPattern p) {
+      addSchemaPattern(p.getOperand1());
+      addSchemaPattern(p.getOperand2());
+      return VoidValue.VOID;
+    }
+
+    public VoidValue caseOneOrMore(OneOrMorePattern p) {
+      addSchemaPattern(p.getOperand());
+      return VoidValue.VOID;
+    }
+
+    public VoidValue caseList(ListPattern p) {
+      addSchemaPattern(p.getOperand());
+      return VoidValue.VOID;
+    }
+
+    public VoidValue caseElement(ElementPattern p) {
+      p.getNameClass().accept(nameClassSigner);
+      addSchemaPattern(p.getContent());
+      return VoidValue.VOID;
+    }
+
+    public VoidValue caseAttribute(AttributePattern p) {
+      p.getNameClass().accept(nameClassSigner);
+      addSchemaPattern(p.getContent());
+      return VoidValue.VOID;
+    }
+
+    public VoidValue caseData(DataPattern p) {
+      sign(p.getDatatypeName());
+      sign(p.getParams());
+      return VoidValue.VOID;
+    }
+
+    public VoidValue caseDataExcept(DataExceptPattern p) {
+      caseData(p);
+      addSchemaPattern(p.getExcept());
+      return VoidValue.VOID;
+    }
+
+    public VoidValue caseValue(ValuePattern p) {
+      sign(p.getDatatypeName());
+      sign(p.getStringValue());
+      // the same string may be a different value in a different context, so the value is identified
+      // by its hash code as well
+      if (p.getDatatype().isContextDependent())
+        sign(p.getDatatype().valueHashCode(p.getValue()));
+      return VoidValue.VOID;
+    }
+
+    public VoidValue caseRef(RefPattern p) {
+      addSchemaPattern(p.getPattern());
+      return VoidValue.VOID;
+    }
+  }
+
+  private class NameClassSigner implements NameClassVisitor {
+    public void visitChoice(NameClass nc1, NameClass nc2) {
+      sign(1);
+      nc1.accept(this);
+      nc2.accept(this);
+    }
+
+    public void visitNsName(String ns) {
+      sign(2);
+      sign(ns);
+    }
+
+    public void visitNsNameExcept(String ns, NameClass nc) {
+      sign(3);
+      sign(ns);
+      nc.accept(this);
+    }
+
+    public void visitAnyName() {
+      sign(4);
+    }
+
+    public void visitAnyNameExcept(NameClass nc) {
+      sign(5);
+      nc.accept(this);
+    }
+
+    public void visitName(Name name) {
+      sign(6);
+      sign(name);
+    }
+
+    public void visitNull() {
+      sign(7);
+    }
+
+    public void visitError() {
+      sign(8);
+    }
+  }
+
+  private PatternMemoSnapshot(ValidatorPatternBuilder builder, Pattern start) {
+    this.builder = builder;
+    PatternFunction<VoidValue> finder = new SchemaPatternFinder();
+    addSchemaPattern(start);
+    // patterns are added to the end of the list as they are found
+    for (int i = 0; i < schemaPatterns.size(); i++) {
+      Pattern p = schemaPatterns.get(i);
+      sign(p.getClass().getName());
+      p.apply(finder);
+    }
+    signature = signer.digest();
+  }
+
+  private void addSchemaPattern(Pattern p) {
+    Integer index = patternIndexMap.get(p);
+    if (index == null) {
+      index = schemaPatterns.size();
+      patternIndexMap.put(p, index);
+      schemaPatterns.add(p);
+    }
+    sign(index);
+  }
+
+  /**
+   * Adds an integer to the signature.  The signature is a SHA-1 digest of an unambiguous encoding
+   * of the schema patterns, including the name classes and the values.
+   */
+  private void sign(int n) {
+    signer.update((byte)(n >>> 24));
+    signer.update((byte)(n >>> 16));
+    signer.update((byte)(n >>> 8));
+    signer.update((byte)n);
+  }
+
+  private void sign(String s) {
+    if (s == null)
+      sign(-1);
+    else {
+      sign(s.length());
+      Sha1.update(signer, s);
+    }
+  }
+
+  private void sign(Name name) {
+    sign(name.getNamespaceUri());
+    sign(name.getLocalName());
+  }
+
+  private void sign(List<String> list) {
+    sign(list.size());
+    for (String s : list)
+      sign(s);
+  }
+
+  /**
+   * Writes memos.  A transition of a memo that it does not have itself is taken from its seeds, and memos
+   * for the same pattern are written once, from the first of them.
+   */
+  static void write(ValidatorPatternBuilder builder, Pattern start, Collection<PatternMemo> memos, OutputStream out)
+          throws IOException {
+    new PatternMemoSnapshot(builder, start).write(memos, new DataOutputStream(out));
+  }
+
+  private void write(Collection<PatternMemo> memos, DataOutputStream out) throws IOException {
+    Map<Pattern, Integer> memoIndexMap = new HashMap<Pattern, Integer>();
+    List<PatternMemo> memoList = new ArrayList<PatternMemo>();
+    List<Integer> memoPatternIndexes = new ArrayList<Integer>();
+    for (PatternMemo memo : memos) {
+      if (memoIndexMap.containsKey(memo.getPattern()))
+        continue;
+      int index = patternIndex(memo.getPattern());
+      if (index >= 0) {
+        memoIndexMap.put(memo.getPattern(), memoList.size());
+        memoList.add(memo);
+        memoPatternIndexes.add(index);
+      }
+    }
+    Map<Name, Integer> nameIndexMap = new HashMap<Name, Integer>();
+    List<Name> names = new ArrayList<Name>();
+    List<List<Map<Name, Integer>>> nameTransitions = new ArrayList<List<Map<Name, Integer>>>();
+    for (PatternMemo memo : memoList) {
+      List<Map<Name, Integer>> maps = new ArrayList<Map<Name, Integer>>();
+      for (int i = 0; i < PatternMemo.NAME_TRANSITION_COUNT; i++) {
+        Map<Name, Integer> map = new HashMap<Name, Integer>();
+        for (PatternMemo m = memo; m != null; m = m.getSeed()) {
+          Map<Name, PatternMemo> transitions = m.getNameTransitions(i);
+          if (transitions == null)
+            continue;
+          for (Map.Entry<Name, PatternMemo> entry : transitions.entrySet()) {
+            Integer index = memoIndexMap.get(entry.getValue().getPattern());
+            if (index != null && !map.containsKey(entry.getKey())) {
+              map.put(entry.getKey(), index);
+              if (!nameIndexMap.containsKey(entry.getKey())) {
+                nameIndexMap.put(entry.getKey(), names.size());
+                names.add(entry.getKey());
+              }
+            }
+          }
+        }
+        maps.add(map);
+      }
+      nameTransitions.add(maps);
+    }
+    out.writeInt(MAGIC);
+    out.writeInt(VERSION);
+    out.writeInt(schemaPatterns.size());
+    out.write(signature);
+    out.writeInt(nodes.size());
+    for (int[] node : nodes) {
+      out.writeByte(node[0]);
+      for (int i = 1; i < node.length; i++)
+        out.writeInt(node[i]);
+    }
+    out.writeInt(names.size());
+    for (Name name : names) {
+      out.writeUTF(name.getNamespaceUri());
+      out.writeUTF(name.getLocalName());
+    }
+    out.writeInt(memoList.size());
+    for (int index : memoPatternIndexes)
+      out.writeInt(index);
+    for (int k = 0; k < memoList.size(); k++) {
+      for (int i = 0; i < PatternMemo.TRANSITION_COUNT; i++) {
+        Integer index = null;
+        for (PatternMemo m = memoList.get(k); m != null && index == null; m = m.getSeed()) {
+          PatternMemo target = m.getTransition(i);
+          if (target != null)
+            index = memoIndexMap.get(target.getPattern());
+        }
+        out.writeInt(index == null ? -1 : index);
+      }
+      for (Map<Name, Integer> map : nameTransitions.get(k)) {
+        out.writeInt(map.size());
+        for (Map.Entry<Name, Integer> entry : map.entrySet()) {
+          out.writeInt(nameIndexMap.get(entry.getKey()));
+          out.writeInt(entry.getValue());
+        }
+      }
+    }
+    out.flush();
+  }
+
+  /**
+   * Returns the index of a pattern, adding a node for it if it is not a pattern of the schema,
+   * or -1 if it cannot be written.
+   */
+  private int patternIndex(Pattern p) {
+    Integer index = patternIndexMap.get(p);
+    if (index != null)
+      return index;
+    int[] node = null;
+    if (p == builder.makeEmpty())
+      node = new int[] { NODE_EMPTY };
+    else if (p == builder.makeNotAllowed())
+      node = new int[] { NODE_NOT_ALLOWED };
+    else if (p instanceof BinaryPattern) {
+      BinaryPattern bp = (BinaryPattern)p;
+      int index1 = patternIndex(bp.getOperand1());
+      int index2 = patternIndex(bp.getOperand2());
+      if (index1 >= 0 && index2 >= 0) {
+        if (p instanceof ChoicePattern)
+          node = new int[] { NODE_CHOICE, index1, index2 };
+        else if (p instanceof GroupPattern)
+          node = new int[] { NODE_GROUP, index1, index2 };
+        else if (p instanceof InterleavePattern)
+          node = new int[] { NODE_INTERLEAVE, index1, index2 };
+        else if (p instanceof AfterPattern)
+          node = new int[] { NODE_AFTER, index1, index2 };
+      }
+    }
+    else if (p instanceof OneOrMorePattern) {
+      int index1 = patternIndex(((OneOrMorePattern)p).getOperand());
+      if (index1 >= 0)
+        node = new int[] { NODE_ONE_OR_MORE, index1 };
+    }
+    if (node == null)
+      index = -1;
+    else {
+      index = schemaPatterns.size() + nodes.size();
+      nodes.add(node);
+    }
+    patternIndexMap.put(p, index);
+    return index;
+  }
+
+  /**
+   * Reads memos into a builder.  Nothing is added to the builder unless the whole snapshot is read.
+   *
+   * @throws IOException if the snapshot is not valid, is for a different schema, or cannot be read
+   */
+  static void read(ValidatorPatternBuilder builder, Pattern start, InputStream in) throws IOException {
+    try {
+      // the snapshot is read into memory first, so that each count in it can be checked against the
+      // amount of data remaining before anything is allocated for it
+      new PatternMemoSnapshot(builder, start).read(new DataInputStream(new ByteArrayInputStream(readAll(in))));
+    }
+    catch (EOFException e) {
+      throw invalid();
+    }
+  }
+
+  private void read(DataInputStream in) throws IOException {
+    if (in.readInt() != MAGIC || in.readInt() != VERSION)
+      throw invalid();
+    byte[] signature = new byte[this.signature.length];
+    int schemaPatternCount = in.readInt();
+    in.readFully(signature);
+    if (schemaPatternCount != schemaPatterns.size() || !MessageDigest.isEqual(signature, this.signature))
+      throw new IOException(SchemaBuilderImpl.localizer.message("memo_snapshot_mismatch"));
+    // the patterns are not made until everything has been read
+    int[][] nodes = new int[readCount(in, 1)][];
+    int patternCount = schemaPatternCount;
+    for (int i = 0; i < nodes.length; i++, patternCount++) {
+      byte kind = in.readByte();
+      switch (kind) {
+      case NODE_EMPTY:
+      case NODE_NOT_ALLOWED:
+        nodes[i] = new int[] { kind };
+        break;
+      case NODE_CHOICE:
+      case NODE_GROUP:
+      case NODE_INTERLEAVE:
+      case NODE_AFTER:
+        nodes[i] = new int[] { kind, readIndex(in, patternCount), readIndex(in, patternCount) };
+        break;
+      case NODE_ONE_OR_MORE:
+        nodes[i] = new int[] { kind, readIndex(in, patternCount) };
+        break;
+      default:
+        throw invalid();
+      }
+    }
+    // each name is at least two empty strings
+    Name[] names = new Name[readCount(in, 4)];
+    for (int i = 0; i < names.length; i++)
+      names[i] = new Name(in.readUTF(), in.readUTF());
+    int memoCount = readCount(in, 4*(1 + PatternMemo.TRANSITION_COUNT + PatternMemo.NAME_TRANSITION_COUNT));
+    int[] memoPatterns = new int[memoCount];
+    for (int i = 0; i < memoCount; i++)
+      memoPatterns[i] = readIndex(in, patternCount);
+    int[][] transitions = new int[memoCount][PatternMemo.TRANSITION_COUNT];
+    int[][][] nameTransitions = new int[memoCount][PatternMemo.NAME_TRANSITION_COUNT][];
+    for (int i = 0; i < memoCount; i++) {
+      for (int j = 0; j < PatternMemo.TRANSITION_COUNT; j++) {
+        int index = in.readInt();
+        if (index < -1 || index >= memoCount)
+          throw invalid();
+        transitions[i][j] = index;
+      }
+      for (int j = 0; j < PatternMemo.NAME_TRANSITION_COUNT; j++) {
+        int[] pairs = new int[readCount(in, 8)*2];
+        for (int k = 0; k < pairs.length; k += 2) {
+          pairs[k] = readIndex(in, names.length);
+          pairs[k + 1] = readIndex(in, memoCount);
+        }
+        nameTransitions[i][j] = pairs;
+      }
+    }
+    if (in.read() >= 0)
+      throw invalid();
+    Pattern[] patterns = makePatterns(nodes);
+    PatternMemo[] memos = new PatternMemo[memoCount];
+    for (int i = 0; i < memoCount; i++)
+      memos[i] = builder.getPatternMemo(patterns[memoPatterns[i]]);
+    for (int i = 0; i < memoCount; i++) {
+      PatternMemo memo = memos[i];
+      for (int j = 0; j < PatternMemo.TRANSITION_COUNT; j++)
+        if (transitions[i][j] >= 0 && memo.getTransition(j) == null)
+          memo.setTransition(j, memos[transitions[i][j]]);
+      for (int j = 0; j < PatternMemo.NAME_TRANSITION_COUNT; j++) {
+        int[] pairs = nameTransitions[i][j];
+        Map<Name, PatternMemo> map = memo.getNameTransitions(j);
+        for (int k = 0; k < pairs.length; k += 2) {
+          Name name = names[pairs[k]];
+          if (map == null || !map.containsKey(name))
+            memo.putNameTransition(j, name, memos[pairs[k + 1]]);
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns the schema patterns followed by the patterns of the nodes, which are interned in the builder.
+   */
+  private Pattern[] makePatterns(int[][] nodes) {
+    Pattern[] patterns = new Pattern[schemaPatterns.size() + nodes.length];
+    schemaPatterns.toArray(patterns);
+    int i = schemaPatterns.size();
+    for (int[] node : nodes) {
+      Pattern p;
+      switch (node[0]) {
+      case NODE_EMPTY:
+        p = builder.makeEmpty();
+        break;
+      case NODE_NOT_ALLOWED:
+        p = builder.makeNotAllowed();
+        break;
+      case NODE_CHOICE:
+        p = builder.interner.intern(new ChoicePattern(patterns[node[1]], patterns[node[2]]));
+        break;
+      case NODE_GROUP:
+        p = builder.interner.intern(new GroupPattern(patterns[node[1]], patterns[node[2]]));
+        break;
+      case NODE_INTERLEAVE:
+        p = builder.interner.intern(new InterleavePattern(patterns[node[1]], patterns[node[2]]));
+        break;
+      case NODE_AFTER:
+        p = builder.interner.intern(new AfterPattern(patterns[node[1]], patterns[node[2]]));
+        break;
+      default:
+        p = builder.interner.intern(new OneOrMorePattern(patterns[node[1]]));
+        break;
+      }
+      patterns[i++] = p;
+    }
+    return patterns;
+  }
+
+  private static byte[] readAll(InputStream in) throws IOException {
+    ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    byte[] buf = new byte[8192];
+    for (int n; (n = in.read(buf, 0, buf.length)) > 0;)
+      buffer.write(buf, 0, n);
+    return buffer.toByteArray();
+  }
+
+  private static int readIndex(DataInputStream in, int limit) throws IOException {
+    int index = in.readInt();
+    if (index < 0 || index >= limit)
+      throw invalid();
+    return index;
+  }
+
+  /**
+   * Reads the number of items that follow, each of which takes at least the specified number of bytes.
+   */
+  private static int readCount(DataInputStream in, int minItemSize) throws IOException {
+    int n = in.readInt();
+    if (n < 0 || n > in.available() / minItemSize)
+      throw invalid();
+    return n;
+  }
+
+  private static IOException invalid() {
+    return new IOException(SchemaBuilderImpl.localizer.message("memo_snapshot_invalid"));
+  }
+}
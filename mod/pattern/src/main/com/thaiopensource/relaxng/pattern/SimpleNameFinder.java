@@ -0,0 +1,59 @@
+package com.thaiopensource.relaxng.pattern;
+
+import com.thaiopensource.xml.util.Name;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Finds the names of the simple name classes that a name class is a choice of, and whether
+ * it also has other parts, such as nsName or anyName classes.
+ */
+class SimpleNameFinder implements NameClassVisitor {
+  private final List<Name> names = new ArrayList<Name>();
+  private boolean hasOther = false;
+
+  SimpleNameFinder(NameClass nc) {
+    nc.accept(this);
+  }
+
+  List<Name> getNames() {
+    return names;
+  }
+
+  boolean hasOther() {
+    return hasOther;
+  }
+
+  public void visitChoice(NameClass nc1, NameClass nc2) {
+    nc1.accept(this);
+    nc2.accept(this);
+  }
+
+  public void visitName(Name name) {
+    names.add(name);
+  }
+
+  public void visitNull() {
+  }
+
+  public void visitNsName(String ns) {
+    hasOther = true;
+  }
+
+  public void visitNsNameExcept(String ns, NameClass nc) {
+    hasOther = true;
+  }
+
+  public void visitAnyName() {
+    hasOther = true;
+  }
+
+  public void visitAnyNameExcept(NameClass nc) {
+    hasOther = true;
+  }
+
+  public void visitError() {
+    hasOther = true;
+  }
+}
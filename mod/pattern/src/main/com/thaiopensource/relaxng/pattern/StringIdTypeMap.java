@@ -0,0 +1,14 @@
+package com.thaiopensource.relaxng.pattern;
+
+/**
+ * An IdTypeMap that can also be queried with the parts of the names, so that the checker does not have to
+ * create Name objects for every attribute.
+ */
+interface StringIdTypeMap extends IdTypeMap {
+  /**
+   * Returns the same as <code>getIdType(new Name(elementNamespaceUri, elementLocalName),
+   * new Name(attributeNamespaceUri, attributeLocalName))</code>, without creating any objects.
+   */
+  int getIdType(String elementNamespaceUri, String elementLocalName,
+                String attributeNamespaceUri, String attributeLocalName);
+}
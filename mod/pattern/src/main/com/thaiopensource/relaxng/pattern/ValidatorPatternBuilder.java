@@ -3,7 +3,13 @@ package com.thaiopensource.relaxng.pattern;
 import com.thaiopensource.util.VoidValue;
 import com.thaiopensource.xml.util.Name;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -25,6 +31,17 @@ public class ValidatorPatternBuilder extends PatternBuilder {
   private final PossibleNamesFunction possibleStartTagNamesFunction = new PossibleStartTagNamesFunction();
   private final PossibleNamesFunction possibleAttributeNamesFunction = new PossibleAttributeNamesFunction();
 
+  // null unless choices and interleaves are canonical
+  private final Map<Pattern, Integer> patternIdMap;
+  private final Map<Pattern, List<Pattern>> operandsMap;
+  private final Map<List<Pattern>, Pattern> canonicalChoiceMap;
+  private final Map<List<Pattern>, Pattern> canonicalInterleaveMap;
+  // null unless statistics are collected
+  private final DerivativeStatistics statistics;
+  private int memoizedDerivativeCount;
+  // the builder from which this builder was copied, or null
+  private final ValidatorPatternBuilder seed;
+
   private class NoteChoicesFunction extends AbstractPatternFunction<VoidValue> {
     public VoidValue caseOther(Pattern p) {
       choiceMap.put(p, p);
@@ -60,7 +77,44 @@ public class ValidatorPatternBuilder extends PatternBuilder {
   }
 
   public ValidatorPatternBuilder(PatternBuilder builder) {
+    this(builder, false);
+  }
+
+  /**
+   * @param canonical true if choices and interleaves are to be built in a canonical form, so that
+   * patterns that differ only in the order, nesting or repetition of their alternatives, or in the
+   * order or nesting of their interleaved operands, are the same pattern and share a PatternMemo
+   */
+  public ValidatorPatternBuilder(PatternBuilder builder, boolean canonical) {
+    this(builder, canonical, false);
+  }
+
+  /**
+   * @param canonical true if choices and interleaves are to be built in a canonical form
+   * @param statistics true if statistics are to be collected
+   * @see #takeStatistics
+   */
+  public ValidatorPatternBuilder(PatternBuilder builder, boolean canonical, boolean statistics) {
+    this(builder, canonical, statistics, null);
+  }
+
+  private ValidatorPatternBuilder(PatternBuilder builder, boolean canonical, boolean statistics,
+                                  ValidatorPatternBuilder seed) {
     super(builder);
+    this.seed = seed;
+    this.statistics = statistics ? new DerivativeStatistics(interner.size(), 0) : null;
+    if (canonical) {
+      patternIdMap = new HashMap<Pattern, Integer>();
+      operandsMap = new HashMap<Pattern, List<Pattern>>();
+      canonicalChoiceMap = new HashMap<List<Pattern>, Pattern>();
+      canonicalInterleaveMap = new HashMap<List<Pattern>, Pattern>();
+    }
+    else {
+      patternIdMap = null;
+      operandsMap = null;
+      canonicalChoiceMap = null;
+      canonicalInterleaveMap = null;
+    }
     endAttributesFunction = new EndAttributesFunction(this);
     ignoreMissingAttributesFunction = new IgnoreMissingAttributesFunction(this);
     endTagDerivFunction = new EndTagDerivFunction(this);
@@ -73,12 +127,105 @@ public class ValidatorPatternBuilder extends PatternBuilder {
   PatternMemo getPatternMemo(Pattern p) {
     PatternMemo memo = patternMemoMap.get(p);
     if (memo == null) {
-      memo = new PatternMemo(p, this);
+      memo = new PatternMemo(p, this, seed == null ? null : seed.findPatternMemo(p));
       patternMemoMap.put(p, memo);
     }
     return memo;
   }
 
+  private PatternMemo findPatternMemo(Pattern p) {
+    for (ValidatorPatternBuilder builder = this; builder != null; builder = builder.seed) {
+      PatternMemo memo = builder.patternMemoMap.get(p);
+      if (memo != null)
+        return memo;
+    }
+    return null;
+  }
+
+  /**
+   * Returns statistics of the work done by this builder, and by the matchers that use it, since the last
+   * call or since this builder was created, and starts counting again.  The statistics are, in order:
+   * <dl>
+   * <dt>patterns, memos</dt><dd>the numbers of patterns interned and of their memos created</dd>
+   * <dt>startTagOpenDerivHits, startTagOpenDerivMisses, startAttributeDerivHits, startAttributeDerivMisses,
+   * endTagDerivHits, endTagDerivMisses</dt>
+   * <dd>the numbers of derivatives of each kind found in, and added to, the memos</dd>
+   * <dt>dataDerivs, dataDerivNanos</dt>
+   * <dd>the number of derivatives with respect to text, which check it against datatypes, and the
+   * nanoseconds spent computing them</dd>
+   * <dt>recoveryDerivs</dt><dd>the number of derivatives taken to recover from errors</dd>
+   * <dt>maxElementDepth</dt><dd>the greatest depth of element nesting</dd>
+   * </dl>
+   *
+   * @return a Map from the name of each statistic to its value, or null if this builder was not
+   * created to collect statistics
+   */
+  public Map<String, Long> takeStatistics() {
+    if (statistics == null)
+      return null;
+    return statistics.take(interner.size(), patternMemoMap.size());
+  }
+
+  /**
+   * Returns a new builder that starts with the memos of this builder.  The memos are not copied: the
+   * new builder looks up a derivative in them when it does not have it itself.  So this builder must not
+   * be used, except by further calls of this method, for as long as the new builder is being used;
+   * several threads may then use builders copied from it at the same time.
+   *
+   * @param canonical true if choices and interleaves are to be built in a canonical form
+   * @param statistics true if statistics are to be collected
+   */
+  public ValidatorPatternBuilder copy(boolean canonical, boolean statistics) {
+    return new ValidatorPatternBuilder(this, canonical, statistics, this);
+  }
+
+  /**
+   * Returns the number of derivatives that have been computed and memoized by this builder; this
+   * changes whenever a derivative is added to the memos.
+   */
+  public int getMemoizedDerivativeCount() {
+    return memoizedDerivativeCount;
+  }
+
+  void memoizedDerivative() {
+    memoizedDerivativeCount++;
+  }
+
+  /**
+   * Writes a snapshot of the memos of this builder, with the derivatives memoized in them, for use by
+   * <code>readMemos</code>.  If this builder was copied, the snapshot includes the memos of the builder
+   * from which it was copied.
+   *
+   * @param start the start pattern of the schema for which this builder is used
+   * @param out the OutputStream to which to write the snapshot; it is flushed but not closed
+   */
+  public void writeMemos(Pattern start, OutputStream out) throws IOException {
+    List<PatternMemo> memos = new ArrayList<PatternMemo>();
+    for (ValidatorPatternBuilder builder = this; builder != null; builder = builder.seed)
+      memos.addAll(builder.patternMemoMap.values());
+    PatternMemoSnapshot.write(this, start, memos, out);
+  }
+
+  /**
+   * Reads a snapshot written by <code>writeMemos</code>, so that this builder starts with the memos in it.
+   * The memos read are not counted in the statistics.
+   *
+   * @param start the start pattern of the schema for which this builder is used, which must be the
+   * same as that of the builder that wrote the snapshot
+   * @param in the InputStream from which to read the snapshot, which is read to the end
+   * @throws IOException if the snapshot cannot be read, is not valid or is for a different schema;
+   * nothing is added to this builder
+   */
+  public void readMemos(Pattern start, InputStream in) throws IOException {
+    PatternMemoSnapshot.read(this, start, in);
+    if (statistics != null)
+      statistics.take(interner.size(), patternMemoMap.size());
+  }
+
+  DerivativeStatistics getDerivativeStatistics() {
+    return statistics;
+  }
+
   PatternFunction<Pattern> getEndAttributesFunction() {
     return endAttributesFunction;
   }
@@ -163,6 +310,105 @@ public class ValidatorPatternBuilder extends PatternBuilder {
       if (ap1.getOperand2() == ap2.getOperand2())
         return makeAfter(makeChoice(ap1.getOperand1(), ap2.getOperand1()), ap1.getOperand2());
     }
+    if (patternIdMap != null)
+      return makeCanonical(p1, p2, true);
     return super.makeChoice(p1, p2);
   }
+
+  Pattern makeInterleave(Pattern p1, Pattern p2) {
+    if (patternIdMap == null
+        || p1 == makeEmpty()
+        || p2 == makeEmpty()
+        || p1 == notAllowed
+        || p2 == notAllowed)
+      return super.makeInterleave(p1, p2);
+    return makeCanonical(p1, p2, false);
+  }
+
+  /**
+   * Makes a choice or interleave in canonical form.  The operands of a choice (or interleave) are
+   * the patterns that remain when nested choices (or interleaves) are flattened; they are sorted by
+   * an id that this builder gives each pattern when it first sees it and, for a choice, repetitions are
+   * removed.  The first pattern made or seen with a list of operands is used for all patterns with
+   * that list, so patterns from the schema keep their own shape.
+   */
+  private Pattern makeCanonical(Pattern p1, Pattern p2, boolean choice) {
+    List<Pattern> operands1 = getOperands(p1, choice);
+    List<Pattern> operands2 = getOperands(p2, choice);
+    List<Pattern> operands = mergeOperands(operands1, operands2, choice);
+    if (operands.size() == 1)
+      return operands.get(0);
+    Map<List<Pattern>, Pattern> canonicalMap = choice ? canonicalChoiceMap : canonicalInterleaveMap;
+    Pattern p = canonicalMap.get(operands);
+    if (p == null) {
+      if (operands.size() == operands1.size() + operands2.size())
+        p = interner.intern(choice ? new ChoicePattern(p1, p2) : new InterleavePattern(p1, p2));
+      else {
+        int n = operands.size();
+        p = operands.get(n - 1);
+        for (int i = n - 2; i >= 0; i--)
+          p = interner.intern(choice
+                              ? new ChoicePattern(operands.get(i), p)
+                              : new InterleavePattern(operands.get(i), p));
+      }
+      canonicalMap.put(operands, p);
+      operandsMap.put(p, operands);
+    }
+    return p;
+  }
+
+  private List<Pattern> getOperands(Pattern p, boolean choice) {
+    if (!(choice ? p instanceof ChoicePattern : p instanceof InterleavePattern)) {
+      if (!patternIdMap.containsKey(p))
+        patternIdMap.put(p, patternIdMap.size());
+      return Collections.singletonList(p);
+    }
+    List<Pattern> operands = operandsMap.get(p);
+    if (operands == null) {
+      BinaryPattern bp = (BinaryPattern)p;
+      operands = mergeOperands(getOperands(bp.p1, choice), getOperands(bp.p2, choice), choice);
+      operandsMap.put(p, operands);
+      Map<List<Pattern>, Pattern> canonicalMap = choice ? canonicalChoiceMap : canonicalInterleaveMap;
+      if (operands.size() > 1 && !canonicalMap.containsKey(operands))
+        canonicalMap.put(operands, p);
+    }
+    return operands;
+  }
+
+  private List<Pattern> mergeOperands(List<Pattern> operands1, List<Pattern> operands2, boolean choice) {
+    int n1 = operands1.size();
+    int n2 = operands2.size();
+    List<Pattern> operands = new ArrayList<Pattern>(n1 + n2);
+    boolean nullable = false;
+    for (int i1 = 0, i2 = 0; i1 < n1 || i2 < n2;) {
+      Pattern p;
+      if (i2 == n2)
+        p = operands1.get(i1++);
+      else if (i1 == n1)
+        p = operands2.get(i2++);
+      else {
+        Pattern q1 = operands1.get(i1);
+        Pattern q2 = operands2.get(i2);
+        int id1 = patternIdMap.get(q1);
+        int id2 = patternIdMap.get(q2);
+        if (id1 <= id2) {
+          p = q1;
+          i1++;
+          if (id1 == id2 && choice)
+            i2++;
+        }
+        else {
+          p = q2;
+          i2++;
+        }
+      }
+      if (p.isNullable() && p != makeEmpty())
+        nullable = true;
+      operands.add(p);
+    }
+    // empty is redundant in a choice with another nullable alternative
+    if (choice && nullable)
+      operands.remove(makeEmpty());
+    return operands;
+  }
 }
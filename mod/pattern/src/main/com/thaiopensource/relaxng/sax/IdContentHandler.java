@@ -2,7 +2,6 @@ package com.thaiopensource.relaxng.sax;
 
 import com.thaiopensource.relaxng.pattern.IdSoundnessChecker;
 import com.thaiopensource.relaxng.pattern.IdTypeMap;
-import com.thaiopensource.xml.util.Name;
 import org.xml.sax.Attributes;
 import org.xml.sax.ContentHandler;
 import org.xml.sax.ErrorHandler;
@@ -14,7 +13,15 @@ public class IdContentHandler implements ContentHandler {
   private Locator locator;
 
   public IdContentHandler(IdTypeMap idTypeMap, ErrorHandler eh) {
-    this.checker = new IdSoundnessChecker(idTypeMap, eh);
+    this(idTypeMap, eh, 0);
+  }
+
+  /**
+   * @param spillThreshold the number of IDREFs without a matching ID to hold in memory; 0 means no limit
+   * @see IdSoundnessChecker#IdSoundnessChecker(IdTypeMap, ErrorHandler, int)
+   */
+  public IdContentHandler(IdTypeMap idTypeMap, ErrorHandler eh, int spillThreshold) {
+    this.checker = new IdSoundnessChecker(idTypeMap, eh, spillThreshold);
   }
 
   public void reset() {
@@ -46,13 +53,10 @@ public class IdContentHandler implements ContentHandler {
 
   public void startElement(String namespaceUri, String localName, String qName, Attributes attributes)
           throws SAXException {
-    Name elementName = new Name(namespaceUri, localName);
     int len = attributes.getLength();
-    for (int i = 0; i < len; i++) {
-      Name attributeName = new Name(attributes.getURI(i), attributes.getLocalName(i));
-      String value = attributes.getValue(i);
-      checker.attribute(elementName, attributeName, value, locator);
-    }
+    for (int i = 0; i < len; i++)
+      checker.attribute(namespaceUri, localName, attributes.getURI(i), attributes.getLocalName(i),
+                        attributes.getValue(i), locator);
   }
 
   public void endElement(String s, String s1, String s2) throws SAXException {
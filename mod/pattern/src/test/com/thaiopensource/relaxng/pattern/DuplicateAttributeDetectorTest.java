@@ -0,0 +1,68 @@
+package com.thaiopensource.relaxng.pattern;
+
+import com.thaiopensource.xml.util.Name;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+/**
+ * Test DuplicateAttributeDetector and Alphabet.
+ */
+public class DuplicateAttributeDetectorTest {
+  private static final NameClass A = new SimpleNameClass(new Name("", "a"));
+  private static final NameClass B = new SimpleNameClass(new Name("", "b"));
+  private static final NameClass C = new SimpleNameClass(new Name("urn:x", "c"));
+  private static final NameClass NS_X = new NsNameClass("urn:x");
+
+  @Test
+  public void testChoice() throws RestrictionViolationException {
+    DuplicateAttributeDetector dad = new DuplicateAttributeDetector();
+    dad.startChoice();
+    dad.addAttribute(A);
+    dad.alternative();
+    dad.startChoice();
+    dad.addAttribute(A);
+    dad.alternative();
+    dad.addAttribute(new ChoiceNameClass(B, A));
+    dad.endChoice();
+    dad.endChoice();
+    dad.addAttribute(C);
+    assertDuplicate(dad, B, "duplicate_attribute_name");
+  }
+
+  @Test
+  public void testNsName() throws RestrictionViolationException {
+    DuplicateAttributeDetector dad = new DuplicateAttributeDetector();
+    dad.addAttribute(A);
+    dad.addAttribute(NS_X);
+    assertDuplicate(dad, C, "duplicate_attribute_name");
+    assertDuplicate(dad, new NsNameClass("urn:x"), "duplicate_attribute_ns");
+  }
+
+  private static void assertDuplicate(DuplicateAttributeDetector dad, NameClass nc, String key) {
+    try {
+      dad.addAttribute(nc);
+      Assert.fail("no duplicate found");
+    }
+    catch (RestrictionViolationException e) {
+      Assert.assertEquals(e.getMessageId(), key);
+    }
+  }
+
+  @Test
+  public void testAlphabet() throws RestrictionViolationException {
+    Alphabet a1 = new Alphabet();
+    a1.addElement(A);
+    a1.addElement(NS_X);
+    Alphabet a2 = new Alphabet();
+    a2.addElement(B);
+    a1.checkOverlap(a2);
+    a2.addElement(C);
+    try {
+      a1.checkOverlap(a2);
+      Assert.fail("no overlap found");
+    }
+    catch (RestrictionViolationException e) {
+      Assert.assertEquals(e.getMessageId(), "interleave_element_overlap_name");
+    }
+  }
+}
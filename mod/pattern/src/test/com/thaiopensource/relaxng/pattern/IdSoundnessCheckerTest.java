@@ -0,0 +1,108 @@
+package com.thaiopensource.relaxng.pattern;
+
+import com.thaiopensource.xml.util.Name;
+import org.relaxng.datatype.Datatype;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+import org.xml.sax.ErrorHandler;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+import org.xml.sax.helpers.LocatorImpl;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Test IdSoundnessChecker.
+ */
+public class IdSoundnessCheckerTest {
+  private static final StringIdTypeMap ID_TYPE_MAP = new StringIdTypeMap() {
+    public int getIdType(Name elementName, Name attributeName) {
+      return getIdType(elementName.getNamespaceUri(), elementName.getLocalName(),
+                       attributeName.getNamespaceUri(), attributeName.getLocalName());
+    }
+
+    public int getIdType(String elementNamespaceUri, String elementLocalName,
+                         String attributeNamespaceUri, String attributeLocalName) {
+      if (attributeLocalName.equals("id"))
+        return Datatype.ID_TYPE_ID;
+      if (attributeLocalName.equals("ref"))
+        return Datatype.ID_TYPE_IDREF;
+      if (attributeLocalName.equals("refs"))
+        return Datatype.ID_TYPE_IDREFS;
+      return Datatype.ID_TYPE_NULL;
+    }
+  };
+
+  // a map that can only be queried with Names
+  private static final IdTypeMap NAME_ID_TYPE_MAP = new IdTypeMap() {
+    public int getIdType(Name elementName, Name attributeName) {
+      return ID_TYPE_MAP.getIdType(elementName, attributeName);
+    }
+  };
+
+  static private class ErrorList implements ErrorHandler {
+    final List<String> errors = new ArrayList<String>();
+
+    public void warning(SAXParseException exception) {
+    }
+
+    public void error(SAXParseException exception) {
+      errors.add(exception.getLineNumber() + ": " + exception.getMessage());
+    }
+
+    public void fatalError(SAXParseException exception) {
+      error(exception);
+    }
+  }
+
+  @DataProvider(name = "checkers")
+  Object[][] checkers() {
+    return new Object[][] { { ID_TYPE_MAP, 0 }, { ID_TYPE_MAP, 1 }, { ID_TYPE_MAP, 7 }, { NAME_ID_TYPE_MAP, 0 } };
+  }
+
+  @Test(dataProvider = "checkers")
+  public void testErrors(IdTypeMap idTypeMap, int spillThreshold) throws SAXException {
+    ErrorList eh = new ErrorList();
+    IdSoundnessChecker checker = new IdSoundnessChecker(idTypeMap, eh, spillThreshold);
+    for (int pass = 0; pass < 2; pass++) {
+      eh.errors.clear();
+      checker.reset();
+      LocatorImpl loc = new LocatorImpl();
+      // enough forward references to be spilled, and enough tokens to rehash the table after spilling
+      for (int i = 0; i < 500; i++) {
+        loc.setLineNumber(i + 1);
+        attribute(checker, "ref", "x" + i, loc);
+      }
+      for (int i = 0; i < 500; i++) {
+        loc.setLineNumber(1000 + i);
+        if (i != 42 && i != 314)
+          attribute(checker, "id", " x" + i + "\t", loc);
+      }
+      loc.setLineNumber(2000);
+      attribute(checker, "refs", "x1  x42\nx2", loc);
+      loc.setLineNumber(2001);
+      attribute(checker, "id", "x7", loc);
+      loc.setLineNumber(2002);
+      attribute(checker, "id", "x7 x8", loc);
+      loc.setLineNumber(2003);
+      attribute(checker, "refs", " ", loc);
+      checker.endDocument();
+      List<String> expected = new ArrayList<String>();
+      expected.add("2001: ID \"x7\" has already been defined");
+      expected.add("1007: first occurrence of ID \"x7\"");
+      expected.add("2002: value of attribute of type ID contained multiple tokens");
+      expected.add("2003: value of attribute of type IDREFS contained no tokens");
+      expected.add("43: IDREF \"x42\" without matching ID");
+      expected.add("315: IDREF \"x314\" without matching ID");
+      expected.add("2000: IDREF \"x42\" without matching ID");
+      Assert.assertEquals(eh.errors, expected);
+    }
+  }
+
+  private static void attribute(IdSoundnessChecker checker, String name, String value, LocatorImpl loc)
+          throws SAXException {
+    checker.attribute("", "e", "", name, value, loc);
+  }
+}
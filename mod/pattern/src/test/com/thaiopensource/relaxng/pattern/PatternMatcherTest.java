@@ -10,6 +10,9 @@ import org.xml.sax.Locator;
 import org.xml.sax.SAXException;
 import org.xml.sax.helpers.LocatorImpl;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
@@ -120,4 +123,87 @@ public class PatternMatcherTest extends SchemaPatternBuilder {
     Assert.assertEquals(matcher.getErrorMessage(), 
         "element \"root\" missing required attribute \"ns:foo\" (with xmlns:ns=\"http://example.com/\")");
   }
+  @Test
+  public void testStatistics() {
+    final Name child = new Name("", "child");
+    final Name att = new Name("", "att");
+    final Locator loc = new LocatorImpl();
+    Pattern childPattern = makeElement(new SimpleNameClass(child),
+                                       makeAttribute(new SimpleNameClass(att), makeText(), loc),
+                                       loc);
+    ValidatorPatternBuilder builder = new ValidatorPatternBuilder(this, false, true);
+    Matcher matcher = new PatternMatcher(makeElement(new SimpleNameClass(root), makeOneOrMore(childPattern), loc),
+                                         builder);
+    Context context = new Context();
+    Assert.assertTrue(matcher.matchStartDocument());
+    Assert.assertTrue(matcher.matchStartTagOpen(root, "", context));
+    Assert.assertTrue(matcher.matchStartTagClose(root, "", context));
+    for (int i = 0; i < 2; i++) {
+      Assert.assertTrue(matcher.matchStartTagOpen(child, "", context));
+      Assert.assertTrue(matcher.matchAttributeName(att, "", context));
+      Assert.assertTrue(matcher.matchAttributeValue("x", att, "", context));
+      Assert.assertTrue(matcher.matchStartTagClose(child, "", context));
+      Assert.assertTrue(matcher.matchEndTag(child, "", context));
+    }
+    Assert.assertTrue(matcher.matchEndTag(root, "", context));
+    Assert.assertTrue(matcher.matchEndDocument());
+    Map<String, Long> statistics = builder.takeStatistics();
+    // the second child element repeats the derivatives of the first
+    Assert.assertTrue(statistics.get("startTagOpenDerivHits") > 0);
+    Assert.assertTrue(statistics.get("startTagOpenDerivMisses") > 0);
+    Assert.assertTrue(statistics.get("dataDerivs") >= 2);
+    Assert.assertEquals(statistics.get("maxElementDepth"), (Long)2L);
+    Assert.assertEquals(builder.takeStatistics().get("dataDerivs"), (Long)0L);
+  }
+
+  @Test
+  public void testMemoSnapshot() throws IOException {
+    final Name child = new Name("", "child");
+    final Name att = new Name("", "att");
+    final Locator loc = new LocatorImpl();
+    Pattern start = makeElement(new SimpleNameClass(root),
+                                makeOneOrMore(makeElement(new SimpleNameClass(child),
+                                                          makeAttribute(new SimpleNameClass(att), makeText(), loc),
+                                                          loc)),
+                                loc);
+    ValidatorPatternBuilder trained = new ValidatorPatternBuilder(this);
+    matchChildren(start, trained, child, att);
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    trained.writeMemos(start, out);
+    ValidatorPatternBuilder seed = new ValidatorPatternBuilder(this);
+    seed.readMemos(start, new ByteArrayInputStream(out.toByteArray()));
+    // a copy finds all the derivatives in the memos read
+    ValidatorPatternBuilder builder = seed.copy(false, true);
+    matchChildren(start, builder, child, att);
+    Map<String, Long> statistics = builder.takeStatistics();
+    Assert.assertEquals(statistics.get("startTagOpenDerivMisses"), (Long)0L);
+    Assert.assertEquals(statistics.get("startAttributeDerivMisses"), (Long)0L);
+    Assert.assertEquals(statistics.get("endTagDerivMisses"), (Long)0L);
+    Assert.assertEquals(builder.getMemoizedDerivativeCount(), 0);
+    // a snapshot for a different schema is rejected
+    try {
+      new ValidatorPatternBuilder(this).readMemos(makeElement(new SimpleNameClass(child), makeEmpty(), loc),
+                                                  new ByteArrayInputStream(out.toByteArray()));
+      Assert.fail();
+    }
+    catch (IOException e) {
+    }
+  }
+
+  private void matchChildren(Pattern start, ValidatorPatternBuilder builder, Name child, Name att) {
+    Matcher matcher = new PatternMatcher(start, builder);
+    Context context = new Context();
+    Assert.assertTrue(matcher.matchStartDocument());
+    Assert.assertTrue(matcher.matchStartTagOpen(root, "", context));
+    Assert.assertTrue(matcher.matchStartTagClose(root, "", context));
+    for (int i = 0; i < 2; i++) {
+      Assert.assertTrue(matcher.matchStartTagOpen(child, "", context));
+      Assert.assertTrue(matcher.matchAttributeName(att, "", context));
+      Assert.assertTrue(matcher.matchAttributeValue("x", att, "", context));
+      Assert.assertTrue(matcher.matchStartTagClose(child, "", context));
+      Assert.assertTrue(matcher.matchEndTag(child, "", context));
+    }
+    Assert.assertTrue(matcher.matchEndTag(root, "", context));
+    Assert.assertTrue(matcher.matchEndDocument());
+  }
 }
@@ -0,0 +1,169 @@
+package com.thaiopensource.relaxng.pattern;
+
+import com.thaiopensource.relaxng.match.Matcher;
+import com.thaiopensource.relaxng.sax.Context;
+import com.thaiopensource.xml.util.Name;
+import org.relaxng.datatype.Datatype;
+import org.relaxng.datatype.DatatypeException;
+import org.relaxng.datatype.DatatypeStreamingValidator;
+import org.relaxng.datatype.ValidationContext;
+import org.relaxng.datatype.helpers.StreamingValidatorImpl;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import org.xml.sax.Locator;
+import org.xml.sax.helpers.LocatorImpl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Test that a memo snapshot is used only with the schema for which it was written, and that a damaged
+ * snapshot is rejected without changing the builder.
+ */
+public class PatternMemoSnapshotTest {
+  private static final Name ROOT = new Name("", "root");
+  private static final Name CHILD = new Name("", "child");
+  private static final Name ATT = new Name("", "att");
+  private static final Name DATATYPE_NAME = new Name("urn:test", "qname");
+  // the offset of the number of nodes
+  private static final int NODES_OFFSET = 4 + 4 + 4 + 20;
+
+  private final SchemaPatternBuilder spb = new SchemaPatternBuilder();
+  private final Locator loc = new LocatorImpl();
+
+  /**
+   * A datatype whose values are the strings with a namespace URI in place of their prefix.
+   */
+  static class QNameDatatype implements Datatype {
+    public boolean isValid(String str, ValidationContext vc) {
+      return true;
+    }
+
+    public void checkValid(String str, ValidationContext vc) throws DatatypeException {
+    }
+
+    public DatatypeStreamingValidator createStreamingValidator(ValidationContext vc) {
+      return new StreamingValidatorImpl(this, vc);
+    }
+
+    public Object createValue(String str, ValidationContext vc) {
+      int colon = str.indexOf(':');
+      return "{" + vc.resolveNamespacePrefix(str.substring(0, colon)) + "}" + str.substring(colon + 1);
+    }
+
+    public boolean sameValue(Object value1, Object value2) {
+      return value1.equals(value2);
+    }
+
+    public int valueHashCode(Object value) {
+      return value.hashCode();
+    }
+
+    public int getIdType() {
+      return ID_TYPE_NULL;
+    }
+
+    public boolean isContextDependent() {
+      return true;
+    }
+  }
+
+  private Pattern makeSchema(Pattern value) {
+    return spb.makeElement(new SimpleNameClass(ROOT),
+                           spb.makeOneOrMore(spb.makeElement(new SimpleNameClass(CHILD),
+                                                             spb.makeAttribute(new SimpleNameClass(ATT), value, loc),
+                                                             loc)),
+                           loc);
+  }
+
+  private Pattern makeValue(String ns) {
+    return spb.makeValue(new QNameDatatype(), DATATYPE_NAME, "{" + ns + "}x", "p:x");
+  }
+
+  private byte[] train(Pattern start) throws IOException {
+    ValidatorPatternBuilder builder = new ValidatorPatternBuilder(spb);
+    Matcher matcher = new PatternMatcher(start, builder);
+    Context context = new Context();
+    Assert.assertTrue(matcher.matchStartDocument());
+    Assert.assertTrue(matcher.matchStartTagOpen(ROOT, "", context));
+    Assert.assertTrue(matcher.matchStartTagClose(ROOT, "", context));
+    for (int i = 0; i < 2; i++) {
+      Assert.assertTrue(matcher.matchStartTagOpen(CHILD, "", context));
+      Assert.assertTrue(matcher.matchAttributeName(ATT, "", context));
+      matcher.matchAttributeValue("p:x", ATT, "", context);
+      matcher.matchStartTagClose(CHILD, "", context);
+      matcher.matchEndTag(CHILD, "", context);
+    }
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    builder.writeMemos(start, out);
+    return out.toByteArray();
+  }
+
+  @Test
+  public void testValueContext() throws IOException {
+    Pattern start = makeSchema(makeValue("urn:a"));
+    byte[] snapshot = train(start);
+    new ValidatorPatternBuilder(spb).readMemos(start, new ByteArrayInputStream(snapshot));
+    // the same schema, except that the prefix of the value is bound to a different namespace
+    try {
+      new ValidatorPatternBuilder(spb).readMemos(makeSchema(makeValue("urn:b")), new ByteArrayInputStream(snapshot));
+      Assert.fail();
+    }
+    catch (IOException e) {
+      Assert.assertEquals(e.getMessage(), SchemaBuilderImpl.localizer.message("memo_snapshot_mismatch"));
+    }
+  }
+
+  @Test
+  public void testTruncated() throws IOException {
+    Pattern start = makeSchema(spb.makeText());
+    byte[] snapshot = train(start);
+    for (int length = 0; length < snapshot.length; length++)
+      assertInvalid(start, Arrays.copyOf(snapshot, length));
+    // and with data after the end
+    assertInvalid(start, Arrays.copyOf(snapshot, snapshot.length + 1));
+  }
+
+  @Test
+  public void testLargeCount() throws IOException {
+    Pattern start = makeSchema(spb.makeText());
+    byte[] snapshot = train(start);
+    for (int i = 0; i < 4; i++)
+      snapshot[NODES_OFFSET + i] = (byte)(i == 0 ? 0x7F : 0xFF);
+    assertInvalid(start, snapshot);
+  }
+
+  @Test
+  public void testDamaged() throws IOException {
+    Pattern start = makeSchema(spb.makeText());
+    byte[] snapshot = train(start);
+    for (int i = NODES_OFFSET; i < snapshot.length; i++) {
+      for (int b : new int[] { 0x00, 0x01, 0x7F, 0x80, 0xFF }) {
+        byte[] damaged = snapshot.clone();
+        damaged[i] = (byte)b;
+        ValidatorPatternBuilder builder = new ValidatorPatternBuilder(spb);
+        int size = builder.interner.size();
+        try {
+          builder.readMemos(start, new ByteArrayInputStream(damaged));
+        }
+        catch (IOException e) {
+          Assert.assertEquals(builder.interner.size(), size);
+        }
+      }
+    }
+  }
+
+  private void assertInvalid(Pattern start, byte[] snapshot) {
+    ValidatorPatternBuilder builder = new ValidatorPatternBuilder(spb);
+    int size = builder.interner.size();
+    try {
+      builder.readMemos(start, new ByteArrayInputStream(snapshot));
+      Assert.fail(String.valueOf(snapshot.length));
+    }
+    catch (IOException e) {
+      Assert.assertEquals(builder.interner.size(), size);
+    }
+  }
+}
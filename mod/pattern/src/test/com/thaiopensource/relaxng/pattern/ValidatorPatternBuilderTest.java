@@ -0,0 +1,62 @@
+package com.thaiopensource.relaxng.pattern;
+
+import com.thaiopensource.xml.util.Name;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import org.xml.sax.Locator;
+import org.xml.sax.helpers.LocatorImpl;
+
+/**
+ * Test canonical choices and interleaves in ValidatorPatternBuilder.
+ */
+public class ValidatorPatternBuilderTest {
+  private final SchemaPatternBuilder spb = new SchemaPatternBuilder();
+  private final Locator loc = new LocatorImpl();
+  private final Pattern a = element("a");
+  private final Pattern b = element("b");
+  private final Pattern c = element("c");
+
+  private Pattern element(String localName) {
+    return spb.makeElement(new SimpleNameClass(new Name("", localName)), spb.makeEmpty(), loc);
+  }
+
+  @Test
+  public void testChoiceOrder() {
+    ValidatorPatternBuilder vpb = new ValidatorPatternBuilder(spb, true);
+    Assert.assertSame(vpb.makeChoice(vpb.makeChoice(a, b), c),
+                      vpb.makeChoice(c, vpb.makeChoice(b, a)));
+  }
+
+  @Test
+  public void testChoiceRepetition() {
+    ValidatorPatternBuilder vpb = new ValidatorPatternBuilder(spb, true);
+    Pattern ab = vpb.makeChoice(a, b);
+    Assert.assertSame(vpb.makeChoice(vpb.makeChoice(a, c), vpb.makeChoice(c, b)),
+                      vpb.makeChoice(ab, c));
+    Assert.assertSame(vpb.makeChoice(vpb.makeOptional(a), vpb.makeChoice(vpb.makeEmpty(), b)),
+                      vpb.makeOptional(ab));
+  }
+
+  @Test
+  public void testSchemaPatternKept() {
+    Pattern ba = spb.makeChoice(b, a);
+    ValidatorPatternBuilder vpb = new ValidatorPatternBuilder(spb, true);
+    Assert.assertSame(vpb.makeChoice(vpb.makeChoice(a, c), vpb.makeChoice(c, b)),
+                      vpb.makeChoice(ba, c));
+    Assert.assertSame(vpb.makeChoice(a, vpb.makeChoice(b, ba)), ba);
+  }
+
+  @Test
+  public void testInterleave() {
+    ValidatorPatternBuilder vpb = new ValidatorPatternBuilder(spb, true);
+    Assert.assertSame(vpb.makeInterleave(vpb.makeInterleave(a, b), c),
+                      vpb.makeInterleave(c, vpb.makeInterleave(b, a)));
+    Assert.assertNotSame(vpb.makeInterleave(a, a), a);
+  }
+
+  @Test
+  public void testNotCanonical() {
+    ValidatorPatternBuilder vpb = new ValidatorPatternBuilder(spb);
+    Assert.assertNotSame(vpb.makeChoice(a, b), vpb.makeChoice(b, a));
+  }
+}
@@ -0,0 +1,128 @@
+package com.thaiopensource.relaxng.parse;
+
+import com.thaiopensource.resolver.BasicResolver;
+import com.thaiopensource.resolver.Identifier;
+import com.thaiopensource.resolver.Input;
+import com.thaiopensource.resolver.Resolver;
+import com.thaiopensource.resolver.ResolverException;
+import com.thaiopensource.util.ThreadPool;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+/**
+ * Reads the documents that a schema refers to in advance, so that the latency of reading
+ * each of them is not added to the time taken to load the schema.  When a parser has a document, it
+ * scans it for the URIs of the documents it includes or references and calls <code>prefetch</code>
+ * for each of them; each is then resolved and read into memory, using at most four threads of the
+ * shared ThreadPool.
+ * When the parser needs one of these documents, it gets the content with <code>take</code>.
+ * Prefetching is only a hint: if a document was not prefetched or could not be read, the parser
+ * reads it as usual, and reports any error.
+ * <p>
+ * The Resolver's <code>open</code> method is called by the threads of the pool, so it must allow
+ * being called by several threads at the same time.
+ */
+public class Prefetcher {
+  private static final int N_THREADS = 4;
+  private static final Executor executor = ThreadPool.createLimitedExecutor(N_THREADS);
+
+  private final Resolver resolver;
+  private final Map<String, Future<Input>> map = new HashMap<String, Future<Input>>();
+
+  public Prefetcher(Resolver resolver) {
+    this.resolver = resolver;
+  }
+
+  /**
+   * Starts reading the document with the specified identifier, unless it has already been started.
+   * The identifier is resolved by the calling thread.
+   */
+  public void prefetch(Identifier id) {
+    final Input input = new Input();
+    try {
+      resolver.resolve(id, input);
+      if (!input.isResolved())
+        input.setUri(BasicResolver.resolveUri(id));
+    }
+    catch (ResolverException e) {
+      return;
+    }
+    catch (IOException e) {
+      return;
+    }
+    String uri = input.getUri();
+    if (uri == null)
+      return;
+    synchronized (map) {
+      if (map.containsKey(uri))
+        return;
+      FutureTask<Input> task = new FutureTask<Input>(new Callable<Input>() {
+        public Input call() throws IOException, ResolverException {
+          return read(input);
+        }
+      });
+      map.put(uri, task);
+      executor.execute(task);
+    }
+  }
+
+  /**
+   * Returns an Input with a byte stream of the content of the document with the specified URI,
+   * waiting if it is still being read, or null if the document has not been prefetched or could not be read.
+   * The document is forgotten, so a second call with the same URI returns null.
+   */
+  public Input take(String uri) {
+    Future<Input> future;
+    synchronized (map) {
+      future = map.remove(uri);
+    }
+    if (future == null)
+      return null;
+    try {
+      return future.get();
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return null;
+    }
+    catch (ExecutionException e) {
+      return null;
+    }
+  }
+
+  private Input read(Input input) throws IOException, ResolverException {
+    resolver.open(input);
+    InputStream in = input.getByteStream();
+    if (in == null) {
+      Reader reader = input.getCharacterStream();
+      if (reader != null)
+        reader.close();
+      return null;
+    }
+    ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    try {
+      byte[] buf = new byte[8192];
+      for (int n; (n = in.read(buf, 0, buf.length)) > 0;)
+        buffer.write(buf, 0, n);
+    }
+    finally {
+      in.close();
+    }
+    Input result = new Input();
+    result.setUri(input.getUri());
+    result.setEncoding(input.getEncoding());
+    result.setByteStream(new ByteArrayInputStream(buffer.toByteArray()));
+    return result;
+  }
+}
@@ -5,6 +5,7 @@ import com.thaiopensource.relaxng.parse.BuildException;
 import com.thaiopensource.relaxng.parse.CommentList;
 import com.thaiopensource.relaxng.parse.IllegalSchemaException;
 import com.thaiopensource.relaxng.parse.IncludedGrammar;
+import com.thaiopensource.relaxng.parse.Prefetcher;
 import com.thaiopensource.relaxng.parse.SchemaBuilder;
 import com.thaiopensource.relaxng.parse.Scope;
 import com.thaiopensource.relaxng.parse.SubParseable;
@@ -13,27 +14,69 @@ import com.thaiopensource.resolver.Input;
 import com.thaiopensource.resolver.MediaTypedIdentifier;
 import com.thaiopensource.resolver.Resolver;
 import com.thaiopensource.resolver.ResolverException;
+import com.thaiopensource.util.Sha1;
 import com.thaiopensource.util.Uri;
 import com.thaiopensource.xml.util.EncodingMap;
+import com.thaiopensource.xml.util.ParsedDocumentCache;
 import org.xml.sax.ErrorHandler;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.PushbackInputStream;
 import java.io.Reader;
+import java.io.StringReader;
 
 public class CompactParseable<P, NC, L, EA, CL extends CommentList<L>, A extends Annotations<L, EA, CL>>
         implements SubParseable<P, NC, L, EA, CL, A> {
   private final Input in;
   private final Resolver resolver;
   private final ErrorHandler eh;
+  // holds the text of included and externally referenced documents
+  private final ParsedDocumentCache cache;
+  // null if documents are not prefetched
+  private final Prefetcher prefetcher;
+  // true if this document is to be looked up in and added to the cache; a document is scanned for
+  // documents to prefetch only when it is added to the cache
+  private final boolean cached;
   private static final String MEDIA_TYPE = "application/relax-ng-compact-syntax";
 
   public CompactParseable(Input in, Resolver resolver, ErrorHandler eh) {
+    this(in, resolver, eh, null);
+  }
+
+  /**
+   * Included and externally referenced documents are read and decoded only once.
+   *
+   * @param cache a cache that checks content, to be shared with other loads of schemas, or null
+   * to use a cache only for this load
+   */
+  public CompactParseable(Input in, Resolver resolver, ErrorHandler eh, ParsedDocumentCache cache) {
+    this(in, resolver, eh, cache, null);
+  }
+
+  /**
+   * @param cache a cache that checks content, to be shared with other loads of schemas, or null
+   * to use a cache only for this load
+   * @param prefetcher the Prefetcher to read included and externally referenced documents in advance,
+   * or null if they are not to be read in advance
+   */
+  public CompactParseable(Input in, Resolver resolver, ErrorHandler eh, ParsedDocumentCache cache,
+                          Prefetcher prefetcher) {
+    this(in, resolver, eh, cache == null ? new ParsedDocumentCache(false) : cache, prefetcher,
+         cache != null || prefetcher != null);
+  }
+
+  private CompactParseable(Input in, Resolver resolver, ErrorHandler eh, ParsedDocumentCache cache,
+                           Prefetcher prefetcher, boolean cached) {
     this.in = in;
     this.resolver = resolver;
     this.eh = eh;
+    this.cache = cache;
+    this.prefetcher = prefetcher;
+    this.cached = cached;
   }
 
   public P parse(SchemaBuilder<P, NC, L, EA, CL, A> sb, Scope<P, L, EA, CL, A> scope) throws BuildException, IllegalSchemaException {
@@ -52,7 +95,7 @@ public class CompactParseable<P, NC, L, EA, CL extends CommentList<L>, A extends
     catch (IOException e) {
       throw new BuildException(e);
     }
-    return new CompactParseable<P, NC, L, EA, CL, A>(input, resolver, eh);
+    return new CompactParseable<P, NC, L, EA, CL, A>(input, resolver, eh, cache, prefetcher, true);
   }
 
   public P parseAsInclude(SchemaBuilder<P, NC, L, EA, CL, A> sb, IncludedGrammar<P, L, EA, CL, A> g)
@@ -70,7 +113,77 @@ public class CompactParseable<P, NC, L, EA, CL extends CommentList<L>, A extends
   private static final String UTF8 = EncodingMap.getJavaName("UTF-8");
   private static final String UTF16 = EncodingMap.getJavaName("UTF-16");
 
+  /**
+   * Returns a Reader for the text of the document, taking the text from the cache if it is there.
+   */
   private Reader makeReader(Input in) throws BuildException {
+    String uri = in.getUri();
+    if (!cached || uri == null)
+      return openReader(in);
+    try {
+      String digest = null;
+      if (cache.getCheckContent()) {
+        prefetched(in);
+        resolver.open(in);
+        InputStream byteStream = in.getByteStream();
+        if (byteStream == null)
+          return openReader(in);
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        try {
+          byte[] buf = new byte[8192];
+          for (int n; (n = byteStream.read(buf, 0, buf.length)) > 0;)
+            buffer.write(buf, 0, n);
+        }
+        finally {
+          byteStream.close();
+        }
+        byte[] bytes = buffer.toByteArray();
+        digest = Sha1.digest(bytes, 0, bytes.length);
+        in.setByteStream(new ByteArrayInputStream(bytes));
+      }
+      Object cachedText = cache.get(uri, digest);
+      if (cachedText instanceof String)
+        return new StringReader((String)cachedText);
+      prefetched(in);
+      Reader reader = openReader(in);
+      StringBuilder buffer = new StringBuilder();
+      try {
+        char[] buf = new char[8192];
+        for (int n; (n = reader.read(buf, 0, buf.length)) > 0;)
+          buffer.append(buf, 0, n);
+      }
+      finally {
+        reader.close();
+      }
+      String text = buffer.toString();
+      if (prefetcher != null)
+        PrefetchScanner.scan(text, uri, MEDIA_TYPE, prefetcher);
+      cache.put(uri, digest, text);
+      return new StringReader(text);
+    }
+    catch (ResolverException e) {
+      throw BuildException.fromResolverException(e);
+    }
+    catch (IOException e) {
+      throw new BuildException(e);
+    }
+  }
+
+  /**
+   * Sets the byte stream of an Input that is not open to the prefetched content of its document, if any.
+   */
+  private void prefetched(Input in) {
+    if (prefetcher == null || in.isOpen())
+      return;
+    Input input = prefetcher.take(in.getUri());
+    if (input != null) {
+      in.setByteStream(input.getByteStream());
+      if (input.getEncoding() != null)
+        in.setEncoding(input.getEncoding());
+    }
+  }
+
+  private Reader openReader(Input in) throws BuildException {
     try {
       resolver.open(in);
       Reader reader = in.getCharacterStream();
@@ -0,0 +1,128 @@
+package com.thaiopensource.relaxng.parse.compact;
+
+import com.thaiopensource.relaxng.parse.Prefetcher;
+import com.thaiopensource.resolver.MediaTypedIdentifier;
+
+/**
+ * Finds the targets of the include and external keywords in the text of a document in the compact
+ * syntax, and passes them to a Prefetcher.  This is a quick scan rather than a parse: it knows only
+ * enough of the syntax to skip comments and literals, so it may occasionally find a target that is
+ * not really one, which costs only an unnecessary read.
+ */
+class PrefetchScanner {
+  private final String text;
+  private final String baseUri;
+  private final String mediaType;
+  private final Prefetcher prefetcher;
+  private int pos = 0;
+
+  private PrefetchScanner(String text, String baseUri, String mediaType, Prefetcher prefetcher) {
+    this.text = text;
+    this.baseUri = baseUri;
+    this.mediaType = mediaType;
+    this.prefetcher = prefetcher;
+  }
+
+  static void scan(String text, String baseUri, String mediaType, Prefetcher prefetcher) {
+    // escapes are replaced before the text is tokenized, so a scan of the raw text might be wrong
+    if (text.indexOf("\\x{") >= 0)
+      return;
+    new PrefetchScanner(text, baseUri, mediaType, prefetcher).scan();
+  }
+
+  private void scan() {
+    while (pos < text.length()) {
+      char c = text.charAt(pos);
+      if (c == '#')
+        skipComment();
+      else if (c == '"' || c == '\'')
+        skipLiteral();
+      else if (c == '\\') {
+        // an escaped identifier, which is never a keyword
+        pos++;
+        skipName();
+      }
+      else if (isNameChar(c)) {
+        int start = pos;
+        skipName();
+        int length = pos - start;
+        if ((length == 7 && text.startsWith("include", start))
+            || (length == 8 && text.startsWith("external", start))) {
+          String href = literal();
+          if (href != null)
+            prefetcher.prefetch(new MediaTypedIdentifier(href, baseUri, mediaType));
+        }
+      }
+      else
+        pos++;
+    }
+  }
+
+  /**
+   * Parses a literal, possibly concatenated from several literals with <code>~</code>, at the current
+   * position, and returns its value, or null if there is no literal there.
+   */
+  private String literal() {
+    StringBuilder buf = new StringBuilder();
+    for (;;) {
+      skipSpace();
+      if (pos >= text.length())
+        return null;
+      char c = text.charAt(pos);
+      if (c != '"' && c != '\'')
+        return null;
+      int start = pos;
+      if (!skipLiteral())
+        return null;
+      int quoteLength = text.startsWith(c == '"' ? "\"\"\"" : "'''", start) && pos - start >= 6 ? 3 : 1;
+      buf.append(text, start + quoteLength, pos - quoteLength);
+      skipSpace();
+      if (pos >= text.length() || text.charAt(pos) != '~')
+        return buf.toString();
+      pos++;
+    }
+  }
+
+  /**
+   * Skips the literal at the current position.  Returns false if it is not terminated.
+   */
+  private boolean skipLiteral() {
+    char c = text.charAt(pos);
+    String quote = String.valueOf(c);
+    if (text.startsWith(c == '"' ? "\"\"\"" : "'''", pos))
+      quote = text.substring(pos, pos + 3);
+    int end = text.indexOf(quote, pos + quote.length());
+    if (end < 0) {
+      pos = text.length();
+      return false;
+    }
+    pos = end + quote.length();
+    return true;
+  }
+
+  private void skipComment() {
+    while (pos < text.length() && text.charAt(pos) != '\n' && text.charAt(pos) != '\r')
+      pos++;
+  }
+
+  private void skipName() {
+    while (pos < text.length() && (isNameChar(text.charAt(pos)) || text.charAt(pos) == ':'))
+      pos++;
+  }
+
+  private void skipSpace() {
+    while (pos < text.length()) {
+      char c = text.charAt(pos);
+      if (c == '#')
+        skipComment();
+      else if (c == ' ' || c == '\t' || c == '\n' || c == '\r')
+        pos++;
+      else
+        break;
+    }
+  }
+
+  private static boolean isNameChar(char c) {
+    return Character.isLetterOrDigit(c) || c == '_' || c == '-' || c == '.';
+  }
+}
@@ -0,0 +1,42 @@
+package com.thaiopensource.relaxng.parse.sax;
+
+import com.thaiopensource.relaxng.parse.Prefetcher;
+import com.thaiopensource.resolver.xml.XMLDocumentIdentifier;
+import com.thaiopensource.xml.sax.XmlBaseHandler;
+import com.thaiopensource.xml.util.WellKnownNamespaces;
+import org.xml.sax.Attributes;
+import org.xml.sax.Locator;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Passes the targets of the include and externalRef elements of a document to a Prefetcher.
+ */
+class PrefetchHandler extends DefaultHandler {
+  private final Prefetcher prefetcher;
+  private final XmlBaseHandler xmlBaseHandler = new XmlBaseHandler();
+
+  PrefetchHandler(Prefetcher prefetcher) {
+    this.prefetcher = prefetcher;
+  }
+
+  public void setDocumentLocator(Locator locator) {
+    xmlBaseHandler.setLocator(locator);
+  }
+
+  public void startElement(String uri, String localName, String qName, Attributes attributes) {
+    xmlBaseHandler.startElement();
+    String xmlBase = attributes.getValue(WellKnownNamespaces.XML, "base");
+    if (xmlBase != null)
+      xmlBaseHandler.xmlBaseAttribute(xmlBase);
+    if (uri.equals(WellKnownNamespaces.RELAX_NG)
+        && (localName.equals("include") || localName.equals("externalRef"))) {
+      String href = attributes.getValue("", "href");
+      if (href != null)
+        prefetcher.prefetch(new XMLDocumentIdentifier(href, xmlBaseHandler.getBaseUri(), WellKnownNamespaces.RELAX_NG));
+    }
+  }
+
+  public void endElement(String uri, String localName, String qName) {
+    xmlBaseHandler.endElement();
+  }
+}
@@ -0,0 +1,181 @@
+package com.thaiopensource.relaxng.parse.sax;
+
+import com.thaiopensource.xml.sax.EventBuffer;
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.DTDHandler;
+import org.xml.sax.EntityResolver;
+import org.xml.sax.ErrorHandler;
+import org.xml.sax.InputSource;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXNotRecognizedException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.ext.LexicalHandler;
+import org.xml.sax.helpers.LocatorImpl;
+
+/**
+ * An XMLReader that, instead of parsing, replays the events recorded in an EventBuffer.  Each event goes
+ * to the handler that is current when the event is replayed, so handlers may be changed during parsing,
+ * as SchemaParser does.
+ */
+class ReplayXMLReader implements XMLReader {
+  private static final String LEXICAL_HANDLER_PROPERTY = "http://xml.org/sax/properties/lexical-handler";
+
+  private final EventBuffer buffer;
+  // false if the buffer was recorded by an XMLReader that did not report comments
+  private final boolean hasComments;
+  private ContentHandler contentHandler;
+  private DTDHandler dtdHandler;
+  private ErrorHandler errorHandler;
+  private EntityResolver entityResolver;
+  private LexicalHandler lexicalHandler;
+
+  ReplayXMLReader(EventBuffer buffer, boolean hasComments) {
+    this.buffer = buffer;
+    this.hasComments = hasComments;
+  }
+
+  public void parse(InputSource input) throws SAXException {
+    buffer.replay(new ContentHandler() {
+      public void setDocumentLocator(Locator locator) {
+        if (contentHandler != null)
+          contentHandler.setDocumentLocator(locator);
+      }
+
+      public void startDocument() throws SAXException {
+        if (contentHandler != null)
+          contentHandler.startDocument();
+      }
+
+      public void endDocument() throws SAXException {
+        if (contentHandler != null)
+          contentHandler.endDocument();
+      }
+
+      public void startPrefixMapping(String prefix, String uri) throws SAXException {
+        if (contentHandler != null)
+          contentHandler.startPrefixMapping(prefix, uri);
+      }
+
+      public void endPrefixMapping(String prefix) throws SAXException {
+        if (contentHandler != null)
+          contentHandler.endPrefixMapping(prefix);
+      }
+
+      public void startElement(String uri, String localName, String qName, Attributes atts) throws SAXException {
+        if (contentHandler != null)
+          contentHandler.startElement(uri, localName, qName, atts);
+      }
+
+      public void endElement(String uri, String localName, String qName) throws SAXException {
+        if (contentHandler != null)
+          contentHandler.endElement(uri, localName, qName);
+      }
+
+      public void characters(char[] ch, int start, int length) throws SAXException {
+        if (contentHandler != null)
+          contentHandler.characters(ch, start, length);
+      }
+
+      public void ignorableWhitespace(char[] ch, int start, int length) throws SAXException {
+        if (contentHandler != null)
+          contentHandler.ignorableWhitespace(ch, start, length);
+      }
+
+      public void processingInstruction(String target, String data) throws SAXException {
+        if (contentHandler != null)
+          contentHandler.processingInstruction(target, data);
+      }
+
+      public void skippedEntity(String name) throws SAXException {
+        if (contentHandler != null)
+          contentHandler.skippedEntity(name);
+      }
+    }, dtdHandler, new LexicalHandler() {
+      public void startDTD(String name, String publicId, String systemId) throws SAXException {
+        if (lexicalHandler != null)
+          lexicalHandler.startDTD(name, publicId, systemId);
+      }
+
+      public void endDTD() throws SAXException {
+        if (lexicalHandler != null)
+          lexicalHandler.endDTD();
+      }
+
+      public void startEntity(String name) {
+      }
+
+      public void endEntity(String name) {
+      }
+
+      public void startCDATA() {
+      }
+
+      public void endCDATA() {
+      }
+
+      public void comment(char[] ch, int start, int length) throws SAXException {
+        if (lexicalHandler != null)
+          lexicalHandler.comment(ch, start, length);
+      }
+    }, new LocatorImpl());
+  }
+
+  public void parse(String systemId) throws SAXException {
+    parse(new InputSource(systemId));
+  }
+
+  public boolean getFeature(String name) throws SAXNotRecognizedException {
+    throw new SAXNotRecognizedException(name);
+  }
+
+  public void setFeature(String name, boolean value) throws SAXNotRecognizedException {
+    throw new SAXNotRecognizedException(name);
+  }
+
+  public Object getProperty(String name) throws SAXNotRecognizedException {
+    if (name.equals(LEXICAL_HANDLER_PROPERTY) && hasComments)
+      return lexicalHandler;
+    throw new SAXNotRecognizedException(name);
+  }
+
+  public void setProperty(String name, Object value) throws SAXNotRecognizedException {
+    if (name.equals(LEXICAL_HANDLER_PROPERTY) && hasComments)
+      lexicalHandler = (LexicalHandler)value;
+    else
+      throw new SAXNotRecognizedException(name);
+  }
+
+  public void setEntityResolver(EntityResolver resolver) {
+    this.entityResolver = resolver;
+  }
+
+  public EntityResolver getEntityResolver() {
+    return entityResolver;
+  }
+
+  public void setDTDHandler(DTDHandler handler) {
+    this.dtdHandler = handler;
+  }
+
+  public DTDHandler getDTDHandler() {
+    return dtdHandler;
+  }
+
+  public void setContentHandler(ContentHandler handler) {
+    this.contentHandler = handler;
+  }
+
+  public ContentHandler getContentHandler() {
+    return contentHandler;
+  }
+
+  public void setErrorHandler(ErrorHandler handler) {
+    this.errorHandler = handler;
+  }
+
+  public ErrorHandler getErrorHandler() {
+    return errorHandler;
+  }
+}
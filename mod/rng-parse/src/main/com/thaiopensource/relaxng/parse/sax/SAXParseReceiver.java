@@ -2,25 +2,73 @@ package com.thaiopensource.relaxng.parse.sax;
 
 import com.thaiopensource.relaxng.parse.ParseReceiver;
 import com.thaiopensource.relaxng.parse.ParsedPatternFuture;
+import com.thaiopensource.relaxng.parse.Prefetcher;
 import com.thaiopensource.relaxng.parse.SchemaBuilder;
 import com.thaiopensource.relaxng.parse.Scope;
 import com.thaiopensource.relaxng.parse.CommentList;
 import com.thaiopensource.relaxng.parse.Annotations;
 import com.thaiopensource.resolver.xml.sax.SAXResolver;
+import com.thaiopensource.xml.sax.EventBuffer;
+import com.thaiopensource.xml.util.ParsedDocumentCache;
 import org.xml.sax.ErrorHandler;
 import org.xml.sax.SAXException;
+import org.xml.sax.SAXNotRecognizedException;
+import org.xml.sax.SAXNotSupportedException;
 import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.LocatorImpl;
 
 public class SAXParseReceiver<P, NC, L, EA, CL extends CommentList<L>, A extends Annotations<L, EA, CL>>
         extends SAXSubParser<P, NC, L, EA, CL, A>
         implements ParseReceiver<P, NC, L, EA, CL, A> {
+  private static final String LEXICAL_HANDLER_PROPERTY = "http://xml.org/sax/properties/lexical-handler";
+
   public SAXParseReceiver(SAXResolver resolver, ErrorHandler eh) {
-    super(resolver, eh);
+    this(resolver, eh, null, null);
+  }
+
+  /**
+   * @param cache a cache that checks content, to be shared with other loads of schemas, or null
+   * to use a cache only for this load
+   * @param prefetcher the Prefetcher to read included and externally referenced documents in advance,
+   * or null if they are not to be read in advance
+   */
+  public SAXParseReceiver(SAXResolver resolver, ErrorHandler eh, ParsedDocumentCache cache, Prefetcher prefetcher) {
+    super(resolver, eh, cache == null ? new ParsedDocumentCache(false) : cache, prefetcher);
   }
 
   public ParsedPatternFuture<P> installHandlers(XMLReader xr, SchemaBuilder<P, NC, L, EA, CL, A> schemaBuilder,
                                                 Scope<P, L, EA, CL, A> scope)
           throws SAXException {
-    return new SchemaParser<P, NC, L, EA, CL, A>(xr, eh, schemaBuilder, null, scope);
+    if (prefetcher == null)
+      return new SchemaParser<P, NC, L, EA, CL, A>(xr, eh, schemaBuilder, null, scope);
+    // the rest of the document is recorded and scanned before it is parsed, so that the documents
+    // that it refers to can be prefetched
+    Recorder recorder = new Recorder();
+    xr.setContentHandler(recorder);
+    xr.setDTDHandler(recorder);
+    xr.setErrorHandler(eh);
+    boolean hasComments;
+    try {
+      xr.setProperty(LEXICAL_HANDLER_PROPERTY, recorder);
+      hasComments = true;
+    }
+    catch (SAXNotRecognizedException e) {
+      hasComments = false;
+    }
+    catch (SAXNotSupportedException e) {
+      hasComments = false;
+    }
+    recorder.reader = new ReplayXMLReader(recorder, hasComments);
+    return new SchemaParser<P, NC, L, EA, CL, A>(recorder.reader, eh, schemaBuilder, null, scope);
+  }
+
+  private class Recorder extends EventBuffer {
+    private ReplayXMLReader reader;
+
+    public void endDocument() throws SAXException {
+      super.endDocument();
+      replay(new PrefetchHandler(prefetcher), null, new LocatorImpl());
+      reader.parse((String)null);
+    }
   }
 }
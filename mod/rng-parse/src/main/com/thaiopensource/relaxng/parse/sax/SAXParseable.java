@@ -5,21 +5,48 @@ import com.thaiopensource.relaxng.parse.BuildException;
 import com.thaiopensource.relaxng.parse.CommentList;
 import com.thaiopensource.relaxng.parse.IllegalSchemaException;
 import com.thaiopensource.relaxng.parse.IncludedGrammar;
+import com.thaiopensource.relaxng.parse.Prefetcher;
 import com.thaiopensource.relaxng.parse.SchemaBuilder;
 import com.thaiopensource.relaxng.parse.Scope;
 import com.thaiopensource.relaxng.parse.SubParseable;
+import com.thaiopensource.resolver.Input;
 import com.thaiopensource.resolver.xml.sax.SAXResolver;
+import com.thaiopensource.util.Sha1;
 import com.thaiopensource.util.Uri;
+import com.thaiopensource.xml.sax.EventBuffer;
+import com.thaiopensource.xml.util.ParsedDocumentCache;
 import org.xml.sax.ErrorHandler;
+import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
+import org.xml.sax.SAXNotRecognizedException;
+import org.xml.sax.SAXNotSupportedException;
 import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.LocatorImpl;
 
 import javax.xml.transform.sax.SAXSource;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 
 public class SAXParseable<P, NC, L, EA, CL extends CommentList<L>, A extends Annotations<L, EA, CL>>
         extends SAXSubParser<P, NC, L, EA, CL, A> implements SubParseable<P, NC, L, EA, CL, A> {
   private final SAXSource source;
+  // true if this document is to be looked up in and added to the cache; a document is scanned for
+  // documents to prefetch only when it is added to the cache
+  private final boolean cached;
+
+  private static final String LEXICAL_HANDLER_PROPERTY = "http://xml.org/sax/properties/lexical-handler";
+
+  static private class RecordedDocument {
+    private final EventBuffer buffer;
+    private final boolean hasComments;
+
+    private RecordedDocument(EventBuffer buffer, boolean hasComments) {
+      this.buffer = buffer;
+      this.hasComments = hasComments;
+    }
+  }
 
   /**
    *
@@ -28,13 +55,49 @@ public class SAXParseable<P, NC, L, EA, CL extends CommentList<L>, A extends Ann
    * @param eh
    */
   public SAXParseable(SAXSource source, SAXResolver resolver, ErrorHandler eh) {
-    super(resolver, eh);
+    this(source, resolver, eh, null);
+  }
+
+  /**
+   * Included and externally referenced documents are parsed only once; each later use replays the events
+   * recorded from the first parse.
+   *
+   * @param source  XMLReader must be non-null
+   * @param resolver
+   * @param eh
+   * @param cache a cache that checks content, to be shared with other loads of schemas, or null
+   * to use a cache only for this load
+   */
+  public SAXParseable(SAXSource source, SAXResolver resolver, ErrorHandler eh, ParsedDocumentCache cache) {
+    this(source, resolver, eh, cache, null);
+  }
+
+  /**
+   *
+   * @param source  XMLReader must be non-null
+   * @param resolver
+   * @param eh
+   * @param cache a cache that checks content, to be shared with other loads of schemas, or null
+   * to use a cache only for this load
+   * @param prefetcher the Prefetcher to read included and externally referenced documents in advance,
+   * or null if they are not to be read in advance
+   */
+  public SAXParseable(SAXSource source, SAXResolver resolver, ErrorHandler eh, ParsedDocumentCache cache,
+                      Prefetcher prefetcher) {
+    this(source, resolver, eh, cache == null ? new ParsedDocumentCache(false) : cache, prefetcher,
+         cache != null || prefetcher != null);
+  }
+
+  SAXParseable(SAXSource source, SAXResolver resolver, ErrorHandler eh, ParsedDocumentCache cache,
+               Prefetcher prefetcher, boolean cached) {
+    super(resolver, eh, cache, prefetcher);
     this.source = source;
+    this.cached = cached;
   }
 
   public P parse(SchemaBuilder<P, NC, L, EA, CL, A> schemaBuilder, Scope<P, L, EA, CL, A> scope) throws BuildException, IllegalSchemaException {
     try {
-      XMLReader xr = source.getXMLReader();
+      XMLReader xr = getXMLReader();
       SchemaParser<P, NC, L, EA, CL, A> sp = new SchemaParser<P, NC, L, EA, CL, A>(xr, eh, schemaBuilder, null, scope);
       xr.parse(source.getInputSource());
       return sp.getParsedPattern();
@@ -50,7 +113,7 @@ public class SAXParseable<P, NC, L, EA, CL extends CommentList<L>, A extends Ann
   public P parseAsInclude(SchemaBuilder<P, NC, L, EA, CL, A> schemaBuilder, IncludedGrammar<P, L, EA, CL, A> g)
           throws BuildException, IllegalSchemaException {
     try {
-      XMLReader xr = source.getXMLReader();
+      XMLReader xr = getXMLReader();
       SchemaParser<P, NC, L, EA, CL, A> sp = new SchemaParser<P, NC, L, EA, CL, A>(xr, eh, schemaBuilder, g, g);
       xr.parse(source.getInputSource());
       return sp.getParsedPattern();
@@ -63,6 +126,90 @@ public class SAXParseable<P, NC, L, EA, CL extends CommentList<L>, A extends Ann
     }
   }
 
+  /**
+   * Returns an XMLReader that replays the document from the cache, parsing it first if it is not there.
+   */
+  private XMLReader getXMLReader() throws SAXException, IOException {
+    InputSource in = source.getInputSource();
+    String uri = in.getSystemId();
+    if (!cached || uri == null)
+      return source.getXMLReader();
+    String digest = null;
+    if (cache.getCheckContent()) {
+      InputSource opened = resolver.open(prefetched(in));
+      InputStream stream = opened.getByteStream();
+      if (stream == null) {
+        if (opened.getCharacterStream() != null)
+          opened.getCharacterStream().close();
+        return source.getXMLReader();
+      }
+      ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+      try {
+        byte[] buf = new byte[8192];
+        for (int n; (n = stream.read(buf, 0, buf.length)) > 0;)
+          buffer.write(buf, 0, n);
+      }
+      finally {
+        stream.close();
+      }
+      byte[] bytes = buffer.toByteArray();
+      digest = Sha1.digest(bytes, 0, bytes.length);
+      in = copy(opened);
+      in.setByteStream(new ByteArrayInputStream(bytes));
+    }
+    Object parsedForm = cache.get(uri, digest);
+    if (!(parsedForm instanceof RecordedDocument)) {
+      in = prefetched(in);
+      XMLReader xr = source.getXMLReader();
+      EventBuffer buffer = new EventBuffer();
+      xr.setContentHandler(buffer);
+      xr.setDTDHandler(buffer);
+      xr.setErrorHandler(eh);
+      boolean hasComments;
+      try {
+        xr.setProperty(LEXICAL_HANDLER_PROPERTY, buffer);
+        hasComments = true;
+      }
+      catch (SAXNotRecognizedException e) {
+        hasComments = false;
+      }
+      catch (SAXNotSupportedException e) {
+        hasComments = false;
+      }
+      xr.parse(in);
+      if (prefetcher != null)
+        buffer.replay(new PrefetchHandler(prefetcher), null, new LocatorImpl());
+      parsedForm = new RecordedDocument(buffer, hasComments);
+      cache.put(uri, digest, parsedForm);
+    }
+    RecordedDocument doc = (RecordedDocument)parsedForm;
+    return new ReplayXMLReader(doc.buffer, doc.hasComments);
+  }
+
+  /**
+   * Returns an InputSource for the prefetched content of a document, or the specified InputSource
+   * if the content was not prefetched.
+   */
+  private InputSource prefetched(InputSource in) {
+    if (prefetcher == null || in.getByteStream() != null || in.getCharacterStream() != null)
+      return in;
+    Input input = prefetcher.take(in.getSystemId());
+    if (input == null)
+      return in;
+    InputSource result = copy(in);
+    result.setByteStream(input.getByteStream());
+    if (input.getEncoding() != null)
+      result.setEncoding(input.getEncoding());
+    return result;
+  }
+
+  private static InputSource copy(InputSource in) {
+    InputSource copy = new InputSource(in.getSystemId());
+    copy.setPublicId(in.getPublicId());
+    copy.setEncoding(in.getEncoding());
+    return copy;
+  }
+
   public String getUri() {
     final String uri = source.getInputSource().getSystemId();
     if (uri == null)
@@ -3,9 +3,11 @@ package com.thaiopensource.relaxng.parse.sax;
 import com.thaiopensource.relaxng.parse.Annotations;
 import com.thaiopensource.relaxng.parse.BuildException;
 import com.thaiopensource.relaxng.parse.CommentList;
+import com.thaiopensource.relaxng.parse.Prefetcher;
 import com.thaiopensource.relaxng.parse.SubParseable;
 import com.thaiopensource.relaxng.parse.SubParser;
 import com.thaiopensource.resolver.xml.sax.SAXResolver;
+import com.thaiopensource.xml.util.ParsedDocumentCache;
 import com.thaiopensource.xml.util.WellKnownNamespaces;
 import org.xml.sax.ErrorHandler;
 import org.xml.sax.SAXException;
@@ -16,15 +18,22 @@ public class SAXSubParser<P, NC, L, EA, CL extends CommentList<L>, A extends Ann
         SubParser<P, NC, L, EA, CL, A> {
   final SAXResolver resolver;
   final ErrorHandler eh;
+  // holds the included and externally referenced documents
+  final ParsedDocumentCache cache;
+  // null if documents are not prefetched
+  final Prefetcher prefetcher;
 
-  SAXSubParser(SAXResolver resolver, ErrorHandler eh) {
+  SAXSubParser(SAXResolver resolver, ErrorHandler eh, ParsedDocumentCache cache, Prefetcher prefetcher) {
     this.resolver = resolver;
     this.eh = eh;
+    this.cache = cache;
+    this.prefetcher = prefetcher;
   }
 
   public SubParseable<P, NC, L, EA, CL, A> createSubParseable(String href, String base) throws BuildException {
     try {
-      return new SAXParseable<P, NC, L, EA, CL, A>(resolver.resolve(href, base, WellKnownNamespaces.RELAX_NG), resolver, eh);
+      return new SAXParseable<P, NC, L, EA, CL, A>(resolver.resolve(href, base, WellKnownNamespaces.RELAX_NG),
+                                                       resolver, eh, cache, prefetcher, true);
     }
     catch (SAXException e) {
       throw BuildException.fromSAXException(e);
@@ -0,0 +1,75 @@
+package com.thaiopensource.relaxng.parse.compact;
+
+import com.thaiopensource.relaxng.parse.Prefetcher;
+import com.thaiopensource.resolver.Identifier;
+import com.thaiopensource.resolver.MediaTypedIdentifier;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.util.List;
+import java.util.Vector;
+
+public class PrefetchScannerTest {
+  private static final String BASE = "http://www.example.com/schema.rnc";
+  private static final String MEDIA_TYPE = "application/relax-ng-compact-syntax";
+
+  static class RecordingPrefetcher extends Prefetcher {
+    final List<String> hrefs = new Vector<String>();
+
+    RecordingPrefetcher() {
+      super(null);
+    }
+
+    public void prefetch(Identifier id) {
+      Assert.assertEquals(id.getBase(), BASE);
+      Assert.assertEquals(((MediaTypedIdentifier)id).getMediaType(), MEDIA_TYPE);
+      hrefs.add(id.getUriReference());
+    }
+  }
+
+  @DataProvider(name = "texts")
+  public Object[][] createTexts() {
+    return new Object[][] {
+            { "include \"a.rnc\"", new String[] { "a.rnc" } },
+            { "start = external 'b.rnc'", new String[] { "b.rnc" } },
+            { "include \"a.rnc\" { start = external \"b.rnc\" }\ninclude 'c.rnc'",
+              new String[] { "a.rnc", "b.rnc", "c.rnc" } },
+            { "include\r\n\t\"a.rnc\"", new String[] { "a.rnc" } },
+            { "include # comment\r\n# another \"no.rnc\"\n  \"a.rnc\"", new String[] { "a.rnc" } },
+            { "include \"a\" ~ 'b' ~ \n \"\"\"c.rnc\"\"\"", new String[] { "abc.rnc" } },
+            { "include \"\"\"a\"b'.rnc\"\"\"", new String[] { "a\"b'.rnc" } },
+            { "include '''a'b\".rnc'''", new String[] { "a'b\".rnc" } },
+            { "include \"\"", new String[] { "" } },
+            // not keywords
+            { "# include \"no.rnc\"\ninclude \"a.rnc\"", new String[] { "a.rnc" } },
+            { "[ a:doc = \"include 'no.rnc'\" ] include \"a.rnc\"", new String[] { "a.rnc" } },
+            { "[ a:doc = '''include \"no.rnc\" ''' ] include \"a.rnc\"", new String[] { "a.rnc" } },
+            { "\\include = \"no.rnc\"", new String[] { } },
+            { "\\external \"no.rnc\"", new String[] { } },
+            { "a:include \"no.rnc\"", new String[] { } },
+            { "includes \"no.rnc\" myinclude 'no.rnc' include.x \"no.rnc\" include-x 'no.rnc' x_external 'no.rnc'",
+              new String[] { } },
+            // no literal
+            { "include", new String[] { } },
+            { "include inherit", new String[] { } },
+            { "include ~ \"no.rnc\"", new String[] { } },
+            { "include \"a.rnc\" ~", new String[] { } },
+            { "include \"a.rnc\" ~ x", new String[] { } },
+            // unterminated
+            { "include \"a.rnc", new String[] { } },
+            { "include \"\"\"a.rnc\"\"", new String[] { } },
+            { "x = \"include 'no.rnc'", new String[] { } },
+            { "include \"a.rnc\" # unterminated comment", new String[] { "a.rnc" } },
+            // escapes are not replaced by the scanner, so it gives up
+            { "include \"a.rnc\" \\x{41} = empty", new String[] { } },
+    };
+  }
+
+  @Test(dataProvider = "texts")
+  public void testScan(String text, String[] hrefs) {
+    RecordingPrefetcher prefetcher = new RecordingPrefetcher();
+    PrefetchScanner.scan(text, BASE, MEDIA_TYPE, prefetcher);
+    Assert.assertEquals(prefetcher.hrefs.toArray(new String[prefetcher.hrefs.size()]), hrefs);
+  }
+}
@@ -0,0 +1,156 @@
+package com.thaiopensource.relaxng.parse.sax;
+
+import com.thaiopensource.xml.sax.EventBuffer;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXNotRecognizedException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.ext.DefaultHandler2;
+
+import javax.xml.parsers.SAXParserFactory;
+import java.io.StringReader;
+
+/**
+ * Test that ReplayXMLReader gives the events that parsing the recorded document gives.
+ */
+public class ReplayXMLReaderTest {
+  private static final String LEXICAL_HANDLER_PROPERTY = "http://xml.org/sax/properties/lexical-handler";
+  private static final String DOCUMENT
+          = "<!DOCTYPE grammar>\n"
+          + "<!-- a comment -->\n"
+          + "<grammar xmlns='http://relaxng.org/ns/structure/1.0' xmlns:a='urn:a'>\n"
+          + "  <start a:x='1'><element name='doc'><text/></element></start>\n"
+          + "  <?pi data?>\n"
+          + "</grammar>\n";
+
+  static class Printer extends DefaultHandler2 {
+    final StringBuilder buf = new StringBuilder();
+    Locator locator;
+
+    public void setDocumentLocator(Locator locator) {
+      this.locator = locator;
+    }
+
+    private void location() {
+      buf.append(locator.getLineNumber()).append(':').append(locator.getColumnNumber()).append(' ');
+    }
+
+    public void startDocument() {
+      buf.append("startDocument\n");
+    }
+
+    public void endDocument() {
+      buf.append("endDocument\n");
+    }
+
+    public void startPrefixMapping(String prefix, String uri) {
+      buf.append("startPrefixMapping ").append(prefix).append(' ').append(uri).append('\n');
+    }
+
+    public void endPrefixMapping(String prefix) {
+      buf.append("endPrefixMapping ").append(prefix).append('\n');
+    }
+
+    public void startElement(String uri, String localName, String qName, Attributes attributes) {
+      location();
+      buf.append("startElement {").append(uri).append('}').append(localName);
+      for (int i = 0; i < attributes.getLength(); i++)
+        buf.append(" {").append(attributes.getURI(i)).append('}').append(attributes.getLocalName(i))
+                .append('=').append(attributes.getValue(i));
+      buf.append('\n');
+    }
+
+    public void endElement(String uri, String localName, String qName) {
+      location();
+      buf.append("endElement ").append(localName).append('\n');
+    }
+
+    public void characters(char[] ch, int start, int length) {
+      buf.append("characters ").append(ch, start, length).append('\n');
+    }
+
+    public void processingInstruction(String target, String data) {
+      location();
+      buf.append("processingInstruction ").append(target).append(' ').append(data).append('\n');
+    }
+
+    public void startDTD(String name, String publicId, String systemId) {
+      buf.append("startDTD ").append(name).append('\n');
+    }
+
+    public void endDTD() {
+      buf.append("endDTD\n");
+    }
+
+    public void comment(char[] ch, int start, int length) {
+      buf.append("comment ").append(ch, start, length).append('\n');
+    }
+  }
+
+  private static XMLReader createXMLReader() throws Exception {
+    SAXParserFactory factory = SAXParserFactory.newInstance();
+    factory.setNamespaceAware(true);
+    return factory.newSAXParser().getXMLReader();
+  }
+
+  private static void parse(XMLReader xr, Printer printer) throws Exception {
+    xr.setContentHandler(printer);
+    xr.setProperty(LEXICAL_HANDLER_PROPERTY, printer);
+    xr.parse(new InputSource(new StringReader(DOCUMENT)));
+  }
+
+  private static EventBuffer record() throws Exception {
+    EventBuffer buffer = new EventBuffer();
+    XMLReader xr = createXMLReader();
+    xr.setContentHandler(buffer);
+    xr.setDTDHandler(buffer);
+    xr.setProperty(LEXICAL_HANDLER_PROPERTY, buffer);
+    xr.parse(new InputSource(new StringReader(DOCUMENT)));
+    return buffer;
+  }
+
+  @Test
+  public void testReplay() throws Exception {
+    Printer parsed = new Printer();
+    parse(createXMLReader(), parsed);
+    EventBuffer buffer = record();
+    // the buffer can be replayed any number of times
+    for (int i = 0; i < 2; i++) {
+      Printer replayed = new Printer();
+      parse(new ReplayXMLReader(buffer, true), replayed);
+      Assert.assertEquals(replayed.buf.toString(), parsed.buf.toString());
+    }
+  }
+
+  @Test
+  public void testChangeHandler() throws Exception {
+    final Printer second = new Printer();
+    final ReplayXMLReader xr = new ReplayXMLReader(record(), true);
+    Printer first = new Printer() {
+      public void startElement(String uri, String localName, String qName, Attributes attributes) {
+        super.startElement(uri, localName, qName, attributes);
+        if (localName.equals("start")) {
+          second.setDocumentLocator(locator);
+          xr.setContentHandler(second);
+        }
+      }
+    };
+    xr.setContentHandler(first);
+    xr.parse(new InputSource());
+    Assert.assertTrue(first.buf.toString().endsWith("startElement {http://relaxng.org/ns/structure/1.0}start {urn:a}x=1\n"));
+    String rest = second.buf.toString();
+    Assert.assertTrue(rest.startsWith("4:"), rest);
+    Assert.assertTrue(rest.contains(" startElement {http://relaxng.org/ns/structure/1.0}element {}name=doc\n"), rest);
+    Assert.assertFalse(first.buf.toString().contains("}element"));
+    Assert.assertTrue(rest.endsWith("endDocument\n"));
+  }
+
+  @Test(expectedExceptions = SAXNotRecognizedException.class)
+  public void testNoComments() throws SAXException {
+    new ReplayXMLReader(new EventBuffer(), false).setProperty(LEXICAL_HANDLER_PROPERTY, new Printer());
+  }
+}
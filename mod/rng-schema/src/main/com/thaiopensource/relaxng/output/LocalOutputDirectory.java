@@ -2,14 +2,19 @@ package com.thaiopensource.relaxng.output;
 
 import com.thaiopensource.xml.util.EncodingMap;
 import com.thaiopensource.xml.out.CharRepertoire;
+import com.thaiopensource.xml.out.EncodedWriter;
+import com.thaiopensource.util.Sha1;
 
 import java.io.IOException;
 import java.io.File;
-import java.io.OutputStreamWriter;
-import java.io.BufferedOutputStream;
 import java.io.FileOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.OutputStream;
+import java.util.List;
 import java.util.Map;
 import java.util.HashMap;
+import java.util.Vector;
 
 public class LocalOutputDirectory implements OutputDirectory {
   private final File mainOutputFile;
@@ -22,6 +27,8 @@ public class LocalOutputDirectory implements OutputDirectory {
   private final Map<String, String> uriMap = new HashMap<String, String>();
   private final String mainInputExtension;
   private int indent;
+  private boolean keepUnchangedFiles = false;
+  private final List<File> outputFiles = new Vector<File>();
 
   public LocalOutputDirectory(String mainSourceUri, File mainOutputFile, String extension,
                               String encoding, int lineLength, int indent) {
@@ -47,17 +54,63 @@ public class LocalOutputDirectory implements OutputDirectory {
       encoding = defaultEncoding;
     String javaEncoding = EncodingMap.getJavaName(encoding);
     File file = new File(mainOutputFile.getParentFile(), mapFilename(sourceUri));
-    return new OutputDirectory.Stream(new OutputStreamWriter(new BufferedOutputStream(new FileOutputStream(file)),
-							     javaEncoding),
+    outputFiles.add(file);
+    OutputStream out;
+    if (keepUnchangedFiles && file.isFile())
+      out = new UnchangedFileKeeper(file);
+    else
+      out = new FileOutputStream(file);
+    return new OutputDirectory.Stream(EncodedWriter.getInstance(out, javaEncoding),
 				      encoding,
 				      CharRepertoire.getInstance(javaEncoding));
   }
 
+  /**
+   * Holds the bytes written to an existing file, and writes them to the file when closed, unless the
+   * file already has the same content.
+   */
+  static private class UnchangedFileKeeper extends ByteArrayOutputStream {
+    private final File file;
+
+    UnchangedFileKeeper(File file) {
+      this.file = file;
+    }
+
+    public void close() throws IOException {
+      if (file.length() == size()
+          && Sha1.digest(toByteArray(), 0, size()).equals(Sha1.digest(new FileInputStream(file))))
+        return;
+      OutputStream out = new FileOutputStream(file);
+      try {
+        writeTo(out);
+      }
+      finally {
+        out.close();
+      }
+    }
+  }
+
+  /**
+   * Specifies whether an existing output file whose content would not change is left as it is, rather than
+   * being written again.  This preserves its modification time.  The default is false.
+   */
+  public void setKeepUnchangedFiles(boolean keepUnchangedFiles) {
+    this.keepUnchangedFiles = keepUnchangedFiles;
+  }
+
+  /**
+   * Returns the files that have been opened for output, in the order in which they were opened.
+   */
+  public synchronized List<File> getOutputFiles() {
+    return new Vector<File>(outputFiles);
+  }
+
   public String reference(String fromSourceUri, String toSourceUri) {
     return mapFilename(toSourceUri);
   }
 
-  private String mapFilename(String sourceUri) {
+  // synchronized because documents may be written by several threads
+  private synchronized String mapFilename(String sourceUri) {
     String filename = uriMap.get(sourceUri);
     if (filename == null) {
       filename = chooseFilename(sourceUri);
@@ -0,0 +1,106 @@
+package com.thaiopensource.relaxng.output.common;
+
+import com.thaiopensource.relaxng.output.OutputDirectory;
+import com.thaiopensource.util.ThreadPool;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.List;
+import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Writes the documents of a schema using several threads, once the analysis shared by the documents
+ * is complete.  Each document is written by a task of its own, which must not depend on the other tasks.
+ * If a task fails, tasks that have not yet started are not run, and the exception of the first task
+ * that failed is rethrown.
+ */
+public class ParallelWriter {
+  public static abstract class Task {
+    private final String sourceUri;
+
+    /**
+     * @param sourceUri the URI of the document written by this task, as passed to <code>OutputDirectory.open</code>
+     */
+    protected Task(String sourceUri) {
+      this.sourceUri = sourceUri;
+    }
+
+    public abstract void write() throws IOException;
+  }
+
+  private ParallelWriter() { }
+
+  /**
+   * Runs the tasks.  The output file of each document is chosen before any task is started, in the order
+   * of the tasks, so that the choice does not depend on the order in which the tasks run.
+   *
+   * @param tasks the tasks, in the order of the documents
+   * @param od the OutputDirectory to which the documents are written
+   * @param nThreads the maximum number of threads; if this is 1, the tasks are run in order in the calling thread
+   */
+  public static void write(List<Task> tasks, OutputDirectory od, int nThreads) throws IOException {
+    for (Task task : tasks)
+      od.reference(task.sourceUri, task.sourceUri);
+    nThreads = Math.min(nThreads, tasks.size());
+    if (nThreads <= 1) {
+      for (Task task : tasks)
+        task.write();
+      return;
+    }
+    final AtomicBoolean failed = new AtomicBoolean(false);
+    Executor executor = ThreadPool.createLimitedExecutor(nThreads);
+    try {
+      List<Future<Void>> results = new Vector<Future<Void>>();
+      for (final Task task : tasks) {
+        FutureTask<Void> result = new FutureTask<Void>(new Callable<Void>() {
+          public Void call() throws IOException {
+            if (failed.get())
+              return null;
+            boolean done = false;
+            try {
+              task.write();
+              done = true;
+            }
+            finally {
+              if (!done)
+                failed.set(true);
+            }
+            return null;
+          }
+        });
+        results.add(result);
+        executor.execute(result);
+      }
+      for (Future<Void> result : results)
+        getResult(result);
+    }
+    finally {
+      // if this thread was interrupted, tasks that have not yet started are not run
+      failed.set(true);
+    }
+  }
+
+  private static void getResult(Future<Void> future) throws IOException {
+    try {
+      future.get();
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InterruptedIOException();
+    }
+    catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException)
+        throw (IOException)cause;
+      if (cause instanceof RuntimeException)
+        throw (RuntimeException)cause;
+      throw (Error)cause;
+    }
+  }
+}
@@ -156,11 +156,27 @@ public class XmlWriter {
       newline();
   }
 
+  // runs of characters that need no escaping are written with a single call
   private void data(String s) {
     int n = s.length();
+    int start = 0;
     for (int i = 0; i < n; i++) {
       char c = s.charAt(i);
       switch (c) {
+      case '<':
+      case '>':
+      case '&':
+      case '\r':
+      case '\n':
+        break;
+      default:
+        if (cr.contains(c))
+          continue;
+        break;
+      }
+      write(s, start, i - start);
+      start = i + 1;
+      switch (c) {
       case '<':
         write("&lt;");
         break;
@@ -181,6 +197,7 @@ public class XmlWriter {
           if (!Utf16.isSurrogate1(c) || i + 1 == n || !Utf16.isSurrogate2(s.charAt(i + 1)))
             throw new WrappedException(new CharConversionException("surrogate pair integrity failure"));
           char c2 = s.charAt(++i);
+          start = i + 1;
           if (cr.contains(c, c2)) {
             write(c);
             write(c2);
@@ -188,13 +205,12 @@ public class XmlWriter {
           else
             charRef(Utf16.scalarValue(c, c2));
         }
-        else if (!cr.contains(c))
-          charRef(c);
         else
-          write(c);
+          charRef(c);
         break;
       }
     }
+    write(s, start, n - start);
   }
 
   private void charRef(int n) {
@@ -228,6 +244,15 @@ public class XmlWriter {
     }
   }
 
+  private void write(String s, int off, int len) {
+    try {
+      w.write(s, off, len);
+    }
+    catch (IOException e) {
+      throw new WrappedException(e);
+    }
+  }
+
   private void write(char c) {
     try {
       w.write(c);
@@ -7,21 +7,88 @@ import com.thaiopensource.relaxng.output.OutputDirectoryParamProcessor;
 import com.thaiopensource.relaxng.output.OutputFailedException;
 import com.thaiopensource.relaxng.output.OutputFormat;
 import com.thaiopensource.relaxng.output.common.ErrorReporter;
+import com.thaiopensource.relaxng.output.common.ParallelWriter;
+import com.thaiopensource.relaxng.translate.util.IntegerParam;
 import com.thaiopensource.relaxng.translate.util.InvalidParamsException;
+import com.thaiopensource.relaxng.translate.util.ParamProcessor;
 import org.xml.sax.ErrorHandler;
 import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
 
 import java.io.IOException;
+import java.util.List;
 import java.util.Map;
+import java.util.Vector;
 
 public class RncOutputFormat implements OutputFormat {
-  public void output(SchemaCollection sc, OutputDirectory od, String[] params, String inputFormat, ErrorHandler eh)
+  private static final int MAX_PARALLEL = 256;
+
+  /**
+   * Holds the errors reported while writing a document, so that, when documents are written
+   * by several threads, the errors can be reported in the order of the documents.
+   */
+  static private class ErrorBuffer implements ErrorHandler {
+    private final List<SAXParseException> exceptions = new Vector<SAXParseException>();
+    private final List<Boolean> isWarning = new Vector<Boolean>();
+
+    public void warning(SAXParseException exception) {
+      exceptions.add(exception);
+      isWarning.add(Boolean.TRUE);
+    }
+
+    public void error(SAXParseException exception) {
+      exceptions.add(exception);
+      isWarning.add(Boolean.FALSE);
+    }
+
+    public void fatalError(SAXParseException exception) {
+      error(exception);
+    }
+
+    void replay(ErrorHandler eh) throws SAXException {
+      for (int i = 0; i < exceptions.size(); i++) {
+        if (isWarning.get(i))
+          eh.warning(exceptions.get(i));
+        else
+          eh.error(exceptions.get(i));
+      }
+    }
+  }
+
+  public void output(SchemaCollection sc, final OutputDirectory od, String[] params, String inputFormat, ErrorHandler eh)
           throws SAXException, IOException, OutputFailedException, InvalidParamsException {
-    new OutputDirectoryParamProcessor(od).process(params, eh);
+    final int[] parallel = { 1 };
+    ParamProcessor pp = new OutputDirectoryParamProcessor(od);
+    pp.declare("parallel",
+               new IntegerParam(1, MAX_PARALLEL) {
+                 protected void setInteger(int value) {
+                   parallel[0] = value;
+                 }
+               });
+    pp.process(params, eh);
     try {
       ErrorReporter er = new ErrorReporter(eh, RncOutputFormat.class);
-      for (Map.Entry<String, SchemaDocument> entry : sc.getSchemaDocumentMap().entrySet()) {
-        outputPattern(entry.getValue(), entry.getKey(), od, er);
+      List<ParallelWriter.Task> tasks = new Vector<ParallelWriter.Task>();
+      List<ErrorBuffer> errorBuffers = new Vector<ErrorBuffer>();
+      for (final Map.Entry<String, SchemaDocument> entry : sc.getSchemaDocumentMap().entrySet()) {
+        final ErrorReporter documentEr;
+        if (parallel[0] > 1) {
+          ErrorBuffer errorBuffer = new ErrorBuffer();
+          errorBuffers.add(errorBuffer);
+          documentEr = new ErrorReporter(errorBuffer, RncOutputFormat.class);
+        }
+        else
+          documentEr = er;
+        tasks.add(new ParallelWriter.Task(entry.getKey()) {
+          public void write() throws IOException {
+            outputPattern(entry.getValue(), entry.getKey(), od, documentEr);
+          }
+        });
+      }
+      ParallelWriter.write(tasks, od, parallel[0]);
+      if (eh != null) {
+        for (ErrorBuffer errorBuffer : errorBuffers)
+          errorBuffer.replay(eh);
       }
     }
     catch (ErrorReporter.WrappedSAXException e) {
@@ -5,20 +5,41 @@ import com.thaiopensource.relaxng.edit.SchemaDocument;
 import com.thaiopensource.relaxng.output.OutputDirectory;
 import com.thaiopensource.relaxng.output.OutputDirectoryParamProcessor;
 import com.thaiopensource.relaxng.output.OutputFormat;
+import com.thaiopensource.relaxng.output.common.ParallelWriter;
+import com.thaiopensource.relaxng.translate.util.IntegerParam;
 import com.thaiopensource.relaxng.translate.util.InvalidParamsException;
+import com.thaiopensource.relaxng.translate.util.ParamProcessor;
 import org.xml.sax.ErrorHandler;
 import org.xml.sax.SAXException;
 
 import java.io.IOException;
+import java.util.List;
 import java.util.Map;
+import java.util.Vector;
 
 public class RngOutputFormat implements OutputFormat {
-  public void output(SchemaCollection sc, OutputDirectory od, String[] params, String inputFormat, ErrorHandler eh)
+  private static final int MAX_PARALLEL = 256;
+
+  public void output(SchemaCollection sc, final OutputDirectory od, String[] params, String inputFormat, ErrorHandler eh)
           throws IOException, InvalidParamsException, SAXException {
-    new OutputDirectoryParamProcessor(od).process(params, eh);
-    for (Map.Entry<String, SchemaDocument> entry : sc.getSchemaDocumentMap().entrySet()) {
-      outputPattern(entry.getValue(), entry.getKey(), od);
+    final int[] parallel = { 1 };
+    ParamProcessor pp = new OutputDirectoryParamProcessor(od);
+    pp.declare("parallel",
+               new IntegerParam(1, MAX_PARALLEL) {
+                 protected void setInteger(int value) {
+                   parallel[0] = value;
+                 }
+               });
+    pp.process(params, eh);
+    List<ParallelWriter.Task> tasks = new Vector<ParallelWriter.Task>();
+    for (final Map.Entry<String, SchemaDocument> entry : sc.getSchemaDocumentMap().entrySet()) {
+      tasks.add(new ParallelWriter.Task(entry.getKey()) {
+        public void write() throws IOException {
+          outputPattern(entry.getValue(), entry.getKey(), od);
+        }
+      });
     }
+    ParallelWriter.write(tasks, od, parallel[0]);
   }
 
   private static void outputPattern(SchemaDocument sd, String sourceUri, OutputDirectory od) throws IOException {
@@ -3,26 +3,38 @@ package com.thaiopensource.relaxng.util;
 import com.thaiopensource.resolver.catalog.CatalogResolver;
 import com.thaiopensource.util.Localizer;
 import com.thaiopensource.util.OptionParser;
+import com.thaiopensource.util.PropertyMap;
 import com.thaiopensource.util.PropertyMapBuilder;
 import com.thaiopensource.util.UriOrFile;
 import com.thaiopensource.util.Version;
 import com.thaiopensource.validate.Flag;
 import com.thaiopensource.validate.FlagOption;
 import com.thaiopensource.validate.OptionArgumentException;
+import com.thaiopensource.validate.ResourceRecorder;
+import com.thaiopensource.validate.Schema;
 import com.thaiopensource.validate.SchemaReader;
+import com.thaiopensource.validate.StatisticsAccumulator;
 import com.thaiopensource.validate.StringOption;
 import com.thaiopensource.validate.ValidateProperty;
 import com.thaiopensource.validate.ValidationDriver;
 import com.thaiopensource.validate.auto.AutoSchemaReader;
+import com.thaiopensource.validate.prop.rng.MemoSnapshot;
 import com.thaiopensource.validate.prop.rng.RngProperty;
 import com.thaiopensource.validate.rng.CompactSchemaReader;
 import com.thaiopensource.xml.sax.ErrorHandlerImpl;
 import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 class Driver {
   static private String usageKey = "usage";
@@ -38,10 +50,34 @@ class Driver {
   private boolean timing = false;
   private String encoding = null;
   private Localizer localizer = new Localizer(Driver.class);
+  // where the output goes, or null for System.out
+  private final Writer out;
+  // the ValidationServer for which a command is run, or null
+  private final ValidationServer server;
+  // the directory against which relative file names are resolved, or null for the current directory
+  private final File directory;
+
+  Driver() {
+    this(null, null, null);
+  }
+
+  /**
+   * Creates a Driver that runs a command for a client of a ValidationServer.
+   *
+   * @param out the Writer to which to write the output, or null for System.out
+   * @param server the ValidationServer, or null
+   * @param directory the directory against which relative file names are resolved, or null
+   */
+  Driver(Writer out, ValidationServer server, File directory) {
+    this.out = out;
+    this.server = server;
+    this.directory = directory;
+  }
 
   public int doMain(String[] args) {
-    ErrorHandlerImpl eh = new ErrorHandlerImpl(System.out);
-    OptionParser op = new OptionParser("itcdfe:p:sC:", args);
+    String[] commandArgs = args;
+    ErrorHandlerImpl eh = out == null ? new ErrorHandlerImpl(System.out) : new ErrorHandlerImpl(out);
+    OptionParser op = new OptionParser("itcdfe:p:sC:PSTm:M:L:R:", args);
     PropertyMapBuilder properties = new PropertyMapBuilder();
     properties.put(ValidateProperty.ERROR_HANDLER, eh);
     RngProperty.CHECK_ID_IDREF.add(properties);
@@ -49,15 +85,60 @@ class Driver {
     boolean compact = false;
     boolean outputSimplifiedSchema = false;
     List<String> catalogUris = new ArrayList<String>();
+    StatisticsAccumulator statistics = null;
+    String memoSnapshotInput = null;
+    String memoSnapshotOutput = null;
+    int serverPort = -1;
+    int clientPort = -1;
+    // identifies the schema to be loaded, together with its URI
+    StringBuilder schemaKey = new StringBuilder();
 
     try {
       while (op.moveToNextOption()) {
+        String optionArg = op.getOptionArg();
+        switch (op.getOptionChar()) {
+        case 'M':
+          if (server != null) {
+            eh.print(localizer.message("server_cannot_write", op.getOptionCharString()));
+            return 2;
+          }
+          // fall through
+        case 'C':
+        case 'm':
+          optionArg = resolve(optionArg);
+          break;
+        case 'L':
+        case 'R':
+          if (server != null) {
+            if (op.getOptionChar() == 'R')
+              continue;
+            throw new OptionParser.InvalidOptionException();
+          }
+          try {
+            int port = Integer.parseInt(optionArg);
+            if (port < 0 || port > 0xFFFF)
+              throw new NumberFormatException();
+            if (op.getOptionChar() == 'L')
+              serverPort = port;
+            else
+              clientPort = port;
+          }
+          catch (NumberFormatException e) {
+            eh.print(localizer.message("invalid_port", optionArg));
+            return 2;
+          }
+          continue;
+        }
+        schemaKey.append(op.getOptionChar());
+        if (optionArg != null)
+          schemaKey.append(optionArg);
+        schemaKey.append('\n');
         switch (op.getOptionChar()) {
         case 'i':
           properties.put(RngProperty.CHECK_ID_IDREF, null);
           break;
         case 'C':
-          catalogUris.add(UriOrFile.toUri(op.getOptionArg()));
+          catalogUris.add(UriOrFile.toUri(optionArg));
           break;
         case 'c':
           compact = true;
@@ -86,6 +167,22 @@ class Driver {
         case 's':
           outputSimplifiedSchema = true;
           break;
+        case 'P':
+          RngProperty.PREFETCH.add(properties);
+          break;
+        case 'T':
+          ValidateProperty.PARALLEL.add(properties);
+          break;
+        case 'S':
+          statistics = new StatisticsAccumulator();
+          properties.put(ValidateProperty.STATISTICS_HANDLER, statistics);
+          break;
+        case 'm':
+          memoSnapshotInput = optionArg;
+          break;
+        case 'M':
+          memoSnapshotOutput = optionArg;
+          break;
         case 'p':
           {
             if (sr == null)
@@ -115,6 +212,15 @@ class Driver {
       eh.print(localizer.message("option_missing_argument", op.getOptionCharString()));
       return 2;
     }
+    if (serverPort >= 0) {
+      try {
+        new ValidationServer().serve(serverPort);
+      }
+      catch (IOException e) {
+        eh.printException(e);
+      }
+      return 2;
+    }
     if (!catalogUris.isEmpty()) {
       try {
         properties.put(ValidateProperty.RESOLVER, new CatalogResolver(catalogUris));
@@ -131,15 +237,49 @@ class Driver {
       eh.print(localizer.message(usageKey, Version.getVersion(Driver.class)));
       return 2;
     }
+    if (clientPort >= 0) {
+      try {
+        return ValidationServer.request(clientPort, new File(""), commandArgs, System.out);
+      }
+      catch (IOException e) {
+        eh.printException(e);
+        return 2;
+      }
+    }
     long startTime = System.currentTimeMillis();
     long loadedPatternTime = -1;
     boolean hadError = false;
+    MemoSnapshot memoSnapshot = null;
     try {
-      ValidationDriver driver = new ValidationDriver(properties.toPropertyMap(), sr);
-      InputSource in = ValidationDriver.uriOrFileInputSource(args[0]);
+      if (memoSnapshotInput != null || memoSnapshotOutput != null) {
+        memoSnapshot = new MemoSnapshot(memoSnapshotOutput != null);
+        if (memoSnapshotInput != null) {
+          InputStream in = new FileInputStream(memoSnapshotInput);
+          try {
+            memoSnapshot.read(in);
+          }
+          finally {
+            in.close();
+          }
+        }
+        properties.put(RngProperty.MEMO_SNAPSHOT, memoSnapshot);
+      }
+      PropertyMap instanceProperties = properties.toPropertyMap();
+      PropertyMap schemaProperties = instanceProperties;
+      ResourceRecorder resources = null;
+      if (server != null) {
+        // so that the server can tell when the schema must be loaded again
+        resources = new ResourceRecorder();
+        schemaProperties = resources.recordResources(instanceProperties);
+        for (String uri : catalogUris)
+          resources.add(uri);
+      }
+      ValidationDriver driver = new ValidationDriver(schemaProperties, instanceProperties, sr);
+      InputSource in = ValidationDriver.uriOrFileInputSource(resolve(args[0]));
       if (encoding != null)
         in.setEncoding(encoding);
-      if (driver.loadSchema(in)) {
+      schemaKey.append(in.getSystemId());
+      if (loadSchema(driver, in, schemaKey.toString(), resources)) {
         loadedPatternTime = System.currentTimeMillis();
         if (outputSimplifiedSchema) {
           String simplifiedSchema = driver.getSchemaProperties().get(RngProperty.SIMPLIFIED_SCHEMA);
@@ -147,13 +287,28 @@ class Driver {
             eh.print(localizer.message("no_simplified_schema"));
             hadError = true;
           }
-          else
+          else if (out == null)
             System.out.print(simplifiedSchema);
+          else {
+            out.write(simplifiedSchema);
+            out.flush();
+          }
         }
 	for (int i = 1; i < args.length; i++) {
-	  if (!driver.validate(ValidationDriver.uriOrFileInputSource(args[i])))
+	  if (!driver.validate(ValidationDriver.uriOrFileInputSource(resolve(args[i]))))
 	    hadError = true;
 	}
+        // a schema kept loaded by a ValidationServer has the MemoSnapshot with which it was loaded
+        memoSnapshot = driver.getSchemaProperties().get(RngProperty.MEMO_SNAPSHOT);
+        if (memoSnapshotOutput != null && memoSnapshot != null && memoSnapshot.getData() != null) {
+          OutputStream stream = new FileOutputStream(memoSnapshotOutput);
+          try {
+            memoSnapshot.write(stream);
+          }
+          finally {
+            stream.close();
+          }
+        }
       }
       else
 	hadError = true;
@@ -177,9 +332,35 @@ class Driver {
                                endTime - startTime
                        }));
     }
+    if (statistics != null) {
+      for (Map.Entry<String, Long> entry : statistics.getTotals().entrySet())
+        eh.print(localizer.message("statistic", entry.getKey(), entry.getValue()));
+    }
     if (hadError)
       return 1;
     return 0;
   }
 
+  private boolean loadSchema(ValidationDriver driver, InputSource in, String schemaKey, ResourceRecorder resources)
+          throws SAXException, IOException {
+    if (server == null)
+      return driver.loadSchema(in);
+    Schema schema = server.getSchema(schemaKey);
+    if (schema != null) {
+      driver.setSchema(schema);
+      return true;
+    }
+    resources.add(in.getSystemId());
+    if (!driver.loadSchema(in))
+      return false;
+    server.putSchema(schemaKey, driver.getSchema(), resources);
+    return true;
+  }
+
+  private String resolve(String uriOrFile) {
+    if (directory == null || UriOrFile.toUri(uriOrFile).equals(uriOrFile) || new File(uriOrFile).isAbsolute())
+      return uriOrFile;
+    return new File(directory, uriOrFile).getPath();
+  }
+
 }
@@ -3,8 +3,12 @@ package com.thaiopensource.relaxng.util;
 import com.thaiopensource.util.OptionParser;
 import com.thaiopensource.util.PropertyMapBuilder;
 import com.thaiopensource.util.Localizer;
+import com.thaiopensource.validate.Flag;
+import com.thaiopensource.validate.FlagOption;
+import com.thaiopensource.validate.SchemaReader;
 import com.thaiopensource.validate.ValidateProperty;
 import com.thaiopensource.validate.ValidationDriver;
+import com.thaiopensource.validate.auto.AutoSchemaReader;
 import com.thaiopensource.validate.prop.rng.RngProperty;
 import com.thaiopensource.xml.sax.ErrorHandlerImpl;
 import com.thaiopensource.datatype.DatatypeLibraryLoader;
@@ -29,7 +33,7 @@ class TestDriver {
   public int doMain(String[] args) throws IOException {
     long startTime = System.currentTimeMillis();
     eh = new ErrorHandlerImpl(System.out);
-    OptionParser op = new OptionParser("i", args);
+    OptionParser op = new OptionParser("isp", args);
     PropertyMapBuilder properties = new PropertyMapBuilder();
     // This is an optimization.  It ensures that all SchemaReaders share a
     // single DatatypeLibraryLoader.
@@ -40,6 +44,19 @@ class TestDriver {
         case 'i':
           RngProperty.CHECK_ID_IDREF.add(properties);
           break;
+        case 's':
+          {
+            FlagOption option = (FlagOption)new AutoSchemaReader().getOption(SchemaReader.BASE_URI + "streaming");
+            if (option == null) {
+              eh.print(localizer.message("no_schematron", op.getOptionCharString()));
+              return 2;
+            }
+            properties.put(option.getPropertyId(), Flag.PRESENT);
+          }
+          break;
+        case 'p':
+          ValidateProperty.PARALLEL.add(properties);
+          break;
         }
       }
     }
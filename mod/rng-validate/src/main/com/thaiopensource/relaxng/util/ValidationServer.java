@@ -0,0 +1,260 @@
+package com.thaiopensource.relaxng.util;
+
+import com.thaiopensource.validate.ResourceRecorder;
+import com.thaiopensource.validate.Schema;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FilterWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Runs jing commands for clients that connect to a port of the local host, so that the schemas
+ * they use are loaded once rather than by every command.  A client sends a line with the number
+ * of arguments of the command, and then the directory against which relative file names are to be
+ * resolved, followed by the arguments.  Each of these is sent as a line with the number of bytes
+ * in its UTF-8 encoding, followed by those bytes, so it may be empty or contain newlines.
+ * The server sends back, in UTF-8, the output of the command as it is produced, followed by
+ * a line with its exit status, and closes the connection.  Several connections are served at the same
+ * time.  The schemas most recently used are kept loaded, for each set of options with which they were
+ * loaded.  A schema is loaded again when any of the resources that were read to load it, such as an
+ * included module, has changed.
+ * <p>
+ * The server does not authenticate its clients: any user of the local host can connect to the port,
+ * and so can read, with the permissions of the user running the server, any file that can be named as
+ * a schema or document, though only the errors found in it are sent back.  For this reason, a command
+ * run by the server cannot write files.
+ */
+class ValidationServer {
+  private static final int MAX_SCHEMAS = 32;
+  private static final String ENCODING = "UTF-8";
+  // the time in milliseconds for which to wait for more of a request
+  private static final int REQUEST_TIMEOUT = 30000;
+  private static final int MAX_ARGS = 10000;
+  private static final int MAX_REQUEST_BYTES = 1 << 20;
+
+  private final Map<String, LoadedSchema> schemas = new LinkedHashMap<String, LoadedSchema>(16, 0.75f, true) {
+    protected boolean removeEldestEntry(Map.Entry<String, LoadedSchema> eldest) {
+      return size() > MAX_SCHEMAS;
+    }
+  };
+
+  static private class LoadedSchema {
+    private final Schema schema;
+    private final ResourceRecorder resources;
+
+    LoadedSchema(Schema schema, ResourceRecorder resources) {
+      this.schema = schema;
+      this.resources = resources;
+    }
+  }
+
+  /**
+   * Remembers the last character written, so that the exit status can be put on a line of its own.
+   */
+  private static class StatusWriter extends FilterWriter {
+    private int lastChar = '\n';
+
+    StatusWriter(Writer out) {
+      super(out);
+    }
+
+    public void write(int c) throws IOException {
+      out.write(c);
+      lastChar = c;
+    }
+
+    public void write(char[] cbuf, int off, int len) throws IOException {
+      out.write(cbuf, off, len);
+      if (len > 0)
+        lastChar = cbuf[off + len - 1];
+    }
+
+    public void write(String str, int off, int len) throws IOException {
+      out.write(str, off, len);
+      if (len > 0)
+        lastChar = str.charAt(off + len - 1);
+    }
+
+    void writeStatus(int status) throws IOException {
+      if (lastChar != '\n')
+        write('\n');
+      write(Integer.toString(status));
+      write('\n');
+      flush();
+    }
+  }
+
+  /**
+   * Returns the schema kept loaded for a key, or null if there is none or if some resource that was read
+   * to load it has changed.
+   */
+  Schema getSchema(String key) {
+    LoadedSchema loaded;
+    synchronized (this) {
+      loaded = schemas.get(key);
+    }
+    // the resources are read without holding the lock
+    if (loaded == null || !loaded.resources.isUpToDate())
+      return null;
+    return loaded.schema;
+  }
+
+  /**
+   * Keeps a schema loaded for a key.
+   *
+   * @param resources the ResourceRecorder that recorded the resources read to load the schema
+   */
+  synchronized void putSchema(String key, Schema schema, ResourceRecorder resources) {
+    schemas.put(key, new LoadedSchema(schema, resources));
+  }
+
+  /**
+   * Serves connections to a port of the local host until the process is ended.
+   */
+  void serve(int port) throws IOException {
+    serve(new ServerSocket(port, 0, InetAddress.getByName(null)));
+  }
+
+  void serve(ServerSocket serverSocket) throws IOException {
+    ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+    try {
+      for (;;) {
+        final Socket socket = serverSocket.accept();
+        executor.execute(new Runnable() {
+          public void run() {
+            serve(socket);
+          }
+        });
+      }
+    }
+    finally {
+      executor.shutdown();
+    }
+  }
+
+  private void serve(Socket socket) {
+    try {
+      try {
+        socket.setSoTimeout(REQUEST_TIMEOUT);
+        String[] request = readRequest(new BufferedInputStream(socket.getInputStream()));
+        StatusWriter out
+          = new StatusWriter(new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), ENCODING)));
+        int status = 2;
+        if (request != null) {
+          String[] args = new String[request.length - 1];
+          System.arraycopy(request, 1, args, 0, args.length);
+          status = new Driver(out, this, new File(request[0])).doMain(args);
+        }
+        out.writeStatus(status);
+      }
+      finally {
+        socket.close();
+      }
+    }
+    catch (IOException e) {
+      // the client has gone away, or is too slow
+    }
+  }
+
+  /**
+   * Reads a request, and returns the directory followed by the arguments, or null if the request
+   * is not valid.
+   */
+  private static String[] readRequest(InputStream in) throws IOException {
+    int nArgs = readLength(in, MAX_ARGS);
+    if (nArgs < 0)
+      return null;
+    String[] request = new String[nArgs + 1];
+    int remaining = MAX_REQUEST_BYTES;
+    for (int i = 0; i < request.length; i++) {
+      int length = readLength(in, remaining);
+      if (length < 0)
+        return null;
+      remaining -= length;
+      byte[] bytes = new byte[length];
+      for (int n = 0; n < length;) {
+        int k = in.read(bytes, n, length - n);
+        if (k < 0)
+          return null;
+        n += k;
+      }
+      request[i] = new String(bytes, ENCODING);
+    }
+    return request;
+  }
+
+  /**
+   * Reads a line with a number no greater than max, and returns the number, or -1 if there is no such line.
+   */
+  private static int readLength(InputStream in, int max) throws IOException {
+    long n = 0;
+    for (int digits = 0;; digits++) {
+      int c = in.read();
+      if (c == '\n')
+        return digits == 0 ? -1 : (int)n;
+      if (c < '0' || c > '9')
+        return -1;
+      n = n*10 + (c - '0');
+      if (n > max)
+        return -1;
+    }
+  }
+
+  private static void writeString(OutputStream out, String str) throws IOException {
+    byte[] bytes = str.getBytes(ENCODING);
+    out.write((bytes.length + "\n").getBytes(ENCODING));
+    out.write(bytes);
+  }
+
+  /**
+   * Sends a command to a server on a port of the local host and copies its output to a PrintStream.
+   *
+   * @param directory the directory against which relative file names are to be resolved
+   * @return the exit status of the command
+   */
+  static int request(int port, File directory, String[] args, PrintStream stdout) throws IOException {
+    Socket socket = new Socket(InetAddress.getByName(null), port);
+    try {
+      OutputStream out = new BufferedOutputStream(socket.getOutputStream());
+      out.write((args.length + "\n").getBytes(ENCODING));
+      writeString(out, directory.getAbsolutePath());
+      for (String arg : args)
+        writeString(out, arg);
+      out.flush();
+      BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), ENCODING));
+      // the last line is the exit status
+      String lastLine = null;
+      for (String line; (line = in.readLine()) != null; lastLine = line) {
+        if (lastLine != null)
+          stdout.println(lastLine);
+      }
+      stdout.flush();
+      try {
+        return lastLine == null ? 2 : Integer.parseInt(lastLine);
+      }
+      catch (NumberFormatException e) {
+        return 2;
+      }
+    }
+    finally {
+      socket.close();
+    }
+  }
+}
@@ -1,6 +1,7 @@
 package com.thaiopensource.validate.rng;
 
 import com.thaiopensource.relaxng.parse.Parseable;
+import com.thaiopensource.relaxng.parse.Prefetcher;
 import com.thaiopensource.relaxng.parse.compact.CompactParseable;
 import com.thaiopensource.relaxng.pattern.Pattern;
 import com.thaiopensource.relaxng.pattern.NameClass;
@@ -10,7 +11,9 @@ import com.thaiopensource.resolver.xml.sax.SAX;
 import com.thaiopensource.resolver.xml.sax.SAXResolver;
 import com.thaiopensource.util.PropertyMap;
 import com.thaiopensource.util.VoidValue;
+import com.thaiopensource.xml.util.ParsedDocumentCache;
 import com.thaiopensource.validate.SchemaReader;
+import com.thaiopensource.validate.prop.rng.RngProperty;
 import com.thaiopensource.validate.rng.impl.SchemaReaderImpl;
 import org.xml.sax.ErrorHandler;
 import org.xml.sax.Locator;
@@ -28,6 +31,8 @@ public class CompactSchemaReader extends SchemaReaderImpl {
   }
 
   protected Parseable<Pattern, NameClass, Locator, VoidValue, CommentListImpl, AnnotationsImpl> createParseable(SAXSource source, SAXResolver saxResolver, ErrorHandler eh, PropertyMap properties) {
-    return new CompactParseable<Pattern, NameClass, Locator, VoidValue, CommentListImpl, AnnotationsImpl>(SAX.createInput(source.getInputSource()), saxResolver.getResolver(), eh);
+    ParsedDocumentCache cache = properties.get(RngProperty.PARSED_DOCUMENT_CACHE);
+    Prefetcher prefetcher = properties.contains(RngProperty.PREFETCH) ? new Prefetcher(saxResolver.getResolver()) : null;
+    return new CompactParseable<Pattern, NameClass, Locator, VoidValue, CommentListImpl, AnnotationsImpl>(SAX.createInput(source.getInputSource()), saxResolver.getResolver(), eh, cache, prefetcher);
   }
 }
@@ -1,6 +1,7 @@
 package com.thaiopensource.validate.rng;
 
 import com.thaiopensource.relaxng.parse.Parseable;
+import com.thaiopensource.relaxng.parse.Prefetcher;
 import com.thaiopensource.relaxng.parse.sax.SAXParseable;
 import com.thaiopensource.relaxng.pattern.Pattern;
 import com.thaiopensource.relaxng.pattern.NameClass;
@@ -8,9 +9,11 @@ import com.thaiopensource.relaxng.pattern.CommentListImpl;
 import com.thaiopensource.relaxng.pattern.AnnotationsImpl;
 import com.thaiopensource.resolver.xml.sax.SAXResolver;
 import com.thaiopensource.validate.SchemaReader;
+import com.thaiopensource.validate.prop.rng.RngProperty;
 import com.thaiopensource.validate.rng.impl.SchemaReaderImpl;
 import com.thaiopensource.util.PropertyMap;
 import com.thaiopensource.util.VoidValue;
+import com.thaiopensource.xml.util.ParsedDocumentCache;
 import org.xml.sax.ErrorHandler;
 import org.xml.sax.SAXException;
 import org.xml.sax.Locator;
@@ -30,6 +33,8 @@ public class SAXSchemaReader extends SchemaReaderImpl {
   protected Parseable<Pattern, NameClass, Locator, VoidValue, CommentListImpl, AnnotationsImpl> createParseable(SAXSource source, SAXResolver resolver, ErrorHandler eh, PropertyMap properties) throws SAXException {
     if (source.getXMLReader() == null)
       source = new SAXSource(resolver.createXMLReader(), source.getInputSource());
-    return new SAXParseable<Pattern, NameClass, Locator, VoidValue, CommentListImpl, AnnotationsImpl>(source, resolver, eh);
+    ParsedDocumentCache cache = properties.get(RngProperty.PARSED_DOCUMENT_CACHE);
+    Prefetcher prefetcher = properties.contains(RngProperty.PREFETCH) ? new Prefetcher(resolver.getResolver()) : null;
+    return new SAXParseable<Pattern, NameClass, Locator, VoidValue, CommentListImpl, AnnotationsImpl>(source, resolver, eh, cache, prefetcher);
   }
 }
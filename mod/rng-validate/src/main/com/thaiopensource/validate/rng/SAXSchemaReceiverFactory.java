@@ -1,5 +1,6 @@
 package com.thaiopensource.validate.rng;
 
+import com.thaiopensource.relaxng.parse.Prefetcher;
 import com.thaiopensource.relaxng.parse.sax.SAXParseReceiver;
 import com.thaiopensource.resolver.xml.sax.SAXResolver;
 import com.thaiopensource.util.PropertyMap;
@@ -10,6 +11,7 @@ import com.thaiopensource.validate.auto.SchemaReceiver;
 import com.thaiopensource.validate.auto.SchemaReceiverFactory;
 import com.thaiopensource.validate.prop.rng.RngProperty;
 import com.thaiopensource.validate.rng.impl.SchemaReceiverImpl;
+import com.thaiopensource.xml.util.ParsedDocumentCache;
 import com.thaiopensource.xml.util.WellKnownNamespaces;
 import org.xml.sax.ErrorHandler;
 
@@ -21,7 +23,9 @@ public class SAXSchemaReceiverFactory implements SchemaReceiverFactory {
       return null;
     SAXResolver resolver = ResolverFactory.createResolver(properties);
     ErrorHandler eh = properties.get(ValidateProperty.ERROR_HANDLER);
-    return new SchemaReceiverImpl(new SAXParseReceiver(resolver, eh), properties);
+    ParsedDocumentCache cache = properties.get(RngProperty.PARSED_DOCUMENT_CACHE);
+    Prefetcher prefetcher = properties.contains(RngProperty.PREFETCH) ? new Prefetcher(resolver.getResolver()) : null;
+    return new SchemaReceiverImpl(new SAXParseReceiver(resolver, eh, cache, prefetcher), properties);
   }
 
   public Option getOption(String uri) {
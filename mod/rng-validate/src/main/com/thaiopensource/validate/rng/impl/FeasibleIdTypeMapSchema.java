@@ -17,7 +17,7 @@ public class FeasibleIdTypeMapSchema extends AbstractSchema {
 
   public Validator createValidator(PropertyMap properties) {
     ErrorHandler eh = properties.get(ValidateProperty.ERROR_HANDLER);
-    return new IdValidator(idTypeMap, eh) {
+    return new IdValidator(idTypeMap, eh, IdValidator.getSpillThreshold(properties)) {
       public void endDocument() {
          setComplete();
       }
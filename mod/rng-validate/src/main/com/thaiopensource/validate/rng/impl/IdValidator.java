@@ -2,7 +2,9 @@ package com.thaiopensource.validate.rng.impl;
 
 import com.thaiopensource.relaxng.pattern.IdTypeMap;
 import com.thaiopensource.relaxng.sax.IdContentHandler;
+import com.thaiopensource.util.PropertyMap;
 import com.thaiopensource.validate.Validator;
+import com.thaiopensource.validate.prop.rng.RngProperty;
 import org.xml.sax.ContentHandler;
 import org.xml.sax.DTDHandler;
 import org.xml.sax.ErrorHandler;
@@ -12,6 +14,15 @@ public class IdValidator extends IdContentHandler implements Validator {
     super(idTypeMap, eh);
   }
 
+  public IdValidator(IdTypeMap idTypeMap, ErrorHandler eh, int spillThreshold) {
+    super(idTypeMap, eh, spillThreshold);
+  }
+
+  static int getSpillThreshold(PropertyMap properties) {
+    Integer spillThreshold = properties.get(RngProperty.IDREF_SPILL_THRESHOLD);
+    return spillThreshold == null ? 0 : spillThreshold;
+  }
+
   public ContentHandler getContentHandler() {
     return this;
   }
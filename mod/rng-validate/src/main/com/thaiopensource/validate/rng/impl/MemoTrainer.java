@@ -0,0 +1,88 @@
+package com.thaiopensource.validate.rng.impl;
+
+import com.thaiopensource.relaxng.pattern.Pattern;
+import com.thaiopensource.relaxng.pattern.SchemaPatternBuilder;
+import com.thaiopensource.relaxng.pattern.ValidatorPatternBuilder;
+import com.thaiopensource.validate.prop.rng.MemoSnapshot;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Merges the derivatives memoized by the validators of a schema into its MemoSnapshot when the data of
+ * the snapshot is requested.  The memos of a validator are only read while it is not in a document,
+ * and only if it has memoized new derivatives since they were last merged.
+ */
+class MemoTrainer implements MemoSnapshot.Updater {
+  private final Pattern start;
+  private final ValidatorPatternBuilder merged;
+  private final List<Trainee> trainees = new ArrayList<Trainee>();
+
+  static class Trainee {
+    private final ValidatorPatternBuilder builder;
+    private boolean busy = false;
+    // the number of derivatives that builder had memoized when its memos were last merged
+    private int mergedDerivativeCount;
+
+    Trainee(ValidatorPatternBuilder builder) {
+      this.builder = builder;
+      this.mergedDerivativeCount = builder.getMemoizedDerivativeCount();
+    }
+
+    /**
+     * Records whether the validator is in a document, and so may be changing its builder.
+     */
+    synchronized void setBusy(boolean busy) {
+      this.busy = busy;
+    }
+
+    /**
+     * Returns the memos of the builder, or null if they have not changed since they were last merged
+     * or the validator is in a document.
+     */
+    synchronized byte[] takeMemos(Pattern start) throws IOException {
+      if (busy || builder.getMemoizedDerivativeCount() == mergedDerivativeCount)
+        return null;
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      builder.writeMemos(start, out);
+      mergedDerivativeCount = builder.getMemoizedDerivativeCount();
+      return out.toByteArray();
+    }
+  }
+
+  MemoTrainer(SchemaPatternBuilder spb, Pattern start) {
+    this.start = start;
+    this.merged = new ValidatorPatternBuilder(spb);
+  }
+
+  synchronized Trainee addTrainee(ValidatorPatternBuilder builder) {
+    Trainee trainee = new Trainee(builder);
+    trainees.add(trainee);
+    return trainee;
+  }
+
+  public synchronized byte[] update(byte[] data) {
+    try {
+      boolean changed = false;
+      for (Trainee trainee : trainees) {
+        byte[] memos = trainee.takeMemos(start);
+        if (memos != null) {
+          merged.readMemos(start, new ByteArrayInputStream(memos));
+          changed = true;
+        }
+      }
+      if (!changed)
+        return data;
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      merged.writeMemos(start, out);
+      return out.toByteArray();
+    }
+    catch (IOException e) {
+      // cannot happen with memos written by the same schema to a byte array
+      throw new RuntimeException(e);
+    }
+  }
+}
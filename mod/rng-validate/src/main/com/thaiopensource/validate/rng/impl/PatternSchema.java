@@ -5,22 +5,92 @@ import com.thaiopensource.relaxng.pattern.SchemaPatternBuilder;
 import com.thaiopensource.relaxng.pattern.ValidatorPatternBuilder;
 import com.thaiopensource.util.PropertyMap;
 import com.thaiopensource.validate.AbstractSchema;
+import com.thaiopensource.validate.StatisticsHandler;
 import com.thaiopensource.validate.ValidateProperty;
 import com.thaiopensource.validate.Validator;
+import com.thaiopensource.validate.prop.rng.MemoSnapshot;
+import com.thaiopensource.validate.prop.rng.RngProperty;
 import org.xml.sax.ErrorHandler;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
 
 public class PatternSchema extends AbstractSchema {
   private final SchemaPatternBuilder spb;
   private final Pattern start;
+  private final boolean canonical;
+  private final MemoSnapshot memoSnapshot;
+  // null unless memoSnapshot is updated
+  private final MemoTrainer memoTrainer;
+  // a builder with the memos read from memoSnapshot, which is null if it was empty or could not be read
+  private boolean memoSnapshotRead = false;
+  private ValidatorPatternBuilder memoSnapshotBuilder;
 
   public PatternSchema(SchemaPatternBuilder spb, Pattern start, PropertyMap properties) {
     super(properties);
     this.spb = spb;
     this.start = start;
+    this.canonical = properties.contains(RngProperty.CANONICAL_PATTERNS);
+    this.memoSnapshot = properties.get(RngProperty.MEMO_SNAPSHOT);
+    if (memoSnapshot != null && memoSnapshot.getUpdate()) {
+      memoTrainer = new MemoTrainer(spb, start);
+      memoSnapshot.addUpdater(memoTrainer);
+    }
+    else
+      memoTrainer = null;
+  }
+
+  /**
+   * Reads the MemoSnapshot of the schema, if any, and warns if it cannot be used.
+   */
+  void readMemoSnapshot(ErrorHandler eh) throws SAXException {
+    if (memoSnapshot == null)
+      return;
+    try {
+      getMemoSnapshotBuilder();
+    }
+    catch (IOException e) {
+      if (eh != null)
+        eh.warning(new SAXParseException(e.getMessage(), null));
+    }
+  }
+
+  /**
+   * Returns a builder with the memos of the MemoSnapshot, reading it the first time, or null if it is empty.
+   * An IOException is only thrown the first time.
+   */
+  private synchronized ValidatorPatternBuilder getMemoSnapshotBuilder() throws IOException {
+    if (!memoSnapshotRead) {
+      memoSnapshotRead = true;
+      byte[] data = memoSnapshot.getData();
+      if (data != null) {
+        ValidatorPatternBuilder builder = new ValidatorPatternBuilder(spb);
+        builder.readMemos(start, new ByteArrayInputStream(data));
+        memoSnapshotBuilder = builder;
+      }
+    }
+    return memoSnapshotBuilder;
   }
 
   public Validator createValidator(PropertyMap properties) {
     ErrorHandler eh = properties.get(ValidateProperty.ERROR_HANDLER);
-    return new RngValidator(start, new ValidatorPatternBuilder(spb), eh);
+    StatisticsHandler sh = properties.get(ValidateProperty.STATISTICS_HANDLER);
+    if (memoSnapshot == null)
+      return new RngValidator(start, new ValidatorPatternBuilder(spb, canonical, sh != null), eh, sh);
+    ValidatorPatternBuilder builder;
+    try {
+      builder = getMemoSnapshotBuilder();
+    }
+    catch (IOException e) {
+      // readMemoSnapshot warned about this when the schema was loaded
+      builder = null;
+    }
+    if (builder == null)
+      builder = new ValidatorPatternBuilder(spb, canonical, sh != null);
+    else
+      builder = builder.copy(canonical, sh != null);
+    return new RngValidator(start, builder, eh, sh, memoTrainer == null ? null : memoTrainer.addTrainee(builder));
   }
 }
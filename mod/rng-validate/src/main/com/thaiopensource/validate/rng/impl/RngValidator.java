@@ -3,14 +3,39 @@ package com.thaiopensource.validate.rng.impl;
 import com.thaiopensource.relaxng.sax.PatternValidator;
 import com.thaiopensource.relaxng.pattern.Pattern;
 import com.thaiopensource.relaxng.pattern.ValidatorPatternBuilder;
+import com.thaiopensource.validate.StatisticsHandler;
 import com.thaiopensource.validate.Validator;
 import org.xml.sax.ErrorHandler;
 import org.xml.sax.ContentHandler;
 import org.xml.sax.DTDHandler;
+import org.xml.sax.SAXException;
 
 public class RngValidator extends PatternValidator implements Validator {
+  private final ValidatorPatternBuilder builder;
+  private final StatisticsHandler sh;
+  private final MemoTrainer.Trainee trainee;
+
   public RngValidator(Pattern pattern, ValidatorPatternBuilder builder, ErrorHandler eh) {
+    this(pattern, builder, eh, null);
+  }
+
+  /**
+   * @param sh the StatisticsHandler to receive the statistics for each document, or null; if not null,
+   * builder must collect statistics
+   */
+  public RngValidator(Pattern pattern, ValidatorPatternBuilder builder, ErrorHandler eh, StatisticsHandler sh) {
+    this(pattern, builder, eh, sh, null);
+  }
+
+  /**
+   * @param trainee the Trainee through which the memos of builder are merged into a MemoSnapshot, or null
+   */
+  RngValidator(Pattern pattern, ValidatorPatternBuilder builder, ErrorHandler eh, StatisticsHandler sh,
+               MemoTrainer.Trainee trainee) {
     super(pattern, builder, eh);
+    this.builder = builder;
+    this.sh = sh;
+    this.trainee = trainee;
   }
 
   public ContentHandler getContentHandler() {
@@ -21,7 +46,29 @@ public class RngValidator extends PatternValidator implements Validator {
     return this;
   }
 
+  public void startDocument() throws SAXException {
+    if (trainee != null)
+      trainee.setBusy(true);
+    super.startDocument();
+  }
+
+  public void endDocument() throws SAXException {
+    super.endDocument();
+    if (trainee != null)
+      trainee.setBusy(false);
+    if (sh != null)
+      sh.statistics(builder.takeStatistics());
+  }
+
   public void reset() {
-    super.reset();
+    if (trainee == null)
+      super.reset();
+    else {
+      // the memos must not be merged while they are being changed
+      synchronized (trainee) {
+        super.reset();
+        trainee.setBusy(false);
+      }
+    }
   }
 }
@@ -45,6 +45,10 @@ public abstract class SchemaReaderImpl extends AbstractSchemaReader {
     RngProperty.DATATYPE_LIBRARY_FACTORY,
     RngProperty.CHECK_ID_IDREF,
     RngProperty.FEASIBLE,
+    RngProperty.PARSED_DOCUMENT_CACHE,
+    RngProperty.PREFETCH,
+    RngProperty.CANONICAL_PATTERNS,
+    RngProperty.MEMO_SNAPSHOT,
     WrapProperty.ATTRIBUTE_OWNER,
   };
 
@@ -106,7 +110,9 @@ public abstract class SchemaReaderImpl extends AbstractSchemaReader {
       start = FeasibleTransform.transform(spb, start);
     properties = new SimplifiedSchemaPropertyMap(AbstractSchema.filterProperties(properties, supportedPropertyIds),
                                                  start);
-    Schema schema = new PatternSchema(spb, start, properties);
+    PatternSchema patternSchema = new PatternSchema(spb, start, properties);
+    patternSchema.readMemoSnapshot(properties.get(ValidateProperty.ERROR_HANDLER));
+    Schema schema = patternSchema;
     if (spb.hasIdTypes() && properties.contains(RngProperty.CHECK_ID_IDREF)) {
       ErrorHandler eh = properties.get(ValidateProperty.ERROR_HANDLER);
       IdTypeMap idTypeMap = new IdTypeMapBuilder(eh, start).getIdTypeMap();
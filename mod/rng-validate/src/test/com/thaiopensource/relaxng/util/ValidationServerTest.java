@@ -0,0 +1,154 @@
+package com.thaiopensource.relaxng.util;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+
+/**
+ * Test running commands with a ValidationServer on a port of the local host.
+ */
+public class ValidationServerTest {
+  private static final String SCHEMA = "element doc { element a { text }* }";
+  private static final String VALID = "<doc><a/></doc>";
+  private static final String INVALID = "<doc>\n<b/></doc>";
+
+  private File dir;
+  private ServerSocket serverSocket;
+  private String port;
+  private String output;
+
+  @BeforeClass
+  public void setUp() throws IOException {
+    dir = File.createTempFile("server", "");
+    if (!dir.delete() || !dir.mkdir())
+      throw new IOException("cannot create " + dir);
+    write("schema.rnc", SCHEMA);
+    write("valid.xml", VALID);
+    write("invalid.xml", INVALID);
+    write("valid\nwith newline.xml", VALID);
+    serverSocket = new ServerSocket(0, 0, InetAddress.getByName(null));
+    port = String.valueOf(serverSocket.getLocalPort());
+    Thread thread = new Thread(new Runnable() {
+      public void run() {
+        try {
+          new ValidationServer().serve(serverSocket);
+        }
+        catch (IOException e) {
+          // the server socket was closed
+        }
+      }
+    });
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  @AfterClass
+  public void tearDown() throws IOException {
+    serverSocket.close();
+    for (File file : dir.listFiles())
+      file.delete();
+    dir.delete();
+  }
+
+  private void write(String name, String content) throws IOException {
+    OutputStream out = new FileOutputStream(new File(dir, name));
+    try {
+      out.write(content.getBytes("UTF-8"));
+    }
+    finally {
+      out.close();
+    }
+  }
+
+  private int request(String... args) throws IOException {
+    ByteArrayOutputStream buf = new ByteArrayOutputStream();
+    PrintStream out = new PrintStream(buf, true, "UTF-8");
+    int status = ValidationServer.request(serverSocket.getLocalPort(), dir, args, out);
+    output = new String(buf.toByteArray(), "UTF-8");
+    return status;
+  }
+
+  @Test
+  public void testValid() throws IOException {
+    Assert.assertEquals(request("-R", port, "-c", "schema.rnc", "valid.xml"), 0);
+    Assert.assertEquals(output, "");
+    // again, with the schema already loaded
+    Assert.assertEquals(request("-R", port, "-c", "schema.rnc", "valid.xml"), 0);
+    Assert.assertEquals(output, "");
+  }
+
+  @Test
+  public void testInvalid() throws IOException {
+    Assert.assertEquals(request("-R", port, "-c", "schema.rnc", "valid.xml", "invalid.xml"), 1);
+    Assert.assertTrue(output.contains("invalid.xml:2:"), output);
+    Assert.assertTrue(output.contains("error"), output);
+    Assert.assertFalse(output.contains("valid.xml:1:"), output);
+  }
+
+  @Test
+  public void testChangedModule() throws IOException {
+    write("main.rnc", "include \"module.rnc\"");
+    write("module.rnc", "start = element doc { element a { text }* }");
+    Assert.assertEquals(request("-R", port, "-c", "main.rnc", "valid.xml"), 0);
+    Assert.assertEquals(output, "");
+    write("module.rnc", "start = element doc { element b { text }* }");
+    Assert.assertEquals(request("-R", port, "-c", "main.rnc", "valid.xml"), 1);
+    Assert.assertTrue(output.contains("valid.xml:1:"), output);
+    Assert.assertEquals(request("-R", port, "-c", "main.rnc", "invalid.xml"), 0);
+    Assert.assertEquals(output, "");
+  }
+
+  @Test
+  public void testArguments() throws IOException {
+    Assert.assertEquals(request("-R", port, "-c", "schema.rnc", "valid\nwith newline.xml"), 0);
+    Assert.assertEquals(output, "");
+    // an empty argument is passed on, rather than ending the arguments
+    Assert.assertEquals(request("-R", port, "-c", "schema.rnc", "valid.xml", ""), 1);
+    Assert.assertTrue(output.length() > 0);
+  }
+
+  @Test
+  public void testNoWrite() throws IOException {
+    Assert.assertEquals(request("-R", port, "-c", "-M", "snapshot", "schema.rnc", "valid.xml"), 2);
+    Assert.assertTrue(output.contains("\"-M\""), output);
+    Assert.assertFalse(new File(dir, "snapshot").exists());
+  }
+
+  @Test
+  public void testInvalidRequest() throws IOException {
+    Assert.assertEquals(rawRequest("x\n"), "2\n");
+    Assert.assertEquals(rawRequest("99999999999\n"), "2\n");
+    // too few arguments
+    Assert.assertEquals(rawRequest("2\n1\n/1\nx"), "2\n");
+    // an argument longer than the rest of the request
+    Assert.assertEquals(rawRequest("1\n1\n/5\nx"), "2\n");
+  }
+
+  private String rawRequest(String request) throws IOException {
+    Socket socket = new Socket(InetAddress.getByName(null), serverSocket.getLocalPort());
+    try {
+      socket.getOutputStream().write(request.getBytes("UTF-8"));
+      socket.shutdownOutput();
+      InputStream in = socket.getInputStream();
+      ByteArrayOutputStream buf = new ByteArrayOutputStream();
+      for (int c; (c = in.read()) >= 0;)
+        buf.write(c);
+      return new String(buf.toByteArray(), "UTF-8");
+    }
+    finally {
+      socket.close();
+    }
+  }
+}
@@ -0,0 +1,95 @@
+package com.thaiopensource.validate.rng;
+
+import com.thaiopensource.util.PropertyMap;
+import com.thaiopensource.util.PropertyMapBuilder;
+import com.thaiopensource.validate.Schema;
+import com.thaiopensource.validate.StatisticsAccumulator;
+import com.thaiopensource.validate.ValidateProperty;
+import com.thaiopensource.validate.Validator;
+import com.thaiopensource.validate.prop.rng.MemoSnapshot;
+import com.thaiopensource.validate.prop.rng.RngProperty;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
+import org.xml.sax.helpers.DefaultHandler;
+
+import java.io.StringReader;
+
+/**
+ * Test that a MemoSnapshot that is updated gets the memos of all the validators that train it.
+ */
+public class MemoSnapshotTrainingTest {
+  private static final String SCHEMA = "element doc { element a { empty }* & element b { empty }* }";
+
+  @Test
+  public void testSeveralValidators() throws Exception {
+    MemoSnapshot snapshot = new MemoSnapshot(true);
+    PropertyMap properties = createProperties(snapshot, null);
+    Schema schema = createSchema(properties);
+    Validator validator1 = schema.createValidator(properties);
+    Validator validator2 = schema.createValidator(properties);
+    ContentHandler handler1 = validator1.getContentHandler();
+    handler1.startDocument();
+    startElement(handler1, "doc");
+    validate(validator2, "b");
+    // the memos of a validator in the middle of a document are left for a later request
+    byte[] data = snapshot.getData();
+    Assert.assertNotNull(data);
+    Assert.assertTrue(startTagMisses(data, "a") > 0);
+    Assert.assertEquals(startTagMisses(data, "b"), 0);
+    startElement(handler1, "a");
+    endElement(handler1, "a");
+    endElement(handler1, "doc");
+    handler1.endDocument();
+    validator1.reset();
+    data = snapshot.getData();
+    Assert.assertEquals(startTagMisses(data, "a"), 0);
+    Assert.assertEquals(startTagMisses(data, "b"), 0);
+    // the data is not written again if nothing has changed
+    Assert.assertSame(snapshot.getData(), data);
+  }
+
+  private static long startTagMisses(byte[] data, String child) throws Exception {
+    MemoSnapshot snapshot = new MemoSnapshot(false);
+    snapshot.setData(data);
+    StatisticsAccumulator accumulator = new StatisticsAccumulator();
+    PropertyMap properties = createProperties(snapshot, accumulator);
+    validate(createSchema(properties).createValidator(properties), child);
+    return accumulator.getTotals().get("startTagOpenDerivMisses");
+  }
+
+  private static PropertyMap createProperties(MemoSnapshot snapshot, StatisticsAccumulator accumulator) {
+    PropertyMapBuilder builder = new PropertyMapBuilder();
+    builder.put(ValidateProperty.ERROR_HANDLER, new DefaultHandler());
+    builder.put(RngProperty.MEMO_SNAPSHOT, snapshot);
+    if (accumulator != null)
+      builder.put(ValidateProperty.STATISTICS_HANDLER, accumulator);
+    return builder.toPropertyMap();
+  }
+
+  private static Schema createSchema(PropertyMap properties) throws Exception {
+    return CompactSchemaReader.getInstance().createSchema(new InputSource(new StringReader(SCHEMA)), properties);
+  }
+
+  private static void validate(Validator validator, String child) throws SAXException {
+    ContentHandler handler = validator.getContentHandler();
+    handler.startDocument();
+    startElement(handler, "doc");
+    startElement(handler, child);
+    endElement(handler, child);
+    endElement(handler, "doc");
+    handler.endDocument();
+    validator.reset();
+  }
+
+  private static void startElement(ContentHandler handler, String name) throws SAXException {
+    handler.startElement("", name, name, new AttributesImpl());
+  }
+
+  private static void endElement(ContentHandler handler, String name) throws SAXException {
+    handler.endElement("", name, name);
+  }
+}
@@ -0,0 +1,108 @@
+package com.thaiopensource.validate.rng;
+
+import com.thaiopensource.util.PropertyMapBuilder;
+import com.thaiopensource.util.Sha1;
+import com.thaiopensource.util.UriOrFile;
+import com.thaiopensource.validate.SchemaReader;
+import com.thaiopensource.validate.ValidateProperty;
+import com.thaiopensource.validate.ValidationDriver;
+import com.thaiopensource.validate.prop.rng.RngProperty;
+import com.thaiopensource.xml.util.ParsedDocumentCache;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+import org.xml.sax.InputSource;
+import org.xml.sax.helpers.DefaultHandler;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringReader;
+
+/**
+ * Test that a ParsedDocumentCache shared by several loads of a schema gives the modules of the schema
+ * as they are at each load.
+ */
+public class SchemaReaderCacheTest {
+  private static final String DOC = "<doc/>";
+  private static final String OTHER = "<other/>";
+
+  @DataProvider(name = "syntaxes")
+  public Object[][] syntaxes() {
+    return new Object[][] {
+            { SAXSchemaReader.getInstance(), "rng",
+              "<grammar xmlns='http://relaxng.org/ns/structure/1.0'><include href='mod.rng'/></grammar>",
+              "<grammar xmlns='http://relaxng.org/ns/structure/1.0'><start><element name='doc'><empty/></element></start></grammar>",
+              "<grammar xmlns='http://relaxng.org/ns/structure/1.0'><start><element name='other'><empty/></element></start></grammar>" },
+            { CompactSchemaReader.getInstance(), "rnc",
+              "include \"mod.rnc\"",
+              "start = element doc { empty }",
+              "start = element other { empty }" },
+    };
+  }
+
+  @Test(dataProvider = "syntaxes")
+  public void testChangedModule(SchemaReader schemaReader, String extension, String main, String module,
+                                String changedModule) throws Exception {
+    File dir = createTempDir();
+    try {
+      File mainFile = new File(dir, "main." + extension);
+      File moduleFile = new File(dir, "mod." + extension);
+      write(mainFile, main);
+      write(moduleFile, module);
+      ParsedDocumentCache cache = new ParsedDocumentCache(true);
+      String moduleUri = UriOrFile.fileToUri(moduleFile);
+
+      ValidationDriver driver = createDriver(schemaReader, cache);
+      Assert.assertTrue(driver.loadSchema(ValidationDriver.fileInputSource(mainFile)));
+      Assert.assertTrue(driver.validate(new InputSource(new StringReader(DOC))));
+      Assert.assertEquals(cache.size(), 2);
+      Object parsedModule = cache.get(moduleUri, Sha1.digest(module));
+      Assert.assertNotNull(parsedModule);
+
+      // an unchanged module is taken from the cache
+      driver = createDriver(schemaReader, cache);
+      Assert.assertTrue(driver.loadSchema(ValidationDriver.fileInputSource(mainFile)));
+      Assert.assertTrue(driver.validate(new InputSource(new StringReader(DOC))));
+      Assert.assertSame(cache.get(moduleUri, Sha1.digest(module)), parsedModule);
+
+      // a changed module is parsed again
+      write(moduleFile, changedModule);
+      driver = createDriver(schemaReader, cache);
+      Assert.assertTrue(driver.loadSchema(ValidationDriver.fileInputSource(mainFile)));
+      Assert.assertFalse(driver.validate(new InputSource(new StringReader(DOC))));
+      Assert.assertTrue(driver.validate(new InputSource(new StringReader(OTHER))));
+      Assert.assertEquals(cache.size(), 2);
+    }
+    finally {
+      for (File file : dir.listFiles())
+        file.delete();
+      dir.delete();
+    }
+  }
+
+  private static ValidationDriver createDriver(SchemaReader schemaReader, ParsedDocumentCache cache) {
+    PropertyMapBuilder builder = new PropertyMapBuilder();
+    builder.put(ValidateProperty.ERROR_HANDLER, new DefaultHandler());
+    builder.put(RngProperty.PARSED_DOCUMENT_CACHE, cache);
+    return new ValidationDriver(builder.toPropertyMap(), schemaReader);
+  }
+
+  private static File createTempDir() throws IOException {
+    File dir = File.createTempFile("cache", "");
+    if (!dir.delete() || !dir.mkdir())
+      throw new IOException("cannot create " + dir);
+    return dir;
+  }
+
+  private static void write(File file, String content) throws IOException {
+    OutputStream out = new FileOutputStream(file);
+    try {
+      out.write(content.getBytes("UTF-8"));
+    }
+    finally {
+      out.close();
+    }
+  }
+}
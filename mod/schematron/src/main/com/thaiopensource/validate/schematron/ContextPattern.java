@@ -0,0 +1,248 @@
+package com.thaiopensource.validate.schematron;
+
+import com.thaiopensource.validate.schematron.ExpressionClassifier.Token;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A rule context that can be matched against the names of the open elements.  Only
+ * XSLT patterns that are unions of paths of element name tests, optionally with boolean
+ * predicates on the last step, are supported.
+ */
+class ContextPattern {
+  private final Alternative[] alternatives;
+
+  static class Step {
+    // null means any namespace
+    private final String namespaceUri;
+    // null means any local name
+    private final String localName;
+    // true if separated from the previous step by //
+    private final boolean descendant;
+
+    Step(String namespaceUri, String localName, boolean descendant) {
+      this.namespaceUri = namespaceUri;
+      this.localName = localName;
+      this.descendant = descendant;
+    }
+
+    boolean matches(String namespaceUri, String localName) {
+      return ((this.localName == null || this.localName.equals(localName))
+              && (this.namespaceUri == null || this.namespaceUri.equals(namespaceUri)));
+    }
+  }
+
+  static class Alternative {
+    private final Step[] steps;
+    private final boolean absolute;
+    private final String[] predicates;
+    private final int classification;
+
+    Alternative(Step[] steps, boolean absolute, String[] predicates, int classification) {
+      this.steps = steps;
+      this.absolute = absolute;
+      this.predicates = predicates;
+      this.classification = classification;
+    }
+
+    String[] getPredicates() {
+      return predicates;
+    }
+
+    int getClassification() {
+      return classification;
+    }
+
+    /**
+     * Returns true if the document element can match the steps of this alternative.
+     */
+    boolean canMatchDocumentElement() {
+      return steps.length == 1;
+    }
+
+    /**
+     * Tests whether the element at the top of the stack matches the steps of this alternative.
+     * Predicates are not tested.
+     */
+    boolean matches(List<String> namespaceUris, List<String> localNames) {
+      return matches(steps.length - 1, namespaceUris, localNames, namespaceUris.size() - 1);
+    }
+
+    private boolean matches(int stepIndex, List<String> namespaceUris, List<String> localNames, int depth) {
+      if (depth < 0)
+        return false;
+      Step step = steps[stepIndex];
+      if (!step.matches(namespaceUris.get(depth), localNames.get(depth)))
+        return false;
+      if (stepIndex == 0)
+        return !absolute || depth == 0;
+      if (!steps[stepIndex].descendant)
+        return matches(stepIndex - 1, namespaceUris, localNames, depth - 1);
+      for (int d = depth - 1; d >= 0; d--)
+        if (matches(stepIndex - 1, namespaceUris, localNames, d))
+          return true;
+      return false;
+    }
+  }
+
+  private ContextPattern(Alternative[] alternatives) {
+    this.alternatives = alternatives;
+  }
+
+  Alternative[] getAlternatives() {
+    return alternatives;
+  }
+
+  /**
+   * Returns the ExpressionClassifier classification that applies to all the predicates.
+   */
+  int getClassification() {
+    int result = ExpressionClassifier.ELEMENT;
+    for (int i = 0; i < alternatives.length; i++)
+      result = Math.min(result, alternatives[i].classification);
+    return result;
+  }
+
+  /**
+   * Returns true if the document element can match some alternative.
+   */
+  boolean canMatchDocumentElement() {
+    for (int i = 0; i < alternatives.length; i++)
+      if (alternatives[i].canMatchDocumentElement())
+        return true;
+    return false;
+  }
+
+  /**
+   * Parses a rule context.  Returns null if the context is not supported.
+   *
+   * @param prefixMap a Map from prefixes to namespace URIs
+   */
+  static ContextPattern parse(String context, Map<String, String> prefixMap) {
+    List<Token> tokens = ExpressionClassifier.tokenize(context);
+    if (tokens == null || tokens.isEmpty())
+      return null;
+    List<Alternative> alternatives = new ArrayList<Alternative>();
+    int start = 0;
+    for (int i = 0, len = tokens.size(); i <= len; i++) {
+      if (i == len || tokens.get(i).type == ExpressionClassifier.PIPE) {
+        Alternative alternative = parseAlternative(context, tokens, start, i, prefixMap);
+        if (alternative == null)
+          return null;
+        alternatives.add(alternative);
+        start = i + 1;
+      }
+      else if (tokens.get(i).type == ExpressionClassifier.LBRACKET) {
+        // skip to the matching ]; a | inside a predicate does not separate alternatives
+        int depth = 0;
+        for (; i < len; i++) {
+          int type = tokens.get(i).type;
+          if (type == ExpressionClassifier.LBRACKET)
+            depth++;
+          else if (type == ExpressionClassifier.RBRACKET && --depth == 0)
+            break;
+        }
+        if (i == len)
+          return null;
+      }
+    }
+    return new ContextPattern(alternatives.toArray(new Alternative[alternatives.size()]));
+  }
+
+  private static Alternative parseAlternative(String context, List<Token> tokens, int start, int end,
+                                              Map<String, String> prefixMap) {
+    List<Step> steps = new ArrayList<Step>();
+    List<String> predicates = new ArrayList<String>();
+    int classification = ExpressionClassifier.ELEMENT;
+    boolean absolute = false;
+    boolean descendant = false;
+    int i = start;
+    if (i < end) {
+      switch (tokens.get(i).type) {
+      case ExpressionClassifier.SLASH:
+        absolute = true;
+        i++;
+        break;
+      case ExpressionClassifier.DOUBLE_SLASH:
+        i++;
+        break;
+      }
+    }
+    for (;;) {
+      if (i >= end)
+        return null;
+      Token t = tokens.get(i);
+      if (t.type == ExpressionClassifier.AXIS_NAME) {
+        if (!t.value.equals("child"))
+          return null;
+        if (++i >= end || tokens.get(i).type != ExpressionClassifier.COLONCOLON)
+          return null;
+        if (++i >= end)
+          return null;
+        t = tokens.get(i);
+      }
+      if (t.type != ExpressionClassifier.NAME_TEST)
+        return null;
+      Step step = makeStep(t.value, descendant, prefixMap);
+      if (step == null)
+        return null;
+      steps.add(step);
+      i++;
+      // predicates are allowed only on the last step
+      while (i < end && tokens.get(i).type == ExpressionClassifier.LBRACKET) {
+        int predicateStart = i + 1;
+        int depth = 0;
+        for (; i < end; i++) {
+          int type = tokens.get(i).type;
+          if (type == ExpressionClassifier.LBRACKET)
+            depth++;
+          else if (type == ExpressionClassifier.RBRACKET && --depth == 0)
+            break;
+        }
+        if (i >= end || i == predicateStart)
+          return null;
+        String predicate = context.substring(tokens.get(predicateStart).start, tokens.get(i - 1).end);
+        int c = ExpressionClassifier.classifyPredicate(predicate);
+        if (c == ExpressionClassifier.DOCUMENT)
+          return null;
+        classification = Math.min(classification, c);
+        predicates.add(predicate);
+        i++;
+      }
+      if (i == end)
+        break;
+      if (!predicates.isEmpty())
+        return null;
+      switch (tokens.get(i).type) {
+      case ExpressionClassifier.SLASH:
+        descendant = false;
+        break;
+      case ExpressionClassifier.DOUBLE_SLASH:
+        descendant = true;
+        break;
+      default:
+        return null;
+      }
+      i++;
+    }
+    return new Alternative(steps.toArray(new Step[steps.size()]),
+                           absolute,
+                           predicates.toArray(new String[predicates.size()]),
+                           classification);
+  }
+
+  private static Step makeStep(String nameTest, boolean descendant, Map<String, String> prefixMap) {
+    if (nameTest.equals("*"))
+      return new Step(null, null, descendant);
+    int colon = nameTest.indexOf(':');
+    if (colon < 0)
+      return new Step("", nameTest, descendant);
+    String ns = prefixMap.get(nameTest.substring(0, colon));
+    if (ns == null)
+      return null;
+    String localName = nameTest.substring(colon + 1);
+    return new Step(ns, localName.equals("*") ? null : localName, descendant);
+  }
+}
@@ -0,0 +1,170 @@
+package com.thaiopensource.validate.schematron;
+
+import com.thaiopensource.resolver.xml.sax.SAXResolver;
+import com.thaiopensource.util.UriOrFile;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+import javax.xml.transform.Source;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.URIResolver;
+import javax.xml.transform.sax.SAXSource;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.CharArrayReader;
+import java.io.CharArrayWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Caches the content of the documents loaded by the document() function, so that documents
+ * such as code lists are not read again for every validation with the same schema.  Documents
+ * are cached by their resolved system identifier; the most recently used ones are kept.  Only local
+ * files are cached, since only their modification can be detected: cached content is used only while
+ * the modification time and length of the file are unchanged.  A file modified so shortly before it was
+ * read that a later modification might not change its modification time is not cached.
+ */
+class DocumentCache {
+  private static final int MAX_ENTRIES = 16;
+  // allows for file systems that record modification times to the nearest two seconds
+  private static final long MODIFICATION_TIME_GRANULARITY = 2000;
+
+  private final Map<String, Content> map = new LinkedHashMap<String, Content>(16, 0.75f, true) {
+    protected boolean removeEldestEntry(Map.Entry<String, Content> eldest) {
+      return size() > MAX_ENTRIES;
+    }
+  };
+
+  static private class Content {
+    private final String systemId;
+    private final String publicId;
+    private final String encoding;
+    private final byte[] bytes;
+    private final char[] chars;
+    private long lastModified;
+    private long length;
+
+    Content(String systemId, String publicId, String encoding, byte[] bytes, char[] chars) {
+      this.systemId = systemId;
+      this.publicId = publicId;
+      this.encoding = encoding;
+      this.bytes = bytes;
+      this.chars = chars;
+    }
+
+    boolean isCurrent(File file) {
+      return file.lastModified() == lastModified && file.length() == length;
+    }
+
+    InputSource createInputSource() {
+      InputSource in = new InputSource(systemId);
+      in.setPublicId(publicId);
+      in.setEncoding(encoding);
+      if (chars != null)
+        in.setCharacterStream(new CharArrayReader(chars));
+      else
+        in.setByteStream(new ByteArrayInputStream(bytes));
+      return in;
+    }
+  }
+
+  /**
+   * Returns a URIResolver that resolves using saxResolver and reads documents through this cache.
+   */
+  URIResolver createURIResolver(final SAXResolver saxResolver) {
+    return new URIResolver() {
+      public Source resolve(String href, String base) throws TransformerException {
+        try {
+          return DocumentCache.this.resolve(saxResolver, href, base);
+        }
+        catch (SAXException e) {
+          Exception wrapped = e.getException();
+          if (wrapped instanceof TransformerException)
+            throw (TransformerException)wrapped;
+          throw new TransformerException(wrapped != null ? wrapped : e);
+        }
+        catch (IOException e) {
+          throw new TransformerException(e);
+        }
+      }
+    };
+  }
+
+  private SAXSource resolve(SAXResolver saxResolver, String href, String base) throws SAXException, IOException {
+    SAXSource source = saxResolver.resolve(href, base);
+    InputSource in = source.getInputSource();
+    String systemId = in.getSystemId();
+    if (systemId == null)
+      return source;
+    File file = UriOrFile.uriToFile(systemId);
+    if (file == null)
+      return source;
+    Content content = get(systemId);
+    if (content == null || !content.isCurrent(file)) {
+      // Taken before reading, so that a modification made while reading causes the file to be read again.
+      long lastModified = file.lastModified();
+      long length = file.length();
+      long readTime = System.currentTimeMillis();
+      content = read(saxResolver.open(in));
+      content.lastModified = lastModified;
+      content.length = length;
+      if (lastModified + MODIFICATION_TIME_GRANULARITY < readTime)
+        put(systemId, content);
+      else
+        remove(systemId);
+    }
+    else
+      close(in);
+    return new SAXSource(source.getXMLReader(), content.createInputSource());
+  }
+
+  private synchronized Content get(String systemId) {
+    return map.get(systemId);
+  }
+
+  private synchronized void put(String systemId, Content content) {
+    map.put(systemId, content);
+  }
+
+  private synchronized void remove(String systemId) {
+    map.remove(systemId);
+  }
+
+  private static Content read(InputSource in) throws IOException {
+    Reader reader = in.getCharacterStream();
+    if (reader != null) {
+      CharArrayWriter buffer = new CharArrayWriter();
+      try {
+        char[] buf = new char[8192];
+        for (int n; (n = reader.read(buf, 0, buf.length)) > 0;)
+          buffer.write(buf, 0, n);
+      }
+      finally {
+        reader.close();
+      }
+      return new Content(in.getSystemId(), in.getPublicId(), in.getEncoding(), null, buffer.toCharArray());
+    }
+    ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    InputStream stream = in.getByteStream();
+    try {
+      byte[] buf = new byte[8192];
+      for (int n; (n = stream.read(buf, 0, buf.length)) > 0;)
+        buffer.write(buf, 0, n);
+    }
+    finally {
+      stream.close();
+    }
+    return new Content(in.getSystemId(), in.getPublicId(), in.getEncoding(), buffer.toByteArray(), null);
+  }
+
+  private static void close(InputSource in) throws IOException {
+    if (in.getCharacterStream() != null)
+      in.getCharacterStream().close();
+    if (in.getByteStream() != null)
+      in.getByteStream().close();
+  }
+}
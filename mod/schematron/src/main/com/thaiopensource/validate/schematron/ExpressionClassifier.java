@@ -0,0 +1,426 @@
+package com.thaiopensource.validate.schematron;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Statically classifies the XPath expressions used in Schematron schemas according to how much
+ * of the instance they need.  An expression that looks only at the context element and its
+ * attributes can be evaluated at the start-tag; one that looks only downwards can be evaluated
+ * at the end-tag on a buffer of the subtree of the context element; anything else needs the
+ * whole document.  The classification is conservative: anything that is not understood is
+ * treated as needing the whole document.
+ */
+class ExpressionClassifier {
+  static final int DOCUMENT = 0;
+  static final int SUBTREE = 1;
+  static final int ELEMENT = 2;
+
+  static final int LPAREN = 0;
+  static final int RPAREN = 1;
+  static final int LBRACKET = 2;
+  static final int RBRACKET = 3;
+  static final int DOT = 4;
+  static final int DOTDOT = 5;
+  static final int AT = 6;
+  static final int COMMA = 7;
+  static final int COLONCOLON = 8;
+  static final int SLASH = 9;
+  static final int DOUBLE_SLASH = 10;
+  static final int PIPE = 11;
+  static final int OPERATOR = 12;
+  static final int NAME_TEST = 13;
+  static final int FUNCTION_NAME = 14;
+  static final int AXIS_NAME = 15;
+  static final int LITERAL = 16;
+  static final int NUMBER = 17;
+  static final int VARIABLE = 18;
+
+  private static final Set<String> comparisonOperators = makeSet(new String[] {
+    "=", "!=", "<", "<=", ">", ">=", "and", "or"
+  });
+
+  private static final Set<String> arithmeticOperators = makeSet(new String[] {
+    "+", "-", "*", "div", "mod"
+  });
+
+  private static final Set<String> downwardAxes = makeSet(new String[] {
+    "child", "descendant", "descendant-or-self"
+  });
+
+  private static final Set<String> nodeTypes = makeSet(new String[] {
+    "node", "text", "comment", "processing-instruction"
+  });
+
+  // Functions that look outside the subtree, or that depend on the XSLT context.
+  private static final Set<String> nonLocalFunctions = makeSet(new String[] {
+    "id", "key", "document", "doc", "doc-available", "collection", "current", "generate-id",
+    "lang", "root", "base-uri", "document-uri", "unparsed-text", "unparsed-text-available",
+    "unparsed-entity-uri", "unparsed-entity-public-id", "system-property",
+    "function-available", "element-available"
+  });
+
+  // Functions that depend on the position of the context node among its siblings.
+  private static final Set<String> positionalFunctions = makeSet(new String[] {
+    "position", "last"
+  });
+
+  // Functions that use the string-value of the context node when called without arguments.
+  private static final Set<String> contextStringFunctions = makeSet(new String[] {
+    "string", "normalize-space", "string-length", "number"
+  });
+
+  private static final Set<String> booleanFunctions = makeSet(new String[] {
+    "not", "boolean", "true", "false", "contains", "starts-with", "ends-with", "matches", "exists", "empty"
+  });
+
+  private ExpressionClassifier() {
+  }
+
+  static class Token {
+    final int type;
+    final String value;
+    final int start;
+    final int end;
+
+    Token(int type, String value, int start, int end) {
+      this.type = type;
+      this.value = value;
+      this.start = start;
+      this.end = end;
+    }
+  }
+
+  /**
+   * Returns one of DOCUMENT, SUBTREE and ELEMENT.
+   */
+  static int classify(String expr) {
+    List<Token> tokens = tokenize(expr);
+    if (tokens == null)
+      return DOCUMENT;
+    return classify(tokens, 0, tokens.size());
+  }
+
+  /**
+   * Classifies a predicate in the last step of a rule context.  In addition to the restrictions
+   * of classify, the predicate must evidently be boolean, since a numeric predicate would test the
+   * position of the element among its siblings.
+   */
+  static int classifyPredicate(String expr) {
+    List<Token> tokens = tokenize(expr);
+    if (tokens == null || tokens.isEmpty() || !isBoolean(tokens))
+      return DOCUMENT;
+    return classify(tokens, 0, tokens.size());
+  }
+
+  static int classify(List<Token> tokens, int start, int end) {
+    int result = ELEMENT;
+    int bracketDepth = 0;
+    String axis = null;
+    for (int i = start; i < end; i++) {
+      Token t = tokens.get(i);
+      Token prev = i > start ? tokens.get(i - 1) : null;
+      Token next = i + 1 < end ? tokens.get(i + 1) : null;
+      switch (t.type) {
+      case LBRACKET:
+        bracketDepth++;
+        break;
+      case RBRACKET:
+        bracketDepth--;
+        break;
+      case DOTDOT:
+      case VARIABLE:
+        return DOCUMENT;
+      case SLASH:
+      case DOUBLE_SLASH:
+        if (beginsPath(prev))
+          return DOCUMENT;
+        if (t.type == DOUBLE_SLASH)
+          result = SUBTREE;
+        break;
+      case AXIS_NAME:
+        axis = t.value;
+        if (downwardAxes.contains(axis))
+          result = SUBTREE;
+        else if (!axis.equals("attribute") && !axis.equals("self"))
+          return DOCUMENT;
+        break;
+      case FUNCTION_NAME:
+        if (nodeTypes.contains(t.value)) {
+          if (!isAttributeOrSelfStep(prev, axis))
+            result = SUBTREE;
+        }
+        else if (nonLocalFunctions.contains(t.value))
+          return DOCUMENT;
+        else if (positionalFunctions.contains(t.value)) {
+          if (bracketDepth == 0)
+            return DOCUMENT;
+        }
+        else if (contextStringFunctions.contains(t.value)
+                 && i + 2 < end && tokens.get(i + 2).type == RPAREN)
+          result = SUBTREE;
+        break;
+      case NAME_TEST:
+        if (!isAttributeOrSelfStep(prev, axis))
+          result = SUBTREE;
+        break;
+      case DOT:
+        // The string-value of the context element depends on its content.
+        if (next == null || next.type != SLASH)
+          result = SUBTREE;
+        break;
+      }
+      if (t.type != COLONCOLON && t.type != AXIS_NAME)
+        axis = null;
+    }
+    return result;
+  }
+
+  private static boolean isAttributeOrSelfStep(Token prev, String axis) {
+    if (prev == null)
+      return false;
+    if (prev.type == AT)
+      return true;
+    return prev.type == COLONCOLON && axis != null && (axis.equals("attribute") || axis.equals("self"));
+  }
+
+  private static boolean beginsPath(Token prev) {
+    if (prev == null)
+      return true;
+    switch (prev.type) {
+    case LPAREN:
+    case LBRACKET:
+    case COMMA:
+    case OPERATOR:
+    case PIPE:
+      return true;
+    }
+    return false;
+  }
+
+  private static boolean isBoolean(List<Token> tokens) {
+    int depth = 0;
+    boolean arithmetic = false;
+    for (int i = 0, len = tokens.size(); i < len; i++) {
+      Token t = tokens.get(i);
+      switch (t.type) {
+      case LPAREN:
+      case LBRACKET:
+        depth++;
+        break;
+      case RPAREN:
+      case RBRACKET:
+        depth--;
+        break;
+      case OPERATOR:
+        if (depth == 0) {
+          if (comparisonOperators.contains(t.value))
+            return true;
+          if (arithmeticOperators.contains(t.value))
+            arithmetic = true;
+        }
+        break;
+      }
+    }
+    if (arithmetic)
+      return false;
+    Token first = tokens.get(0);
+    switch (first.type) {
+    case AT:
+    case NAME_TEST:
+    case DOT:
+    case AXIS_NAME:
+    case SLASH:
+    case DOUBLE_SLASH:
+      return true;
+    case FUNCTION_NAME:
+      return nodeTypes.contains(first.value) || booleanFunctions.contains(first.value);
+    }
+    return false;
+  }
+
+  /**
+   * Splits an XPath expression into tokens, applying the disambiguation rules of XPath 1.0.
+   * Returns null if the expression contains something that is not understood.
+   */
+  static List<Token> tokenize(String expr) {
+    List<Token> tokens = new ArrayList<Token>();
+    int len = expr.length();
+    int i = 0;
+    for (;;) {
+      while (i < len && isWhitespace(expr.charAt(i)))
+        i++;
+      if (i >= len)
+        break;
+      int start = i;
+      char c = expr.charAt(i);
+      Token prev = tokens.isEmpty() ? null : tokens.get(tokens.size() - 1);
+      boolean operatorContext = prev != null && !precedesOperand(prev);
+      switch (c) {
+      case '(':
+        tokens.add(new Token(LPAREN, "(", start, ++i));
+        continue;
+      case ')':
+        tokens.add(new Token(RPAREN, ")", start, ++i));
+        continue;
+      case '[':
+        tokens.add(new Token(LBRACKET, "[", start, ++i));
+        continue;
+      case ']':
+        tokens.add(new Token(RBRACKET, "]", start, ++i));
+        continue;
+      case '@':
+        tokens.add(new Token(AT, "@", start, ++i));
+        continue;
+      case ',':
+        tokens.add(new Token(COMMA, ",", start, ++i));
+        continue;
+      case '|':
+        tokens.add(new Token(PIPE, "|", start, ++i));
+        continue;
+      case '=':
+      case '+':
+      case '-':
+        tokens.add(new Token(OPERATOR, String.valueOf(c), start, ++i));
+        continue;
+      case '!':
+        if (i + 1 < len && expr.charAt(i + 1) == '=') {
+          i += 2;
+          tokens.add(new Token(OPERATOR, "!=", start, i));
+          continue;
+        }
+        return null;
+      case '<':
+      case '>':
+        i++;
+        if (i < len && expr.charAt(i) == '=')
+          i++;
+        tokens.add(new Token(OPERATOR, expr.substring(start, i), start, i));
+        continue;
+      case '/':
+        i++;
+        if (i < len && expr.charAt(i) == '/') {
+          i++;
+          tokens.add(new Token(DOUBLE_SLASH, "//", start, i));
+        }
+        else
+          tokens.add(new Token(SLASH, "/", start, i));
+        continue;
+      case ':':
+        if (i + 1 < len && expr.charAt(i + 1) == ':') {
+          i += 2;
+          tokens.add(new Token(COLONCOLON, "::", start, i));
+          continue;
+        }
+        return null;
+      case '*':
+        i++;
+        tokens.add(new Token(operatorContext ? OPERATOR : NAME_TEST, "*", start, i));
+        continue;
+      case '"':
+      case '\'':
+        {
+          int close = expr.indexOf(c, i + 1);
+          if (close < 0)
+            return null;
+          i = close + 1;
+          tokens.add(new Token(LITERAL, expr.substring(start + 1, close), start, i));
+        }
+        continue;
+      case '$':
+        i++;
+        while (i < len && isNameChar(expr.charAt(i)))
+          i++;
+        tokens.add(new Token(VARIABLE, expr.substring(start, i), start, i));
+        continue;
+      case '.':
+        if (i + 1 < len && expr.charAt(i + 1) == '.') {
+          i += 2;
+          tokens.add(new Token(DOTDOT, "..", start, i));
+          continue;
+        }
+        if (i + 1 < len && isDigit(expr.charAt(i + 1)))
+          break;
+        tokens.add(new Token(DOT, ".", start, ++i));
+        continue;
+      }
+      if (isDigit(c) || c == '.') {
+        while (i < len && (isDigit(expr.charAt(i)) || expr.charAt(i) == '.'))
+          i++;
+        tokens.add(new Token(NUMBER, expr.substring(start, i), start, i));
+        continue;
+      }
+      if (!isNameStartChar(c))
+        return null;
+      while (i < len && isNameChar(expr.charAt(i)))
+        i++;
+      if (i + 1 < len && expr.charAt(i) == ':' && expr.charAt(i + 1) != ':') {
+        i++;
+        if (expr.charAt(i) == '*')
+          i++;
+        else if (isNameStartChar(expr.charAt(i))) {
+          while (i < len && isNameChar(expr.charAt(i)))
+            i++;
+        }
+        else
+          return null;
+      }
+      String name = expr.substring(start, i);
+      if (operatorContext) {
+        tokens.add(new Token(OPERATOR, name, start, i));
+        continue;
+      }
+      int j = i;
+      while (j < len && isWhitespace(expr.charAt(j)))
+        j++;
+      if (j < len && expr.charAt(j) == '(')
+        tokens.add(new Token(FUNCTION_NAME, name, start, i));
+      else if (j + 1 < len && expr.charAt(j) == ':' && expr.charAt(j + 1) == ':')
+        tokens.add(new Token(AXIS_NAME, name, start, i));
+      else
+        tokens.add(new Token(NAME_TEST, name, start, i));
+    }
+    return tokens;
+  }
+
+  private static boolean precedesOperand(Token t) {
+    switch (t.type) {
+    case AT:
+    case COLONCOLON:
+    case LPAREN:
+    case LBRACKET:
+    case COMMA:
+    case OPERATOR:
+    case SLASH:
+    case DOUBLE_SLASH:
+    case PIPE:
+      return true;
+    }
+    return false;
+  }
+
+  private static boolean isWhitespace(char c) {
+    return c == ' ' || c == '\t' || c == '\r' || c == '\n';
+  }
+
+  private static boolean isDigit(char c) {
+    return '0' <= c && c <= '9';
+  }
+
+  private static boolean isNameStartChar(char c) {
+    return Character.isLetter(c) || c == '_';
+  }
+
+  private static boolean isNameChar(char c) {
+    return Character.isLetterOrDigit(c) || c == '_' || c == '-' || c == '.';
+  }
+
+  private static Set<String> makeSet(String[] strings) {
+    Set<String> set = new HashSet<String>();
+    for (int i = 0; i < strings.length; i++)
+      set.add(strings[i]);
+    return set;
+  }
+}
@@ -1,5 +1,6 @@
 package com.thaiopensource.validate.schematron;
 
+import com.thaiopensource.resolver.xml.sax.SAXResolver;
 import com.thaiopensource.util.Localizer;
 import com.thaiopensource.util.PropertyId;
 import com.thaiopensource.util.PropertyMap;
@@ -39,6 +40,7 @@ import javax.xml.transform.sax.SAXTransformerFactory;
 import javax.xml.transform.sax.TemplatesHandler;
 import javax.xml.transform.sax.TransformerHandler;
 import javax.xml.transform.stream.StreamSource;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 
@@ -67,6 +69,8 @@ class ISOSchemaReaderImpl extends AbstractSchemaReader {
     ValidateProperty.RESOLVER,
     SchematronProperty.DIAGNOSE,
     SchematronProperty.PHASE,
+    SchematronProperty.STREAMING,
+    SchematronProperty.CACHE_DIRECTORY,
   };
 
   ISOSchemaReaderImpl(SAXTransformerFactory transformerFactory, TransformerFactoryInitializer transformerFactoryInitializer)
@@ -338,36 +342,71 @@ class ISOSchemaReaderImpl extends AbstractSchemaReader {
             throws IOException, SAXException, IncorrectSchemaException {
     ErrorHandler eh = properties.get(ValidateProperty.ERROR_HANDLER);
     CountingErrorHandler ceh = new CountingErrorHandler(eh);
-    InputSource in = source.getInputSource();
+    String phase = properties.get(SchematronProperty.PHASE);
+    boolean diagnose = properties.contains(SchematronProperty.DIAGNOSE);
+    boolean streaming = properties.contains(SchematronProperty.STREAMING);
+    String cacheDirectory = properties.get(SchematronProperty.CACHE_DIRECTORY);
+    TemplatesCache.Entry cacheEntry
+      = TemplatesCache.getInstance().getEntry(ResolverFactory.createResolver(properties).open(source.getInputSource()),
+                                              cacheDirectory == null ? null : new File(cacheDirectory),
+                                              new String[] {
+                                                SCHEMATRON_STYLESHEET,
+                                                transformerFactoryClass.getName(),
+                                                transformerFactoryInitializer.getClass().getName(),
+                                                phase,
+                                                String.valueOf(diagnose),
+                                                String.valueOf(streaming)
+                                              });
+    InputSource in = cacheEntry.getInputSource();
     String systemId = in.getSystemId();
     IfValidHandler ifValidHandler = new IfValidHandler();
     ifValidHandler.setErrorHandler(ceh);
     try {
+      SAXResolver resolver = ResolverFactory.createResolver(cacheEntry.recordResources(properties));
+      XMLReader xr = source.getXMLReader();
+      if (xr == null)
+        xr = resolver.createXMLReader();
+      else
+        xr.setEntityResolver(cacheEntry.recordEntities(xr.getEntityResolver()));
       SAXTransformerFactory factory = (SAXTransformerFactory)transformerFactoryClass.newInstance();
       initTransformerFactory(factory);
+      StreamingSchema streamingSchema = null;
+      if (streaming) {
+        try {
+          streamingSchema = StreamingSchema.create(resolver.createXMLReader(),
+                                                   cacheEntry.getInputSource(),
+                                                   factory,
+                                                   SCHEMATRON_URI,
+                                                   phase,
+                                                   diagnose);
+        }
+        catch (SAXException e) {
+          // The error will be reported when the schema is parsed again below.
+        }
+      }
+      Templates templates = cacheEntry.getTemplates(factory);
+      if (templates != null)
+        return createSchemaImpl(templates, streamingSchema, properties);
       TransformerHandler transformerHandler = factory.newTransformerHandler(schematron);
       ifValidHandler.setDelegate(transformerHandler);
       Transformer transformer = transformerHandler.getTransformer();
-      String phase = properties.get(SchematronProperty.PHASE);
       if (phase != null)
         transformer.setParameter("phase", phase);
-      boolean diagnose = properties.contains(SchematronProperty.DIAGNOSE);
       if (diagnose)
         transformer.setParameter("diagnose", Boolean.TRUE);
+      if (streamingSchema != null)
+        transformer.setParameter("streamed-patterns", streamingSchema.getStreamedPatterns());
       PropertyMapBuilder builder = new PropertyMapBuilder(properties);
       builder.put(ValidateProperty.ERROR_HANDLER, ifValidHandler);
       Validator validator = schematronSchema.createValidator(builder.toPropertyMap());
       ifValidHandler.setValidator(validator.getContentHandler());
-      XMLReader xr = source.getXMLReader();
-      if (xr == null)
-        xr = ResolverFactory.createResolver(properties).createXMLReader();
       xr.setContentHandler(ifValidHandler);      
       xr.setDTDHandler(validator.getDTDHandler());  // not strictly necessary
       factory.setErrorListener(new SAXErrorListener(ceh, systemId));
       TemplatesHandler templatesHandler = factory.newTemplatesHandler();
       templatesHandler.setSystemId(systemId);
       LocationFilter stage2 = new LocationFilter(new ErrorFilter(templatesHandler, ceh, localizer), systemId);
-      transformerHandler.setResult(new SAXResult(stage2));
+      transformerHandler.setResult(new SAXResult(cacheEntry.wrapStylesheetHandler(stage2, factory)));
       xr.setErrorHandler(ceh);
       xr.parse(in);
       SAXException exception = stage2.getException();
@@ -376,13 +415,11 @@ class ISOSchemaReaderImpl extends AbstractSchemaReader {
       if (ceh.getHadErrorOrFatalError())
         throw new IncorrectSchemaException();
       // Getting the templates can cause errors to be generated.
-      Templates templates = templatesHandler.getTemplates();
+      templates = templatesHandler.getTemplates();
       if (ceh.getHadErrorOrFatalError())
         throw new IncorrectSchemaException();
-      return new SchemaImpl(templates,
-                            transformerFactoryClass,
-                            properties,
-                            supportedPropertyIds);
+      cacheEntry.setTemplates(templates);
+      return createSchemaImpl(templates, streamingSchema, properties);
     }
     catch (SAXException e) {
       throw cleanupSAXException(e);
@@ -398,6 +435,20 @@ class ISOSchemaReaderImpl extends AbstractSchemaReader {
     }
   }
 
+  private Schema createSchemaImpl(Templates templates, StreamingSchema streamingSchema, PropertyMap properties) {
+    if (streamingSchema != null) {
+      if (streamingSchema.getPatterns().isEmpty())
+        streamingSchema = null;
+      else if (!streamingSchema.needsTransform())
+        templates = null;
+    }
+    return new SchemaImpl(templates,
+                          streamingSchema,
+                          transformerFactoryClass,
+                          properties,
+                          supportedPropertyIds);
+  }
+
   private static String fullResourceName(String name) {
     String className = ISOSchemaReaderImpl.class.getName();
     return className.substring(0, className.lastIndexOf('.')).replace('.', '/') + "/resources/" + name;
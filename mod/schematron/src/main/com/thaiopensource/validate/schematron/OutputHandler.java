@@ -23,6 +23,12 @@ class OutputHandler extends DefaultHandler {
     this.lineSeparator = System.getProperty("line.separator");
   }
 
+  public void startDocument() throws SAXException {
+    // The handler is reused for each document, and a previous transformation may have been abandoned.
+    message.setLength(0);
+    inMessage = false;
+  }
+
   public void characters(char ch[], int start, int length)
           throws SAXException {
     if (inMessage) {
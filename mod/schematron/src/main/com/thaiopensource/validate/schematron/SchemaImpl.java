@@ -10,18 +10,26 @@ import javax.xml.transform.sax.SAXTransformerFactory;
 
 class SchemaImpl extends AbstractSchema {
   private final Templates templates;
+  private final StreamingSchema streamingSchema;
   private final Class<? extends SAXTransformerFactory> factoryClass;
+  private final DocumentCache documentCache = new DocumentCache();
 
-  SchemaImpl(Templates templates, Class<? extends SAXTransformerFactory> factoryClass,
+  /**
+   * At least one of templates and streamingSchema must be non-null.
+   */
+  SchemaImpl(Templates templates, StreamingSchema streamingSchema,
+             Class<? extends SAXTransformerFactory> factoryClass,
              PropertyMap properties, PropertyId<?>[] supportedPropertyIds) {
     super(properties, supportedPropertyIds);
     this.templates = templates;
+    this.streamingSchema = streamingSchema;
     this.factoryClass = factoryClass;
   }
 
   public Validator createValidator(PropertyMap properties) {
     try {
-      return new ValidatorImpl(templates, factoryClass.newInstance(), properties);
+      return new ValidatorImpl(templates, streamingSchema, documentCache, factoryClass.newInstance(),
+                               properties);
     }
     catch (InstantiationException e) {
       throw new RuntimeException("unexpected InstantiationException creating SAXTransformerFactory");
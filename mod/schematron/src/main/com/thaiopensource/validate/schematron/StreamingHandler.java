@@ -0,0 +1,343 @@
+package com.thaiopensource.validate.schematron;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.w3c.dom.Text;
+import org.xml.sax.Attributes;
+import org.xml.sax.ErrorHandler;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
+import org.xml.sax.helpers.DefaultHandler;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.xpath.XPath;
+import javax.xml.xpath.XPathConstants;
+import javax.xml.xpath.XPathExpression;
+import javax.xml.xpath.XPathExpressionException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Evaluates the streamable patterns of a Schematron schema on SAX events.  The element
+ * matched by a rule context is built as a DOM element; if the rule looks below the attributes of
+ * the context element, the whole subtree of the element is buffered and the rule is evaluated at the
+ * end-tag, otherwise it is evaluated at the start-tag.  Only the subtree of the outermost element
+ * being buffered is held in memory; StreamingSchema does not stream a rule that would buffer the
+ * document element.
+ */
+class StreamingHandler extends DefaultHandler {
+  private final StreamingSchema schema;
+  private final OutputHandler outputHandler;
+  private final XPath xpath;
+  private final Map<String, XPathExpression> expressionMap = new HashMap<String, XPathExpression>();
+  private final DocumentBuilderFactory documentBuilderFactory;
+  private final List<String> namespaceUris = new ArrayList<String>();
+  private final List<String> localNames = new ArrayList<String>();
+  private final List<OpenElement> openElements = new ArrayList<OpenElement>();
+  private final List<Candidate> candidates = new ArrayList<Candidate>();
+  private Locator locator;
+  // the document holding the subtree being buffered; null if nothing is being buffered
+  private Document document;
+  private Node currentNode;
+  private Document scratchDocument;
+
+  static private class Candidate {
+    private final StreamingSchema.Rule rule;
+    private final List<ContextPattern.Alternative> alternatives = new ArrayList<ContextPattern.Alternative>();
+
+    Candidate(StreamingSchema.Rule rule) {
+      this.rule = rule;
+    }
+  }
+
+  static private class OpenElement {
+    // rules to be evaluated at the end-tag, one list for each pattern; null if none
+    private final List<List<Candidate>> deferred;
+    private final Element element;
+    private final boolean startsBuffer;
+    private final String systemId;
+    private final int lineNumber;
+    private final int columnNumber;
+
+    OpenElement(List<List<Candidate>> deferred, Element element, boolean startsBuffer, Locator locator) {
+      this.deferred = deferred;
+      this.element = element;
+      this.startsBuffer = startsBuffer;
+      if (locator == null) {
+        systemId = null;
+        lineNumber = -1;
+        columnNumber = -1;
+      }
+      else {
+        systemId = locator.getSystemId();
+        lineNumber = locator.getLineNumber();
+        columnNumber = locator.getColumnNumber();
+      }
+    }
+  }
+
+  StreamingHandler(StreamingSchema schema, ErrorHandler eh) {
+    this.schema = schema;
+    this.outputHandler = new OutputHandler(eh);
+    this.xpath = StreamingSchema.newXPath();
+    this.xpath.setNamespaceContext(schema.createNamespaceContext());
+    this.documentBuilderFactory = DocumentBuilderFactory.newInstance();
+    this.documentBuilderFactory.setNamespaceAware(true);
+  }
+
+  void reset() {
+    namespaceUris.clear();
+    localNames.clear();
+    openElements.clear();
+    locator = null;
+    document = null;
+    currentNode = null;
+  }
+
+  /**
+   * Returns true if the subtree of an open element is being buffered.
+   */
+  boolean isBuffering() {
+    return document != null;
+  }
+
+  public void setDocumentLocator(Locator locator) {
+    this.locator = locator;
+  }
+
+  public void startElement(String uri, String localName, String qName, Attributes attributes)
+          throws SAXException {
+    namespaceUris.add(uri);
+    localNames.add(localName);
+    List<List<Candidate>> deferred = null;
+    boolean needsSubtree = false;
+    List<StreamingSchema.Pattern> patterns = schema.getPatterns();
+    for (int i = 0, len = patterns.size(); i < len; i++) {
+      List<Candidate> list = findCandidates(patterns.get(i));
+      if (list != null) {
+        if (deferred == null) {
+          deferred = new ArrayList<List<Candidate>>();
+          for (int j = 0; j < i; j++)
+            deferred.add(null);
+        }
+        for (Candidate candidate : list)
+          if (candidate.rule.needsSubtree())
+            needsSubtree = true;
+      }
+      if (deferred != null)
+        deferred.add(list);
+    }
+    Element element = null;
+    boolean startsBuffer = false;
+    if (document != null) {
+      element = createElement(document, uri, localName, qName, attributes);
+      currentNode.appendChild(element);
+      currentNode = element;
+    }
+    else if (needsSubtree) {
+      document = newDocument();
+      element = createElement(document, uri, localName, qName, attributes);
+      document.appendChild(element);
+      currentNode = element;
+      startsBuffer = true;
+    }
+    else if (deferred != null) {
+      if (scratchDocument == null)
+        scratchDocument = newDocument();
+      element = createElement(scratchDocument, uri, localName, qName, attributes);
+      scratchDocument.appendChild(element);
+    }
+    OpenElement open = new OpenElement(needsSubtree ? deferred : null, element, startsBuffer, locator);
+    openElements.add(open);
+    if (deferred != null && !needsSubtree) {
+      try {
+        evaluate(open, deferred);
+      }
+      finally {
+        if (element.getOwnerDocument() == scratchDocument)
+          scratchDocument.removeChild(element);
+      }
+    }
+  }
+
+  public void endElement(String uri, String localName, String qName) throws SAXException {
+    int depth = openElements.size() - 1;
+    OpenElement open = openElements.remove(depth);
+    namespaceUris.remove(depth);
+    localNames.remove(depth);
+    if (open.deferred != null)
+      evaluate(open, open.deferred);
+    if (document != null) {
+      if (open.startsBuffer) {
+        document = null;
+        currentNode = null;
+      }
+      else
+        currentNode = currentNode.getParentNode();
+    }
+  }
+
+  public void characters(char ch[], int start, int length) throws SAXException {
+    if (document == null)
+      return;
+    Node last = currentNode.getLastChild();
+    if (last instanceof Text)
+      ((Text)last).appendData(new String(ch, start, length));
+    else
+      currentNode.appendChild(document.createTextNode(new String(ch, start, length)));
+  }
+
+  public void ignorableWhitespace(char ch[], int start, int length) throws SAXException {
+    characters(ch, start, length);
+  }
+
+  /**
+   * Returns the rules of the pattern whose context matches the names of the open elements, up to and
+   * including the first rule that matches unconditionally; returns null if there are none.
+   */
+  private List<Candidate> findCandidates(StreamingSchema.Pattern pattern) {
+    candidates.clear();
+    StreamingSchema.Rule[] rules = pattern.getRules();
+    for (int i = 0; i < rules.length; i++) {
+      Candidate candidate = null;
+      boolean unconditional = false;
+      ContextPattern.Alternative[] alternatives = rules[i].getContext().getAlternatives();
+      for (int j = 0; j < alternatives.length; j++) {
+        if (alternatives[j].matches(namespaceUris, localNames)) {
+          if (candidate == null)
+            candidate = new Candidate(rules[i]);
+          candidate.alternatives.add(alternatives[j]);
+          if (alternatives[j].getPredicates().length == 0)
+            unconditional = true;
+        }
+      }
+      if (candidate != null) {
+        candidates.add(candidate);
+        if (unconditional)
+          break;
+      }
+    }
+    if (candidates.isEmpty())
+      return null;
+    return new ArrayList<Candidate>(candidates);
+  }
+
+  private void evaluate(OpenElement open, List<List<Candidate>> deferred) throws SAXException {
+    for (List<Candidate> list : deferred) {
+      if (list == null)
+        continue;
+      for (Candidate candidate : list) {
+        if (matchesPredicates(candidate, open.element)) {
+          StreamingSchema.Assertion[] assertions = candidate.rule.getAssertions();
+          for (int i = 0; i < assertions.length; i++) {
+            StreamingSchema.Assertion assertion = assertions[i];
+            boolean result = evaluateBoolean(assertion.getTest(), open.element);
+            if (result == assertion.isReport())
+              report(open, assertion);
+          }
+          break;
+        }
+      }
+    }
+  }
+
+  private boolean matchesPredicates(Candidate candidate, Element element) throws SAXException {
+    for (ContextPattern.Alternative alternative : candidate.alternatives) {
+      String[] predicates = alternative.getPredicates();
+      int i = 0;
+      while (i < predicates.length && evaluateBoolean(predicates[i], element))
+        i++;
+      if (i == predicates.length)
+        return true;
+    }
+    return false;
+  }
+
+  /**
+   * Reports an assertion in the same way as the output of the stylesheet.
+   */
+  private void report(OpenElement open, StreamingSchema.Assertion assertion) throws SAXException {
+    AttributesImpl atts = new AttributesImpl();
+    if (open.lineNumber >= 0)
+      atts.addAttribute("", "line-number", "line-number", "CDATA", Integer.toString(open.lineNumber));
+    if (open.columnNumber >= 0)
+      atts.addAttribute("", "column-number", "column-number", "CDATA", Integer.toString(open.columnNumber));
+    if (open.systemId != null)
+      atts.addAttribute("", "system-id", "system-id", "CDATA", open.systemId);
+    String name = assertion.isReport() ? "report" : "failed-assertion";
+    outputHandler.startElement("", name, name, atts);
+    if (assertion.getStatement() != null)
+      outputMessage("statement", assertion.getStatement(), open.element);
+    StreamingSchema.Message[] diagnostics = assertion.getDiagnostics();
+    for (int i = 0; i < diagnostics.length; i++)
+      outputMessage("diagnostic", diagnostics[i], open.element);
+    outputHandler.endElement("", name, name);
+  }
+
+  private void outputMessage(String name, StreamingSchema.Message message, Element element) throws SAXException {
+    outputHandler.startElement("", name, name, new AttributesImpl());
+    for (int i = 0, len = message.getLength(); i < len; i++) {
+      String s = message.getPart(i);
+      if (message.isExpression(i))
+        s = evaluateString(s, element);
+      outputHandler.characters(s.toCharArray(), 0, s.length());
+    }
+    outputHandler.endElement("", name, name);
+  }
+
+  private boolean evaluateBoolean(String expr, Element element) throws SAXException {
+    try {
+      return (Boolean)getExpression(expr).evaluate(element, XPathConstants.BOOLEAN);
+    }
+    catch (XPathExpressionException e) {
+      throw new SAXException(e);
+    }
+  }
+
+  private String evaluateString(String expr, Element element) throws SAXException {
+    try {
+      return getExpression(expr).evaluate(element);
+    }
+    catch (XPathExpressionException e) {
+      throw new SAXException(e);
+    }
+  }
+
+  private XPathExpression getExpression(String expr) throws XPathExpressionException {
+    XPathExpression compiled = expressionMap.get(expr);
+    if (compiled == null) {
+      compiled = xpath.compile(expr);
+      expressionMap.put(expr, compiled);
+    }
+    return compiled;
+  }
+
+  private Document newDocument() {
+    try {
+      return documentBuilderFactory.newDocumentBuilder().newDocument();
+    }
+    catch (ParserConfigurationException e) {
+      throw new RuntimeException("could not create DocumentBuilder");
+    }
+  }
+
+  private static Element createElement(Document document, String uri, String localName, String qName,
+                                       Attributes attributes) {
+    // The qName is optional in SAX, but it is needed for the name() function.
+    Element element = document.createElementNS(uri.length() == 0 ? null : uri,
+                                               qName.length() == 0 ? localName : qName);
+    for (int i = 0, len = attributes.getLength(); i < len; i++) {
+      String attributeUri = attributes.getURI(i);
+      String attributeQName = attributes.getQName(i);
+      element.setAttributeNS(attributeUri.length() == 0 ? null : attributeUri,
+                             attributeQName.length() == 0 ? attributes.getLocalName(i) : attributeQName,
+                             attributes.getValue(i));
+    }
+    return element;
+  }
+}
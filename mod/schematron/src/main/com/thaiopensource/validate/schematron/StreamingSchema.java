@@ -0,0 +1,517 @@
+package com.thaiopensource.validate.schematron;
+
+import com.thaiopensource.xml.util.WellKnownNamespaces;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+
+import javax.xml.namespace.NamespaceContext;
+import javax.xml.transform.TransformerConfigurationException;
+import javax.xml.transform.dom.DOMResult;
+import javax.xml.transform.sax.SAXTransformerFactory;
+import javax.xml.transform.sax.TransformerHandler;
+import javax.xml.xpath.XPath;
+import javax.xml.xpath.XPathExpressionException;
+import javax.xml.xpath.XPathFactory;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.StringTokenizer;
+
+/**
+ * The part of a Schematron schema that can be evaluated in a single pass over the SAX events
+ * of the instance.  A pattern is streamable if the context of each of its rules can be
+ * matched using the names of the open elements and if each expression used by its rules looks
+ * only at the subtree of the context element.  A rule that looks below the attributes of the
+ * context element needs the subtree of the element to be buffered, so it is only streamable
+ * if its context cannot match the document element; otherwise the whole document would be
+ * buffered.  Streamable patterns are evaluated by StreamingHandler; the remaining patterns are
+ * left to the stylesheet.
+ */
+class StreamingSchema {
+  private final List<Pattern> patterns;
+  private final String streamedPatterns;
+  private final boolean needsTransform;
+  private final Map<String, String> prefixMap;
+
+  static class Pattern {
+    private final Rule[] rules;
+
+    Pattern(Rule[] rules) {
+      this.rules = rules;
+    }
+
+    Rule[] getRules() {
+      return rules;
+    }
+  }
+
+  static class Rule {
+    private final ContextPattern context;
+    private final Assertion[] assertions;
+    private final boolean needsSubtree;
+
+    Rule(ContextPattern context, Assertion[] assertions, boolean needsSubtree) {
+      this.context = context;
+      this.assertions = assertions;
+      this.needsSubtree = needsSubtree;
+    }
+
+    ContextPattern getContext() {
+      return context;
+    }
+
+    Assertion[] getAssertions() {
+      return assertions;
+    }
+
+    /**
+     * Returns true if the rule cannot be evaluated until the end-tag of the context element.
+     */
+    boolean needsSubtree() {
+      return needsSubtree;
+    }
+  }
+
+  static class Assertion {
+    private final boolean isReport;
+    private final String test;
+    private final Message statement;
+    private final Message[] diagnostics;
+
+    Assertion(boolean isReport, String test, Message statement, Message[] diagnostics) {
+      this.isReport = isReport;
+      this.test = test;
+      this.statement = statement;
+      this.diagnostics = diagnostics;
+    }
+
+    boolean isReport() {
+      return isReport;
+    }
+
+    String getTest() {
+      return test;
+    }
+
+    /**
+     * Returns the statement or null if there is none.
+     */
+    Message getStatement() {
+      return statement;
+    }
+
+    Message[] getDiagnostics() {
+      return diagnostics;
+    }
+  }
+
+  /**
+   * A message is a sequence of parts, each of which is either literal text or
+   * an expression whose string value is to be inserted.
+   */
+  static class Message {
+    private final String[] parts;
+    private final boolean[] isExpression;
+
+    Message(String[] parts, boolean[] isExpression) {
+      this.parts = parts;
+      this.isExpression = isExpression;
+    }
+
+    int getLength() {
+      return parts.length;
+    }
+
+    String getPart(int i) {
+      return parts[i];
+    }
+
+    boolean isExpression(int i) {
+      return isExpression[i];
+    }
+  }
+
+  private StreamingSchema(List<Pattern> patterns, String streamedPatterns, boolean needsTransform,
+                          Map<String, String> prefixMap) {
+    this.patterns = patterns;
+    this.streamedPatterns = streamedPatterns;
+    this.needsTransform = needsTransform;
+    this.prefixMap = prefixMap;
+  }
+
+  /**
+   * Returns the active patterns that are evaluated by streaming.
+   */
+  List<Pattern> getPatterns() {
+    return patterns;
+  }
+
+  /**
+   * Returns the indexes of the streamed patterns among the pattern children of the schema,
+   * in the form expected by the streamed-patterns parameter of the stylesheet.
+   */
+  String getStreamedPatterns() {
+    return streamedPatterns;
+  }
+
+  /**
+   * Returns true if some active pattern must be evaluated by the stylesheet.
+   */
+  boolean needsTransform() {
+    return needsTransform;
+  }
+
+  NamespaceContext createNamespaceContext() {
+    return new PrefixMapNamespaceContext(prefixMap);
+  }
+
+  static private class PrefixMapNamespaceContext implements NamespaceContext {
+    private final Map<String, String> prefixMap;
+
+    PrefixMapNamespaceContext(Map<String, String> prefixMap) {
+      this.prefixMap = prefixMap;
+    }
+
+    public String getNamespaceURI(String prefix) {
+      if (prefix.equals("xml"))
+        return WellKnownNamespaces.XML;
+      String ns = prefixMap.get(prefix);
+      return ns == null ? "" : ns;
+    }
+
+    public String getPrefix(String namespaceURI) {
+      for (Map.Entry<String, String> entry : prefixMap.entrySet())
+        if (entry.getValue().equals(namespaceURI))
+          return entry.getKey();
+      return null;
+    }
+
+    public Iterator getPrefixes(String namespaceURI) {
+      String prefix = getPrefix(namespaceURI);
+      if (prefix == null)
+        return Collections.EMPTY_LIST.iterator();
+      return Collections.singletonList(prefix).iterator();
+    }
+  }
+
+  /**
+   * Returns a new XPath for the DOM object model, or null if none is available.
+   */
+  static XPath newXPath() {
+    try {
+      return XPathFactory.newInstance().newXPath();
+    }
+    catch (RuntimeException e) {
+      // A broken services file elsewhere in the class path (as in some Saxon jars) makes the
+      // lookup fail, so fall back to the implementations bundled with the JDK or with Xalan.
+    }
+    for (int i = 0; i < fallbackXPathFactoryClassNames.length; i++) {
+      try {
+        return ((XPathFactory)Class.forName(fallbackXPathFactoryClassNames[i]).newInstance()).newXPath();
+      }
+      catch (ClassNotFoundException e) { }
+      catch (InstantiationException e) { }
+      catch (IllegalAccessException e) { }
+      catch (ClassCastException e) { }
+    }
+    return null;
+  }
+
+  private static final String[] fallbackXPathFactoryClassNames = {
+    "com.sun.org.apache.xpath.internal.jaxp.XPathFactoryImpl",
+    "org.apache.xpath.jaxp.XPathFactoryImpl"
+  };
+
+  /**
+   * Parses a schema and determines which of its patterns can be streamed.  Returns null if
+   * no XPath implementation is available.
+   */
+  static StreamingSchema create(XMLReader xr, InputSource in, SAXTransformerFactory factory,
+                                String schematronUri, String phase, boolean diagnose)
+          throws IOException, SAXException {
+    XPath xpath = newXPath();
+    if (xpath == null)
+      return null;
+    TransformerHandler handler;
+    try {
+      handler = factory.newTransformerHandler();
+    }
+    catch (TransformerConfigurationException e) {
+      throw new SAXException(e);
+    }
+    DOMResult result = new DOMResult();
+    handler.setResult(result);
+    xr.setContentHandler(handler);
+    xr.parse(in);
+    Node node = result.getNode();
+    Element root = node instanceof Document ? ((Document)node).getDocumentElement() : (Element)node;
+    return new Builder(root, xpath, schematronUri, phase, diagnose).build();
+  }
+
+  static private class Builder {
+    private final Element schema;
+    private final String schematronUri;
+    private final String phase;
+    private final boolean diagnose;
+    private final Map<String, String> prefixMap = new HashMap<String, String>();
+    private final Map<String, Element> diagnosticMap = new HashMap<String, Element>();
+    private final Map<String, Element> abstractRuleMap = new HashMap<String, Element>();
+    private final XPath xpath;
+
+    /**
+     * Thrown when a construct that cannot be streamed is encountered.
+     */
+    static private class NotStreamableException extends Exception {
+    }
+
+    Builder(Element schema, XPath xpath, String schematronUri, String phase, boolean diagnose) {
+      this.schema = schema;
+      this.xpath = xpath;
+      this.schematronUri = schematronUri;
+      this.phase = phase == null ? "#DEFAULT" : phase.trim();
+      this.diagnose = diagnose;
+    }
+
+    StreamingSchema build() {
+      List<Pattern> patterns = new ArrayList<Pattern>();
+      StringBuffer streamedPatterns = new StringBuffer(" ");
+      boolean needsTransform = false;
+      if (!isSchematronElement(schema, "schema"))
+        return new StreamingSchema(patterns, streamedPatterns.toString(), true, prefixMap);
+      for (Element elem : children(schema, "ns"))
+        prefixMap.put(elem.getAttribute("prefix"), elem.getAttribute("uri"));
+      xpath.setNamespaceContext(new PrefixMapNamespaceContext(prefixMap));
+      for (Element diagnostics : children(schema, "diagnostics"))
+        for (Element elem : children(diagnostics, "diagnostic"))
+          putFirst(diagnosticMap, elem);
+      List<Element> patternElements = children(schema, "pattern");
+      for (Element pattern : patternElements)
+        for (Element rule : children(pattern, "rule"))
+          if (!rule.hasAttribute("context"))
+            putFirst(abstractRuleMap, rule);
+      Set<String> activePatternIds = getActivePatternIds();
+      for (int i = 0; i < patternElements.size(); i++) {
+        Element pattern = patternElements.get(i);
+        if (activePatternIds != null && !activePatternIds.contains(pattern.getAttribute("id").trim()))
+          continue;
+        try {
+          patterns.add(buildPattern(pattern));
+          streamedPatterns.append(i + 1).append(' ');
+        }
+        catch (NotStreamableException e) {
+          needsTransform = true;
+        }
+      }
+      return new StreamingSchema(patterns, streamedPatterns.toString(), needsTransform, prefixMap);
+    }
+
+    /**
+     * Returns the ids of the active patterns, or null if all patterns are active.
+     * This follows the stylesheet.
+     */
+    private Set<String> getActivePatternIds() {
+      String p = phase;
+      if (p.equals("#DEFAULT")) {
+        if (!schema.hasAttribute("defaultPhase"))
+          return null;
+        p = schema.getAttribute("defaultPhase").trim();
+      }
+      if (p.equals("#ALL"))
+        return null;
+      Set<String> ids = new HashSet<String>();
+      for (Element elem : children(schema, "phase")) {
+        if (elem.getAttribute("id").trim().equals(p)) {
+          for (Element active : children(elem, "active"))
+            ids.add(active.getAttribute("pattern").trim());
+        }
+      }
+      return ids;
+    }
+
+    private Pattern buildPattern(Element pattern) throws NotStreamableException {
+      if (pattern.hasAttribute("abstract")
+          || pattern.hasAttribute("is-a")
+          || pattern.hasAttribute("documents")
+          || !children(pattern, "let").isEmpty())
+        throw new NotStreamableException();
+      List<Rule> rules = new ArrayList<Rule>();
+      for (Element rule : children(pattern, "rule"))
+        rules.add(buildRule(rule));
+      return new Pattern(rules.toArray(new Rule[rules.size()]));
+    }
+
+    private Rule buildRule(Element rule) throws NotStreamableException {
+      if (!rule.hasAttribute("context") || rule.hasAttribute("subject"))
+        throw new NotStreamableException();
+      ContextPattern context = ContextPattern.parse(rule.getAttribute("context"), prefixMap);
+      if (context == null)
+        throw new NotStreamableException();
+      for (ContextPattern.Alternative alternative : context.getAlternatives())
+        for (String predicate : alternative.getPredicates())
+          checkCompiles(predicate);
+      int[] classification = { context.getClassification() };
+      List<Assertion> assertions = new ArrayList<Assertion>();
+      addAssertions(rule, assertions, classification, new HashSet<Element>());
+      boolean needsSubtree = classification[0] != ExpressionClassifier.ELEMENT;
+      if (needsSubtree && context.canMatchDocumentElement())
+        throw new NotStreamableException();
+      return new Rule(context, assertions.toArray(new Assertion[assertions.size()]), needsSubtree);
+    }
+
+    private void addAssertions(Element rule, List<Assertion> assertions, int[] classification, Set<Element> open)
+            throws NotStreamableException {
+      if (!open.add(rule))
+        throw new NotStreamableException();
+      for (Node node = rule.getFirstChild(); node != null; node = node.getNextSibling()) {
+        if (!(node instanceof Element) || !schematronUri.equals(node.getNamespaceURI()))
+          continue;
+        Element elem = (Element)node;
+        String name = elem.getLocalName();
+        if (name.equals("let") || name.equals("key"))
+          throw new NotStreamableException();
+        if (name.equals("extends")) {
+          Element abstractRule = abstractRuleMap.get(elem.getAttribute("rule").trim());
+          if (abstractRule == null)
+            throw new NotStreamableException();
+          addAssertions(abstractRule, assertions, classification, open);
+        }
+        else if (name.equals("assert") || name.equals("report"))
+          assertions.add(buildAssertion(elem, classification));
+      }
+      open.remove(rule);
+    }
+
+    private Assertion buildAssertion(Element elem, int[] classification) throws NotStreamableException {
+      if (!elem.hasAttribute("test") || elem.hasAttribute("subject"))
+        throw new NotStreamableException();
+      String test = elem.getAttribute("test");
+      addExpression(test, classification);
+      Message statement = null;
+      if (hasStatement(elem))
+        statement = buildMessage(elem, classification);
+      List<Message> diagnostics = new ArrayList<Message>();
+      if (diagnose) {
+        StringTokenizer iter = new StringTokenizer(elem.getAttribute("diagnostics"));
+        while (iter.hasMoreTokens()) {
+          Element diagnostic = diagnosticMap.get(iter.nextToken());
+          if (diagnostic == null)
+            throw new NotStreamableException();
+          diagnostics.add(buildMessage(diagnostic, classification));
+        }
+      }
+      return new Assertion(elem.getLocalName().equals("report"),
+                           test,
+                           statement,
+                           diagnostics.toArray(new Message[diagnostics.size()]));
+    }
+
+    /**
+     * Follows the stylesheet, which outputs a statement if there is a child element or
+     * the first text child contains non-whitespace characters.
+     */
+    private static boolean hasStatement(Element elem) {
+      boolean sawText = false;
+      for (Node node = elem.getFirstChild(); node != null; node = node.getNextSibling()) {
+        switch (node.getNodeType()) {
+        case Node.ELEMENT_NODE:
+          return true;
+        case Node.TEXT_NODE:
+        case Node.CDATA_SECTION_NODE:
+          if (!sawText && node.getNodeValue().trim().length() > 0)
+            return true;
+          sawText = true;
+          break;
+        }
+      }
+      return false;
+    }
+
+    private Message buildMessage(Element elem, int[] classification) throws NotStreamableException {
+      List<String> parts = new ArrayList<String>();
+      List<Boolean> isExpression = new ArrayList<Boolean>();
+      addMessageParts(elem, parts, isExpression, classification);
+      boolean[] flags = new boolean[isExpression.size()];
+      for (int i = 0; i < flags.length; i++)
+        flags[i] = isExpression.get(i);
+      return new Message(parts.toArray(new String[parts.size()]), flags);
+    }
+
+    private void addMessageParts(Element elem, List<String> parts, List<Boolean> isExpression, int[] classification)
+            throws NotStreamableException {
+      for (Node node = elem.getFirstChild(); node != null; node = node.getNextSibling()) {
+        switch (node.getNodeType()) {
+        case Node.TEXT_NODE:
+        case Node.CDATA_SECTION_NODE:
+          parts.add(node.getNodeValue());
+          isExpression.add(Boolean.FALSE);
+          break;
+        case Node.ELEMENT_NODE:
+          if (!schematronUri.equals(node.getNamespaceURI()))
+            break;
+          Element child = (Element)node;
+          String name = child.getLocalName();
+          String expr = null;
+          if (name.equals("name"))
+            expr = child.hasAttribute("path") ? "name(" + child.getAttribute("path") + ")" : "name()";
+          else if (name.equals("value-of"))
+            expr = child.getAttribute("select");
+          else if (name.equals("emph") || name.equals("dir") || name.equals("span"))
+            addMessageParts(child, parts, isExpression, classification);
+          if (expr != null) {
+            addExpression(expr, classification);
+            parts.add(expr);
+            isExpression.add(Boolean.TRUE);
+          }
+          break;
+        }
+      }
+    }
+
+    private void addExpression(String expr, int[] classification) throws NotStreamableException {
+      int c = ExpressionClassifier.classify(expr);
+      if (c == ExpressionClassifier.DOCUMENT)
+        throw new NotStreamableException();
+      checkCompiles(expr);
+      classification[0] = Math.min(classification[0], c);
+    }
+
+    private void checkCompiles(String expr) throws NotStreamableException {
+      try {
+        xpath.compile(expr);
+      }
+      catch (XPathExpressionException e) {
+        throw new NotStreamableException();
+      }
+    }
+
+    private boolean isSchematronElement(Node node, String localName) {
+      return (node instanceof Element
+              && schematronUri.equals(node.getNamespaceURI())
+              && localName.equals(node.getLocalName()));
+    }
+
+    private List<Element> children(Element parent, String localName) {
+      List<Element> list = new ArrayList<Element>();
+      for (Node node = parent.getFirstChild(); node != null; node = node.getNextSibling())
+        if (isSchematronElement(node, localName))
+          list.add((Element)node);
+      return list;
+    }
+
+    private static void putFirst(Map<String, Element> map, Element elem) {
+      String id = elem.getAttribute("id").trim();
+      if (!map.containsKey(id))
+        map.put(id, elem);
+    }
+  }
+}
@@ -0,0 +1,352 @@
+package com.thaiopensource.validate.schematron;
+
+import com.thaiopensource.util.PropertyMap;
+import com.thaiopensource.util.Sha1;
+import com.thaiopensource.validate.ResourceRecorder;
+import com.thaiopensource.xml.sax.ForkContentHandler;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.EntityResolver;
+import org.xml.sax.InputSource;
+
+import javax.xml.transform.Templates;
+import javax.xml.transform.TransformerConfigurationException;
+import javax.xml.transform.TransformerException;
+import javax.xml.transform.sax.SAXTransformerFactory;
+import javax.xml.transform.sax.TransformerHandler;
+import javax.xml.transform.stream.StreamResult;
+import javax.xml.transform.stream.StreamSource;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.CharArrayReader;
+import java.io.CharArrayWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.security.MessageDigest;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Caches the Templates compiled from Schematron schemas.  Entries are keyed by a digest
+ * of the bytes of the schema together with everything else that affects the generated
+ * stylesheet: the skeleton stylesheet, the TransformerFactory, the phase, the diagnose flag
+ * and the system identifier of the schema, against which relative URIs are resolved.
+ * Each entry also records the digest of every other resource read while the schema was parsed,
+ * such as an external DTD subset or entity, and is only used while none of them has changed.
+ * Compiled Templates are kept in memory.  If a cache directory is specified, the generated
+ * stylesheet is also stored there, with the resources it depends on, so that another process
+ * can compile it without repeating the meta-transformation.
+ * <p>
+ * Templates are only stored for a schema that was compiled without errors, which includes
+ * being valid against the schema for Schematron, so an entry also caches the result of that
+ * validation.
+ */
+class TemplatesCache {
+  private static final int MAX_MEMORY_ENTRIES = 32;
+  private static final String STYLESHEET_EXTENSION = ".xsl";
+  private static final String RESOURCES_EXTENSION = ".resources";
+  private static final String URI_PROPERTY = "uri.";
+  private static final String DIGEST_PROPERTY = "digest.";
+  private static final TemplatesCache theInstance = new TemplatesCache();
+
+  private final Map<String, Cached> memoryCache
+          = new LinkedHashMap<String, Cached>(16, 0.75f, true) {
+    protected boolean removeEldestEntry(Map.Entry<String, Cached> eldest) {
+      return size() > MAX_MEMORY_ENTRIES;
+    }
+  };
+
+  static private class Cached {
+    private final Templates templates;
+    // maps the URI of each resource read while parsing the schema to the digest of its content
+    private final Map<String, String> resources;
+
+    Cached(Templates templates, Map<String, String> resources) {
+      this.templates = templates;
+      this.resources = resources;
+    }
+  }
+
+  private TemplatesCache() {
+  }
+
+  static TemplatesCache getInstance() {
+    return theInstance;
+  }
+
+  class Entry {
+    private final String key;
+    private final InputSource inputSource;
+    private final byte[] bytes;
+    private final char[] chars;
+    private final File directory;
+    private final ResourceRecorder recorder = new ResourceRecorder();
+    private ByteArrayOutputStream stylesheet = null;
+
+    private Entry(String key, InputSource inputSource, byte[] bytes, char[] chars, File directory) {
+      this.key = key;
+      this.inputSource = inputSource;
+      this.bytes = bytes;
+      this.chars = chars;
+      this.directory = directory;
+    }
+
+    /**
+     * Returns a new InputSource that rereads the content of the schema.
+     */
+    InputSource getInputSource() {
+      InputSource in = new InputSource();
+      in.setSystemId(inputSource.getSystemId());
+      in.setPublicId(inputSource.getPublicId());
+      in.setEncoding(inputSource.getEncoding());
+      if (chars != null)
+        in.setCharacterStream(new CharArrayReader(chars));
+      else
+        in.setByteStream(new ByteArrayInputStream(bytes));
+      return in;
+    }
+
+    /**
+     * Returns properties with which the resources read while parsing the schema are recorded.
+     */
+    PropertyMap recordResources(PropertyMap properties) {
+      return recorder.recordResources(properties);
+    }
+
+    /**
+     * Returns an EntityResolver with which the entities read while parsing the schema with an XMLReader
+     * that was not created with the properties returned by recordResources are recorded.
+     */
+    EntityResolver recordEntities(EntityResolver entityResolver) {
+      return recorder.recordEntities(entityResolver);
+    }
+
+    /**
+     * Returns the cached Templates, or null if the schema must be compiled.
+     */
+    Templates getTemplates(SAXTransformerFactory factory) {
+      Cached cached = getMemory(key);
+      if (cached != null && !ResourceRecorder.isUpToDate(cached.resources))
+        cached = null;
+      if (cached == null && directory != null) {
+        cached = load(factory);
+        if (cached != null)
+          putMemory(key, cached);
+      }
+      return cached == null ? null : cached.templates;
+    }
+
+    /**
+     * Returns a ContentHandler that passes the generated stylesheet to handler and,
+     * if there is a cache directory, also captures it so that it can be stored.
+     */
+    ContentHandler wrapStylesheetHandler(ContentHandler handler, SAXTransformerFactory factory)
+            throws TransformerConfigurationException {
+      if (directory == null)
+        return handler;
+      TransformerHandler serializer = factory.newTransformerHandler();
+      stylesheet = new ByteArrayOutputStream();
+      serializer.setResult(new StreamResult(stylesheet));
+      return new ForkContentHandler(handler, serializer);
+    }
+
+    void setTemplates(Templates templates) {
+      Map<String, String> resources = recorder.getDigests();
+      // a resource that could not be read cannot be checked for changes
+      if (resources.containsValue(null))
+        return;
+      putMemory(key, new Cached(templates, resources));
+      if (stylesheet != null) {
+        Properties props = new Properties();
+        int i = 0;
+        for (Map.Entry<String, String> entry : resources.entrySet()) {
+          props.setProperty(URI_PROPERTY + i, entry.getKey());
+          props.setProperty(DIGEST_PROPERTY + i, entry.getValue());
+          i++;
+        }
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        try {
+          props.store(buf, null);
+        }
+        catch (IOException e) {
+          // cannot happen with a ByteArrayOutputStream
+          return;
+        }
+        // The resources are stored first, so that a stylesheet is never without them.
+        if (store(buf.toByteArray(), RESOURCES_EXTENSION))
+          store(stylesheet.toByteArray(), STYLESHEET_EXTENSION);
+      }
+    }
+
+    private Cached load(SAXTransformerFactory factory) {
+      File file = new File(directory, key + STYLESHEET_EXTENSION);
+      if (!file.isFile())
+        return null;
+      Map<String, String> resources = loadResources();
+      if (resources == null || !ResourceRecorder.isUpToDate(resources))
+        return null;
+      InputStream in = null;
+      try {
+        in = new FileInputStream(file);
+        factory.setErrorListener(new DraconianErrorListener());
+        // Relative URIs in document() calls must be resolved against the schema.
+        return new Cached(factory.newTemplates(new StreamSource(in, inputSource.getSystemId())), resources);
+      }
+      catch (IOException e) {
+        return null;
+      }
+      catch (TransformerException e) {
+        // The stored stylesheet is unusable; the schema will be compiled again and replace it.
+        return null;
+      }
+      finally {
+        close(in);
+      }
+    }
+
+    /**
+     * Returns the stored resources on which the stylesheet depends, or null if they cannot be read.
+     */
+    private Map<String, String> loadResources() {
+      Properties props = new Properties();
+      InputStream in = null;
+      try {
+        in = new FileInputStream(new File(directory, key + RESOURCES_EXTENSION));
+        props.load(in);
+      }
+      catch (IOException e) {
+        return null;
+      }
+      finally {
+        close(in);
+      }
+      Map<String, String> resources = new LinkedHashMap<String, String>();
+      for (int i = 0;; i++) {
+        String uri = props.getProperty(URI_PROPERTY + i);
+        if (uri == null)
+          break;
+        String digest = props.getProperty(DIGEST_PROPERTY + i);
+        if (digest == null)
+          return null;
+        resources.put(uri, digest);
+      }
+      return resources;
+    }
+
+    /**
+     * Stores a file of the entry, and returns true if it was stored.
+     */
+    private boolean store(byte[] bytes, String extension) {
+      // The cache is only an optimization, so failures to store are ignored.
+      OutputStream out = null;
+      File tem = null;
+      try {
+        if (!directory.isDirectory() && !directory.mkdirs())
+          return false;
+        tem = File.createTempFile(key, null, directory);
+        out = new FileOutputStream(tem);
+        out.write(bytes);
+        out.close();
+        out = null;
+        File file = new File(directory, key + extension);
+        // Writing to a temporary file and renaming avoids exposing partially written files
+        // to other processes.
+        if (!tem.renameTo(file)) {
+          file.delete();
+          if (!tem.renameTo(file))
+            return false;
+        }
+        tem = null;
+        return true;
+      }
+      catch (IOException e) {
+        return false;
+      }
+      finally {
+        close(out);
+        if (tem != null)
+          tem.delete();
+      }
+    }
+  }
+
+  /**
+   * Reads the content of the schema and returns an Entry for it.
+   *
+   * @param in an InputSource that has been opened
+   * @param directory the directory in which to store generated stylesheets; may be null
+   * @param parameters the values other than the schema that affect the generated stylesheet
+   */
+  Entry getEntry(InputSource in, File directory, String[] parameters) throws IOException {
+    MessageDigest digest = Sha1.newMessageDigest();
+    for (int i = 0; i < parameters.length; i++) {
+      if (parameters[i] != null)
+        Sha1.update(digest, parameters[i]);
+      digest.update((byte)0);
+    }
+    if (in.getSystemId() != null)
+      Sha1.update(digest, in.getSystemId());
+    digest.update((byte)0);
+    if (in.getEncoding() != null)
+      Sha1.update(digest, in.getEncoding());
+    digest.update((byte)0);
+    Reader reader = in.getCharacterStream();
+    if (reader != null) {
+      CharArrayWriter buffer = new CharArrayWriter();
+      try {
+        char[] buf = new char[8192];
+        for (int n; (n = reader.read(buf, 0, buf.length)) > 0;)
+          buffer.write(buf, 0, n);
+      }
+      finally {
+        reader.close();
+      }
+      Sha1.update(digest, buffer.toString());
+      return new Entry(Sha1.toHex(digest.digest()), in, null, buffer.toCharArray(), directory);
+    }
+    ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    InputStream stream = in.getByteStream();
+    try {
+      byte[] buf = new byte[8192];
+      for (int n; (n = stream.read(buf, 0, buf.length)) > 0;)
+        buffer.write(buf, 0, n);
+    }
+    finally {
+      stream.close();
+    }
+    byte[] content = buffer.toByteArray();
+    digest.update(content);
+    return new Entry(Sha1.toHex(digest.digest()), in, content, null, directory);
+  }
+
+  private synchronized Cached getMemory(String key) {
+    return memoryCache.get(key);
+  }
+
+  private synchronized void putMemory(String key, Cached cached) {
+    memoryCache.put(key, cached);
+  }
+
+  private static void close(InputStream in) {
+    if (in != null) {
+      try {
+        in.close();
+      }
+      catch (IOException e) { }
+    }
+  }
+
+  private static void close(OutputStream out) {
+    if (out != null) {
+      try {
+        out.close();
+      }
+      catch (IOException e) { }
+    }
+  }
+}
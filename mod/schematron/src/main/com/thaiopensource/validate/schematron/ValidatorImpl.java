@@ -1,17 +1,18 @@
 package com.thaiopensource.validate.schematron;
 
-import com.thaiopensource.resolver.Resolver;
-import com.thaiopensource.resolver.xml.transform.Transform;
+import com.thaiopensource.resolver.xml.sax.SAXResolver;
 import com.thaiopensource.util.PropertyMap;
 import com.thaiopensource.validate.ResolverFactory;
 import com.thaiopensource.validate.ValidateProperty;
 import com.thaiopensource.validate.Validator;
+import com.thaiopensource.xml.sax.ForkContentHandler;
 import org.xml.sax.ContentHandler;
 import org.xml.sax.DTDHandler;
 import org.xml.sax.ErrorHandler;
 
 import javax.xml.transform.Templates;
 import javax.xml.transform.TransformerConfigurationException;
+import javax.xml.transform.URIResolver;
 import javax.xml.transform.sax.SAXResult;
 import javax.xml.transform.sax.SAXTransformerFactory;
 import javax.xml.transform.sax.TransformerHandler;
@@ -19,44 +20,70 @@ import javax.xml.transform.sax.TransformerHandler;
 class ValidatorImpl implements Validator {
   private final Templates templates;
   private final SAXTransformerFactory factory;
-  private final ContentHandler outputHandler;
+  private final SAXResult result;
+  private final StreamingHandler streamingHandler;
+  private final URIResolver uriResolver;
+  // created when first needed, because a TransformerHandler cannot be used for more than one document
   private TransformerHandler transformerHandler;
-  private final Resolver resolver;
+  private ContentHandler contentHandler;
 
-  ValidatorImpl(Templates templates, SAXTransformerFactory factory, PropertyMap properties) {
+  ValidatorImpl(Templates templates, StreamingSchema streamingSchema, DocumentCache documentCache,
+                SAXTransformerFactory factory, PropertyMap properties) {
     this.templates = templates;
     this.factory = factory;
     ErrorHandler eh = properties.get(ValidateProperty.ERROR_HANDLER);
-    outputHandler = new OutputHandler(eh);
-    resolver = ResolverFactory.createResolver(properties).getResolver();
-    initTransformerHandler();
+    result = new SAXResult(new OutputHandler(eh));
+    streamingHandler = streamingSchema == null ? null : new StreamingHandler(streamingSchema, eh);
+    // When you specify a URIResolver, XSLTC uses a DOMCache, which
+    // doesn't seem to work too well.
+    if (templates == null || SchemaReaderImpl.isXsltc(factory.getClass()))
+      uriResolver = null;
+    else
+      uriResolver = documentCache.createURIResolver(new SAXResolver(ResolverFactory.createResolver(properties)
+                                                                      .getResolver()));
   }
 
   public ContentHandler getContentHandler() {
-    return transformerHandler;
+    if (contentHandler == null)
+      initTransformerHandler();
+    return contentHandler;
   }
 
   public DTDHandler getDTDHandler() {
+    if (contentHandler == null)
+      initTransformerHandler();
+    // only the stylesheet uses DTD information, but the streaming handler can ignore it
+    if (transformerHandler == null)
+      return streamingHandler;
     return transformerHandler;
   }
 
   public void reset() {
-    initTransformerHandler();
+    if (streamingHandler != null)
+      streamingHandler.reset();
+    transformerHandler = null;
+    contentHandler = null;
   }
 
   private void initTransformerHandler() {
+    if (templates == null) {
+      contentHandler = streamingHandler;
+      return;
+    }
     try {
       transformerHandler = factory.newTransformerHandler(templates);
-      // When you specify a URIResolver, XSLTC uses a DOMCache, which
-      // doesn't seem to work too well.
-      if (!SchemaReaderImpl.isXsltc(factory.getClass()))
-        transformerHandler.getTransformer().setURIResolver(Transform.createSAXURIResolver(resolver));
+      if (uriResolver != null)
+        transformerHandler.getTransformer().setURIResolver(uriResolver);
       // XXX set up transformer with an ErrorListener that just throws
       // XXX (what about errors from document() calls?)
     }
     catch (TransformerConfigurationException e) {
       throw new RuntimeException("could not create transformer");
     }
-    transformerHandler.setResult(new SAXResult(outputHandler));
+    transformerHandler.setResult(result);
+    if (streamingHandler == null)
+      contentHandler = transformerHandler;
+    else
+      contentHandler = new ForkContentHandler(streamingHandler, transformerHandler);
   }
 }
@@ -11,6 +11,8 @@
 
 <xsl:param name="phase" select="'#DEFAULT'"/>
 <xsl:param name="diagnose" select="false()"/>
+<!-- Space-separated indexes of patterns that are evaluated without the stylesheet. -->
+<xsl:param name="streamed-patterns" select="''"/>
 
 <xsl:namespace-alias stylesheet-prefix="axsl" result-prefix="xsl"/>
 
@@ -92,8 +94,11 @@
 
 <xsl:template name="process-patterns">
   <xsl:param name="patterns"/>
-  <xsl:variable name="npatterns" select="count($patterns)"/>
-  <xsl:for-each select="$patterns">
+  <xsl:variable name="unstreamed-patterns"
+                select="$patterns[not(contains($streamed-patterns,
+                                               concat(' ', count(preceding-sibling::sch:pattern) + 1, ' ')))]"/>
+  <xsl:variable name="npatterns" select="count($unstreamed-patterns)"/>
+  <xsl:for-each select="$unstreamed-patterns">
     <xsl:variable name="pattern-index" select="position()"/>
     <xsl:variable name="not-last" select="not(position()=$npatterns)"/>
     <xsl:for-each select="sch:rule">
@@ -0,0 +1,99 @@
+package com.thaiopensource.validate.schematron;
+
+import com.thaiopensource.resolver.Identifier;
+import com.thaiopensource.resolver.Input;
+import com.thaiopensource.resolver.Resolver;
+import com.thaiopensource.resolver.xml.sax.SAXResolver;
+import com.thaiopensource.util.UriOrFile;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import javax.xml.transform.URIResolver;
+import javax.xml.transform.sax.SAXSource;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+public class DocumentCacheTest {
+  private File file;
+  private int opens;
+  private URIResolver uriResolver;
+
+  @BeforeMethod
+  public void setUp() throws IOException {
+    file = File.createTempFile("codes", ".xml");
+    opens = 0;
+    uriResolver = new DocumentCache().createURIResolver(new SAXResolver(new Resolver() {
+      public void resolve(Identifier id, Input input) {
+      }
+
+      public void open(Input input) {
+        opens++;
+      }
+    }));
+  }
+
+  @AfterMethod
+  public void tearDown() {
+    file.delete();
+  }
+
+  @Test
+  public void testHit() throws Exception {
+    write("<codes><code>a</code></codes>", System.currentTimeMillis() - 60000);
+    Assert.assertEquals(read(), "<codes><code>a</code></codes>");
+    Assert.assertEquals(read(), "<codes><code>a</code></codes>");
+    Assert.assertEquals(opens, 1);
+  }
+
+  @Test
+  public void testModified() throws Exception {
+    long lastModified = System.currentTimeMillis() - 60000;
+    write("<codes><code>a</code></codes>", lastModified);
+    Assert.assertEquals(read(), "<codes><code>a</code></codes>");
+    write("<codes><code>b</code></codes>", lastModified + 10000);
+    Assert.assertEquals(read(), "<codes><code>b</code></codes>");
+    // same modification time, different length
+    write("<codes><code>bb</code></codes>", lastModified + 10000);
+    Assert.assertEquals(read(), "<codes><code>bb</code></codes>");
+    Assert.assertEquals(opens, 3);
+  }
+
+  @Test
+  public void testRecentlyModified() throws Exception {
+    write("<codes><code>a</code></codes>", System.currentTimeMillis());
+    Assert.assertEquals(read(), "<codes><code>a</code></codes>");
+    // another modification might not change the modification time, so the content is not cached
+    Assert.assertEquals(read(), "<codes><code>a</code></codes>");
+    Assert.assertEquals(opens, 2);
+  }
+
+  private void write(String content, long lastModified) throws IOException {
+    OutputStream out = new FileOutputStream(file);
+    try {
+      out.write(content.getBytes("UTF-8"));
+    }
+    finally {
+      out.close();
+    }
+    Assert.assertTrue(file.setLastModified(lastModified));
+  }
+
+  private String read() throws Exception {
+    SAXSource source = (SAXSource)uriResolver.resolve(file.getName(), UriOrFile.fileToUri(file));
+    InputStream in = source.getInputSource().getByteStream();
+    StringBuilder buf = new StringBuilder();
+    try {
+      for (int c; (c = in.read()) >= 0;)
+        buf.append((char)c);
+    }
+    finally {
+      in.close();
+    }
+    return buf.toString();
+  }
+}
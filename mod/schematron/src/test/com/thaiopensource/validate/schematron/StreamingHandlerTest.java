@@ -0,0 +1,79 @@
+package com.thaiopensource.validate.schematron;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.AttributesImpl;
+import org.xml.sax.helpers.DefaultHandler;
+
+import javax.xml.parsers.SAXParserFactory;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.sax.SAXTransformerFactory;
+import java.io.StringReader;
+
+/**
+ * Test that streaming never buffers the whole document.
+ */
+public class StreamingHandlerTest {
+  private static final String SCHEMATRON_URI = "http://purl.oclc.org/dsdl/schematron";
+
+  @Test
+  public void testDocumentElementNotBuffered() throws Exception {
+    StreamingSchema schema = createSchema("<pattern><rule context='doc'><assert test='item'/></rule></pattern>"
+                                          + "<pattern><rule context='*'><assert test='.//item'/></rule></pattern>"
+                                          + "<pattern><rule context='doc'><assert test='@version'/></rule></pattern>");
+    // only the pattern that looks at the attributes of the document element is streamed
+    Assert.assertEquals(schema.getPatterns().size(), 1);
+    Assert.assertEquals(schema.getStreamedPatterns(), " 3 ");
+    Assert.assertTrue(schema.needsTransform());
+    StreamingHandler handler = new StreamingHandler(schema, new DefaultHandler());
+    handler.startDocument();
+    startElement(handler, "doc");
+    startElement(handler, "item");
+    Assert.assertFalse(handler.isBuffering());
+    endElement(handler, "item");
+    endElement(handler, "doc");
+    handler.endDocument();
+  }
+
+  @Test
+  public void testSubtreeBuffered() throws Exception {
+    StreamingSchema schema = createSchema("<pattern><rule context='doc/item'><assert test='name'/></rule></pattern>");
+    Assert.assertEquals(schema.getPatterns().size(), 1);
+    Assert.assertFalse(schema.needsTransform());
+    StreamingHandler handler = new StreamingHandler(schema, new DefaultHandler());
+    handler.startDocument();
+    startElement(handler, "doc");
+    for (int i = 0; i < 3; i++) {
+      Assert.assertFalse(handler.isBuffering());
+      startElement(handler, "item");
+      startElement(handler, "name");
+      Assert.assertTrue(handler.isBuffering());
+      endElement(handler, "name");
+      endElement(handler, "item");
+    }
+    Assert.assertFalse(handler.isBuffering());
+    endElement(handler, "doc");
+    handler.endDocument();
+  }
+
+  private static StreamingSchema createSchema(String patterns) throws Exception {
+    SAXParserFactory parserFactory = SAXParserFactory.newInstance();
+    parserFactory.setNamespaceAware(true);
+    XMLReader xr = parserFactory.newSAXParser().getXMLReader();
+    String schema = "<schema xmlns='" + SCHEMATRON_URI + "'>" + patterns + "</schema>";
+    return StreamingSchema.create(xr, new InputSource(new StringReader(schema)),
+                                  (SAXTransformerFactory)TransformerFactory.newInstance(),
+                                  SCHEMATRON_URI, null, false);
+  }
+
+  private static void startElement(StreamingHandler handler, String name) throws SAXException {
+    handler.startElement("", name, name, new AttributesImpl());
+  }
+
+  private static void endElement(StreamingHandler handler, String name) throws SAXException {
+    handler.endElement("", name, name);
+  }
+}
@@ -0,0 +1,97 @@
+package com.thaiopensource.validate.schematron;
+
+import com.thaiopensource.util.PropertyMapBuilder;
+import com.thaiopensource.util.UriOrFile;
+import com.thaiopensource.validate.ResolverFactory;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import org.xml.sax.InputSource;
+
+import javax.xml.transform.Templates;
+import javax.xml.transform.TransformerFactory;
+import javax.xml.transform.sax.SAXTransformerFactory;
+import javax.xml.transform.stream.StreamSource;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringReader;
+
+public class TemplatesCacheTest {
+  private static final String[] PARAMETERS = { "skeleton.xsl", "factory", null, "false" };
+  private final SAXTransformerFactory factory = (SAXTransformerFactory)TransformerFactory.newInstance();
+
+  private static TemplatesCache.Entry getEntry(String schema, String systemId) throws IOException {
+    InputSource in = new InputSource(systemId);
+    in.setByteStream(new ByteArrayInputStream(schema.getBytes("UTF-8")));
+    return TemplatesCache.getInstance().getEntry(in, null, PARAMETERS);
+  }
+
+  private Templates compile() throws Exception {
+    return factory.newTemplates(new StreamSource(new StringReader(
+            "<xsl:stylesheet xmlns:xsl='http://www.w3.org/1999/XSL/Transform' version='1.0'/>")));
+  }
+
+  @Test
+  public void testHit() throws Exception {
+    String schema = "<schema xmlns='http://www.ascc.net/xml/schematron' id='hit'/>";
+    TemplatesCache.Entry entry = getEntry(schema, "file:/a/schema.sch");
+    Assert.assertNull(entry.getTemplates(factory));
+    Templates templates = compile();
+    entry.setTemplates(templates);
+    Assert.assertSame(getEntry(schema, "file:/a/schema.sch").getTemplates(factory), templates);
+  }
+
+  @Test
+  public void testDifferentBase() throws Exception {
+    String schema = "<schema xmlns='http://www.ascc.net/xml/schematron' id='base'/>";
+    TemplatesCache.Entry entry = getEntry(schema, "file:/a/schema.sch");
+    Templates templates = compile();
+    entry.setTemplates(templates);
+    // relative URIs in the stylesheet would be resolved against a different base
+    Assert.assertNull(getEntry(schema, "file:/b/schema.sch").getTemplates(factory));
+    Assert.assertNull(getEntry(schema, null).getTemplates(factory));
+    Assert.assertSame(getEntry(schema, "file:/a/schema.sch").getTemplates(factory), templates);
+  }
+
+  @Test
+  public void testDifferentContent() throws Exception {
+    TemplatesCache.Entry entry = getEntry("<schema xmlns='http://www.ascc.net/xml/schematron' id='x'/>",
+                                          "file:/a/schema.sch");
+    entry.setTemplates(compile());
+    Assert.assertNull(getEntry("<schema xmlns='http://www.ascc.net/xml/schematron' id='y'/>",
+                               "file:/a/schema.sch").getTemplates(factory));
+  }
+
+  @Test
+  public void testChangedResource() throws Exception {
+    File dtd = File.createTempFile("schema", ".dtd");
+    try {
+      write(dtd, "<!ENTITY context 'doc'>");
+      String schema = "<schema xmlns='http://www.ascc.net/xml/schematron' id='resource'/>";
+      TemplatesCache.Entry entry = getEntry(schema, "file:/a/schema.sch");
+      // the DTD is read while the schema is parsed
+      ResolverFactory.createResolver(entry.recordResources(new PropertyMapBuilder().toPropertyMap()))
+              .resolve(UriOrFile.fileToUri(dtd), null);
+      Templates templates = compile();
+      entry.setTemplates(templates);
+      Assert.assertSame(getEntry(schema, "file:/a/schema.sch").getTemplates(factory), templates);
+      write(dtd, "<!ENTITY context 'other'>");
+      Assert.assertNull(getEntry(schema, "file:/a/schema.sch").getTemplates(factory));
+    }
+    finally {
+      dtd.delete();
+    }
+  }
+
+  private static void write(File file, String content) throws IOException {
+    OutputStream out = new FileOutputStream(file);
+    try {
+      out.write(content.getBytes("UTF-8"));
+    }
+    finally {
+      out.close();
+    }
+  }
+}
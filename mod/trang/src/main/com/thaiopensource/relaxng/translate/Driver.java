@@ -5,7 +5,6 @@ import com.thaiopensource.relaxng.input.InputFailedException;
 import com.thaiopensource.relaxng.input.InputFormat;
 import com.thaiopensource.relaxng.input.MultiInputFormat;
 import com.thaiopensource.relaxng.output.LocalOutputDirectory;
-import com.thaiopensource.relaxng.output.OutputDirectory;
 import com.thaiopensource.relaxng.output.OutputFailedException;
 import com.thaiopensource.relaxng.output.OutputFormat;
 import com.thaiopensource.relaxng.translate.util.InvalidParamsException;
@@ -21,6 +20,7 @@ import org.xml.sax.SAXException;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 public class Driver {
@@ -48,8 +48,11 @@ public class Driver {
     List<String> inputParams = new ArrayList<String>();
     List<String> outputParams = new ArrayList<String>();
     List<String> catalogUris = new ArrayList<String>();
+    File manifestFile = null;
+    String[] allArgs = args;
+    Manifest manifest = null;
     try {
-      OptionParser op = new OptionParser("C:I:O:i:o:", args);
+      OptionParser op = new OptionParser("C:I:O:i:o:m:", args);
       try {
         while (op.moveToNextOption()) {
           switch (op.getOptionChar()) {
@@ -68,6 +71,9 @@ public class Driver {
           case 'o':
             outputParams.add(op.getOptionArg());
             break;
+          case 'm':
+            manifestFile = new File(op.getOptionArg());
+            break;
           }
         }
       }
@@ -118,6 +124,16 @@ public class Driver {
           return 2;
         }
       }
+      if (manifestFile != null) {
+        String[] manifestArgs = new String[allArgs.length + 1];
+        manifestArgs[0] = Version.getVersion(Driver.class);
+        System.arraycopy(allArgs, 0, manifestArgs, 1, allArgs.length);
+        manifest = new Manifest(manifestFile, manifestArgs);
+        if (manifest.isUpToDate())
+          return 0;
+        resolver = manifest.createResolver(resolver);
+        manifest.addInputs(catalogUris);
+      }
       String[] inputParamArray = inputParams.toArray(new String[inputParams.size()]);
       outputType = outputType.toLowerCase();
       SchemaCollection sc;
@@ -129,19 +145,30 @@ public class Driver {
         String[] uris = new String[args.length - 1];
         for (int i = 0; i < uris.length; i++)
           uris[i] = UriOrFile.toUri(args[i]);
+        if (manifest != null)
+          manifest.addInputs(Arrays.asList(uris));
         sc = ((MultiInputFormat)inputFormat).load(uris, inputParamArray, outputType, eh, resolver);
       }
-      else
+      else {
+        if (manifest != null)
+          manifest.addInput(UriOrFile.toUri(args[0]));
         sc = inputFormat.load(UriOrFile.toUri(args[0]), inputParamArray, outputType, eh, resolver);
+      }
       if (ext.length() == 0)
         ext = outputType;
-      OutputDirectory od = new LocalOutputDirectory(sc.getMainUri(),
+      LocalOutputDirectory od = new LocalOutputDirectory(sc.getMainUri(),
                                                     new File(args[args.length - 1]),
                                                     ext,
                                                     DEFAULT_OUTPUT_ENCODING,
                                                     DEFAULT_LINE_LENGTH,
                                                     DEFAULT_INDENT);
+      if (manifest != null) {
+        od.setKeepUnchangedFiles(true);
+        manifest.addInputs(sc.getSchemaDocumentMap().keySet());
+      }
       outputFormat.output(sc, od, outputParams.toArray(new String[outputParams.size()]), inputType.toLowerCase(), eh);
+      if (manifest != null)
+        manifest.write(od.getOutputFiles());
       return 0;
     }
     catch (OutputFailedException e) {
@@ -156,6 +183,8 @@ public class Driver {
     catch (SAXException e) {
       eh.printException(e);
     }
+    if (manifest != null)
+      manifest.delete();
     return 1;
   }
 
@@ -0,0 +1,205 @@
+package com.thaiopensource.relaxng.translate;
+
+import com.thaiopensource.resolver.BasicResolver;
+import com.thaiopensource.resolver.Identifier;
+import com.thaiopensource.resolver.Input;
+import com.thaiopensource.resolver.Resolver;
+import com.thaiopensource.resolver.ResolverException;
+import com.thaiopensource.util.Sha1;
+import com.thaiopensource.util.UriOrFile;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Records what a conversion read and wrote, so that a later conversion with the same arguments can be
+ * skipped if none of the resources that it would read, nor the files that it would write, have changed.
+ * The manifest is stored as a properties file, which gives the arguments, and the URI and a digest
+ * of the content of each input and output.
+ */
+class Manifest {
+  private static final String VERSION = "1";
+  private static final String VERSION_PROPERTY = "version";
+  private static final String ARGUMENT_PROPERTY = "argument.";
+  private static final String INPUT_PROPERTY = "input.";
+  private static final String OUTPUT_PROPERTY = "output.";
+  private static final String DIGEST_SUFFIX = ".digest";
+
+  private final File file;
+  private final String[] args;
+  // maps the URI of each input to the digest of its content when it was first read, or to null
+  private final Map<String, String> inputDigests = new LinkedHashMap<String, String>();
+
+  /**
+   * @param file the file in which the manifest is stored
+   * @param args the arguments of the conversion, including the version of the converter
+   */
+  Manifest(File file, String[] args) {
+    this.file = file;
+    this.args = args;
+  }
+
+  /**
+   * Returns true if the stored manifest has the same arguments as this manifest, and none of its
+   * inputs and outputs have changed.
+   */
+  boolean isUpToDate() {
+    Properties props = new Properties();
+    InputStream in = null;
+    try {
+      in = new FileInputStream(file);
+      props.load(in);
+    }
+    catch (IOException e) {
+      return false;
+    }
+    finally {
+      close(in);
+    }
+    if (!VERSION.equals(props.getProperty(VERSION_PROPERTY)))
+      return false;
+    for (int i = 0; i < args.length; i++)
+      if (!args[i].equals(props.getProperty(ARGUMENT_PROPERTY + i)))
+        return false;
+    if (props.getProperty(ARGUMENT_PROPERTY + args.length) != null)
+      return false;
+    for (int i = 0;; i++) {
+      String uri = props.getProperty(INPUT_PROPERTY + i);
+      if (uri == null)
+        break;
+      String digest = props.getProperty(INPUT_PROPERTY + i + DIGEST_SUFFIX);
+      if (digest == null || !digest.equals(digest(uri)))
+        return false;
+    }
+    for (int i = 0;; i++) {
+      String filename = props.getProperty(OUTPUT_PROPERTY + i);
+      if (filename == null)
+        break;
+      String digest = props.getProperty(OUTPUT_PROPERTY + i + DIGEST_SUFFIX);
+      if (digest == null || !digest.equals(digest(new File(filename))))
+        return false;
+    }
+    return true;
+  }
+
+  /**
+   * Returns a Resolver that records the URI of each resource that is opened using it.
+   *
+   * @param resolver the Resolver to use to resolve and open resources; may be null
+   */
+  Resolver createResolver(final Resolver resolver) {
+    return new Resolver() {
+      public void resolve(Identifier id, Input input) throws IOException, ResolverException {
+        if (resolver != null)
+          resolver.resolve(id, input);
+        if (!input.isResolved())
+          input.setUri(BasicResolver.resolveUri(id));
+      }
+
+      public void open(Input input) throws IOException, ResolverException {
+        if (resolver != null)
+          resolver.open(input);
+        if (!input.isOpen())
+          BasicResolver.getInstance().open(input);
+        if (input.getUri() != null)
+          addInput(input.getUri());
+      }
+    };
+  }
+
+  synchronized void addInput(String uri) {
+    if (!inputDigests.containsKey(uri))
+      inputDigests.put(uri, digest(uri));
+  }
+
+  void addInputs(Collection<String> uris) {
+    for (String uri : uris)
+      addInput(uri);
+  }
+
+  /**
+   * Stores the manifest, after a successful conversion.
+   */
+  synchronized void write(List<File> outputFiles) throws IOException {
+    Properties props = new Properties();
+    props.setProperty(VERSION_PROPERTY, VERSION);
+    for (int i = 0; i < args.length; i++)
+      props.setProperty(ARGUMENT_PROPERTY + i, args[i]);
+    int i = 0;
+    for (Map.Entry<String, String> entry : inputDigests.entrySet()) {
+      String uri = entry.getKey();
+      props.setProperty(INPUT_PROPERTY + i, uri);
+      // An input that cannot be read, or that has changed since it was read, has no digest,
+      // so that the conversion is not skipped next time.
+      String digest = entry.getValue();
+      if (digest != null && digest.equals(digest(uri)))
+        props.setProperty(INPUT_PROPERTY + i + DIGEST_SUFFIX, digest);
+      i++;
+    }
+    i = 0;
+    for (File outputFile : outputFiles) {
+      props.setProperty(OUTPUT_PROPERTY + i, outputFile.getAbsolutePath());
+      String digest = digest(outputFile);
+      if (digest != null)
+        props.setProperty(OUTPUT_PROPERTY + i + DIGEST_SUFFIX, digest);
+      i++;
+    }
+    OutputStream out = new FileOutputStream(file);
+    try {
+      props.store(out, null);
+    }
+    finally {
+      out.close();
+    }
+  }
+
+  /**
+   * Deletes the stored manifest, after a failed conversion.
+   */
+  void delete() {
+    file.delete();
+  }
+
+  /**
+   * Returns a digest of the content of the resource with the specified URI, or null if it cannot be read.
+   */
+  private static String digest(String uri) {
+    File file = UriOrFile.uriToFile(uri);
+    if (file != null)
+      return digest(file);
+    try {
+      return Sha1.digest(new URL(uri).openStream());
+    }
+    catch (IOException e) {
+      return null;
+    }
+  }
+
+  private static String digest(File file) {
+    try {
+      return Sha1.digest(new FileInputStream(file));
+    }
+    catch (IOException e) {
+      return null;
+    }
+  }
+
+  private static void close(InputStream in) {
+    if (in != null) {
+      try {
+        in.close();
+      }
+      catch (IOException e) { }
+    }
+  }
+}
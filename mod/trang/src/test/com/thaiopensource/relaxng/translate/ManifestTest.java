@@ -0,0 +1,131 @@
+package com.thaiopensource.relaxng.translate;
+
+import com.thaiopensource.util.UriOrFile;
+import com.thaiopensource.util.Version;
+import org.testng.Assert;
+import org.testng.annotations.AfterMethod;
+import org.testng.annotations.BeforeMethod;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Collections;
+
+/**
+ * Test that a conversion is skipped only when neither its inputs nor its outputs have changed, whatever
+ * the modification times of the files.
+ */
+public class ManifestTest {
+  private static final String[] ARGS = { "version", "in.rnc", "out.rng" };
+  private static final long PAST = (System.currentTimeMillis() / 1000 - 60) * 1000;
+
+  private File dir;
+  private File manifestFile;
+  private File input;
+  private File output;
+
+  @BeforeMethod
+  public void setUp() throws IOException {
+    dir = File.createTempFile("manifest", "");
+    if (!dir.delete() || !dir.mkdir())
+      throw new IOException("cannot create " + dir);
+    manifestFile = new File(dir, "manifest");
+    input = new File(dir, "in.rnc");
+    output = new File(dir, "out.rng");
+  }
+
+  @AfterMethod
+  public void tearDown() {
+    for (File file : dir.listFiles())
+      file.delete();
+    dir.delete();
+  }
+
+  @Test
+  public void testUpToDate() throws IOException {
+    write(input, "start = element doc { empty }", PAST);
+    Assert.assertFalse(new Manifest(manifestFile, ARGS).isUpToDate());
+    writeManifest();
+    Assert.assertTrue(new Manifest(manifestFile, ARGS).isUpToDate());
+    Assert.assertFalse(new Manifest(manifestFile, new String[] { "version", "in.rnc" }).isUpToDate());
+    Assert.assertFalse(new Manifest(manifestFile, new String[] { "version", "in.rnc", "out.xsd" }).isUpToDate());
+  }
+
+  @Test
+  public void testChangedInput() throws IOException {
+    write(input, "start = element doc { empty }", PAST);
+    writeManifest();
+    // same length and modification time
+    write(input, "start = element foo { empty }", PAST);
+    Assert.assertFalse(new Manifest(manifestFile, ARGS).isUpToDate());
+    // same content, different modification time
+    write(input, "start = element doc { empty }", System.currentTimeMillis());
+    Assert.assertTrue(new Manifest(manifestFile, ARGS).isUpToDate());
+  }
+
+  @Test
+  public void testChangedOutput() throws IOException {
+    write(input, "start = element doc { empty }", PAST);
+    writeManifest();
+    write(output, "<element name='foo'/>", PAST);
+    Assert.assertFalse(new Manifest(manifestFile, ARGS).isUpToDate());
+    output.delete();
+    Assert.assertFalse(new Manifest(manifestFile, ARGS).isUpToDate());
+  }
+
+  @Test
+  public void testInputChangedDuringConversion() throws IOException {
+    write(input, "start = element doc { empty }", PAST);
+    Manifest manifest = new Manifest(manifestFile, ARGS);
+    manifest.addInput(UriOrFile.fileToUri(input));
+    // modified within the same second as it was read
+    write(input, "start = element foo { empty }", input.lastModified());
+    write(output, "<element name='doc'><empty/></element>", PAST);
+    manifest.write(Collections.singletonList(output));
+    Assert.assertFalse(new Manifest(manifestFile, ARGS).isUpToDate());
+  }
+
+  @Test
+  public void testKeepUnchangedOutput() throws IOException {
+    String[] args = { "-m", manifestFile.getPath(), input.getPath(), output.getPath() };
+    write(input, "start = element doc { empty }", PAST);
+    Assert.assertEquals(new Driver().run(args), 0);
+    Assert.assertTrue(output.setLastModified(PAST));
+    // a change to the input that does not change the output
+    write(input, "start = element doc {  empty  }", PAST);
+    Assert.assertEquals(new Driver().run(args), 0);
+    Assert.assertEquals(output.lastModified(), PAST);
+    Assert.assertTrue(new Manifest(manifestFile, manifestArgs(args)).isUpToDate());
+    // a change to the input that changes the output
+    write(input, "start = element foo { empty }", PAST);
+    Assert.assertEquals(new Driver().run(args), 0);
+    Assert.assertTrue(output.lastModified() != PAST);
+  }
+
+  private static String[] manifestArgs(String[] args) {
+    String[] manifestArgs = new String[args.length + 1];
+    manifestArgs[0] = Version.getVersion(Driver.class);
+    System.arraycopy(args, 0, manifestArgs, 1, args.length);
+    return manifestArgs;
+  }
+
+  private void writeManifest() throws IOException {
+    Manifest manifest = new Manifest(manifestFile, ARGS);
+    manifest.addInput(UriOrFile.fileToUri(input));
+    write(output, "<element name='doc'><empty/></element>", PAST);
+    manifest.write(Collections.singletonList(output));
+  }
+
+  private static void write(File file, String content, long lastModified) throws IOException {
+    OutputStream out = new FileOutputStream(file);
+    try {
+      out.write(content.getBytes("UTF-8"));
+    }
+    finally {
+      out.close();
+    }
+    Assert.assertTrue(file.setLastModified(lastModified));
+  }
+}
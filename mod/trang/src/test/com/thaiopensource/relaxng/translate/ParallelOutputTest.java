@@ -0,0 +1,137 @@
+package com.thaiopensource.relaxng.translate;
+
+import org.testng.Assert;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Test that writing the output documents in parallel gives the same files as writing them in order.
+ */
+public class ParallelOutputTest {
+  private static final String[][] SCHEMA = {
+    { "main.rnc",
+      "default namespace = \"urn:main\"\n"
+      + "namespace a = \"urn:a\"\n"
+      + "namespace b = \"urn:b\"\n"
+      + "include \"a.rnc\"\n"
+      + "include \"b.rnc\"\n"
+      + "include \"common.rnc\"\n"
+      + "start = element doc { a.item*, b.item*, shared, anyContent }\n" },
+    { "a.rnc",
+      "namespace a = \"urn:a\"\n"
+      + "namespace c = \"urn:c\"\n"
+      + "a.item = element a:item { attribute a:id { text }?, shared, element a:inner { text }, c.local }\n"
+      + "c.local = element c:local { attribute c:n { text }, text }\n" },
+    { "b.rnc",
+      "namespace b = \"urn:b\"\n"
+      + "namespace c = \"urn:c\"\n"
+      + "b.item = element b:item { attribute b:id { text }?, shared, element b:inner { a.item* },\n"
+      + "                          element c:local { empty } }\n" },
+    { "common.rnc",
+      "default namespace = \"urn:main\"\n"
+      + "namespace a = \"urn:a\"\n"
+      + "namespace b = \"urn:b\"\n"
+      + "shared = element note { attribute a:id { text }?, text }*\n"
+      + "anyContent = element * - (a:* | b:*) { attribute * - a:* { text }*, anyContent* }*\n" },
+  };
+
+  private File dir;
+
+  @BeforeClass
+  public void setUp() throws IOException {
+    dir = File.createTempFile("trang", "");
+    if (!dir.delete() || !dir.mkdir())
+      throw new IOException("cannot create " + dir);
+    for (String[] module : SCHEMA)
+      write(new File(dir, module[0]), module[1]);
+  }
+
+  @AfterClass
+  public void tearDown() {
+    delete(dir);
+  }
+
+  @DataProvider(name = "formats")
+  public Object[][] formats() {
+    return new Object[][] { { "rng" }, { "rnc" }, { "xsd" } };
+  }
+
+  @Test(dataProvider = "formats")
+  public void testSameOutput(String format) throws IOException {
+    File serial = convert(format, 1);
+    File[] serialFiles = serial.listFiles();
+    Arrays.sort(serialFiles);
+    Assert.assertTrue(serialFiles.length > 2, Arrays.asList(serialFiles).toString());
+    for (int parallel : new int[] { 2, 4, 16 }) {
+      File[] parallelFiles = convert(format, parallel).listFiles();
+      Arrays.sort(parallelFiles);
+      Assert.assertEquals(names(parallelFiles), names(serialFiles));
+      for (int i = 0; i < serialFiles.length; i++)
+        Assert.assertEquals(read(parallelFiles[i]), read(serialFiles[i]), serialFiles[i].getName());
+    }
+  }
+
+  private File convert(String format, int parallel) {
+    File out = new File(dir, format + "-" + parallel);
+    Assert.assertTrue(out.mkdir());
+    int status = new Driver().run(new String[] { "-o", "parallel=" + parallel,
+                                                 new File(dir, "main.rnc").getPath(),
+                                                 new File(out, "main." + format).getPath() });
+    Assert.assertEquals(status, 0);
+    return out;
+  }
+
+  private static String[] names(File[] files) {
+    String[] names = new String[files.length];
+    for (int i = 0; i < files.length; i++)
+      names[i] = files[i].getName();
+    return names;
+  }
+
+  private static byte[] read(File file) throws IOException {
+    InputStream in = new FileInputStream(file);
+    try {
+      byte[] bytes = new byte[(int)file.length()];
+      int n = 0;
+      while (n < bytes.length) {
+        int k = in.read(bytes, n, bytes.length - n);
+        if (k < 0)
+          break;
+        n += k;
+      }
+      return bytes;
+    }
+    finally {
+      in.close();
+    }
+  }
+
+  private static void write(File file, String content) throws IOException {
+    OutputStream out = new FileOutputStream(file);
+    try {
+      out.write(content.getBytes("UTF-8"));
+    }
+    finally {
+      out.close();
+    }
+  }
+
+  private static void delete(File file) {
+    File[] files = file.listFiles();
+    if (files != null) {
+      for (File f : files)
+        delete(f);
+    }
+    file.delete();
+  }
+}
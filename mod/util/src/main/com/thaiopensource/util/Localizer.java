@@ -1,32 +1,187 @@
 package com.thaiopensource.util;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.ResourceBundle;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.text.DecimalFormatSymbols;
 import java.text.MessageFormat;
 
 public class Localizer {
   private final Class<?> cls;
   private ResourceBundle bundle;
+  private final ConcurrentMap<String, Template> templates = new ConcurrentHashMap<String, Template>();
+
+  /**
+   * A message parsed once.  A message that has only literal text and arguments such as <code>{0}</code>
+   * or <code>{0,number,#}</code> is formatted directly when the arguments are strings or non-negative
+   * integers respectively, giving what MessageFormat would; anything else is left to a MessageFormat.
+   */
+  private static final class Template {
+    private static final String NUMBER_SUFFIX = ",number,#";
+    private final String pattern;
+    // the text before each argument and after the last, or null if the message needs a MessageFormat
+    private final String[] texts;
+    private final int[] argIndexes;
+    private final boolean[] argIsNumber;
+    private MessageFormat messageFormat;
+
+    Template(String pattern) {
+      this.pattern = pattern;
+      StringBuilder text = new StringBuilder();
+      List<String> texts = new ArrayList<String>();
+      List<Integer> argIndexes = new ArrayList<Integer>();
+      List<Boolean> argIsNumber = new ArrayList<Boolean>();
+      // formatting a number for some locales does not give ASCII digits
+      if (new DecimalFormatSymbols().getZeroDigit() != '0')
+        texts = null;
+      for (int i = 0, len = pattern.length(); i < len && texts != null; i++) {
+        char c = pattern.charAt(i);
+        if (c == '\'') {
+          if (i + 1 == len || pattern.charAt(i + 1) != '\'') {
+            texts = null;
+            break;
+          }
+          i++;
+        }
+        else if (c == '{') {
+          int end = pattern.indexOf('}', i);
+          if (end < 0) {
+            texts = null;
+            break;
+          }
+          String arg = pattern.substring(i + 1, end);
+          boolean isNumber = arg.endsWith(NUMBER_SUFFIX);
+          if (isNumber)
+            arg = arg.substring(0, arg.length() - NUMBER_SUFFIX.length());
+          int index = parseIndex(arg);
+          if (index < 0) {
+            texts = null;
+            break;
+          }
+          texts.add(text.toString());
+          text.setLength(0);
+          argIndexes.add(index);
+          argIsNumber.add(isNumber);
+          i = end;
+          continue;
+        }
+        else if (c == '}') {
+          texts = null;
+          break;
+        }
+        text.append(c);
+      }
+      if (texts == null) {
+        this.texts = null;
+        this.argIndexes = null;
+        this.argIsNumber = null;
+      }
+      else {
+        texts.add(text.toString());
+        this.texts = texts.toArray(new String[texts.size()]);
+        this.argIndexes = new int[argIndexes.size()];
+        this.argIsNumber = new boolean[argIndexes.size()];
+        for (int i = 0; i < this.argIndexes.length; i++) {
+          this.argIndexes[i] = argIndexes.get(i);
+          this.argIsNumber[i] = argIsNumber.get(i);
+        }
+      }
+    }
+
+    private static int parseIndex(String str) {
+      if (str.length() == 0 || str.length() > 2)
+        return -1;
+      int index = 0;
+      for (int i = 0; i < str.length(); i++) {
+        char c = str.charAt(i);
+        if (c < '0' || c > '9')
+          return -1;
+        index = index*10 + (c - '0');
+      }
+      return index;
+    }
+
+    String format() {
+      if (texts != null && argIndexes.length == 0)
+        return texts[0];
+      return formatWithMessageFormat(new Object[]{});
+    }
+
+    String format(Object arg) {
+      if (texts != null) {
+        switch (argIndexes.length) {
+        case 0:
+          return texts[0];
+        case 1:
+          if (argIndexes[0] == 0 && canFormat(arg, argIsNumber[0]))
+            return texts[0].concat(arg.toString()).concat(texts[1]);
+          break;
+        }
+      }
+      return format(new Object[]{arg});
+    }
+
+    String format(Object[] args) {
+      if (texts != null) {
+        int i = 0;
+        while (i < argIndexes.length && argIndexes[i] < args.length && canFormat(args[argIndexes[i]], argIsNumber[i]))
+          i++;
+        if (i == argIndexes.length) {
+          StringBuilder buf = new StringBuilder(texts[0]);
+          for (i = 0; i < argIndexes.length; i++) {
+            buf.append(args[argIndexes[i]]);
+            buf.append(texts[i + 1]);
+          }
+          return buf.toString();
+        }
+      }
+      return formatWithMessageFormat(args);
+    }
+
+    private static boolean canFormat(Object arg, boolean isNumber) {
+      if (!isNumber)
+        return arg instanceof String;
+      // a negative number might not use an ASCII minus sign
+      return (arg instanceof Integer || arg instanceof Long) && ((Number)arg).longValue() >= 0;
+    }
+
+    // a MessageFormat may not be used by several threads at the same time
+    private synchronized String formatWithMessageFormat(Object[] args) {
+      if (messageFormat == null)
+        messageFormat = new MessageFormat(pattern);
+      return messageFormat.format(args);
+    }
+  }
 
   public Localizer(Class<?> cls) {
     this.cls = cls;
   }
 
   public String message(String key) {
-    return MessageFormat.format(getBundle().getString(key), new Object[]{});
+    return getTemplate(key).format();
   }
 
   public String message(String key, Object arg) {
-    return MessageFormat.format(getBundle().getString(key),
-				new Object[]{arg});
+    return getTemplate(key).format(arg);
   }
 
   public String message(String key, Object arg1, Object arg2) {
-    return MessageFormat.format(getBundle().getString(key),
-				new Object[]{arg1, arg2});
+    return getTemplate(key).format(new Object[]{arg1, arg2});
   }
 
   public String message(String key, Object[] args) {
-    return MessageFormat.format(getBundle().getString(key), args);
+    return getTemplate(key).format(args);
+  }
+
+  private Template getTemplate(String key) {
+    Template template = templates.get(key);
+    if (template == null) {
+      template = new Template(getBundle().getString(key));
+      templates.putIfAbsent(key, template);
+    }
+    return template;
   }
 
   private ResourceBundle getBundle() {
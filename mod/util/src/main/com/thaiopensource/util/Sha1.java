@@ -0,0 +1,78 @@
+package com.thaiopensource.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Utility functions for computing SHA-1 digests, for use in checking whether content has changed.
+ * Digests are represented as strings of lower-case hexadecimal digits.
+ */
+public class Sha1 {
+  private static final String ALGORITHM = "SHA-1";
+
+  private Sha1() { }
+
+  static public MessageDigest newMessageDigest() {
+    try {
+      return MessageDigest.getInstance(ALGORITHM);
+    }
+    catch (NoSuchAlgorithmException e) {
+      throw new RuntimeException("missing " + ALGORITHM + " MessageDigest");
+    }
+  }
+
+  /**
+   * Updates a MessageDigest with the UTF-8 encoding of a string.
+   */
+  static public void update(MessageDigest md, String s) {
+    try {
+      md.update(s.getBytes("UTF-8"));
+    }
+    catch (UnsupportedEncodingException e) {
+      throw new RuntimeException("missing UTF-8 encoding");
+    }
+  }
+
+  static public String digest(byte[] bytes, int off, int len) {
+    MessageDigest md = newMessageDigest();
+    md.update(bytes, off, len);
+    return toHex(md.digest());
+  }
+
+  /**
+   * Returns the digest of the UTF-8 encoding of a string.
+   */
+  static public String digest(String s) {
+    MessageDigest md = newMessageDigest();
+    update(md, s);
+    return toHex(md.digest());
+  }
+
+  /**
+   * Returns the digest of the bytes read from an InputStream, which is closed.
+   */
+  static public String digest(InputStream in) throws IOException {
+    MessageDigest md = newMessageDigest();
+    try {
+      byte[] buf = new byte[8192];
+      for (int n; (n = in.read(buf, 0, buf.length)) > 0;)
+        md.update(buf, 0, n);
+    }
+    finally {
+      in.close();
+    }
+    return toHex(md.digest());
+  }
+
+  static public String toHex(byte[] bytes) {
+    StringBuilder buf = new StringBuilder(bytes.length * 2);
+    for (int i = 0; i < bytes.length; i++) {
+      buf.append(Character.forDigit((bytes[i] >> 4) & 0xF, 16));
+      buf.append(Character.forDigit(bytes[i] & 0xF, 16));
+    }
+    return buf.toString();
+  }
+}
@@ -0,0 +1,103 @@
+package com.thaiopensource.util;
+
+import java.util.LinkedList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * A pool of daemon threads shared by everything that runs work in the background, so that
+ * idle threads are not kept by several pools.  A thread is created when no idle thread
+ * is available, and an idle thread is discarded after a minute.
+ */
+public class ThreadPool {
+  private static final ExecutorService executor = Executors.newCachedThreadPool(new ThreadFactory() {
+    public Thread newThread(Runnable r) {
+      Thread thread = new Thread(r, "ThreadPool");
+      thread.setDaemon(true);
+      return thread;
+    }
+  });
+
+  private ThreadPool() { }
+
+  /**
+   * Runs a task in a thread of the pool.
+   */
+  static public void execute(Runnable task) {
+    executor.execute(task);
+  }
+
+  /**
+   * Returns an Executor that runs the tasks given to it in threads of the pool, starting them
+   * in the order in which they are given, with at most the specified number running at the same time.
+   */
+  static public Executor createLimitedExecutor(int maxThreads) {
+    if (maxThreads < 1)
+      throw new IllegalArgumentException();
+    return new LimitedExecutor(maxThreads);
+  }
+
+  static private class LimitedExecutor implements Executor {
+    private final int maxThreads;
+    private final LinkedList<Runnable> queue = new LinkedList<Runnable>();
+    private int nThreads = 0;
+
+    LimitedExecutor(int maxThreads) {
+      this.maxThreads = maxThreads;
+    }
+
+    public void execute(Runnable task) {
+      synchronized (queue) {
+        queue.add(task);
+        if (nThreads == maxThreads)
+          return;
+        nThreads++;
+      }
+      startDrain();
+    }
+
+    private void startDrain() {
+      boolean started = false;
+      try {
+        executor.execute(new Runnable() {
+          public void run() {
+            drain();
+          }
+        });
+        started = true;
+      }
+      finally {
+        if (!started) {
+          synchronized (queue) {
+            nThreads--;
+          }
+        }
+      }
+    }
+
+    private void drain() {
+      boolean done = false;
+      try {
+        for (;;) {
+          Runnable task;
+          synchronized (queue) {
+            task = queue.poll();
+            if (task == null) {
+              nThreads--;
+              done = true;
+              return;
+            }
+          }
+          task.run();
+        }
+      }
+      finally {
+        // a task threw an exception, so another thread takes over the remaining tasks
+        if (!done)
+          startDrain();
+      }
+    }
+  }
+}
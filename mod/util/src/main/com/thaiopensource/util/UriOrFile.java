@@ -54,6 +54,28 @@ public class UriOrFile {
     return file.toURI().toString();
   }
 
+  /**
+   * Returns the local file identified by a URI.
+   *
+   * @param uri an absolute URI
+   * @return the File, or null if uri is not a <code>file</code> URI for an existing file on the local machine
+   */
+  public static File uriToFile(String uri) {
+    try {
+      URI u = new URI(uri);
+      if (!"file".equalsIgnoreCase(u.getScheme()) || u.isOpaque() || u.getRawAuthority() != null)
+        return null;
+      File file = new File(u);
+      return file.isFile() ? file : null;
+    }
+    catch (URISyntaxException e) {
+      return null;
+    }
+    catch (IllegalArgumentException e) {
+      return null;
+    }
+  }
+
   public static String uriToUriOrFile(String uri) {
     // try to avoid throwing an exception in the common case
     if ("file".equalsIgnoreCase(getScheme(uri))) {
@@ -11,9 +11,23 @@ public class CharRepertoire {
   private static final byte OUT = -1;
   
   private final String enc;
+  // characters less than this are known to be in the repertoire
+  private final int limit;
+  // true if the repertoire contains every surrogate pair
+  private final boolean unicode;
 
   CharRepertoire(String enc) {
     this.enc = enc;
+    String name = EncodedWriter.canonicalName(enc);
+    unicode = name != null && name.startsWith("UTF-");
+    if (unicode)
+      limit = 0xD800;
+    else if ("ISO-8859-1".equals(name))
+      limit = 0x100;
+    else if ("US-ASCII".equals(name))
+      limit = 0x80;
+    else
+      limit = 0;
     for (int i = 0; i < charTable.length; i++)
       charTable[i] = allUnknown;
   }
@@ -25,6 +39,8 @@ public class CharRepertoire {
   }
 
   public final boolean contains(char c) {
+    if (c < limit)
+      return true;
     byte b = charTable[c >> 8][c & 0xFF];
     return b == 0 ? contains1(c) : b > 0;
   }
@@ -55,6 +71,8 @@ public class CharRepertoire {
 
   /* For surrogates. */
   public final boolean contains(char c1, char c2) {
+    if (unicode)
+      return true;
     try {
       String s = new String(new String(new char[]{c1, c2}).getBytes(enc), enc);
       return s.length() == 2 && s.charAt(0) == c1 && s.charAt(1) == c2;
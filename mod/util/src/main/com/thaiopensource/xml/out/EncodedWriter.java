@@ -0,0 +1,183 @@
+package com.thaiopensource.xml.out;
+
+import com.thaiopensource.util.Utf16;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UnsupportedEncodingException;
+import java.io.Writer;
+import java.nio.charset.Charset;
+
+/**
+ * A Writer that encodes characters into a reusable byte buffer and writes the buffer to an OutputStream.
+ * UTF-8, US-ASCII and ISO-8859-1 are encoded directly, without a CharsetEncoder and without the locking
+ * done by OutputStreamWriter; other encodings use a buffered OutputStreamWriter.  As with OutputStreamWriter,
+ * a character that cannot be encoded is written as <code>?</code>.  Instances are not thread-safe.
+ */
+public abstract class EncodedWriter extends Writer {
+  private static final int BUF_SIZE = 8192;
+  // enough for any one character, or an unpaired surrogate followed by a character
+  private static final int MAX_BYTES_PER_CHAR = 4;
+  private static final byte REPLACEMENT = (byte)'?';
+
+  private final OutputStream out;
+  final byte[] buf = new byte[BUF_SIZE];
+  int pos = 0;
+
+  EncodedWriter(OutputStream out) {
+    this.out = out;
+  }
+
+  /**
+   * Returns a Writer that writes to the specified OutputStream using the specified encoding.  The returned
+   * Writer is buffered.
+   *
+   * @param out the OutputStream
+   * @param enc the Java name of the encoding
+   */
+  public static Writer getInstance(OutputStream out, String enc) throws UnsupportedEncodingException {
+    String name = canonicalName(enc);
+    if ("UTF-8".equals(name))
+      return new Utf8Writer(out);
+    if ("US-ASCII".equals(name))
+      return new SingleByteWriter(out, 0x80);
+    if ("ISO-8859-1".equals(name))
+      return new SingleByteWriter(out, 0x100);
+    return new BufferedWriter(new OutputStreamWriter(out, enc));
+  }
+
+  /**
+   * Returns the canonical name of the charset with the specified Java name, or null if the name is not
+   * recognized by java.nio.
+   */
+  static String canonicalName(String enc) {
+    try {
+      return Charset.forName(enc).name();
+    }
+    catch (IllegalArgumentException e) {
+      return null;
+    }
+  }
+
+  public void write(int c) throws IOException {
+    if (pos > BUF_SIZE - MAX_BYTES_PER_CHAR)
+      flushBuffer();
+    encode((char)c);
+  }
+
+  public void write(char[] cbuf, int off, int len) throws IOException {
+    for (int end = off + len; off < end; off++) {
+      if (pos > BUF_SIZE - MAX_BYTES_PER_CHAR)
+        flushBuffer();
+      encode(cbuf[off]);
+    }
+  }
+
+  public void write(String str, int off, int len) throws IOException {
+    for (int end = off + len; off < end; off++) {
+      if (pos > BUF_SIZE - MAX_BYTES_PER_CHAR)
+        flushBuffer();
+      encode(str.charAt(off));
+    }
+  }
+
+  /**
+   * Encodes a character into buf, which has room for at least MAX_BYTES_PER_CHAR bytes.
+   */
+  abstract void encode(char c);
+
+  private void flushBuffer() throws IOException {
+    if (pos > 0) {
+      out.write(buf, 0, pos);
+      pos = 0;
+    }
+  }
+
+  public void flush() throws IOException {
+    flushBuffer();
+    out.flush();
+  }
+
+  public void close() throws IOException {
+    try {
+      flushBuffer();
+    }
+    finally {
+      out.close();
+    }
+  }
+
+  static private class SingleByteWriter extends EncodedWriter {
+    private final int limit;
+
+    SingleByteWriter(OutputStream out, int limit) {
+      super(out);
+      this.limit = limit;
+    }
+
+    // true if the last character was the first half of a surrogate pair
+    private boolean afterSurrogate1 = false;
+
+    void encode(char c) {
+      if (c < limit)
+        buf[pos++] = (byte)c;
+      // a surrogate pair is replaced by a single character
+      else if (!afterSurrogate1 || !Utf16.isSurrogate2(c))
+        buf[pos++] = REPLACEMENT;
+      afterSurrogate1 = Utf16.isSurrogate1(c);
+    }
+  }
+
+  static private class Utf8Writer extends EncodedWriter {
+    // the first half of a surrogate pair, whose second half has not yet been written
+    private char pendingSurrogate = 0;
+
+    Utf8Writer(OutputStream out) {
+      super(out);
+    }
+
+    void encode(char c) {
+      if (pendingSurrogate != 0) {
+        char c1 = pendingSurrogate;
+        pendingSurrogate = 0;
+        if (Utf16.isSurrogate2(c)) {
+          int n = Utf16.scalarValue(c1, c);
+          buf[pos++] = (byte)((n >> 18) | 0xF0);
+          buf[pos++] = (byte)(((n >> 12) & 0x3F) | 0x80);
+          buf[pos++] = (byte)(((n >> 6) & 0x3F) | 0x80);
+          buf[pos++] = (byte)((n & 0x3F) | 0x80);
+          return;
+        }
+        // an unpaired surrogate; this and the encoding of c take at most MAX_BYTES_PER_CHAR bytes
+        buf[pos++] = REPLACEMENT;
+      }
+      if (c < 0x80)
+        buf[pos++] = (byte)c;
+      else if (c < 0x800) {
+        buf[pos++] = (byte)((c >> 6) | 0xC0);
+        buf[pos++] = (byte)((c & 0x3F) | 0x80);
+      }
+      else if (Utf16.isSurrogate(c)) {
+        if (Utf16.isSurrogate1(c))
+          pendingSurrogate = c;
+        else
+          buf[pos++] = REPLACEMENT;
+      }
+      else {
+        buf[pos++] = (byte)((c >> 12) | 0xE0);
+        buf[pos++] = (byte)(((c >> 6) & 0x3F) | 0x80);
+        buf[pos++] = (byte)((c & 0x3F) | 0x80);
+      }
+    }
+
+    public void close() throws IOException {
+      if (pendingSurrogate != 0) {
+        pendingSurrogate = 0;
+        buf[pos++] = REPLACEMENT;
+      }
+      super.close();
+    }
+  }
+}
@@ -19,6 +19,7 @@ public class XmlWriter {
   private String[] stack = new String[20];
   private int level = 0;
   private String newline = "\n";
+  private final char[] charRefBuf = { '&', '#', 'x', 0, 0, 0, 0, 0, 0, 0 };
 
   public XmlWriter(Writer writer, CharRepertoire cr) {
     this.writer = writer;
@@ -138,38 +139,58 @@ public class XmlWriter {
     int len = str.length();
     for (int i = 0; i < len; i++) {
       char c = str.charAt(i);
+      if (cr.contains(c))
+        continue;
       if (Utf16.isSurrogate1(c)) {
-	if (i == len || !Utf16.isSurrogate2(str.charAt(i)))
+	if (++i == len || !Utf16.isSurrogate2(str.charAt(i)))
 	  throw new CharConversionException("surrogate pair integrity failure");
 	if (!cr.contains(c, str.charAt(i)))
 	  throw new CharConversionException();
       }
-      else if (!cr.contains(c))
+      else
 	throw new CharConversionException();
     }
     outputLines(str);
   }
 
   private void outputLines(String str) throws IOException {
-    while (str.length() > 0) {
-      int i = str.indexOf('\n');
+    int start = 0;
+    for (;;) {
+      int i = str.indexOf('\n', start);
       if (i < 0) {
-	writer.write(str);
+	writer.write(str, start, str.length() - start);
 	break;
       }
-      if (i > 0)
-	writer.write(str.substring(0, i));
+      writer.write(str, start, i - start);
       writer.write(newline);
-      str = str.substring(i + 1);
+      start = i + 1;
     }
   }
 
+  // runs of characters that need no escaping are written with a single call
   private void outputData(String str, boolean inAttribute, boolean useCharRef)
     throws IOException {
     int len = str.length();
+    int start = 0;
     for (int i = 0; i < len; i++) {
       char c = str.charAt(i);
       switch (c) {
+      case '<':
+      case '>':
+      case '&':
+      case '"':
+      case '\r':
+      case '\t':
+      case '\n':
+	break;
+      default:
+	if (!useCharRef && cr.contains(c))
+	  continue;
+	break;
+      }
+      writer.write(str, start, i - start);
+      start = i + 1;
+      switch (c) {
       case '<':
 	writer.write("&lt;");
 	break;
@@ -202,31 +223,31 @@ public class XmlWriter {
 	  ++i;
 	  if (i < len) {
 	    char c2 = str.charAt(i);
-	    if (Utf16.isSurrogate2(c)) {
+	    if (Utf16.isSurrogate2(c2)) {
 	      charRef(Utf16.scalarValue(c, c2));
+	      start = i + 1;
 	      break;
 	    }
 	  }
 	  throw new CharConversionException("surrogate pair integrity failure");
 	}
-	if (cr.contains(c) && !useCharRef)
-	  writer.write(c);
-	else
-	  charRef(c);
+	charRef(c);
 	break;
       }
     }
+    writer.write(str, start, len - start);
   }
 
   private void charRef(int c) throws IOException {
-    writer.write("&#x");
     int nDigits = c > 0xFFFF ? 6 : 4;
+    int j = 3;
     for (int i = 0; i < nDigits; i++)
-      writer.write("0123456789ABCDEF".charAt((c >> (4*(nDigits - 1 - i)))
-					     & 0xF));
-    writer.write(";");
+      charRefBuf[j++] = "0123456789ABCDEF".charAt((c >> (4*(nDigits - 1 - i)))
+                                                 & 0xF);
+    charRefBuf[j++] = ';';
+    writer.write(charRefBuf, 0, j);
   }
-    
+
   private void indent() throws IOException {
     for (int i = 0; i < level; i++)
       writer.write(indentString);
@@ -0,0 +1,239 @@
+package com.thaiopensource.xml.sax;
+
+import com.thaiopensource.util.ThreadPool;
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.DTDHandler;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.LocatorImpl;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * A ContentHandler and DTDHandler that passes events to several handlers, each in a thread of its own.
+ * Events are recorded in batches, which are shared by the handlers; the thread calling
+ * this handler blocks if a handler falls too far behind.  Each handler is given a Locator
+ * that reports the location of the event being delivered.  <code>endDocument</code> waits
+ * until every handler has received all the events; if a handler threw an exception,
+ * the exception of the first such handler is rethrown.  If the document is abandoned
+ * before <code>endDocument</code>, <code>abort</code> must be called to release the threads.
+ *
+ * @see EventBuffer
+ */
+public class AsyncForkContentHandler implements ContentHandler, DTDHandler {
+  private static final int BATCH_EVENTS = 512;
+  private static final int BATCH_CHARS = 16*1024;
+  private static final int MAX_PENDING_BATCHES = 16;
+  private static final EventBuffer END = new EventBuffer();
+
+  private final Worker[] workers;
+  private EventBuffer batch;
+  private Locator locator;
+  private CountDownLatch done;
+
+  /**
+   * @param contentHandlers the ContentHandlers to which events are passed
+   * @param dtdHandlers the DTDHandlers to which DTD events are passed; the DTDHandler for the i-th
+   * ContentHandler is <code>dtdHandlers[i]</code>, which may be null
+   */
+  public AsyncForkContentHandler(ContentHandler[] contentHandlers, DTDHandler[] dtdHandlers) {
+    workers = new Worker[contentHandlers.length];
+    for (int i = 0; i < workers.length; i++)
+      workers[i] = new Worker(contentHandlers[i], dtdHandlers[i]);
+  }
+
+  private class Worker implements Runnable {
+    private final ContentHandler contentHandler;
+    private final DTDHandler dtdHandler;
+    private final BlockingQueue<EventBuffer> queue = new ArrayBlockingQueue<EventBuffer>(MAX_PENDING_BATCHES);
+    private volatile Exception exception;
+
+    Worker(ContentHandler contentHandler, DTDHandler dtdHandler) {
+      this.contentHandler = contentHandler;
+      this.dtdHandler = dtdHandler;
+    }
+
+    public void run() {
+      LocatorImpl locator = new LocatorImpl();
+      try {
+        for (;;) {
+          EventBuffer events = queue.take();
+          if (events == END)
+            break;
+          if (exception != null)
+            continue;
+          try {
+            events.replay(contentHandler, dtdHandler, locator);
+          }
+          catch (SAXException e) {
+            exception = e;
+          }
+          catch (RuntimeException e) {
+            exception = e;
+          }
+        }
+      }
+      catch (InterruptedException e) {
+        // abandoned
+      }
+      finally {
+        done.countDown();
+      }
+    }
+  }
+
+  public void setDocumentLocator(Locator locator) {
+    this.locator = locator;
+    getBatch().setDocumentLocator(locator);
+  }
+
+  public void startDocument() throws SAXException {
+    getBatch().startDocument();
+  }
+
+  public void endDocument() throws SAXException {
+    getBatch().endDocument();
+    flush();
+    for (int i = 0; i < workers.length; i++)
+      put(workers[i], END);
+    try {
+      done.await();
+    }
+    catch (InterruptedException e) {
+      abort();
+      throw new SAXException(e);
+    }
+    done = null;
+    checkException();
+  }
+
+  public void startPrefixMapping(String prefix, String uri) throws SAXException {
+    getBatch().startPrefixMapping(prefix, uri);
+  }
+
+  public void endPrefixMapping(String prefix) throws SAXException {
+    getBatch().endPrefixMapping(prefix);
+  }
+
+  public void startElement(String namespaceURI, String localName, String qName, Attributes atts)
+          throws SAXException {
+    getBatch().startElement(namespaceURI, localName, qName, atts);
+    flushIfFull();
+  }
+
+  public void endElement(String namespaceURI, String localName, String qName) throws SAXException {
+    getBatch().endElement(namespaceURI, localName, qName);
+    flushIfFull();
+  }
+
+  public void characters(char ch[], int start, int length) throws SAXException {
+    getBatch().characters(ch, start, length);
+    flushIfFull();
+  }
+
+  public void ignorableWhitespace(char ch[], int start, int length) throws SAXException {
+    getBatch().ignorableWhitespace(ch, start, length);
+    flushIfFull();
+  }
+
+  public void processingInstruction(String target, String data) throws SAXException {
+    getBatch().processingInstruction(target, data);
+    flushIfFull();
+  }
+
+  public void skippedEntity(String name) throws SAXException {
+    getBatch().skippedEntity(name);
+  }
+
+  public void notationDecl(String name, String publicId, String systemId) throws SAXException {
+    getBatch().notationDecl(name, publicId, systemId);
+  }
+
+  public void unparsedEntityDecl(String name, String publicId, String systemId, String notationName)
+          throws SAXException {
+    getBatch().unparsedEntityDecl(name, publicId, systemId, notationName);
+  }
+
+  /**
+   * Abandons the current document, if any.  The handler can then be used for another document.
+   */
+  public void abort() {
+    batch = null;
+    if (done == null)
+      return;
+    for (int i = 0; i < workers.length; i++) {
+      workers[i].queue.clear();
+      // The worker may still be delivering a batch, so there may be no room for END at first.
+      while (!workers[i].queue.offer(END)) {
+        workers[i].queue.clear();
+        Thread.yield();
+      }
+    }
+    try {
+      done.await();
+    }
+    catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    done = null;
+  }
+
+  private EventBuffer getBatch() {
+    if (done == null)
+      start();
+    if (batch == null) {
+      batch = new EventBuffer();
+      batch.setLocator(locator);
+    }
+    return batch;
+  }
+
+  private void start() {
+    done = new CountDownLatch(workers.length);
+    for (int i = 0; i < workers.length; i++) {
+      workers[i].exception = null;
+      ThreadPool.execute(workers[i]);
+    }
+  }
+
+  private void flushIfFull() throws SAXException {
+    if (batch.getEventCount() >= BATCH_EVENTS || batch.getCharCount() >= BATCH_CHARS)
+      flush();
+  }
+
+  private void flush() throws SAXException {
+    if (batch == null)
+      return;
+    EventBuffer events = batch;
+    batch = null;
+    for (int i = 0; i < workers.length; i++)
+      put(workers[i], events);
+    // Fail early rather than continuing to parse a document whose result is already known.
+    checkException();
+  }
+
+  private void put(Worker worker, EventBuffer events) throws SAXException {
+    try {
+      worker.queue.put(events);
+    }
+    catch (InterruptedException e) {
+      abort();
+      throw new SAXException(e);
+    }
+  }
+
+  private void checkException() throws SAXException {
+    for (int i = 0; i < workers.length; i++) {
+      Exception e = workers[i].exception;
+      if (e != null) {
+        abort();
+        if (e instanceof SAXException)
+          throw (SAXException)e;
+        throw (RuntimeException)e;
+      }
+    }
+  }
+}
@@ -0,0 +1,415 @@
+package com.thaiopensource.xml.sax;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.DTDHandler;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+import org.xml.sax.ext.LexicalHandler;
+import org.xml.sax.helpers.AttributesImpl;
+import org.xml.sax.helpers.LocatorImpl;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Records SAX events so that they can be replayed, any number of times, to other handlers.
+ * Events are stored in an array of ints.  Names, and other strings such as system identifiers,
+ * are stored once each in a table and referred to by index; character data, attribute values and
+ * processing instruction data are stored in a single array of chars.  The location of each
+ * event is recorded when it differs from that of the previous event.  Once recording is
+ * complete, a buffer may be replayed by several threads at the same time.
+ * <p>
+ * Of the LexicalHandler events, only comments and the start and end of the DTD are recorded.
+ */
+public class EventBuffer implements ContentHandler, DTDHandler, LexicalHandler {
+  private static final int SET_DOCUMENT_LOCATOR = 0;
+  private static final int START_DOCUMENT = 1;
+  private static final int END_DOCUMENT = 2;
+  private static final int START_PREFIX_MAPPING = 3;
+  private static final int END_PREFIX_MAPPING = 4;
+  private static final int START_ELEMENT = 5;
+  private static final int END_ELEMENT = 6;
+  private static final int CHARACTERS = 7;
+  private static final int IGNORABLE_WHITESPACE = 8;
+  private static final int PROCESSING_INSTRUCTION = 9;
+  private static final int SKIPPED_ENTITY = 10;
+  private static final int NOTATION_DECL = 11;
+  private static final int UNPARSED_ENTITY_DECL = 12;
+  private static final int LOCATION = 13;
+  private static final int START_DTD = 14;
+  private static final int END_DTD = 15;
+  private static final int COMMENT = 16;
+
+  private static final int NULL_STRING = -1;
+
+  private int[] ops = new int[256];
+  private int opsLength = 0;
+  private char[] chars = new char[1024];
+  private int charsLength = 0;
+  private String[] strings = new String[64];
+  private int stringsLength = 0;
+  private final Map<String, Integer> stringIndexMap = new HashMap<String, Integer>();
+  private int eventCount = 0;
+
+  private Locator locator;
+  private String lastSystemId;
+  private String lastPublicId;
+  private int lastLineNumber = -1;
+  private int lastColumnNumber = -1;
+
+  public EventBuffer() {
+  }
+
+  /**
+   * Returns the number of events that have been recorded.
+   */
+  public int getEventCount() {
+    return eventCount;
+  }
+
+  /**
+   * Returns the number of characters of character data, attribute values and processing
+   * instruction data that have been recorded.
+   */
+  public int getCharCount() {
+    return charsLength;
+  }
+
+  /**
+   * Sets the Locator from which the location of subsequent events is recorded.  This allows a buffer
+   * that is not recording from the start of the document to record locations.
+   */
+  public void setLocator(Locator locator) {
+    this.locator = locator;
+  }
+
+  /**
+   * Replays the recorded events.
+   *
+   * @param contentHandler the ContentHandler to receive the events
+   */
+  public void replay(ContentHandler contentHandler) throws SAXException {
+    replay(contentHandler, null, new LocatorImpl());
+  }
+
+  /**
+   * Replays the recorded events.  The locator is updated before each event with the location
+   * recorded for the event; it is the Locator passed to <code>setDocumentLocator</code>.
+   * Passing the same locator when replaying several buffers recorded from one document allows the
+   * handler to keep using the Locator it was passed.
+   *
+   * @param contentHandler the ContentHandler to receive the events
+   * @param dtdHandler the DTDHandler to receive DTD events; may be null
+   * @param locator the LocatorImpl to update
+   */
+  public void replay(ContentHandler contentHandler, DTDHandler dtdHandler, LocatorImpl locator)
+          throws SAXException {
+    replay(contentHandler, dtdHandler, null, locator);
+  }
+
+  /**
+   * Replays the recorded events, including comments.
+   *
+   * @param contentHandler the ContentHandler to receive the events
+   * @param dtdHandler the DTDHandler to receive DTD events; may be null
+   * @param lexicalHandler the LexicalHandler to receive comments and the start and end of the DTD; may be null
+   * @param locator the LocatorImpl to update
+   * @see #replay(ContentHandler, DTDHandler, LocatorImpl)
+   */
+  public void replay(ContentHandler contentHandler, DTDHandler dtdHandler, LexicalHandler lexicalHandler,
+                     LocatorImpl locator)
+          throws SAXException {
+    AttributesImpl attributes = null;
+    for (int i = 0; i < opsLength;) {
+      switch (ops[i++]) {
+      case LOCATION:
+        locator.setSystemId(string(ops[i++]));
+        locator.setPublicId(string(ops[i++]));
+        locator.setLineNumber(ops[i++]);
+        locator.setColumnNumber(ops[i++]);
+        break;
+      case SET_DOCUMENT_LOCATOR:
+        contentHandler.setDocumentLocator(locator);
+        break;
+      case START_DOCUMENT:
+        contentHandler.startDocument();
+        break;
+      case END_DOCUMENT:
+        contentHandler.endDocument();
+        break;
+      case START_PREFIX_MAPPING:
+        contentHandler.startPrefixMapping(string(ops[i]), string(ops[i + 1]));
+        i += 2;
+        break;
+      case END_PREFIX_MAPPING:
+        contentHandler.endPrefixMapping(string(ops[i++]));
+        break;
+      case START_ELEMENT:
+        {
+          String uri = string(ops[i++]);
+          String localName = string(ops[i++]);
+          String qName = string(ops[i++]);
+          int nAttributes = ops[i++];
+          if (attributes == null)
+            attributes = new AttributesImpl();
+          else
+            attributes.clear();
+          for (int j = 0; j < nAttributes; j++, i += 6)
+            attributes.addAttribute(string(ops[i]), string(ops[i + 1]), string(ops[i + 2]), string(ops[i + 3]),
+                                    new String(chars, ops[i + 4], ops[i + 5]));
+          contentHandler.startElement(uri, localName, qName, attributes);
+        }
+        break;
+      case END_ELEMENT:
+        contentHandler.endElement(string(ops[i]), string(ops[i + 1]), string(ops[i + 2]));
+        i += 3;
+        break;
+      case CHARACTERS:
+        contentHandler.characters(chars, ops[i], ops[i + 1]);
+        i += 2;
+        break;
+      case IGNORABLE_WHITESPACE:
+        contentHandler.ignorableWhitespace(chars, ops[i], ops[i + 1]);
+        i += 2;
+        break;
+      case PROCESSING_INSTRUCTION:
+        contentHandler.processingInstruction(string(ops[i]), new String(chars, ops[i + 1], ops[i + 2]));
+        i += 3;
+        break;
+      case SKIPPED_ENTITY:
+        contentHandler.skippedEntity(string(ops[i++]));
+        break;
+      case NOTATION_DECL:
+        if (dtdHandler != null)
+          dtdHandler.notationDecl(string(ops[i]), string(ops[i + 1]), string(ops[i + 2]));
+        i += 3;
+        break;
+      case UNPARSED_ENTITY_DECL:
+        if (dtdHandler != null)
+          dtdHandler.unparsedEntityDecl(string(ops[i]), string(ops[i + 1]), string(ops[i + 2]),
+                                        string(ops[i + 3]));
+        i += 4;
+        break;
+      case START_DTD:
+        if (lexicalHandler != null)
+          lexicalHandler.startDTD(string(ops[i]), string(ops[i + 1]), string(ops[i + 2]));
+        i += 3;
+        break;
+      case END_DTD:
+        if (lexicalHandler != null)
+          lexicalHandler.endDTD();
+        break;
+      case COMMENT:
+        if (lexicalHandler != null)
+          lexicalHandler.comment(chars, ops[i], ops[i + 1]);
+        i += 2;
+        break;
+      }
+    }
+  }
+
+  public void setDocumentLocator(Locator locator) {
+    this.locator = locator;
+    // The location is not meaningful until the next event.
+    startEvent(SET_DOCUMENT_LOCATOR, 0, false);
+  }
+
+  public void startDocument() throws SAXException {
+    startEvent(START_DOCUMENT, 0, true);
+  }
+
+  public void endDocument() throws SAXException {
+    startEvent(END_DOCUMENT, 0, true);
+  }
+
+  public void startPrefixMapping(String prefix, String uri) throws SAXException {
+    startEvent(START_PREFIX_MAPPING, 2, true);
+    addString(prefix);
+    addString(uri);
+  }
+
+  public void endPrefixMapping(String prefix) throws SAXException {
+    startEvent(END_PREFIX_MAPPING, 1, true);
+    addString(prefix);
+  }
+
+  public void startElement(String uri, String localName, String qName, Attributes atts) throws SAXException {
+    int nAttributes = atts.getLength();
+    startEvent(START_ELEMENT, 4 + nAttributes * 6, true);
+    addString(uri);
+    addString(localName);
+    addString(qName);
+    ops[opsLength++] = nAttributes;
+    for (int i = 0; i < nAttributes; i++) {
+      addString(atts.getURI(i));
+      addString(atts.getLocalName(i));
+      addString(atts.getQName(i));
+      addString(atts.getType(i));
+      addChars(atts.getValue(i));
+    }
+  }
+
+  public void endElement(String uri, String localName, String qName) throws SAXException {
+    startEvent(END_ELEMENT, 3, true);
+    addString(uri);
+    addString(localName);
+    addString(qName);
+  }
+
+  public void characters(char ch[], int start, int length) throws SAXException {
+    startEvent(CHARACTERS, 2, true);
+    addChars(ch, start, length);
+  }
+
+  public void ignorableWhitespace(char ch[], int start, int length) throws SAXException {
+    startEvent(IGNORABLE_WHITESPACE, 2, true);
+    addChars(ch, start, length);
+  }
+
+  public void processingInstruction(String target, String data) throws SAXException {
+    startEvent(PROCESSING_INSTRUCTION, 3, true);
+    addString(target);
+    addChars(data);
+  }
+
+  public void skippedEntity(String name) throws SAXException {
+    startEvent(SKIPPED_ENTITY, 1, true);
+    addString(name);
+  }
+
+  public void notationDecl(String name, String publicId, String systemId) throws SAXException {
+    startEvent(NOTATION_DECL, 3, true);
+    addString(name);
+    addString(publicId);
+    addString(systemId);
+  }
+
+  public void unparsedEntityDecl(String name, String publicId, String systemId, String notationName)
+          throws SAXException {
+    startEvent(UNPARSED_ENTITY_DECL, 4, true);
+    addString(name);
+    addString(publicId);
+    addString(systemId);
+    addString(notationName);
+  }
+
+  public void startDTD(String name, String publicId, String systemId) throws SAXException {
+    startEvent(START_DTD, 3, true);
+    addString(name);
+    addString(publicId);
+    addString(systemId);
+  }
+
+  public void endDTD() throws SAXException {
+    startEvent(END_DTD, 0, true);
+  }
+
+  public void startEntity(String name) throws SAXException {
+  }
+
+  public void endEntity(String name) throws SAXException {
+  }
+
+  public void startCDATA() throws SAXException {
+  }
+
+  public void endCDATA() throws SAXException {
+  }
+
+  public void comment(char ch[], int start, int length) throws SAXException {
+    startEvent(COMMENT, 2, true);
+    addChars(ch, start, length);
+  }
+
+  /**
+   * Adds the opcode of an event, preceded by its location if that has changed, and makes room for
+   * the operands.
+   */
+  private void startEvent(int op, int nOperands, boolean recordLocation) {
+    if (recordLocation && locator != null) {
+      String systemId = locator.getSystemId();
+      String publicId = locator.getPublicId();
+      int lineNumber = locator.getLineNumber();
+      int columnNumber = locator.getColumnNumber();
+      if (lineNumber != lastLineNumber
+          || columnNumber != lastColumnNumber
+          || !equal(systemId, lastSystemId)
+          || !equal(publicId, lastPublicId)) {
+        ensureOps(5);
+        ops[opsLength++] = LOCATION;
+        addString(systemId);
+        addString(publicId);
+        ops[opsLength++] = lineNumber;
+        ops[opsLength++] = columnNumber;
+        lastSystemId = systemId;
+        lastPublicId = publicId;
+        lastLineNumber = lineNumber;
+        lastColumnNumber = columnNumber;
+      }
+    }
+    ensureOps(1 + nOperands);
+    ops[opsLength++] = op;
+    eventCount++;
+  }
+
+  private void ensureOps(int n) {
+    if (opsLength + n > ops.length) {
+      int[] newOps = new int[Math.max(ops.length * 2, opsLength + n)];
+      System.arraycopy(ops, 0, newOps, 0, opsLength);
+      ops = newOps;
+    }
+  }
+
+  private void addString(String s) {
+    if (s == null) {
+      ops[opsLength++] = NULL_STRING;
+      return;
+    }
+    Integer index = stringIndexMap.get(s);
+    if (index == null) {
+      if (stringsLength == strings.length) {
+        String[] newStrings = new String[strings.length * 2];
+        System.arraycopy(strings, 0, newStrings, 0, stringsLength);
+        strings = newStrings;
+      }
+      index = stringsLength;
+      strings[stringsLength++] = s;
+      stringIndexMap.put(s, index);
+    }
+    ops[opsLength++] = index;
+  }
+
+  private void addChars(char[] ch, int start, int length) {
+    ensureChars(length);
+    System.arraycopy(ch, start, chars, charsLength, length);
+    ops[opsLength++] = charsLength;
+    ops[opsLength++] = length;
+    charsLength += length;
+  }
+
+  private void addChars(String s) {
+    int length = s.length();
+    ensureChars(length);
+    s.getChars(0, length, chars, charsLength);
+    ops[opsLength++] = charsLength;
+    ops[opsLength++] = length;
+    charsLength += length;
+  }
+
+  private void ensureChars(int n) {
+    if (charsLength + n > chars.length) {
+      char[] newChars = new char[Math.max(chars.length * 2, charsLength + n)];
+      System.arraycopy(chars, 0, newChars, 0, charsLength);
+      chars = newChars;
+    }
+  }
+
+  private String string(int index) {
+    return index == NULL_STRING ? null : strings[index];
+  }
+
+  private static boolean equal(String s1, String s2) {
+    return s1 == null ? s2 == null : s1.equals(s2);
+  }
+}
@@ -0,0 +1,83 @@
+package com.thaiopensource.xml.util;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Holds the parsed form of documents, keyed by URI, so that a document that is used several times,
+ * for example a schema module that is included from several places, need only be parsed once.  What
+ * the parsed form is depends on the parser using the cache; a parser must check that a form that it
+ * gets from the cache is of the kind that it stores.
+ * <p>
+ * A cache that checks content also records a digest of the content of each document, and gives the
+ * parsed form of a document only for the same digest.  Such a cache can be used for several loads
+ * of a schema, during which a document may change.  A cache that does not check content is only suitable
+ * for use within a single load.  A cache that checks content holds a limited number of documents, dropping
+ * those least recently used.  The methods of this class may be called by several threads at the same time.
+ */
+public class ParsedDocumentCache {
+  private static final int DEFAULT_MAX_ENTRIES = 256;
+
+  private final boolean checkContent;
+  private final Map<String, Entry> map;
+
+  static private class Entry {
+    private final String digest;
+    private final Object parsedForm;
+
+    private Entry(String digest, Object parsedForm) {
+      this.digest = digest;
+      this.parsedForm = parsedForm;
+    }
+  }
+
+  /**
+   * @param checkContent true if entries are to be checked against a digest of the content of the document
+   */
+  public ParsedDocumentCache(boolean checkContent) {
+    this(checkContent, checkContent ? DEFAULT_MAX_ENTRIES : Integer.MAX_VALUE);
+  }
+
+  /**
+   * @param checkContent true if entries are to be checked against a digest of the content of the document
+   * @param maxEntries the maximum number of documents to hold
+   */
+  public ParsedDocumentCache(boolean checkContent, final int maxEntries) {
+    this.checkContent = checkContent;
+    this.map = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+      protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+        return size() > maxEntries;
+      }
+    };
+  }
+
+  public boolean getCheckContent() {
+    return checkContent;
+  }
+
+  /**
+   * Returns the parsed form of a document, or null if it is not in the cache.
+   *
+   * @param uri the absolute URI of the document
+   * @param digest the digest of the content of the document, as returned by <code>Sha1.digest</code>;
+   * ignored unless the cache checks content
+   */
+  public synchronized Object get(String uri, String digest) {
+    Entry entry = map.get(uri);
+    if (entry == null || (checkContent && !entry.digest.equals(digest)))
+      return null;
+    return entry.parsedForm;
+  }
+
+  public synchronized void put(String uri, String digest, Object parsedForm) {
+    map.put(uri, new Entry(checkContent ? digest : null, parsedForm));
+  }
+
+  public synchronized int size() {
+    return map.size();
+  }
+
+  public synchronized void clear() {
+    map.clear();
+  }
+}
@@ -0,0 +1,52 @@
+package com.thaiopensource.util;
+
+import com.thaiopensource.xml.sax.ErrorHandlerImpl;
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.text.MessageFormat;
+import java.util.ResourceBundle;
+
+/**
+ * Test that Localizer formats messages as MessageFormat does.
+ */
+public class LocalizerTest {
+  private final Localizer localizer = new Localizer(ErrorHandlerImpl.class);
+  private final ResourceBundle bundle = ResourceBundle.getBundle("com.thaiopensource.xml.sax.resources.Messages");
+
+  @DataProvider(name = "messages")
+  public Object[][] messages() {
+    return new Object[][] {
+            { "no_detail", new Object[] { } },
+            { "file_not_found", new Object[] { "foo.xml" } },
+            { "file_not_found", new Object[] { "{1} 'a' ''" } },
+            { "file_not_found", new Object[] { null } },
+            { "file_not_found", new Object[] { 1234 } },
+            { "error", new Object[] { "message", "foo.xml: " } },
+            { "error", new Object[] { "message" } },
+            { "exception", new Object[] { "Foo", 1.5 } },
+            { "locator_line_number", new Object[] { 1234567 } },
+            { "locator_line_number", new Object[] { -1 } },
+            { "locator_line_number", new Object[] { 1.5 } },
+            { "locator_system_id_line_number_column_number", new Object[] { "foo.xml", 12, 0L } },
+    };
+  }
+
+  @Test(dataProvider = "messages")
+  public void testMessage(String key, Object[] args) {
+    String expected = MessageFormat.format(bundle.getString(key), args);
+    Assert.assertEquals(localizer.message(key, args), expected);
+    switch (args.length) {
+    case 0:
+      Assert.assertEquals(localizer.message(key), expected);
+      break;
+    case 1:
+      Assert.assertEquals(localizer.message(key, args[0]), expected);
+      break;
+    case 2:
+      Assert.assertEquals(localizer.message(key, args[0], args[1]), expected);
+      break;
+    }
+  }
+}
@@ -0,0 +1,108 @@
+package com.thaiopensource.util;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Vector;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ThreadPoolTest {
+  static class TaskException extends RuntimeException {
+  }
+
+  /**
+   * Runs tasks that each record when they start, and of which every seventh throws an exception.
+   * The exception is recorded by the handler of the thread that runs the task, so that the
+   * test can check that it happened without the default handler reporting it.
+   */
+  static class Tasks {
+    final int nTasks;
+    final AtomicInteger running = new AtomicInteger();
+    final AtomicInteger maxRunning = new AtomicInteger();
+    final List<Integer> started = new Vector<Integer>();
+    final List<Throwable> thrown = new Vector<Throwable>();
+    final CountDownLatch done;
+
+    Tasks(int nTasks) {
+      this.nTasks = nTasks;
+      done = new CountDownLatch(nTasks + (nTasks + 6) / 7);
+    }
+
+    void run(Executor executor) throws InterruptedException {
+      for (int i = 0; i < nTasks; i++) {
+        final int n = i;
+        executor.execute(new Runnable() {
+          public void run() {
+            started.add(n);
+            int r = running.incrementAndGet();
+            synchronized (maxRunning) {
+              if (r > maxRunning.get())
+                maxRunning.set(r);
+            }
+            try {
+              Thread.sleep(1);
+            }
+            catch (InterruptedException e) {
+              Thread.currentThread().interrupt();
+            }
+            running.decrementAndGet();
+            done.countDown();
+            if (n % 7 == 0) {
+              Thread.currentThread().setUncaughtExceptionHandler(new Thread.UncaughtExceptionHandler() {
+                public void uncaughtException(Thread t, Throwable e) {
+                  thrown.add(e);
+                  done.countDown();
+                }
+              });
+              throw new TaskException();
+            }
+          }
+        });
+      }
+      Assert.assertTrue(done.await(30, TimeUnit.SECONDS));
+      Assert.assertEquals(thrown.size(), (nTasks + 6) / 7);
+      for (Throwable e : thrown)
+        Assert.assertTrue(e instanceof TaskException, e.toString());
+    }
+  }
+
+  @Test
+  public void testLimitedExecutor() throws InterruptedException {
+    final int maxThreads = 3;
+    Tasks tasks = new Tasks(50);
+    // the remaining tasks are still run after a task throws an exception
+    tasks.run(ThreadPool.createLimitedExecutor(maxThreads));
+    Assert.assertTrue(tasks.maxRunning.get() <= maxThreads, String.valueOf(tasks.maxRunning.get()));
+    Assert.assertEquals(new HashSet<Integer>(tasks.started).size(), tasks.nTasks);
+  }
+
+  @Test
+  public void testOrder() throws InterruptedException {
+    Tasks tasks = new Tasks(30);
+    tasks.run(ThreadPool.createLimitedExecutor(1));
+    List<Integer> expected = new ArrayList<Integer>();
+    for (int i = 0; i < tasks.nTasks; i++)
+      expected.add(i);
+    Assert.assertEquals(tasks.started, expected);
+  }
+
+  @Test
+  public void testDaemon() throws InterruptedException {
+    final boolean[] daemon = new boolean[1];
+    final CountDownLatch done = new CountDownLatch(1);
+    ThreadPool.execute(new Runnable() {
+      public void run() {
+        daemon[0] = Thread.currentThread().isDaemon();
+        done.countDown();
+      }
+    });
+    Assert.assertTrue(done.await(30, TimeUnit.SECONDS));
+    Assert.assertTrue(daemon[0]);
+  }
+}
@@ -0,0 +1,67 @@
+package com.thaiopensource.xml.out;
+
+import org.testng.Assert;
+import org.testng.annotations.DataProvider;
+import org.testng.annotations.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Random;
+
+/**
+ * Tests that EncodedWriter writes the same bytes as OutputStreamWriter.
+ */
+public class EncodedWriterTest {
+  private static final char[] SAMPLE_CHARS = {
+    'a', '<', '\n', 0x7F, 0x80, 0xE9, 0xFF, 0x100, 0x7FF, 0x800, 0x4E2D, 0xFFFD, 0xFFFF,
+    0xD83D, 0xDE00, 0xD800, 0xDBFF, 0xDC00, 0xDFFF
+  };
+
+  @DataProvider(name = "encodings")
+  public Object[][] encodings() {
+    return new Object[][] { { "UTF-8" }, { "UTF8" }, { "US-ASCII" }, { "ISO-8859-1" }, { "UTF-16" } };
+  }
+
+  @Test(dataProvider = "encodings")
+  public void testSameAsOutputStreamWriter(String enc) throws IOException {
+    Random random = new Random(1);
+    for (int n = 0; n < 50; n++) {
+      // long enough to need several flushes of the buffer
+      char[] chars = new char[random.nextInt(20000)];
+      for (int i = 0; i < chars.length; i++) {
+        if (random.nextInt(4) == 0)
+          chars[i] = SAMPLE_CHARS[random.nextInt(SAMPLE_CHARS.length)];
+        else
+          chars[i] = (char)('a' + random.nextInt(26));
+      }
+      String str = new String(chars);
+      ByteArrayOutputStream expected = new ByteArrayOutputStream();
+      Writer w = new OutputStreamWriter(expected, enc);
+      w.write(str);
+      w.close();
+      ByteArrayOutputStream actual = new ByteArrayOutputStream();
+      w = EncodedWriter.getInstance(actual, enc);
+      // mix the ways of writing, so that surrogate pairs are split across calls
+      for (int i = 0; i < chars.length;) {
+        int len = Math.min(random.nextInt(100), chars.length - i);
+        switch (random.nextInt(3)) {
+        case 0:
+          w.write(chars[i]);
+          len = 1;
+          break;
+        case 1:
+          w.write(chars, i, len);
+          break;
+        case 2:
+          w.write(str, i, len);
+          break;
+        }
+        i += len;
+      }
+      w.close();
+      Assert.assertEquals(actual.toByteArray(), expected.toByteArray());
+    }
+  }
+}
@@ -0,0 +1,92 @@
+package com.thaiopensource.xml.sax;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.DTDHandler;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
+import org.xml.sax.helpers.DefaultHandler;
+import org.xml.sax.helpers.LocatorImpl;
+
+public class AsyncForkContentHandlerTest {
+  static class Recorder extends DefaultHandler {
+    private final StringBuffer buf = new StringBuffer();
+    private Locator locator;
+
+    public void setDocumentLocator(Locator locator) {
+      this.locator = locator;
+    }
+
+    public void startElement(String uri, String localName, String qName, Attributes attributes) {
+      buf.append('<').append(localName).append(attributes.getLength())
+              .append('@').append(locator.getLineNumber()).append('>');
+    }
+
+    public void characters(char[] ch, int start, int length) {
+      buf.append(ch, start, length);
+    }
+  }
+
+  static class Failer extends DefaultHandler {
+    public void startElement(String uri, String localName, String qName, Attributes attributes)
+            throws SAXException {
+      if (localName.equals("bad"))
+        throw new SAXException(localName);
+    }
+  }
+
+  private static String generate(ContentHandler ch, int nElements, String failName) throws SAXException {
+    LocatorImpl locator = new LocatorImpl();
+    StringBuffer expected = new StringBuffer();
+    ch.setDocumentLocator(locator);
+    ch.startDocument();
+    char[] text = "text".toCharArray();
+    AttributesImpl attributes = new AttributesImpl();
+    for (int i = 0; i < nElements; i++) {
+      locator.setLineNumber(i + 1);
+      String name = i == nElements - 1 && failName != null ? failName : "e";
+      attributes.clear();
+      for (int j = 0; j < i % 3; j++)
+        attributes.addAttribute("", "a" + j, "a" + j, "CDATA", "v");
+      ch.startElement("", name, name, attributes);
+      expected.append('<').append(name).append(i % 3).append('@').append(i + 1).append('>');
+      ch.characters(text, 0, text.length);
+      expected.append(text);
+      ch.endElement("", name, name);
+    }
+    ch.endDocument();
+    return expected.toString();
+  }
+
+  @Test
+  public void testEventsInOrder() throws SAXException {
+    Recorder r1 = new Recorder();
+    Recorder r2 = new Recorder();
+    AsyncForkContentHandler fork = new AsyncForkContentHandler(new ContentHandler[] { r1, r2 },
+                                                               new DTDHandler[] { null, null });
+    String expected = generate(fork, 10000, null);
+    Assert.assertEquals(r1.buf.toString(), expected);
+    Assert.assertEquals(r2.buf.toString(), expected);
+  }
+
+  @Test
+  public void testExceptionRethrown() throws SAXException {
+    Recorder r = new Recorder();
+    AsyncForkContentHandler fork = new AsyncForkContentHandler(new ContentHandler[] { r, new Failer() },
+                                                               new DTDHandler[] { null, null });
+    try {
+      generate(fork, 100, "bad");
+      Assert.fail("exception not rethrown");
+    }
+    catch (SAXException e) {
+      Assert.assertEquals(e.getMessage(), "bad");
+    }
+    // the handler can be reused after a failure; the second document is delivered in full
+    r.buf.setLength(0);
+    String expected = generate(fork, 10, null);
+    Assert.assertEquals(r.buf.toString(), expected);
+  }
+}
@@ -0,0 +1,156 @@
+package com.thaiopensource.xml.sax;
+
+import org.testng.Assert;
+import org.testng.annotations.Test;
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.DTDHandler;
+import org.xml.sax.Locator;
+import org.xml.sax.SAXException;
+import org.xml.sax.ext.LexicalHandler;
+import org.xml.sax.helpers.AttributesImpl;
+import org.xml.sax.helpers.DefaultHandler;
+import org.xml.sax.helpers.LocatorImpl;
+
+public class EventBufferTest {
+  static class Printer extends DefaultHandler {
+    final StringBuffer buf = new StringBuffer();
+    private Locator locator;
+
+    public void setDocumentLocator(Locator locator) {
+      this.locator = locator;
+    }
+
+    private void location() {
+      buf.append(locator.getSystemId()).append(':').append(locator.getLineNumber())
+              .append(':').append(locator.getColumnNumber()).append(' ');
+    }
+
+    public void startDocument() {
+      location();
+      buf.append("startDocument\n");
+    }
+
+    public void endDocument() {
+      location();
+      buf.append("endDocument\n");
+    }
+
+    public void startPrefixMapping(String prefix, String uri) {
+      buf.append("startPrefixMapping ").append(prefix).append(' ').append(uri).append('\n');
+    }
+
+    public void startElement(String uri, String localName, String qName, Attributes attributes) {
+      location();
+      buf.append("startElement {").append(uri).append('}').append(localName).append(' ').append(qName);
+      for (int i = 0; i < attributes.getLength(); i++)
+        buf.append(" {").append(attributes.getURI(i)).append('}').append(attributes.getLocalName(i))
+                .append(' ').append(attributes.getQName(i)).append(' ').append(attributes.getType(i))
+                .append("=").append(attributes.getValue(i));
+      buf.append('\n');
+    }
+
+    public void endElement(String uri, String localName, String qName) {
+      location();
+      buf.append("endElement ").append(qName).append('\n');
+    }
+
+    public void characters(char[] ch, int start, int length) {
+      location();
+      buf.append("characters ").append(ch, start, length).append('\n');
+    }
+
+    public void processingInstruction(String target, String data) {
+      buf.append("processingInstruction ").append(target).append(' ').append(data).append('\n');
+    }
+
+    public void notationDecl(String name, String publicId, String systemId) {
+      buf.append("notationDecl ").append(name).append(' ').append(publicId).append(' ').append(systemId).append('\n');
+    }
+  }
+
+  static class LexicalPrinter extends Printer implements LexicalHandler {
+    public void startDTD(String name, String publicId, String systemId) {
+      buf.append("startDTD ").append(name).append(' ').append(publicId).append(' ').append(systemId).append('\n');
+    }
+
+    public void endDTD() {
+      buf.append("endDTD\n");
+    }
+
+    public void startEntity(String name) {
+    }
+
+    public void endEntity(String name) {
+    }
+
+    public void startCDATA() {
+    }
+
+    public void endCDATA() {
+    }
+
+    public void comment(char[] ch, int start, int length) {
+      buf.append("comment ").append(ch, start, length).append('\n');
+    }
+  }
+
+  private static <H extends ContentHandler & DTDHandler> void generate(H h) throws SAXException {
+    LocatorImpl locator = new LocatorImpl();
+    locator.setSystemId("file:/doc.xml");
+    h.setDocumentLocator(locator);
+    locator.setLineNumber(1);
+    locator.setColumnNumber(1);
+    h.startDocument();
+    h.notationDecl("n", null, "n.txt");
+    h.startPrefixMapping("p", "urn:p");
+    AttributesImpl atts = new AttributesImpl();
+    atts.addAttribute("", "a", "a", "CDATA", "1");
+    atts.addAttribute("urn:p", "b", "p:b", "ID", "x\u00e9");
+    locator.setColumnNumber(20);
+    h.startElement("urn:p", "root", "p:root", atts);
+    char[] chars = "__hello__".toCharArray();
+    h.characters(chars, 2, 5);
+    locator.setLineNumber(2);
+    atts.clear();
+    h.startElement("", "child", "child", atts);
+    h.endElement("", "child", "child");
+    h.processingInstruction("pi", "data");
+    locator.setSystemId("file:/entity.xml");
+    locator.setLineNumber(1);
+    h.characters(chars, 0, chars.length);
+    locator.setSystemId("file:/doc.xml");
+    locator.setLineNumber(3);
+    h.endElement("urn:p", "root", "p:root");
+    h.endDocument();
+  }
+
+  @Test
+  public void testReplay() throws SAXException {
+    Printer expected = new Printer();
+    generate(expected);
+    EventBuffer buffer = new EventBuffer();
+    generate(buffer);
+    Assert.assertEquals(buffer.getEventCount(), 12);
+    for (int i = 0; i < 2; i++) {
+      Printer actual = new Printer();
+      buffer.replay(actual, actual, new LocatorImpl());
+      Assert.assertEquals(actual.buf.toString(), expected.buf.toString());
+    }
+  }
+
+  @Test
+  public void testLexicalReplay() throws SAXException {
+    LexicalPrinter expected = new LexicalPrinter();
+    EventBuffer buffer = new EventBuffer();
+    for (LexicalHandler h : new LexicalHandler[] { expected, buffer }) {
+      h.startDTD("root", null, "root.dtd");
+      h.comment("_in DTD_".toCharArray(), 1, 6);
+      h.endDTD();
+      h.comment(" after DTD ".toCharArray(), 0, 11);
+    }
+    LexicalPrinter actual = new LexicalPrinter();
+    buffer.replay(actual, actual, actual, new LocatorImpl());
+    Assert.assertEquals(actual.buf.toString(), expected.buf.toString());
+  }
+}
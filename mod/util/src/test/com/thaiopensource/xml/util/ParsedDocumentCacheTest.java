@@ -0,0 +1,48 @@
+package com.thaiopensource.xml.util;
+
+import com.thaiopensource.util.Sha1;
+import org.testng.Assert;
+import org.testng.annotations.Test;
+
+public class ParsedDocumentCacheTest {
+  @Test
+  public void testCheckContent() {
+    ParsedDocumentCache cache = new ParsedDocumentCache(true);
+    String digest = Sha1.digest("<doc/>");
+    Object parsedForm = new Object();
+    cache.put("file:/a", digest, parsedForm);
+    Assert.assertSame(cache.get("file:/a", digest), parsedForm);
+    Assert.assertNull(cache.get("file:/a", Sha1.digest("<doc2/>")));
+    Assert.assertNull(cache.get("file:/b", digest));
+  }
+
+  @Test
+  public void testNoCheckContent() {
+    ParsedDocumentCache cache = new ParsedDocumentCache(false);
+    Object parsedForm = new Object();
+    cache.put("file:/a", null, parsedForm);
+    Assert.assertSame(cache.get("file:/a", Sha1.digest("<doc/>")), parsedForm);
+    Assert.assertSame(cache.get("file:/a", null), parsedForm);
+  }
+
+  @Test
+  public void testMaxEntries() {
+    ParsedDocumentCache cache = new ParsedDocumentCache(true, 2);
+    cache.put("file:/a", "1", "a");
+    cache.put("file:/b", "2", "b");
+    Assert.assertEquals(cache.get("file:/a", "1"), "a");
+    cache.put("file:/c", "3", "c");
+    Assert.assertEquals(cache.size(), 2);
+    // b is the least recently used
+    Assert.assertNull(cache.get("file:/b", "2"));
+    Assert.assertEquals(cache.get("file:/a", "1"), "a");
+    Assert.assertEquals(cache.get("file:/c", "3"), "c");
+  }
+
+  @Test
+  public void testDigest() {
+    Assert.assertEquals(Sha1.digest("abc"), "a9993e364706816aba3e25717850c26c9cd0d89d");
+    byte[] bytes = { 'x', 'a', 'b', 'c', 'x' };
+    Assert.assertEquals(Sha1.digest(bytes, 1, 3), Sha1.digest("abc"));
+  }
+}
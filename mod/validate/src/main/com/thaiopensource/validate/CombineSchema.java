@@ -16,6 +16,8 @@ public class CombineSchema extends AbstractSchema {
   }
 
   public Validator createValidator(PropertyMap properties) {
+    if (properties.contains(ValidateProperty.PARALLEL))
+      return new ParallelCombineValidator(new Schema[] { schema1, schema2 }, properties);
     return new CombineValidator(schema1.createValidator(properties),
                                 schema2.createValidator(properties));
   }
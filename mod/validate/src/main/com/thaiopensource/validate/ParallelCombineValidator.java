@@ -0,0 +1,215 @@
+package com.thaiopensource.validate;
+
+import com.thaiopensource.util.PropertyMap;
+import com.thaiopensource.util.PropertyMapBuilder;
+import com.thaiopensource.xml.sax.AsyncForkContentHandler;
+import com.thaiopensource.xml.sax.DelegatingContentHandler;
+import org.xml.sax.Attributes;
+import org.xml.sax.ContentHandler;
+import org.xml.sax.DTDHandler;
+import org.xml.sax.ErrorHandler;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * A Validator that runs each of several validators in a thread of its own.  Errors are collected
+ * while the document is being validated and are reported at the end of the document, ordered by
+ * location, so that the output does not depend on the scheduling of the threads.
+ */
+class ParallelCombineValidator implements Validator {
+  private final Validator[] validators;
+  private final ErrorBuffer[] errorBuffers;
+  private final ErrorHandler eh;
+  private AsyncForkContentHandler fork;
+  private ContentHandler contentHandler;
+
+  static private class Error {
+    static final int WARNING = 0;
+    static final int ERROR = 1;
+    static final int FATAL_ERROR = 2;
+    private final int type;
+    private final SAXParseException exception;
+
+    Error(int type, SAXParseException exception) {
+      this.type = type;
+      this.exception = exception;
+    }
+  }
+
+  static private class ErrorBuffer implements ErrorHandler {
+    private final List<Error> errors = new ArrayList<Error>();
+
+    public void warning(SAXParseException exception) {
+      errors.add(new Error(Error.WARNING, exception));
+    }
+
+    public void error(SAXParseException exception) {
+      errors.add(new Error(Error.ERROR, exception));
+    }
+
+    public void fatalError(SAXParseException exception) {
+      errors.add(new Error(Error.FATAL_ERROR, exception));
+    }
+  }
+
+  static private final Comparator<Error> locationComparator = new Comparator<Error>() {
+    public int compare(Error e1, Error e2) {
+      int result = compareNumbers(e1.exception.getLineNumber(), e2.exception.getLineNumber());
+      if (result != 0)
+        return result;
+      return compareNumbers(e1.exception.getColumnNumber(), e2.exception.getColumnNumber());
+    }
+
+    // unknown numbers sort last
+    private int compareNumbers(int n1, int n2) {
+      if (n1 < 0)
+        n1 = Integer.MAX_VALUE;
+      if (n2 < 0)
+        n2 = Integer.MAX_VALUE;
+      return n1 < n2 ? -1 : (n1 == n2 ? 0 : 1);
+    }
+  };
+
+  ParallelCombineValidator(Schema[] schemas, PropertyMap properties) {
+    eh = properties.get(ValidateProperty.ERROR_HANDLER);
+    validators = new Validator[schemas.length];
+    errorBuffers = new ErrorBuffer[schemas.length];
+    for (int i = 0; i < schemas.length; i++) {
+      errorBuffers[i] = new ErrorBuffer();
+      PropertyMapBuilder builder = new PropertyMapBuilder(properties);
+      builder.put(ValidateProperty.ERROR_HANDLER, errorBuffers[i]);
+      validators[i] = schemas[i].createValidator(builder.toPropertyMap());
+    }
+    createHandlers();
+  }
+
+  public ContentHandler getContentHandler() {
+    return contentHandler;
+  }
+
+  public DTDHandler getDTDHandler() {
+    return fork;
+  }
+
+  public void reset() {
+    fork.abort();
+    for (int i = 0; i < validators.length; i++) {
+      validators[i].reset();
+      errorBuffers[i].errors.clear();
+    }
+    createHandlers();
+  }
+
+  private void createHandlers() {
+    ContentHandler[] contentHandlers = new ContentHandler[validators.length];
+    DTDHandler[] dtdHandlers = new DTDHandler[validators.length];
+    for (int i = 0; i < validators.length; i++) {
+      contentHandlers[i] = validators[i].getContentHandler();
+      dtdHandlers[i] = validators[i].getDTDHandler();
+    }
+    fork = new AsyncForkContentHandler(contentHandlers, dtdHandlers);
+    contentHandler = new ReportingHandler(fork);
+  }
+
+  /**
+   * Reports the buffered errors at the end of the document, or before rethrowing an exception
+   * from one of the validators, so that the errors that preceded a fatal error are not lost.
+   */
+  private class ReportingHandler extends DelegatingContentHandler {
+    ReportingHandler(ContentHandler delegate) {
+      super(delegate);
+    }
+
+    public void endDocument() throws SAXException {
+      try {
+        super.endDocument();
+      }
+      catch (SAXException e) {
+        throw reportErrors(e);
+      }
+      reportErrors();
+    }
+
+    public void startElement(String namespaceURI, String localName, String qName, Attributes atts)
+            throws SAXException {
+      try {
+        super.startElement(namespaceURI, localName, qName, atts);
+      }
+      catch (SAXException e) {
+        throw reportErrors(e);
+      }
+    }
+
+    public void endElement(String namespaceURI, String localName, String qName) throws SAXException {
+      try {
+        super.endElement(namespaceURI, localName, qName);
+      }
+      catch (SAXException e) {
+        throw reportErrors(e);
+      }
+    }
+
+    public void characters(char ch[], int start, int length) throws SAXException {
+      try {
+        super.characters(ch, start, length);
+      }
+      catch (SAXException e) {
+        throw reportErrors(e);
+      }
+    }
+
+    public void ignorableWhitespace(char ch[], int start, int length) throws SAXException {
+      try {
+        super.ignorableWhitespace(ch, start, length);
+      }
+      catch (SAXException e) {
+        throw reportErrors(e);
+      }
+    }
+
+    public void processingInstruction(String target, String data) throws SAXException {
+      try {
+        super.processingInstruction(target, data);
+      }
+      catch (SAXException e) {
+        throw reportErrors(e);
+      }
+    }
+  }
+
+  private SAXException reportErrors(SAXException e) throws SAXException {
+    // the fork has stopped the validators, so the buffers are no longer being written
+    reportErrors();
+    return e;
+  }
+
+  private void reportErrors() throws SAXException {
+    List<Error> errors = new ArrayList<Error>();
+    for (int i = 0; i < errorBuffers.length; i++) {
+      errors.addAll(errorBuffers[i].errors);
+      errorBuffers[i].errors.clear();
+    }
+    // the sort is stable, so errors at the same location stay in the order of the validators
+    Collections.sort(errors, locationComparator);
+    if (eh == null)
+      return;
+    for (Error error : errors) {
+      switch (error.type) {
+      case Error.WARNING:
+        eh.warning(error.exception);
+        break;
+      case Error.ERROR:
+        eh.error(error.exception);
+        break;
+      case Error.FATAL_ERROR:
+        eh.fatalError(error.exception);
+        break;
+      }
+    }
+  }
+}
@@ -0,0 +1,174 @@
+package com.thaiopensource.validate;
+
+import com.thaiopensource.resolver.BasicResolver;
+import com.thaiopensource.resolver.Identifier;
+import com.thaiopensource.resolver.Input;
+import com.thaiopensource.resolver.Resolver;
+import com.thaiopensource.resolver.ResolverException;
+import com.thaiopensource.util.PropertyMap;
+import com.thaiopensource.util.PropertyMapBuilder;
+import com.thaiopensource.util.Sha1;
+import com.thaiopensource.util.Uri;
+import com.thaiopensource.util.UriOrFile;
+import org.xml.sax.EntityResolver;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.ext.EntityResolver2;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Records the resources that are read while a schema is created, with a digest of the content of each,
+ * so that it can be determined later whether any of them has changed.  A digest is computed when a
+ * resource is resolved or opened, before it is read, so that a change made while the schema is being
+ * created is seen as a change afterwards.
+ */
+public class ResourceRecorder {
+  // maps the URI of each resource to the digest of its content, or to null if it could not be read
+  private final Map<String, String> digests = new LinkedHashMap<String, String>();
+
+  /**
+   * Returns properties that are the same as the specified properties, except that the resources are
+   * resolved and opened by a Resolver that records them.
+   */
+  public PropertyMap recordResources(PropertyMap properties) {
+    final Resolver resolver = ResolverFactory.createResolver(properties).getResolver();
+    PropertyMapBuilder builder = new PropertyMapBuilder(properties);
+    // these are used by resolver
+    builder.put(ValidateProperty.ENTITY_RESOLVER, null);
+    builder.put(ValidateProperty.URI_RESOLVER, null);
+    builder.put(ValidateProperty.RESOLVER, new Resolver() {
+      public void resolve(Identifier id, Input input) throws IOException, ResolverException {
+        resolver.resolve(id, input);
+        if (!input.isResolved())
+          input.setUri(BasicResolver.resolveUri(id));
+        add(input.getUri());
+      }
+
+      public void open(Input input) throws IOException, ResolverException {
+        resolver.open(input);
+        if (input.getUri() != null)
+          add(input.getUri());
+      }
+    });
+    return builder.toPropertyMap();
+  }
+
+  /**
+   * Returns an EntityResolver that uses the specified EntityResolver and records the entities that
+   * are read using it.  This is for an XMLReader that was not created with the properties returned
+   * by recordResources.
+   *
+   * @param entityResolver the EntityResolver to use; may be null
+   */
+  public EntityResolver recordEntities(EntityResolver entityResolver) {
+    if (entityResolver instanceof EntityResolver2)
+      return new RecordingEntityResolver2((EntityResolver2)entityResolver);
+    return new RecordingEntityResolver(entityResolver);
+  }
+
+  private class RecordingEntityResolver implements EntityResolver {
+    private final EntityResolver entityResolver;
+
+    RecordingEntityResolver(EntityResolver entityResolver) {
+      this.entityResolver = entityResolver;
+    }
+
+    public InputSource resolveEntity(String publicId, String systemId) throws SAXException, IOException {
+      InputSource in = entityResolver == null ? null : entityResolver.resolveEntity(publicId, systemId);
+      record(in, systemId, null);
+      return in;
+    }
+
+    /**
+     * Records the entity read from an InputSource returned by an EntityResolver, or from the system
+     * identifier if the EntityResolver returned null.
+     */
+    void record(InputSource in, String systemId, String base) {
+      if (in != null && in.getSystemId() != null)
+        systemId = in.getSystemId();
+      else if (base != null && systemId != null)
+        systemId = Uri.resolve(base, systemId);
+      if (systemId != null)
+        add(systemId);
+    }
+  }
+
+  private class RecordingEntityResolver2 extends RecordingEntityResolver implements EntityResolver2 {
+    private final EntityResolver2 entityResolver;
+
+    RecordingEntityResolver2(EntityResolver2 entityResolver) {
+      super(entityResolver);
+      this.entityResolver = entityResolver;
+    }
+
+    public InputSource resolveEntity(String name, String publicId, String base, String systemId)
+            throws SAXException, IOException {
+      InputSource in = entityResolver.resolveEntity(name, publicId, base, systemId);
+      record(in, systemId, base);
+      return in;
+    }
+
+    public InputSource getExternalSubset(String name, String base) throws SAXException, IOException {
+      InputSource in = entityResolver.getExternalSubset(name, base);
+      if (in != null)
+        record(in, in.getSystemId(), base);
+      return in;
+    }
+  }
+
+  /**
+   * Records a resource, if it has not already been recorded.
+   */
+  public synchronized void add(String uri) {
+    if (!digests.containsKey(uri))
+      digests.put(uri, digest(uri));
+  }
+
+  /**
+   * Returns a Map from the URI of each resource recorded to the digest of its content, or to null if it
+   * could not be read.
+   */
+  public synchronized Map<String, String> getDigests() {
+    return new LinkedHashMap<String, String>(digests);
+  }
+
+  /**
+   * Returns true if each resource recorded could be read and still has the same content.
+   */
+  public synchronized boolean isUpToDate() {
+    return isUpToDate(digests);
+  }
+
+  /**
+   * Returns true if each resource in a Map returned by getDigests could be read and still has the same content.
+   */
+  public static boolean isUpToDate(Map<String, String> digests) {
+    for (Map.Entry<String, String> entry : digests.entrySet()) {
+      String digest = entry.getValue();
+      if (digest == null || !digest.equals(digest(entry.getKey())))
+        return false;
+    }
+    return true;
+  }
+
+  /**
+   * Returns a digest of the content of the resource with the specified URI, or null if it cannot be read.
+   */
+  private static String digest(String uri) {
+    try {
+      File file = UriOrFile.uriToFile(uri);
+      if (file != null)
+        return Sha1.digest(new FileInputStream(file));
+      return Sha1.digest(new URL(uri).openStream());
+    }
+    catch (IOException e) {
+      return null;
+    }
+  }
+}
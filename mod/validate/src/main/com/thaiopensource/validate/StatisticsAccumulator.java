@@ -0,0 +1,101 @@
+package com.thaiopensource.validate;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.MBeanParameterInfo;
+import javax.management.ReflectionException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A StatisticsHandler that adds up the statistics of the documents it receives.  The totals, and the
+ * number of documents, are also available as the read-only attributes of a JMX MBean, which has
+ * a <code>reset</code> operation.  A StatisticsAccumulator can be used by several validators at the
+ * same time, so using one for all the validators of a schema gives statistics for the schema; to
+ * publish them, register it with an MBeanServer.
+ */
+public class StatisticsAccumulator implements StatisticsHandler, DynamicMBean {
+  private static final String DOCUMENTS = "documents";
+  private static final String RESET = "reset";
+  private final Map<String, Long> totals = new LinkedHashMap<String, Long>();
+
+  public StatisticsAccumulator() {
+    totals.put(DOCUMENTS, 0L);
+  }
+
+  public synchronized void statistics(Map<String, Long> statistics) {
+    totals.put(DOCUMENTS, totals.get(DOCUMENTS) + 1);
+    for (Map.Entry<String, Long> entry : statistics.entrySet()) {
+      String name = entry.getKey();
+      long value = entry.getValue();
+      Long total = totals.get(name);
+      if (total != null)
+        value = name.startsWith("max") ? Math.max(total, value) : total + value;
+      totals.put(name, value);
+    }
+  }
+
+  /**
+   * Returns the totals.
+   *
+   * @return a Map from the name of each statistic to its total, starting with <code>documents</code>,
+   * the number of documents
+   */
+  public synchronized Map<String, Long> getTotals() {
+    return new LinkedHashMap<String, Long>(totals);
+  }
+
+  public synchronized void reset() {
+    totals.clear();
+    totals.put(DOCUMENTS, 0L);
+  }
+
+  public synchronized Object getAttribute(String attribute) throws AttributeNotFoundException {
+    Long value = totals.get(attribute);
+    if (value == null)
+      throw new AttributeNotFoundException(attribute);
+    return value;
+  }
+
+  public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+    throw new AttributeNotFoundException(attribute.getName());
+  }
+
+  public synchronized AttributeList getAttributes(String[] attributes) {
+    AttributeList list = new AttributeList();
+    for (String name : attributes) {
+      Long value = totals.get(name);
+      if (value != null)
+        list.add(new Attribute(name, value));
+    }
+    return list;
+  }
+
+  public AttributeList setAttributes(AttributeList attributes) {
+    return new AttributeList();
+  }
+
+  public Object invoke(String actionName, Object[] params, String[] signature) throws ReflectionException {
+    if (!actionName.equals(RESET) || (params != null && params.length != 0))
+      throw new ReflectionException(new NoSuchMethodException(actionName));
+    reset();
+    return null;
+  }
+
+  public synchronized MBeanInfo getMBeanInfo() {
+    MBeanAttributeInfo[] attributes = new MBeanAttributeInfo[totals.size()];
+    int i = 0;
+    for (String name : totals.keySet())
+      attributes[i++] = new MBeanAttributeInfo(name, "long", name, true, false, false);
+    MBeanOperationInfo[] operations = {
+      new MBeanOperationInfo(RESET, "Resets the totals", new MBeanParameterInfo[0], "void",
+                             MBeanOperationInfo.ACTION)
+    };
+    return new MBeanInfo(getClass().getName(), "Validation statistics", attributes, null, operations, null);
+  }
+}
@@ -0,0 +1,22 @@
+package com.thaiopensource.validate;
+
+import java.util.Map;
+
+/**
+ * Receives statistics of the work done by a validator.  A validator that supports statistics
+ * calls <code>statistics</code> at the end of each document with the statistics for that document.
+ * The names and meaning of the statistics depend on the schema language; each is a count or
+ * time that can be added over several documents, except that a statistic whose name starts with
+ * <code>max</code> is a maximum.
+ *
+ * @see ValidateProperty#STATISTICS_HANDLER
+ * @see StatisticsAccumulator
+ */
+public interface StatisticsHandler {
+  /**
+   * Receives the statistics for a document.
+   *
+   * @param statistics a Map from the name of each statistic to its value
+   */
+  void statistics(Map<String, Long> statistics);
+}
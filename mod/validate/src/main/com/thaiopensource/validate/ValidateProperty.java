@@ -67,4 +67,22 @@ public class ValidateProperty {
    */
   public static final PropertyId<XMLReaderCreator> XML_READER_CREATOR
           = PropertyId.newInstance("XML_READER_CREATOR", XMLReaderCreator.class);
+
+  /**
+   * Property specifying that the validators for the schemas combined by a CombineSchema should each
+   * run in a separate thread.  Errors are then reported at the end of the document, ordered by location.
+   * If this property is present when an NRL or NVDL schema is created, the schemas of the validate actions
+   * of a rule that have the same mode usage are combined by a CombineSchema.
+   */
+  public static final FlagPropertyId PARALLEL = new FlagPropertyId("PARALLEL");
+
+  /**
+   * Property specifying a StatisticsHandler to receive statistics of the work done by validators.
+   * The value to which this PropertyId maps must be an instance of StatisticsHandler.  Only some
+   * validators support it, such as those for RELAX NG; others ignore it.
+   *
+   * @see StatisticsHandler
+   */
+  public static final PropertyId<StatisticsHandler> STATISTICS_HANDLER
+          = PropertyId.newInstance("STATISTICS_HANDLER", StatisticsHandler.class);
 }
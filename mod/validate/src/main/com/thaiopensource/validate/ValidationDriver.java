@@ -132,6 +132,26 @@ public class ValidationDriver {
     }
   }
 
+  /**
+   * Makes a schema that has already been loaded, for example by another ValidationDriver,
+   * the currently loaded schema.
+   *
+   * @param schema the Schema; must not be <code>null</code>
+   */
+  public void setSchema(Schema schema) {
+    this.schema = schema;
+    validator = null;
+  }
+
+  /**
+   * Returns the currently loaded schema.
+   *
+   * @return the Schema, or <code>null</code> if there is no currently loaded schema
+   */
+  public Schema getSchema() {
+    return schema;
+  }
+
   /**
    * Validates a document against the currently loaded schema. This can be called
    * multiple times in order to validate multiple documents.
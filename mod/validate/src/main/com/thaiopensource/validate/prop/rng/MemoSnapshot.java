@@ -0,0 +1,91 @@
+package com.thaiopensource.validate.prop.rng;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Holds a snapshot of the derivatives that the validators of a RELAX NG schema have computed and
+ * memoized, so that new validators can start with them rather than compute them again.  A snapshot
+ * is trained by validating sample documents with validators created with a snapshot that is updated;
+ * it can then be written to a file and read in another process.  A snapshot can only be used with the
+ * same schema, loaded with the same options; a validator warns about and ignores a snapshot for a
+ * different schema.  The methods of this class may be called by several threads at the same time.
+ *
+ * @see RngProperty#MEMO_SNAPSHOT
+ */
+public class MemoSnapshot {
+  private final boolean update;
+  private byte[] data;
+  private final List<Updater> updaters = new ArrayList<Updater>();
+
+  /**
+   * Adds the derivatives memoized by validators to a snapshot that is updated.
+   */
+  public interface Updater {
+    /**
+     * Returns the data of the snapshot with the derivatives memoized since the last call added to it.
+     *
+     * @param data the data of the snapshot, or null if it is empty
+     */
+    byte[] update(byte[] data);
+  }
+
+  /**
+   * @param update true if the derivatives that the validators using this snapshot memoize are to be
+   * added to it; they are added when the data of the snapshot is requested, except for those of a
+   * validator that is in the middle of a document, which are added at a later request.  A snapshot that
+   * is updated belongs to a single schema and keeps the memos of all the validators created with it.
+   */
+  public MemoSnapshot(boolean update) {
+    this.update = update;
+  }
+
+  public boolean getUpdate() {
+    return update;
+  }
+
+  /**
+   * Adds an Updater to be called each time the data of this snapshot is requested.
+   */
+  public synchronized void addUpdater(Updater updater) {
+    updaters.add(updater);
+  }
+
+  /**
+   * Returns the snapshot in binary form, or null if it is empty.
+   */
+  public synchronized byte[] getData() {
+    for (Updater updater : updaters)
+      data = updater.update(data);
+    return data;
+  }
+
+  public synchronized void setData(byte[] data) {
+    this.data = data;
+  }
+
+  /**
+   * Replaces the snapshot with one read from an InputStream, which is read to the end but not closed.
+   */
+  public void read(InputStream in) throws IOException {
+    ByteArrayOutputStream buf = new ByteArrayOutputStream();
+    byte[] b = new byte[8192];
+    for (int n; (n = in.read(b)) > 0;)
+      buf.write(b, 0, n);
+    setData(buf.toByteArray());
+  }
+
+  /**
+   * Writes the snapshot to an OutputStream, which is not closed.  Nothing is written if the snapshot
+   * is empty.
+   */
+  public void write(OutputStream out) throws IOException {
+    byte[] data = getData();
+    if (data != null)
+      out.write(data);
+  }
+}
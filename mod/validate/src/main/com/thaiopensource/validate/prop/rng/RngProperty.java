@@ -6,6 +6,7 @@ import com.thaiopensource.validate.FlagPropertyId;
 import com.thaiopensource.validate.Option;
 import com.thaiopensource.validate.SchemaReader;
 import com.thaiopensource.validate.StringPropertyId;
+import com.thaiopensource.xml.util.ParsedDocumentCache;
 import org.relaxng.datatype.DatatypeLibraryFactory;
 
 public class RngProperty {
@@ -17,6 +18,41 @@ public class RngProperty {
   public static final FlagPropertyId CHECK_ID_IDREF = new FlagPropertyId("CHECK_ID_IDREF");
   public static final FlagPropertyId FEASIBLE = new FlagPropertyId("FEASIBLE");
   public static final StringPropertyId SIMPLIFIED_SCHEMA = new StringPropertyId("SIMPLIFIED_SCHEMA");
+  /**
+   * Property specifying the number of IDREFs without a matching ID that the ID/IDREF checker holds in memory
+   * while validating a document; any more are written to a temporary file until the end of the document.
+   * The value must be a positive Integer.  If absent, there is no limit.
+   */
+  public static final PropertyId<Integer> IDREF_SPILL_THRESHOLD
+          = PropertyId.newInstance("IDREF_SPILL_THRESHOLD", Integer.class);
+  /**
+   * Property specifying a cache of parsed schema documents to be shared by several loads of schemas,
+   * so that a module used by several schemas is parsed only once.  The cache must check content, so that
+   * a module that has changed is parsed again.  If absent, documents are cached only within a single load.
+   */
+  public static final PropertyId<ParsedDocumentCache> PARSED_DOCUMENT_CACHE
+          = PropertyId.newInstance("PARSED_DOCUMENT_CACHE", ParsedDocumentCache.class);
+
+  /**
+   * Property specifying that the documents included or referenced by a schema are to be read in advance,
+   * by a small pool of threads, so that the latencies of reading them overlap.  The Resolver used by
+   * the schema must allow several threads to open documents at the same time.
+   */
+  public static final FlagPropertyId PREFETCH = new FlagPropertyId("PREFETCH");
+
+  /**
+   * Property specifying that the patterns computed while validating are to keep choices and interleaves
+   * in a canonical form, flattened, ordered and without repeated alternatives, so that equivalent patterns
+   * reached in different ways share their memoized derivatives.
+   */
+  public static final FlagPropertyId CANONICAL_PATTERNS = new FlagPropertyId("CANONICAL_PATTERNS");
+
+  /**
+   * Property specifying a snapshot of memoized derivatives with which the validators of a schema are to start,
+   * and which they update if it is to be updated.
+   */
+  public static final PropertyId<MemoSnapshot> MEMO_SNAPSHOT
+          = PropertyId.newInstance("MEMO_SNAPSHOT", MemoSnapshot.class);
 
   public static Option getOption(String uri) {
     if (!uri.startsWith(SchemaReader.BASE_URI))
@@ -26,6 +62,10 @@ public class RngProperty {
       return new FlagOption(FEASIBLE);
     if (uri.equals("check-id-idref"))
       return new FlagOption(CHECK_ID_IDREF);
+    if (uri.equals("prefetch"))
+      return new FlagOption(PREFETCH);
+    if (uri.equals("canonical-patterns"))
+      return new FlagOption(CANONICAL_PATTERNS);
     return null;
   }
 }
@@ -42,6 +42,25 @@ public class SchematronProperty {
    */
   public static final FlagPropertyId DIAGNOSE = new FlagPropertyId("DIAGNOSE");
 
+  /**
+   * PropertyId that specifies that patterns that need only the subtree of the context
+   * element of each rule should be evaluated as the document is parsed, without building
+   * a tree for the whole document.  The remaining patterns are evaluated as usual.
+   * The subtree of the context element of a rule that looks below the attributes of that element
+   * is held in memory until the end-tag of the element; a pattern with such a rule whose context can match
+   * the document element is not streamed.  If any pattern cannot be streamed, the document is built as a tree
+   * for the stylesheet, which evaluates only the patterns that are not streamed.
+   * This applies during schema creation.
+   */
+  public static final FlagPropertyId STREAMING = new FlagPropertyId("STREAMING");
+
+  /**
+   * PropertyId that specifies a directory in which the stylesheets generated from
+   * Schematron schemas are cached, so that they can be reused by later processes.
+   * This applies during schema creation.
+   */
+  public static final StringPropertyId CACHE_DIRECTORY = new StringPropertyId("CACHE_DIRECTORY");
+
   public static Option getOption(String uri) {
     if (!uri.startsWith(SchemaReader.BASE_URI))
       return null;
@@ -50,6 +69,10 @@ public class SchematronProperty {
       return new FlagOption(DIAGNOSE);
     if (uri.equals("phase"))
       return PHASE_OPTION;
+    if (uri.equals("streaming"))
+      return new FlagOption(STREAMING);
+    if (uri.equals("cache-directory"))
+      return new StringOption(CACHE_DIRECTORY);
     return null;
   }
 }